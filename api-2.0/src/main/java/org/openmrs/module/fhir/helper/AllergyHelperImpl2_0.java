@@ -4,12 +4,17 @@ import ca.uhn.fhir.rest.server.exceptions.MethodNotAllowedException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
 import org.hl7.fhir.dstu3.model.AllergyIntolerance;
 import org.openmrs.Allergy;
+import org.openmrs.AllergyReaction;
+import org.openmrs.Concept;
 import org.openmrs.Patient;
 import org.openmrs.annotation.OpenmrsProfile;
 import org.openmrs.api.APIException;
 import org.openmrs.api.PatientService;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.cache.ConceptCodingCache;
+import org.openmrs.module.fhir.api.db.FHIRDao;
 import org.openmrs.module.fhir.api.helper.AllergyHelper;
+import org.openmrs.module.fhir.api.util.ContextUtil;
 import org.openmrs.module.fhir.api.util.FHIRConstants;
 import org.openmrs.module.fhir.api.util.FHIRUtils;
 import org.openmrs.module.fhir.util.FHIRAllergyIntoleranceUtil2_0;
@@ -17,7 +22,10 @@ import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 @Component(value = "fhir.AllergyHelper")
 @OpenmrsProfile(openmrsPlatformVersion = "2.0.* - 2.1.*")
@@ -36,7 +44,9 @@ public class AllergyHelperImpl2_0 implements AllergyHelper {
 	public Collection<AllergyIntolerance> getAllergyIntoleranceByPatient(Patient patient) {
 		List<AllergyIntolerance> allergies = new ArrayList<>();
 		PatientService allergyService = Context.getService(PatientService.class);
-		for (Allergy allergy : allergyService.getAllergies(patient)) {
+		List<Allergy> openMRSAllergies = allergyService.getAllergies(patient);
+		initializeAllergies(openMRSAllergies);
+		for (Allergy allergy : openMRSAllergies) {
 			allergies.add(FHIRAllergyIntoleranceUtil2_0.generateAllergyIntolerance(allergy));
 		}
 		return allergies;
@@ -93,6 +103,33 @@ public class AllergyHelperImpl2_0 implements AllergyHelper {
 		return allergy;
 	}
 
+	/**
+	 * Loads the reactions of the allergies and the names and mappings of their concepts up front, rather than one
+	 * allergy at a time while they are converted
+	 */
+	private void initializeAllergies(List<Allergy> allergies) {
+		FHIRDao dao = ContextUtil.getFHIRDao();
+		dao.initializeAllergyReactions(allergies);
+
+		ConceptCodingCache conceptCodingCache = ConceptCodingCache.getInstance();
+		Locale locale = Context.getLocale();
+		Set<Concept> concepts = new HashSet<>();
+		for (Allergy allergy : allergies) {
+			List<Concept> allergyConcepts = new ArrayList<>();
+			allergyConcepts.add(allergy.getAllergen() != null ? allergy.getAllergen().getCodedAllergen() : null);
+			for (AllergyReaction reaction : allergy.getReactions()) {
+				allergyConcepts.add(reaction.getReaction());
+			}
+			// the names and mappings of cached concepts are not needed
+			for (Concept concept : allergyConcepts) {
+				if (concept != null && !conceptCodingCache.contains(concept.getConceptId(), locale)) {
+					concepts.add(concept);
+				}
+			}
+		}
+		dao.initializeConceptNamesAndMappings(concepts);
+	}
+
 	private Allergy saveAllergy(Allergy allergy) {
 		Context.getPatientService().saveAllergy(allergy);
 		//retrieve is necessary as saveAllergy(...) returns no value
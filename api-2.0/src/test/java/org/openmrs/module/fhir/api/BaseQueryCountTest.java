@@ -0,0 +1,96 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.openmrs.api.context.Context;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Base class of the tests asserting how many SQL statements an operation issues, to catch the N+1 query patterns
+ * creeping back into the strategies and converters. The statements are counted with the Hibernate {@link Statistics}
+ * of the test session factory, each counted operation starting from an empty session so that it cannot benefit from
+ * objects loaded before it.
+ */
+public abstract class BaseQueryCountTest extends BaseModuleContextSensitiveTest {
+
+	private Statistics statistics;
+
+	private boolean statisticsEnabled;
+
+	@Before
+	public void enableStatistics() {
+		statistics = Context.getRegisteredComponent("sessionFactory", SessionFactory.class).getStatistics();
+		statisticsEnabled = statistics.isStatisticsEnabled();
+		statistics.setStatisticsEnabled(true);
+	}
+
+	@After
+	public void restoreStatistics() {
+		statistics.setStatisticsEnabled(statisticsEnabled);
+	}
+
+	/**
+	 * Runs an operation in an empty session
+	 *
+	 * @param operation the operation
+	 * @return the number of SQL statements the operation prepared
+	 */
+	protected long countStatements(Runnable operation) {
+		Context.flushSession();
+		Context.clearSession();
+		statistics.clear();
+		operation.run();
+		return statistics.getPrepareStatementCount();
+	}
+
+	/**
+	 * Asserts that an operation prepares at most a given number of SQL statements
+	 *
+	 * @param description the operation, for the failure message
+	 * @param maximum     the maximum number of statements
+	 * @param operation   the operation
+	 */
+	protected void assertStatementsAtMost(String description, long maximum, Runnable operation) {
+		long count = countStatements(operation);
+		assertTrue(description + " issued " + count + " statements, at most " + maximum + " expected: "
+				+ Arrays.toString(statistics.getQueries()), count <= maximum);
+	}
+
+	/**
+	 * Asserts that the number of SQL statements of an operation does not grow with the number of objects it handles.
+	 * Both operations are run once first, so that they are compared with the same objects in the second level cache.
+	 *
+	 * @param description the operation, for the failure message
+	 * @param few         the operation run on a few objects
+	 * @param many        the same operation run on many more objects
+	 * @param slack       the number of additional statements tolerated for the larger run
+	 */
+	protected void assertStatementsDoNotGrow(String description, Runnable few, Runnable many, long slack) {
+		countStatements(few);
+		countStatements(many);
+
+		long fewCount = countStatements(few);
+		long manyCount = countStatements(many);
+		assertTrue(description + " issued " + fewCount + " statements for a few objects but " + manyCount
+				+ " for many, the statements must not grow with the number of objects", manyCount <= fewCount + slack);
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api;
+
+import org.hl7.fhir.dstu3.model.Bundle;
+import org.hl7.fhir.dstu3.model.Location;
+import org.hl7.fhir.dstu3.model.Reference;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.impl.BundleServiceImpl;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class BundleServiceTest extends BaseModuleContextSensitiveTest {
+
+	protected static final String LOC_INITIAL_DATA_XML = "org/openmrs/api/include/LocationServiceTest-initialData.xml";
+
+	private static final String EXISTING_LOCATION_UUID = "f08ba64b-ea57-4a41-b33c-9dfc59b0c60a";
+
+	private static final String NEW_LOCATION_UUID = "0c8fb9f6-6b7e-4c4f-9a3a-3f0a4f7a61c2";
+
+	public BundleService getService() {
+		return Context.getService(BundleService.class);
+	}
+
+	@Before
+	public void runBeforeEachTest() throws Exception {
+		executeDataSet(LOC_INITIAL_DATA_XML);
+	}
+
+	@Test
+	public void processTransaction_shouldCreateResourcesWithTheUuidOfTheirFullUrlAndResolveReferences() {
+		Bundle bundle = new Bundle();
+		bundle.setType(Bundle.BundleType.TRANSACTION);
+		addEntry(bundle, Bundle.HTTPVerb.GET, "Location/" + EXISTING_LOCATION_UUID, null, null);
+		addEntry(bundle, Bundle.HTTPVerb.POST, "Location", "urn:uuid:" + NEW_LOCATION_UUID,
+				newLocation("Bundle Parent Location"));
+		Location child = newLocation("Bundle Child Location");
+		child.setPartOf(new Reference("urn:uuid:" + NEW_LOCATION_UUID));
+		addEntry(bundle, Bundle.HTTPVerb.POST, "Location", "urn:uuid:" + UUID.randomUUID(), child);
+
+		Bundle response = getService().processTransaction(bundle);
+
+		assertEquals(Bundle.BundleType.TRANSACTIONRESPONSE, response.getType());
+		assertEquals(3, response.getEntry().size());
+		assertEquals("200 OK", response.getEntry().get(0).getResponse().getStatus());
+		assertEquals("201 Created", response.getEntry().get(1).getResponse().getStatus());
+		assertEquals("Location/" + NEW_LOCATION_UUID, response.getEntry().get(1).getResponse().getLocation());
+		assertNotNull(Context.getLocationService().getLocationByUuid(NEW_LOCATION_UUID));
+		assertEquals("Location/" + NEW_LOCATION_UUID, child.getPartOf().getReference());
+	}
+
+	@Test
+	public void processTransaction_shouldNotCreateAResourceWhenTheIfNoneExistCriteriaMatch() {
+		Bundle bundle = new Bundle();
+		bundle.setType(Bundle.BundleType.TRANSACTION);
+		Bundle.BundleEntryComponent entry = addEntry(bundle, Bundle.HTTPVerb.POST, "Location",
+				"urn:uuid:" + NEW_LOCATION_UUID, newLocation("Bundle Conditional Location"));
+		entry.getRequest().setIfNoneExist("_id=" + EXISTING_LOCATION_UUID);
+
+		Bundle response = getService().processTransaction(bundle);
+
+		assertEquals("200 OK", response.getEntry().get(0).getResponse().getStatus());
+		assertEquals("Location/" + EXISTING_LOCATION_UUID, response.getEntry().get(0).getResponse().getLocation());
+		assertNull(Context.getLocationService().getLocationByUuid(NEW_LOCATION_UUID));
+	}
+
+	@Test
+	public void processTransaction_shouldUpdateAnExistingResource() {
+		Bundle bundle = new Bundle();
+		bundle.setType(Bundle.BundleType.TRANSACTION);
+		addEntry(bundle, Bundle.HTTPVerb.PUT, "Location/" + EXISTING_LOCATION_UUID, null,
+				newLocation("Bundle Renamed Location"));
+
+		Bundle response = getService().processTransaction(bundle);
+
+		assertEquals("200 OK", response.getEntry().get(0).getResponse().getStatus());
+		assertEquals("Location/" + EXISTING_LOCATION_UUID, response.getEntry().get(0).getResponse().getLocation());
+		assertEquals("Bundle Renamed Location",
+				Context.getLocationService().getLocationByUuid(EXISTING_LOCATION_UUID).getName());
+	}
+
+	@Test
+	public void processTransaction_shouldDeleteAnExistingResource() {
+		String uuid = Context.getLocationService().getLocation(6).getUuid();
+		Bundle bundle = new Bundle();
+		bundle.setType(Bundle.BundleType.TRANSACTION);
+		addEntry(bundle, Bundle.HTTPVerb.DELETE, "Location/" + uuid, null, null);
+
+		Bundle response = getService().processTransaction(bundle);
+
+		assertEquals("204 No Content", response.getEntry().get(0).getResponse().getStatus());
+		assertNull(Context.getLocationService().getLocationByUuid(uuid));
+	}
+
+	@Test
+	public void processBatch_shouldReportAFailedEntryWithoutAffectingTheOthers() {
+		Bundle bundle = new Bundle();
+		bundle.setType(Bundle.BundleType.BATCH);
+		addEntry(bundle, Bundle.HTTPVerb.POST, "Location", "urn:uuid:" + NEW_LOCATION_UUID,
+				newLocation("Bundle Batch Location"));
+		addEntry(bundle, Bundle.HTTPVerb.GET, "Location/" + UUID.randomUUID(), null, null);
+		addEntry(bundle, Bundle.HTTPVerb.PUT, "Location/" + EXISTING_LOCATION_UUID, null,
+				newLocation("Bundle Renamed Location"));
+
+		// the service proxy suspends the test transaction for batches, so the implementation is called directly to
+		// have the entries join it and be rolled back with it
+		Bundle response = new BundleServiceImpl().processBatch(bundle);
+
+		assertEquals(Bundle.BundleType.BATCHRESPONSE, response.getType());
+		assertEquals(3, response.getEntry().size());
+		assertEquals("201 Created", response.getEntry().get(0).getResponse().getStatus());
+		assertEquals("404", response.getEntry().get(1).getResponse().getStatus());
+		assertNotNull(response.getEntry().get(1).getResponse().getOutcome());
+		assertEquals("200 OK", response.getEntry().get(2).getResponse().getStatus());
+		assertNotNull(Context.getLocationService().getLocationByUuid(NEW_LOCATION_UUID));
+		assertEquals("Bundle Renamed Location",
+				Context.getLocationService().getLocationByUuid(EXISTING_LOCATION_UUID).getName());
+	}
+
+	@Test
+	public void processBatch_shouldReadTheResourcesAsTheyWereBeforeTheBatch() {
+		Bundle bundle = new Bundle();
+		bundle.setType(Bundle.BundleType.BATCH);
+		addEntry(bundle, Bundle.HTTPVerb.POST, "Location", "urn:uuid:" + NEW_LOCATION_UUID,
+				newLocation("Bundle Batch Location"));
+		addEntry(bundle, Bundle.HTTPVerb.GET, "Location/" + NEW_LOCATION_UUID, null, null);
+
+		Bundle response = new BundleServiceImpl().processBatch(bundle);
+
+		assertEquals("201 Created", response.getEntry().get(0).getResponse().getStatus());
+		assertEquals("404", response.getEntry().get(1).getResponse().getStatus());
+		assertNotNull(Context.getLocationService().getLocationByUuid(NEW_LOCATION_UUID));
+	}
+
+	private Bundle.BundleEntryComponent addEntry(Bundle bundle, Bundle.HTTPVerb method, String url, String fullUrl,
+			Location resource) {
+		Bundle.BundleEntryComponent entry = bundle.addEntry();
+		entry.setFullUrl(fullUrl);
+		entry.setResource(resource);
+		entry.getRequest().setMethod(method).setUrl(url);
+		return entry;
+	}
+
+	private Location newLocation(String name) {
+		Location location = new Location();
+		location.setName(name);
+		location.setStatus(Location.LocationStatus.ACTIVE);
+		return location;
+	}
+}
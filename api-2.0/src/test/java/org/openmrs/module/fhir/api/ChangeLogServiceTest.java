@@ -0,0 +1,145 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api;
+
+import ca.uhn.fhir.model.api.ResourceMetadataKeyEnum;
+import ca.uhn.fhir.rest.server.IBundleProvider;
+import ca.uhn.fhir.rest.server.exceptions.ForbiddenOperationException;
+import org.hl7.fhir.instance.model.api.IAnyResource;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.GlobalProperty;
+import org.openmrs.Patient;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.changelog.ChangeLogInterceptor;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ChangeLogServiceTest extends BaseModuleContextSensitiveTest {
+
+	private ChangeLogService getService() {
+		return Context.getService(ChangeLogService.class);
+	}
+
+	/**
+	 * Reads the changes as soon as they are committed
+	 */
+	@Before
+	public void disableReadLag() {
+		setReadLagSeconds("0");
+	}
+
+	@Test
+	public void getHistory_shouldLeaveOutTheChangesMoreRecentThanTheReadLag() {
+		setReadLagSeconds("60");
+		Patient patient = Context.getPatientService().getPatient(2);
+		Context.getPatientService().voidPatient(patient, "test");
+		commit();
+
+		IBundleProvider history = getService().getHistory("Patient", patient.getUuid(), null);
+		assertEquals(0, history.size());
+		assertTrue(history.getPublished().getValue().before(new Date(System.currentTimeMillis() - 59000)));
+	}
+
+	@Test
+	public void getHistory_shouldReturnAVoidedPatientAsADeleteEntry() {
+		Patient patient = Context.getPatientService().getPatient(2);
+		Context.getPatientService().voidPatient(patient, "test");
+		commit();
+
+		IBundleProvider history = getService().getHistory("Patient", patient.getUuid(), null);
+		List<IBaseResource> resources = history.getResources(0, 10);
+		assertEquals(1, resources.size());
+		IAnyResource resource = (IAnyResource) resources.get(0);
+		assertEquals(patient.getUuid(), resource.getIdElement().getIdPart());
+		assertEquals("DELETE", ResourceMetadataKeyEnum.ENTRY_TRANSACTION_METHOD.get(resource));
+	}
+
+	@Test
+	public void searchByLastUpdated_shouldLeaveOutADeletedPatient() {
+		Patient patient = Context.getPatientService().getPatient(2);
+		Context.getPatientService().voidPatient(patient, "test");
+		commit();
+
+		IBundleProvider results = getService().searchByLastUpdated("Patient", null, null);
+		assertEquals(0, results.size());
+		assertTrue(results.getResources(0, 10).isEmpty());
+	}
+
+	@Test
+	public void getHistory_shouldReturnAnUpdatedPatientInItsCurrentVersion() {
+		Patient patient = Context.getPatientService().getPatient(2);
+		patient.getPersonName().setGivenName("Changed");
+		Context.getPatientService().savePatient(patient);
+		commit();
+
+		List<IBaseResource> resources = getService().getHistory("Patient", patient.getUuid(), null).getResources(0, 10);
+		assertEquals(1, resources.size());
+		org.hl7.fhir.dstu3.model.Patient resource = (org.hl7.fhir.dstu3.model.Patient) resources.get(0);
+		assertEquals("Changed", resource.getNameFirstRep().getGivenAsSingleString());
+		assertNull(ResourceMetadataKeyEnum.ENTRY_TRANSACTION_METHOD.get(resource));
+	}
+
+	@Test(expected = ForbiddenOperationException.class)
+	public void getHistory_shouldRequireThePrivilegeOfTheType() {
+		Context.getPatientService().voidPatient(Context.getPatientService().getPatient(2), "test");
+		commit();
+
+		RestrictedUserTestUtil.becomeUserWithPrivileges("Get Locations");
+		try {
+			getService().getHistory("Patient", null, null).size();
+		}
+		finally {
+			Context.logout();
+		}
+	}
+
+	@Test
+	public void getHistory_shouldLeaveTheTypesTheUserCannotReadOutOfTheSystemHistory() {
+		Context.getPatientService().voidPatient(Context.getPatientService().getPatient(2), "test");
+		commit();
+		assertTrue(getService().getHistory(null, null, null).size() > 0);
+
+		RestrictedUserTestUtil.becomeUserWithPrivileges("Get Locations");
+		try {
+			IBundleProvider history = getService().getHistory(null, null, null);
+			assertEquals(0, history.size());
+			assertTrue(history.getResources(0, 10).isEmpty());
+		}
+		finally {
+			Context.logout();
+		}
+	}
+
+	private void setReadLagSeconds(String readLag) {
+		Context.getAdministrationService().saveGlobalProperty(
+				new GlobalProperty("fhir.changeLog.readLagSeconds", readLag));
+	}
+
+	/**
+	 * Records the changes flushed so far the way a commit of the test transaction would
+	 */
+	private void commit() {
+		Context.flushSession();
+		Context.getRegisteredComponent("fhirChangeLogInterceptor", ChangeLogInterceptor.class)
+				.beforeTransactionCompletion(null);
+	}
+}
@@ -28,13 +28,16 @@ import org.openmrs.Patient;
 import org.openmrs.Person;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.fhir.api.util.FHIRConstants;
+import org.openmrs.module.fhir.api.util.FHIRGlobalProperties;
 import org.openmrs.module.fhir.api.util.FHIRUtils;
 import org.openmrs.test.BaseModuleContextSensitiveTest;
 
 import java.util.Date;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 /**
  * This test class will test the functionalities of the Condition Service.
@@ -120,4 +123,23 @@ public class ConditionServiceTest extends BaseModuleContextSensitiveTest {
 		assertEquals(fhirCoding.getCode(), openmrsObs.getConcept().getUuid());
 		assertEquals(fhirCoding.getDisplay(), openmrsObs.getConcept().getName().getName());
 	}
+
+	@Test
+	public void getConceptIdsOfConditions_shouldFollowGlobalPropertyChangesOnceLoaded() {
+		FHIRGlobalProperties.load();
+		try {
+			assertNull(FHIRUtils.getConceptIdsOfConditions());
+
+			Context.getAdministrationService().saveGlobalProperty(
+					new GlobalProperty(CONDITION_CONCEPTS, CONDITION_MAPPING_CONCEPT_ID));
+			assertArrayEquals(new int[] { 1 }, FHIRUtils.getConceptIdsOfConditions());
+
+			Context.getAdministrationService().purgeGlobalProperty(
+					Context.getAdministrationService().getGlobalPropertyObject(CONDITION_CONCEPTS));
+			assertNull(FHIRUtils.getConceptIdsOfConditions());
+		}
+		finally {
+			FHIRGlobalProperties.unload();
+		}
+	}
 }
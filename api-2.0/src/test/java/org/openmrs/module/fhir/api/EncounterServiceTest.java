@@ -14,6 +14,7 @@
 package org.openmrs.module.fhir.api;
 
 import org.apache.commons.lang.StringUtils;
+import org.hibernate.Hibernate;
 import org.hl7.fhir.dstu3.model.Bundle;
 import org.hl7.fhir.dstu3.model.CodeableConcept;
 import org.hl7.fhir.dstu3.model.Coding;
@@ -24,6 +25,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.openmrs.Visit;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.util.ContextUtil;
 import org.openmrs.module.fhir.api.util.FHIRConstants;
 import org.openmrs.module.fhir.api.util.FHIREncounterUtil;
 import org.openmrs.test.BaseModuleContextSensitiveTest;
@@ -219,4 +221,19 @@ public class EncounterServiceTest extends BaseModuleContextSensitiveTest {
 		assertNotNull(fhirEncounters);
 		assertEquals(1, fhirEncounters.size());
 	}
+
+	@Test
+	public void initializeEncounters_shouldLoadTheAssociationsReadByTheConverter() {
+		String encounterUuid = "430bbb70-6a9c-4e1e-badb-9d1034b1b5e9";
+		Context.flushSession();
+		Context.clearSession();
+		org.openmrs.Encounter encounter = Context.getEncounterService().getEncounterByUuid(encounterUuid);
+
+		ContextUtil.getFHIRDao().initializeEncounters(Collections.singletonList(encounter));
+
+		assertTrue(Hibernate.isInitialized(encounter.getEncounterProviders()));
+		assertTrue(Hibernate.isInitialized(encounter.getPatient().getNames()));
+		assertTrue(Hibernate.isInitialized(encounter.getPatient().getIdentifiers()));
+		assertEquals(encounterUuid, FHIREncounterUtil.generateEncounter(encounter).getId());
+	}
 }
@@ -11,21 +11,30 @@
  */
 package org.openmrs.module.fhir.api;
 
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
+import org.apache.commons.io.FileUtils;
 import org.hl7.fhir.dstu3.model.Address;
 import org.hl7.fhir.dstu3.model.Location;
 import org.junit.Before;
 import org.junit.Test;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.bulkimport.BulkImportJob;
+import org.openmrs.module.fhir.api.bulkimport.BulkImportTask;
+import org.openmrs.module.fhir.api.manager.FHIRContextFactory;
 import org.openmrs.module.fhir.api.util.FHIRLocationUtil;
 import org.openmrs.test.BaseModuleContextSensitiveTest;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class LocationServiceTest extends BaseModuleContextSensitiveTest {
 
@@ -67,27 +76,26 @@ public class LocationServiceTest extends BaseModuleContextSensitiveTest {
 	public void searchLocationsByName_shouldReturnBundle() {
 		String name = "Test Parent Location";
 		String locationUuid = "f08ba64b-ea57-4a41-b33c-9dfc59b0c60a";
-		List<Location> locations = getService().searchLocationsByName(name);
-		assertNotNull(locations);
+		IBundleProvider locations = getService().searchLocationsByName(new StringParam(name));
 		assertEquals(1, locations.size());
-		assertEquals(locations.get(0).getId(), locationUuid);
+		assertEquals(locationUuid, locations.getResources(0, 1).get(0).getIdElement().getIdPart());
 	}
 
 	@Test
 	public void searchLocationsByPartOfName_shouldReturnBundle() {
 		String name = "Test Par";
 		String locationUuid = "f08ba64b-ea57-4a41-b33c-9dfc59b0c60a";
-		List<Location> locations = getService().searchLocationsByName(name);
-		assertNotNull(locations);
+		IBundleProvider locations = getService().searchLocationsByName(new StringParam(name));
 		assertEquals(1, locations.size());
-		assertEquals(locations.get(0).getId(), locationUuid);
+		assertEquals(locationUuid, locations.getResources(0, 1).get(0).getIdElement().getIdPart());
 	}
 
 	@Test
 	public void searchActiveLocations_shouldReturnBundle() {
-		List<Location> locations = getService().searchLocationsByStatus(true);
-		assertNotNull(locations);
+		IBundleProvider locations = getService().searchLocationsByStatus(true);
 		assertEquals(5, locations.size());
+		assertEquals(5, locations.getResources(0, 10).size());
+		assertEquals(2, locations.getResources(3, 10).size());
 	}
 
 	@Test
@@ -165,4 +173,43 @@ public class LocationServiceTest extends BaseModuleContextSensitiveTest {
 		fhirLocation = Context.getService(LocationService.class).createLocation(fhirLocation);
 		assertNotNull(fhirLocation);
 	}
+
+	@Test
+	public void bulkImport_shouldCommitTheValidLinesAndReportTheRejectedOnes() throws Exception {
+		File directory = File.createTempFile("fhir-import", "");
+		assertTrue(directory.delete());
+		File inputFile = new File(directory, "locations.ndjson");
+		FileUtils.writeLines(inputFile, "UTF-8", Arrays.asList(
+				toNdjson("Imported Location A"),
+				"not a resource",
+				"",
+				"{\"resourceType\":\"Basic\"}",
+				toNdjson("Imported Location B")));
+		BulkImportJob job = new BulkImportJob(1, inputFile, 2, directory);
+		try {
+			new BulkImportTask(job).run();
+
+			assertEquals(BulkImportJob.Status.COMPLETED, job.getStatus());
+			assertEquals(5, job.getLinesRead());
+			assertEquals(Long.valueOf(2), job.getCounts().get("Location"));
+			assertNotNull(Context.getLocationService().getLocation("Imported Location A"));
+			assertNotNull(Context.getLocationService().getLocation("Imported Location B"));
+
+			assertEquals(2, job.getErrorCount());
+			List<String> errors = FileUtils.readLines(job.getErrorFile(), "UTF-8");
+			assertEquals(2, errors.size());
+			assertTrue(errors.get(0).contains("Line 2"));
+			assertTrue(errors.get(1).contains("Line 4"));
+		}
+		finally {
+			FileUtils.deleteDirectory(directory);
+		}
+	}
+
+	private String toNdjson(String name) {
+		Location location = new Location();
+		location.setName(name);
+		location.setStatus(Location.LocationStatus.ACTIVE);
+		return FHIRContextFactory.getJsonParser().encodeResourceToString(location);
+	}
 }
@@ -13,13 +13,28 @@
  */
 package org.openmrs.module.fhir.api;
 
+import ca.uhn.fhir.rest.param.ParamPrefixEnum;
+import ca.uhn.fhir.rest.param.QuantityAndListParam;
+import ca.uhn.fhir.rest.param.QuantityOrListParam;
+import ca.uhn.fhir.rest.param.QuantityParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
+import ca.uhn.fhir.rest.server.exceptions.ForbiddenOperationException;
 import org.hl7.fhir.dstu3.model.CodeableConcept;
 import org.hl7.fhir.dstu3.model.Coding;
 import org.hl7.fhir.dstu3.model.DateTimeType;
 import org.hl7.fhir.dstu3.model.InstantType;
+import org.hl7.fhir.dstu3.model.IntegerType;
 import org.hl7.fhir.dstu3.model.Observation;
+import org.hl7.fhir.dstu3.model.Parameters;
+import org.hl7.fhir.dstu3.model.Quantity;
 import org.hl7.fhir.dstu3.model.Reference;
+import org.hl7.fhir.dstu3.model.SampledData;
+import org.hl7.fhir.dstu3.model.Type;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.EntityKey;
 import org.junit.Before;
 import org.junit.Test;
 import org.openmrs.Concept;
@@ -27,16 +42,22 @@ import org.openmrs.ConceptMap;
 import org.openmrs.Encounter;
 import org.openmrs.GlobalProperty;
 import org.openmrs.Obs;
+import org.openmrs.Patient;
 import org.openmrs.Person;
 import org.openmrs.api.ConceptService;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.cache.ConceptCodingCache;
+import org.openmrs.module.fhir.api.cache.ConceptCodingCacheAdvice;
+import org.openmrs.module.fhir.api.cache.ObsTimeSeriesCache;
 import org.openmrs.module.fhir.api.util.FHIRObsUtil;
+import org.openmrs.module.fhir.api.util.FHIRUtils;
 import org.openmrs.test.BaseModuleContextSensitiveTest;
 
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -98,12 +119,14 @@ public class ObsServiceTest extends BaseModuleContextSensitiveTest {
 		tokenParams.add(new TokenParam().setValue("3143-9").setSystem("LOINC"));
 		assertEquals(tokenParams.size(), 1);
 
-		List<Observation> obs = getService().searchObsByPatientAndCode(PERSON_UUID, tokenParams);
+		IBundleProvider obs = getService().searchObsByPatientAndCode(PERSON_UUID, tokenParams);
 		assertNotNull(obs);
 		assertEquals(3, obs.size());
-		assertNotNull(obs.get(0));
-		assertNotNull(obs.get(1));
-		assertNotNull(obs.get(2));
+		List<IBaseResource> resources = obs.getResources(0, obs.size());
+		assertEquals(3, resources.size());
+		assertNotNull(resources.get(0));
+		assertNotNull(resources.get(1));
+		assertNotNull(resources.get(2));
 	}
 
 	@Test
@@ -120,7 +143,7 @@ public class ObsServiceTest extends BaseModuleContextSensitiveTest {
 		concept.addConceptMapping(conceptMap);
 		conceptService.saveConcept(concept);
 		concepts.put(conceptCode, "http://loinc.org");
-		List<Observation> obs = getService().searchObsByPatientAndConcept(personUuid, concepts);
+		IBundleProvider obs = getService().searchObsByPatientAndConcept(personUuid, concepts);
 		assertNotNull(obs);
 		assertEquals(3, obs.size());
 	}
@@ -140,28 +163,245 @@ public class ObsServiceTest extends BaseModuleContextSensitiveTest {
 		Map<String, String> codes = new HashMap<String, String>();
 		codes.put(code1, null);
 		codes.put(code2, null);
-		List<Observation> obs = getService().searchObsByCode(codes);
+		IBundleProvider obs = getService().searchObsByCode(codes);
 		assertNotNull(obs);
 		assertEquals(14, obs.size());
 	}
 
+	@Test
+	public void searchObsByCode_shouldOnlyLoadTheRequestedPage() {
+		Map<String, String> codes = new HashMap<String, String>();
+		codes.put("4a5048b1-cf85-4c64-9339-7cab41e5e364", null);
+		codes.put("95312123-e0c2-466d-b6b1-cb6e990d0d65", null);
+		IBundleProvider obs = getService().searchObsByCode(codes);
+		assertEquals(10, obs.getResources(0, 10).size());
+		assertEquals(4, obs.getResources(10, 20).size());
+		assertEquals(0, obs.getResources(20, 30).size());
+	}
+
+	@Test
+	public void searchObsByCode_shouldEvictTheReadObsFromTheSession() {
+		Map<String, String> codes = new HashMap<String, String>();
+		codes.put("4a5048b1-cf85-4c64-9339-7cab41e5e364", null);
+		codes.put("95312123-e0c2-466d-b6b1-cb6e990d0d65", null);
+		IBundleProvider obs = getService().searchObsByCode(codes);
+		Session session = Context.getRegisteredComponent("sessionFactory", SessionFactory.class).getCurrentSession();
+		session.flush();
+		session.clear();
+
+		List<String> uuids = new ArrayList<String>();
+		for (IBaseResource resource : obs.getResources(0, 20)) {
+			uuids.add(resource.getIdElement().getIdPart());
+		}
+		assertEquals(14, uuids.size());
+
+		List<Object> obsIdsInSession = new ArrayList<Object>();
+		for (Object key : session.getStatistics().getEntityKeys()) {
+			if (Obs.class.getName().equals(((EntityKey) key).getEntityName())) {
+				obsIdsInSession.add(((EntityKey) key).getIdentifier());
+			}
+		}
+		List<?> readObsIds = session.createQuery("select o.obsId from Obs o where o.uuid in (:uuids)")
+				.setParameterList("uuids", uuids).list();
+		assertEquals(14, readObsIds.size());
+		for (Object obsId : readObsIds) {
+			assertFalse(obsIdsInSession.contains(obsId));
+		}
+	}
+
+	@Test(expected = ForbiddenOperationException.class)
+	public void searchObsByCode_shouldRequireThePrivilegeToReadObservations() {
+		Map<String, String> codes = new HashMap<String, String>();
+		codes.put("4a5048b1-cf85-4c64-9339-7cab41e5e364", null);
+		RestrictedUserTestUtil.becomeUserWithPrivileges("Get Patients", "Get People", "Get Concepts");
+		try {
+			getService().searchObsByCode(codes).size();
+		}
+		finally {
+			Context.logout();
+		}
+	}
+
 	@Test
 	public void searchObsByDate_shouldReturnMatchingObservationList() throws ParseException {
 		String obsDate = "2009-01-01 00:00:00.0";
 		DateFormat df = new SimpleDateFormat("yyyy-MM-dd");
 		Date date = df.parse(obsDate);
-		List<Observation> obs = getService().searchObsByDate(date);
+		IBundleProvider obs = getService().searchObsByDate(date);
 		assertEquals(2, obs.size());
 	}
 
 	@Test
 	public void searchObsByPerson_shouldReturnMatchingObservationList() {
 		String personUuid = "da7f524f-27ce-4bb2-86d6-6d1d05312bd5";
-		List<Observation> obs = getService().searchObsByPerson(personUuid);
+		IBundleProvider obs = getService().searchObsByPerson(personUuid);
 		assertNotNull(obs);
 		assertEquals(5, obs.size());
 	}
 
+	@Test
+	public void searchObs_shouldNarrowBySubjectCodeDateAndValueInOneSearch() throws ParseException {
+		Person person = Context.getPersonService().getPerson(7);
+		Concept weight = Context.getConceptService().getConcept(5089);
+		DateFormat df = new SimpleDateFormat("yyyy-MM-dd");
+		double[] values = { 50, 60, 70, 80 };
+		for (int i = 0; i < values.length; i++) {
+			Obs obs = new Obs(person, weight, df.parse("2030-01-0" + (i + 1)), null);
+			obs.setValueNumeric(values[i]);
+			Context.getObsService().saveObs(obs, null);
+		}
+
+		List<TokenParam> codes = Collections.singletonList(new TokenParam(null, weight.getUuid()));
+		QuantityAndListParam range = new QuantityAndListParam()
+				.addAnd(new QuantityOrListParam().addOr(new QuantityParam(ParamPrefixEnum.GREATERTHAN, 50, null, null)))
+				.addAnd(new QuantityOrListParam().addOr(
+						new QuantityParam(ParamPrefixEnum.LESSTHAN_OR_EQUALS, 80, null, null)));
+		IBundleProvider obs = getService().searchObs(person.getUuid(), codes, df.parse("2030-01-01"),
+				df.parse("2030-01-03"), null, range, true);
+		assertEquals(2, obs.size());
+		List<IBaseResource> resources = obs.getResources(0, 10);
+		assertEquals(60d, ((Quantity) ((Observation) resources.get(0)).getValue()).getValue().doubleValue(), 0);
+		assertEquals(70d, ((Quantity) ((Observation) resources.get(1)).getValue()).getValue().doubleValue(), 0);
+
+		obs = getService().searchObs(person.getUuid(), codes, df.parse("2030-01-01"), df.parse("2030-01-03"), null,
+				range, false);
+		resources = obs.getResources(0, 10);
+		assertEquals(70d, ((Quantity) ((Observation) resources.get(0)).getValue()).getValue().doubleValue(), 0);
+	}
+
+	@Test
+	public void getLastObs_shouldReturnTheMostRecentObservationsOfEachCode() throws ParseException {
+		Patient patient = Context.getPatientService().getPatient(7);
+		Concept weight = Context.getConceptService().getConcept(5089);
+		DateFormat df = new SimpleDateFormat("yyyy-MM-dd");
+		for (int i = 1; i <= 3; i++) {
+			Obs obs = new Obs(patient, weight, df.parse("2030-01-0" + i), null);
+			obs.setValueNumeric(60d + i);
+			Context.getObsService().saveObs(obs, null);
+		}
+
+		List<TokenParam> codes = Collections.singletonList(new TokenParam(null, weight.getUuid()));
+		List<Observation> observations = getService().getLastObs(patient.getUuid(), codes, 2);
+		assertEquals(2, observations.size());
+		assertEquals(63d, ((Quantity) observations.get(0).getValue()).getValue().doubleValue(), 0);
+		assertEquals(62d, ((Quantity) observations.get(1).getValue()).getValue().doubleValue(), 0);
+
+		observations = getService().getLastObs(patient.getUuid(), null, 1);
+		List<String> codesSeen = new ArrayList<String>();
+		for (Observation observation : observations) {
+			String code = observation.getCode().getCodingFirstRep().getCode();
+			assertFalse(codesSeen.contains(code));
+			codesSeen.add(code);
+		}
+		assertTrue(codesSeen.size() > 1);
+	}
+
+	@Test(expected = ForbiddenOperationException.class)
+	public void getLastObs_shouldRequireThePrivilegeToReadObservations() {
+		String patientUuid = Context.getPatientService().getPatient(7).getUuid();
+		RestrictedUserTestUtil.becomeUserWithPrivileges("Get Patients", "Get People", "Get Concepts");
+		try {
+			getService().getLastObs(patientUuid, null, 1);
+		}
+		finally {
+			Context.logout();
+		}
+	}
+
+	@Test
+	public void getObsTimeSeries_shouldAverageTheCachedSeriesUntilAnObsIsSaved() throws ParseException {
+		Patient patient = Context.getPatientService().getPatient(7);
+		Concept weight = Context.getConceptService().getConcept(5089);
+		DateFormat df = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+		for (int i = 1; i <= 4; i++) {
+			Obs obs = new Obs(patient, weight, df.parse("2030-01-0" + i + " 00:00:00.000"), null);
+			obs.setValueNumeric(58d + 2 * i);
+			Context.getObsService().saveObs(obs, null);
+		}
+
+		List<TokenParam> codes = Collections.singletonList(new TokenParam(null, weight.getUuid()));
+		Date from = df.parse("2030-01-01 00:00:00.000");
+		Date to = df.parse("2030-01-04 23:59:59.999");
+		Parameters series = getService().getObsTimeSeries(patient.getUuid(), codes, from, to, 2);
+		assertEquals("61 65", ((SampledData) getPart(series, "data")).getData());
+		assertEquals(4, ((IntegerType) getPart(series, "count")).getValue().intValue());
+
+		long hits = ObsTimeSeriesCache.getInstance().getHitCount();
+		getService().getObsTimeSeries(patient.getUuid(), codes, from, to, 2);
+		assertEquals(hits + 1, ObsTimeSeriesCache.getInstance().getHitCount());
+
+		Obs obs = new Obs(patient, weight, df.parse("2030-01-04 12:00:00.000"), null);
+		obs.setValueNumeric(70d);
+		Context.getObsService().saveObs(obs, null);
+		series = getService().getObsTimeSeries(patient.getUuid(), codes, from, to, 2);
+		assertEquals("61 66.66666667", ((SampledData) getPart(series, "data")).getData());
+	}
+
+	@Test(expected = ForbiddenOperationException.class)
+	public void getObsTimeSeries_shouldRequireThePrivilegeToReadObservations() {
+		String patientUuid = Context.getPatientService().getPatient(7).getUuid();
+		List<TokenParam> codes = Collections.singletonList(new TokenParam(null,
+				Context.getConceptService().getConcept(5089).getUuid()));
+		RestrictedUserTestUtil.becomeUserWithPrivileges("Get Patients", "Get People", "Get Concepts");
+		try {
+			getService().getObsTimeSeries(patientUuid, codes, null, null, 2);
+		}
+		finally {
+			Context.logout();
+		}
+	}
+
+	@Test
+	public void getObsStatistics_shouldAggregateTheValuesOfAPatientOrEveryone() throws ParseException {
+		Concept weight = Context.getConceptService().getConcept(5089);
+		DateFormat df = new SimpleDateFormat("yyyy-MM-dd");
+		Patient patient = Context.getPatientService().getPatient(7);
+		for (int i = 1; i <= 3; i++) {
+			Obs obs = new Obs(patient, weight, df.parse("2030-01-0" + i), null);
+			obs.setValueNumeric(58d + 2 * i);
+			Context.getObsService().saveObs(obs, null);
+		}
+		Obs other = new Obs(Context.getPatientService().getPatient(2), weight, df.parse("2030-01-05"), null);
+		other.setValueNumeric(80d);
+		Context.getObsService().saveObs(other, null);
+
+		List<TokenParam> codes = Collections.singletonList(new TokenParam(null, weight.getUuid()));
+		Date from = df.parse("2030-01-01");
+		Parameters statistics = getService().getObsStatistics(codes, patient.getUuid(), null, from, null);
+		assertEquals(3, ((IntegerType) getPart(statistics, "count")).getValue().intValue());
+		assertEquals(60d, ((Quantity) getPart(statistics, "minimum")).getValue().doubleValue(), 0);
+		assertEquals(64d, ((Quantity) getPart(statistics, "maximum")).getValue().doubleValue(), 0);
+		assertEquals(62d, ((Quantity) getPart(statistics, "mean")).getValue().doubleValue(), 0);
+		assertEquals(60d, ((Quantity) getPart(statistics, "first")).getValue().doubleValue(), 0);
+		assertEquals(64d, ((Quantity) getPart(statistics, "last")).getValue().doubleValue(), 0);
+
+		statistics = getService().getObsStatistics(codes, null, null, from, null);
+		assertEquals(4, ((IntegerType) getPart(statistics, "count")).getValue().intValue());
+		assertEquals(80d, ((Quantity) getPart(statistics, "last")).getValue().doubleValue(), 0);
+	}
+
+	@Test(expected = ForbiddenOperationException.class)
+	public void getObsStatistics_shouldRequireThePrivilegeToReadObservations() {
+		List<TokenParam> codes = Collections.singletonList(new TokenParam(null,
+				Context.getConceptService().getConcept(5089).getUuid()));
+		RestrictedUserTestUtil.becomeUserWithPrivileges("Get Patients", "Get People", "Get Concepts");
+		try {
+			getService().getObsStatistics(codes, null, null, null, null);
+		}
+		finally {
+			Context.logout();
+		}
+	}
+
+	private Type getPart(Parameters parameters, String name) {
+		for (Parameters.ParametersParameterComponent part : parameters.getParameterFirstRep().getPart()) {
+			if (name.equals(part.getName())) {
+				return part.getValue();
+			}
+		}
+		return null;
+	}
+
 	@Test
 	public void deleteObs_shouldDeleteTheSpecifiedObs() {
 		org.openmrs.api.ObsService obsService = Context.getObsService();
@@ -279,4 +519,43 @@ public class ObsServiceTest extends BaseModuleContextSensitiveTest {
 		assertEquals(Obs.Interpretation.HIGH.name(), newObs.getInterpretation().getText());
 	}
 
+	@Test
+	public void generateObs_shouldGenerateTheSameObservationsInBulk() {
+		Person person = Context.getPersonService().getPerson(7);
+		List<Obs> obsList = Context.getObsService().getObservationsByPerson(person);
+		assertFalse(obsList.isEmpty());
+
+		List<Observation> observations = FHIRObsUtil.generateObs(obsList);
+		assertEquals(obsList.size(), observations.size());
+		for (int i = 0; i < obsList.size(); i++) {
+			Observation expected = FHIRObsUtil.generateObs(obsList.get(i));
+			Observation actual = observations.get(i);
+			assertEquals(expected.getId(), actual.getId());
+			assertEquals(expected.getSubject().getReference(), actual.getSubject().getReference());
+			assertEquals(expected.getSubject().getDisplay(), actual.getSubject().getDisplay());
+			assertEquals(expected.getCode().getCoding().size(), actual.getCode().getCoding().size());
+			assertEquals(expected.getPerformer().size(), actual.getPerformer().size());
+			assertTrue(expected.getValue() == null ? actual.getValue() == null : expected.getValue().equalsDeep(
+					actual.getValue()));
+		}
+	}
+
+	@Test
+	public void createCodeableConcept_shouldReturnCopiesUntilTheConceptIsSaved() throws Throwable {
+		Concept concept = Context.getConceptService().getConcept(5089);
+		ConceptCodingCache cache = ConceptCodingCache.getInstance();
+		cache.clear();
+
+		CodeableConcept first = FHIRUtils.createCodeableConcept(concept);
+		first.setText("changed by the caller");
+		long hits = cache.getHitCount();
+		CodeableConcept second = FHIRUtils.createCodeableConcept(concept);
+		assertEquals(hits + 1, cache.getHitCount());
+		assertFalse("changed by the caller".equals(second.getText()));
+		assertEquals(first.getCoding().size(), second.getCoding().size());
+
+		new ConceptCodingCacheAdvice().afterReturning(concept,
+				ConceptService.class.getMethod("saveConcept", Concept.class), new Object[] { concept }, null);
+		assertFalse(cache.contains(concept.getConceptId(), Context.getLocale()));
+	}
 }
@@ -13,15 +13,24 @@
  */
 package org.openmrs.module.fhir.api;
 
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
+import ca.uhn.fhir.rest.server.exceptions.ForbiddenOperationException;
 import org.hl7.fhir.dstu3.model.Bundle;
 import org.hl7.fhir.dstu3.model.Identifier;
 import org.hl7.fhir.dstu3.model.Patient;
+import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.junit.Before;
 import org.junit.Test;
+import org.openmrs.PersonName;
 import org.openmrs.api.context.Context;
 import org.openmrs.test.BaseModuleContextSensitiveTest;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -120,30 +129,92 @@ public class PatientServiceTest extends BaseModuleContextSensitiveTest {
 
 	@Test
 	public void searchPatientsByGivenName_shouldReturnBundle() {
-		String name = "Jean";
-		Bundle patients = getService().searchPatientsByGivenName(name);
+		StringParam name = new StringParam("Jean", true);
+		IBundleProvider patients = getService().searchPatientsByGivenName(name);
 		assertNotNull(patients);
-		assertEquals(1, patients.getEntry().size());
+		assertEquals(1, patients.size());
+		assertEquals(1, patients.getResources(0, patients.size()).size());
+	}
+
+	@Test
+	public void searchPatientsByGivenName_shouldMatchTheStartOfTheNameByDefault() {
+		String first = addGivenNames(2, "Zyxwv");
+		String second = addGivenNames(7, "Zyxwvut", "Zyx%ab");
+
+		assertEquals(ids(first), searchIdsByGivenName(new StringParam("Zyxwv", true)));
+		assertEquals(ids(first, second), searchIdsByGivenName(new StringParam("Zyxwv")));
+		assertEquals(ids(), searchIdsByGivenName(new StringParam("Zyxw", true)));
+		StringParam contains = new StringParam("wvu");
+		contains.setContains(true);
+		assertEquals(ids(second), searchIdsByGivenName(contains));
+	}
+
+	@Test
+	public void searchPatientsByGivenName_shouldMatchTheLikeWildcardsLiterally() {
+		addGivenNames(2, "Zyxwv");
+		String second = addGivenNames(7, "Zyx%ab");
+
+		assertEquals(ids(second), searchIdsByGivenName(new StringParam("Zyx%")));
+		assertEquals(ids(), searchIdsByGivenName(new StringParam("Zyx_")));
+		StringParam contains = new StringParam("%");
+		contains.setContains(true);
+		assertEquals(ids(second), searchIdsByGivenName(contains));
 	}
 
 	@Test
 	public void searchPatientsByFamilyName_shouldReturnBundle() {
-		String name = "Doe";
-		Bundle patients = getService().searchPatientsByFamilyName(name);
+		StringParam name = new StringParam("Doe", true);
+		IBundleProvider patients = getService().searchPatientsByFamilyName(name);
 		assertNotNull(patients);
-		assertEquals(3, patients.getEntry().size());
+		assertEquals(3, patients.size());
+	}
+
+	@Test
+	public void searchPatientsByFamilyName_shouldReturnEachPatientOnce() {
+		StringParam name = new StringParam("o");
+		name.setContains(true);
+		IBundleProvider patients = getService().searchPatientsByFamilyName(name);
+		Set<String> ids = new HashSet<String>();
+		for (IBaseResource patient : patients.getResources(0, patients.size())) {
+			assertTrue(ids.add(patient.getIdElement().getIdPart()));
+		}
+		assertEquals(patients.size(), ids.size());
 	}
 
 	@Test
 	public void searchActivePatients_shouldReturnBundle() {
-		List<Patient> patients = getService().searchPatients(true);
+		IBundleProvider patients = getService().searchPatients(true);
 		assertNotNull(patients);
 		assertEquals(6, patients.size());
+		assertEquals(6, patients.getResources(0, patients.size()).size());
+	}
+
+	@Test
+	public void searchActivePatients_shouldReturnConsecutivePagesWithoutDuplicates() {
+		IBundleProvider patients = getService().searchPatients(true);
+		Set<String> ids = new HashSet<String>();
+		for (int from = 0; from < patients.size(); from += 4) {
+			for (IBaseResource patient : patients.getResources(from, from + 4)) {
+				assertTrue(ids.add(patient.getIdElement().getIdPart()));
+			}
+		}
+		assertEquals(6, ids.size());
+	}
+
+	@Test(expected = ForbiddenOperationException.class)
+	public void searchActivePatients_shouldRequireThePrivilegeToReadPatients() {
+		RestrictedUserTestUtil.becomeUserWithPrivileges("Get Observations", "Get Concepts");
+		try {
+			getService().searchPatients(true).size();
+		}
+		finally {
+			Context.logout();
+		}
 	}
 
 	@Test
 	public void searchInActivePatients_shouldReturnBundle() {
-		List<Patient> patients = getService().searchPatients(false);
+		IBundleProvider patients = getService().searchPatients(false);
 		assertNotNull(patients);
 		assertEquals(3, patients.size());
 	}
@@ -158,8 +229,24 @@ public class PatientServiceTest extends BaseModuleContextSensitiveTest {
 	@Test
 	public void getPatientEverything_shouldAllClinicalDataBelongsToPatient() {
 		String returnedPatientUuid = "61b38324-e2fd-4feb-95b7-9e9a2a4400df";
-		Bundle patientContent = getService().getPatientOperationsById(returnedPatientUuid);
+		IBundleProvider patientContent = getService().getPatientOperationsById(returnedPatientUuid, null, null, null);
 		assertNotNull(patientContent);
+		List<IBaseResource> resources = patientContent.getResources(0, patientContent.size());
+		assertEquals(patientContent.size(), resources.size());
+		assertTrue(resources.get(0) instanceof Patient);
+		Set<String> ids = new HashSet<String>();
+		for (IBaseResource resource : resources) {
+			assertTrue(ids.add(resource.getClass().getSimpleName() + "/" + resource.getIdElement().getIdPart()));
+		}
+	}
+
+	@Test
+	public void getPatientEverything_shouldOnlyReturnTheRequestedTypes() {
+		String returnedPatientUuid = "61b38324-e2fd-4feb-95b7-9e9a2a4400df";
+		IBundleProvider patientContent = getService().getPatientOperationsById(returnedPatientUuid, null,
+				Collections.singletonList("Patient"), null);
+		assertEquals(1, patientContent.size());
+		assertEquals(returnedPatientUuid, patientContent.getResources(0, 1).get(0).getIdElement().getIdPart());
 	}
 
 	@Test
@@ -172,4 +259,31 @@ public class PatientServiceTest extends BaseModuleContextSensitiveTest {
 		assertTrue(patient.isVoided());
 
 	}
+
+	/**
+	 * Adds given names to a patient
+	 *
+	 * @return the uuid of the patient
+	 */
+	private String addGivenNames(Integer patientId, String... givenNames) {
+		org.openmrs.Patient patient = Context.getPatientService().getPatient(patientId);
+		for (String givenName : givenNames) {
+			patient.addName(new PersonName(givenName, null, "Fhirtest"));
+		}
+		Context.getPatientService().savePatient(patient);
+		return patient.getUuid();
+	}
+
+	private Set<String> searchIdsByGivenName(StringParam givenName) {
+		IBundleProvider patients = getService().searchPatientsByGivenName(givenName);
+		Set<String> ids = new HashSet<String>();
+		for (IBaseResource patient : patients.getResources(0, patients.size())) {
+			ids.add(patient.getIdElement().getIdPart());
+		}
+		return ids;
+	}
+
+	private static Set<String> ids(String... ids) {
+		return new HashSet<String>(Arrays.asList(ids));
+	}
 }
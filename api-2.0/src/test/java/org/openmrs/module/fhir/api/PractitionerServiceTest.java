@@ -13,12 +13,16 @@
  */
 package org.openmrs.module.fhir.api;
 
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
+import ca.uhn.fhir.rest.server.exceptions.ForbiddenOperationException;
 import org.hl7.fhir.dstu3.model.Enumerations;
 import org.hl7.fhir.dstu3.model.HumanName;
 import org.hl7.fhir.dstu3.model.Identifier;
 import org.hl7.fhir.dstu3.model.Person;
 import org.hl7.fhir.dstu3.model.Practitioner;
 import org.hl7.fhir.dstu3.model.StringType;
+import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.junit.Before;
 import org.junit.Test;
 import org.openmrs.PersonName;
@@ -86,12 +90,24 @@ public class PractitionerServiceTest extends BaseModuleContextSensitiveTest {
 
 	@Test
 	public void searchPractitionersByGivenName_shouldReturnBundle() {
-		String givenName = "Collet";
+		StringParam givenName = new StringParam("Collet");
 		String practitionerUuid = "ba4781f4-6b94-11e0-93c3-18a905e044dc";
-		List<Practitioner> practitionerList = getService().searchPractitionersByGivenName(givenName);
-		assertNotNull(practitionerList);
-		assertEquals(practitionerList.size(), 1);
-		assertEquals(practitionerUuid, practitionerList.get(0).getId().toString());
+		IBundleProvider practitioners = getService().searchPractitionersByGivenName(givenName);
+		assertNotNull(practitioners);
+		assertEquals(1, practitioners.size());
+		List<IBaseResource> practitionerList = practitioners.getResources(0, practitioners.size());
+		assertEquals(practitionerUuid, practitionerList.get(0).getIdElement().getIdPart());
+	}
+
+	@Test(expected = ForbiddenOperationException.class)
+	public void searchPractitionersByGivenName_shouldRequireThePrivilegeToReadProviders() {
+		RestrictedUserTestUtil.becomeUserWithPrivileges("Get People", "Get Patients");
+		try {
+			getService().searchPractitionersByGivenName(new StringParam("Collet")).size();
+		}
+		finally {
+			Context.logout();
+		}
 	}
 
 	@Test
@@ -0,0 +1,66 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api;
+
+import org.openmrs.Person;
+import org.openmrs.PersonName;
+import org.openmrs.Privilege;
+import org.openmrs.Role;
+import org.openmrs.User;
+import org.openmrs.api.UserService;
+import org.openmrs.api.context.Context;
+
+/**
+ * Switches the tests to a user holding only some privileges, to assert that the operations reading or writing through
+ * the FHIR DAO instead of the OpenMRS services still check the privileges of the user.
+ */
+public final class RestrictedUserTestUtil {
+
+	private static final String USERNAME = "fhir-restricted";
+
+	private static final String PASSWORD = "Openmrs123";
+
+	private RestrictedUserTestUtil() {
+	}
+
+	/**
+	 * Creates a user with a role holding the given privileges and makes it the authenticated user. Call
+	 * {@link Context#logout()} once done, the next test authenticates the admin again.
+	 *
+	 * @param privilegeNames the privileges of the user
+	 */
+	public static void becomeUserWithPrivileges(String... privilegeNames) {
+		UserService userService = Context.getUserService();
+		Role role = new Role("FHIR Restricted Role", "Role of the restricted user of the FHIR tests");
+		for (String privilegeName : privilegeNames) {
+			Privilege privilege = userService.getPrivilege(privilegeName);
+			if (privilege == null) {
+				privilege = userService.savePrivilege(new Privilege(privilegeName, privilegeName));
+			}
+			role.addPrivilege(privilege);
+		}
+		userService.saveRole(role);
+
+		User user = new User();
+		user.setPerson(new Person());
+		user.getPerson().setGender("F");
+		user.addName(new PersonName("Restricted", null, "User"));
+		user.setUsername(USERNAME);
+		user.addRole(role);
+		userService.createUser(user, PASSWORD);
+		Context.flushSession();
+
+		Context.becomeUser(USERNAME);
+	}
+}
@@ -0,0 +1,266 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api;
+
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Allergen;
+import org.openmrs.AllergenType;
+import org.openmrs.Allergy;
+import org.openmrs.AllergyReaction;
+import org.openmrs.Concept;
+import org.openmrs.Encounter;
+import org.openmrs.GlobalProperty;
+import org.openmrs.Location;
+import org.openmrs.Obs;
+import org.openmrs.Patient;
+import org.openmrs.PatientIdentifier;
+import org.openmrs.PersonName;
+import org.openmrs.Provider;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.strategies.allergy.AllergyStrategyUtil;
+import org.openmrs.module.fhir.api.strategies.encounter.EncounterStrategyUtil;
+import org.openmrs.module.fhir.api.strategies.observation.ObservationStrategyUtil;
+import org.openmrs.module.fhir.api.strategies.patient.PatientStrategyUtil;
+import org.openmrs.module.fhir.api.strategies.practitioner.PractitionerStrategyUtil;
+import org.openmrs.module.fhir.api.util.FHIRStrategyRegistry;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Guards the search methods of the strategies against N+1 query patterns, over a generated dataset with a few and many
+ * matches for each search
+ */
+public class StrategyQueryCountTest extends BaseQueryCountTest {
+
+	private static final int FEW = 3;
+
+	private static final int MANY = 15;
+
+	private static final String FEW_GIVEN_NAME = "Fewgenerated";
+
+	private static final String MANY_GIVEN_NAME = "Manygenerated";
+
+	private static final int WEIGHT_CONCEPT_ID = 5089;
+
+	private static final String ALLERGY_STRATEGY = "DefaultAllergyStrategy";
+
+	private List<Patient> fewPatients;
+
+	private List<Patient> manyPatients;
+
+	@Before
+	public void generateDataset() throws Exception {
+		fewPatients = createPatients(FEW_GIVEN_NAME, FEW);
+		manyPatients = createPatients(MANY_GIVEN_NAME, MANY);
+		createObservationsAndEncounters(fewPatients.get(0), FEW);
+		createObservationsAndEncounters(manyPatients.get(0), MANY);
+		createAllergies(fewPatients.get(0), FEW);
+		createAllergies(manyPatients.get(0), MANY);
+		Context.getAdministrationService().saveGlobalProperty(
+				new GlobalProperty(FHIRStrategyRegistry.ALLERGY_STRATEGY, ALLERGY_STRATEGY));
+		Context.flushSession();
+		updateSearchIndex();
+	}
+
+	@Test
+	public void searchObservationByPerson_shouldNotIssueStatementsPerObservation() {
+		Runnable few = searchObservationsByPerson(fewPatients.get(0), FEW);
+		Runnable many = searchObservationsByPerson(manyPatients.get(0), MANY);
+
+		assertStatementsDoNotGrow("Searching observations by person", few, many, 2);
+		assertStatementsAtMost("Searching " + MANY + " observations by person", 30, many);
+	}
+
+	@Test
+	public void searchEncountersByPatientIdentifier_shouldNotIssueStatementsPerEncounter() {
+		Runnable few = searchEncountersByPatientIdentifier(fewPatients.get(0), FEW);
+		Runnable many = searchEncountersByPatientIdentifier(manyPatients.get(0), MANY);
+
+		assertStatementsDoNotGrow("Searching encounters by patient identifier", few, many, 2);
+	}
+
+	@Test
+	public void searchPatientsByGivenName_shouldNotIssueStatementsPerPatient() {
+		Runnable few = new Runnable() {
+
+			@Override
+			public void run() {
+				getAll(PatientStrategyUtil.getPatientStrategy().searchPatientsByGivenName(
+						new StringParam(FEW_GIVEN_NAME)), FEW);
+			}
+		};
+		Runnable many = new Runnable() {
+
+			@Override
+			public void run() {
+				getAll(PatientStrategyUtil.getPatientStrategy().searchPatientsByGivenName(
+						new StringParam(MANY_GIVEN_NAME)), MANY);
+			}
+		};
+
+		assertStatementsDoNotGrow("Searching patients by given name", few, many, 2);
+	}
+
+	@Test
+	public void searchPractitionersByGivenName_shouldNotIssueStatementsPerPractitioner() {
+		Runnable few = new Runnable() {
+
+			@Override
+			public void run() {
+				getAll(PractitionerStrategyUtil.getPractitionerStrategy().searchPractitionersByGivenName(
+						new StringParam(FEW_GIVEN_NAME)), FEW);
+			}
+		};
+		Runnable many = new Runnable() {
+
+			@Override
+			public void run() {
+				getAll(PractitionerStrategyUtil.getPractitionerStrategy().searchPractitionersByGivenName(
+						new StringParam(MANY_GIVEN_NAME)), MANY);
+			}
+		};
+
+		assertStatementsDoNotGrow("Searching practitioners by given name", few, many, 2);
+	}
+
+	@Test
+	public void searchAllergiesByPersonId_shouldNotIssueStatementsPerAllergy() {
+		final String fewUuid = fewPatients.get(0).getUuid();
+		final String manyUuid = manyPatients.get(0).getUuid();
+		assertStatementsDoNotGrow("Searching allergies by person", new Runnable() {
+
+			@Override
+			public void run() {
+				assertEquals(FEW, AllergyStrategyUtil.getAllergyStrategy().searchAllergiesByPersonId(fewUuid).size());
+			}
+		}, new Runnable() {
+
+			@Override
+			public void run() {
+				assertEquals(MANY, AllergyStrategyUtil.getAllergyStrategy().searchAllergiesByPersonId(manyUuid).size());
+			}
+		}, 2);
+	}
+
+	private Runnable searchObservationsByPerson(Patient patient, final int expected) {
+		final String uuid = patient.getUuid();
+		return new Runnable() {
+
+			@Override
+			public void run() {
+				getAll(ObservationStrategyUtil.getObservationStrategy().searchObservationByPerson(uuid), expected);
+			}
+		};
+	}
+
+	private Runnable searchEncountersByPatientIdentifier(Patient patient, final int expected) {
+		final String identifier = patient.getPatientIdentifier().getIdentifier();
+		return new Runnable() {
+
+			@Override
+			public void run() {
+				assertEquals(expected,
+						EncounterStrategyUtil.getEncounterStrategy().searchEncountersByPatientIdentifier(identifier)
+								.size());
+			}
+		};
+	}
+
+	private void getAll(IBundleProvider bundle, int expected) {
+		assertEquals(expected, bundle.size());
+		assertEquals(expected, bundle.getResources(0, bundle.size()).size());
+	}
+
+	/**
+	 * Creates patients sharing a given name, each of them also being a provider
+	 */
+	private List<Patient> createPatients(String givenName, int count) {
+		Location location = Context.getLocationService().getLocation(1);
+		List<Patient> patients = new ArrayList<Patient>();
+		for (int i = 0; i < count; i++) {
+			Patient patient = new Patient();
+			patient.setGender(i % 2 == 0 ? "F" : "M");
+			patient.setBirthdate(getDate(-30));
+			patient.addName(new PersonName(givenName, null, "Generated" + i));
+			PatientIdentifier identifier = new PatientIdentifier(givenName + "-" + i,
+					Context.getPatientService().getPatientIdentifierType(2), location);
+			identifier.setPreferred(true);
+			patient.addIdentifier(identifier);
+			patients.add(Context.getPatientService().savePatient(patient));
+
+			Provider provider = new Provider();
+			provider.setPerson(patient);
+			provider.setIdentifier(givenName + "-provider-" + i);
+			Context.getProviderService().saveProvider(provider);
+		}
+		return patients;
+	}
+
+	/**
+	 * Gives a patient as many weight observations as encounters, each encounter having a provider
+	 */
+	private void createObservationsAndEncounters(Patient patient, int count) {
+		Location location = Context.getLocationService().getLocation(1);
+		Concept weight = Context.getConceptService().getConcept(WEIGHT_CONCEPT_ID);
+		for (int i = 0; i < count; i++) {
+			Encounter encounter = new Encounter();
+			encounter.setPatient(patient);
+			encounter.setEncounterType(Context.getEncounterService().getEncounterType(1));
+			encounter.setEncounterDatetime(getDate(-1));
+			encounter.setLocation(location);
+			encounter.addProvider(Context.getEncounterService().getEncounterRole(1),
+					Context.getProviderService().getProvider(1));
+			Context.getEncounterService().saveEncounter(encounter);
+
+			Obs obs = new Obs(patient, weight, getDate(-1), location);
+			obs.setValueNumeric(50.0 + i);
+			Context.getObsService().saveObs(obs, null);
+		}
+	}
+
+	/**
+	 * Gives a patient drug allergies to distinct concepts, the Allergy API refusing the same allergen twice, each
+	 * allergy having a reaction
+	 */
+	private void createAllergies(Patient patient, int count) {
+		List<Concept> concepts = new ArrayList<Concept>();
+		for (Concept concept : Context.getConceptService().getAllConcepts()) {
+			if (!concept.isRetired() && concepts.size() < count + 1) {
+				concepts.add(concept);
+			}
+		}
+		Concept reaction = concepts.remove(count);
+		for (Concept concept : concepts) {
+			Allergy allergy = new Allergy();
+			allergy.setPatient(patient);
+			allergy.setAllergen(new Allergen(AllergenType.DRUG, concept, null));
+			allergy.addReaction(new AllergyReaction(allergy, reaction, null));
+			Context.getPatientService().saveAllergy(allergy);
+		}
+	}
+
+	private Date getDate(int yearsFromNow) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.add(Calendar.YEAR, yearsFromNow);
+		return calendar.getTime();
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.cache;
+
+import ca.uhn.fhir.rest.server.EncodingEnum;
+import org.junit.After;
+import org.junit.Test;
+import org.openmrs.Patient;
+import org.openmrs.PersonName;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.util.ContextUtil;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ResourceCacheTest extends BaseModuleContextSensitiveTest {
+
+	@After
+	public void clearCache() {
+		ResourceCache.getInstance().clear();
+	}
+
+	@Test
+	public void get_shouldServeTheResourceUntilThePatientChanges() {
+		Patient patient = Context.getPatientService().getPatient(7);
+		String patientUuid = patient.getUuid();
+		Date lastModified = ContextUtil.getFHIRDao().getLastModified(Patient.class, patientUuid);
+		assertNotNull(lastModified);
+		assertNull(ContextUtil.getFHIRDao().getLastModified(Patient.class, "no such patient"));
+
+		ResourceCache cache = ResourceCache.getInstance();
+		cache.clear();
+		long generation = cache.getGeneration();
+		byte[] content = new byte[] { 1, 2, 3 };
+		assertTrue(cache.put(CachedResourceType.PATIENT, patientUuid, lastModified, EncodingEnum.JSON, content,
+				generation));
+		assertSame(content, cache.get(CachedResourceType.PATIENT, patientUuid, lastModified, EncodingEnum.JSON));
+		assertNull(cache.get(CachedResourceType.PATIENT, patientUuid, lastModified, EncodingEnum.XML));
+		assertNull(cache.get(CachedResourceType.PATIENT, patientUuid, new Date(lastModified.getTime() + 1000),
+				EncodingEnum.JSON));
+
+		// the name is evicted by ResourceCacheEvictionInterceptor when it is flushed, and its pending evictions are
+		// cleared when the test transaction is rolled back
+		patient.addName(new PersonName("Changed", null, "Name"));
+		Context.getPatientService().savePatient(patient);
+		Context.flushSession();
+		assertNull(cache.get(CachedResourceType.PATIENT, patientUuid, lastModified, EncodingEnum.JSON));
+		assertFalse(cache.put(CachedResourceType.PATIENT, patientUuid, lastModified, EncodingEnum.JSON, content,
+				generation));
+		assertEquals(0, cache.getTotalBytes());
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.changelog;
+
+import org.hibernate.SessionFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Patient;
+import org.openmrs.PatientIdentifier;
+import org.openmrs.PersonName;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.db.FHIRDao;
+import org.openmrs.module.fhir.api.util.ContextUtil;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ChangeLogInterceptorTest extends BaseModuleContextSensitiveTest {
+
+	private ChangeLogInterceptor interceptor;
+
+	@Before
+	public void getInterceptor() {
+		interceptor = Context.getRegisteredComponent("fhirChangeLogInterceptor", ChangeLogInterceptor.class);
+	}
+
+	@Test
+	public void beforeTransactionCompletion_shouldRecordOneCreationPerResourceOfANewPatient() {
+		Patient patient = createPatient();
+		commit();
+
+		assertEquals(2L, countEntries(patient.getUuid()));
+		assertEquals(ChangeLogEntry.CREATE, getLastOperation("Patient", patient.getUuid()));
+		assertEquals(ChangeLogEntry.CREATE, getLastOperation("Person", patient.getUuid()));
+	}
+
+	@Test
+	public void beforeTransactionCompletion_shouldRecordAChangedNameAsAnUpdateOfThePatient() {
+		Patient patient = Context.getPatientService().getPatient(2);
+		patient.getPersonName().setGivenName("Changed");
+		Context.getPatientService().savePatient(patient);
+		commit();
+
+		assertEquals(ChangeLogEntry.UPDATE, getLastOperation("Patient", patient.getUuid()));
+		assertEquals(ChangeLogEntry.UPDATE, getLastOperation("Person", patient.getUuid()));
+	}
+
+	@Test
+	public void beforeTransactionCompletion_shouldRecordAVoidedPatientAsDeletedDespiteItsUpdatedNames() {
+		Patient patient = Context.getPatientService().getPatient(2);
+		Context.getPatientService().voidPatient(patient, "test");
+		commit();
+
+		assertEquals(2L, countEntries(patient.getUuid()));
+		assertEquals(ChangeLogEntry.DELETE, getLastOperation("Patient", patient.getUuid()));
+		assertEquals(ChangeLogEntry.DELETE, getLastOperation("Person", patient.getUuid()));
+	}
+
+	@Test
+	public void beforeTransactionCompletion_shouldRecordAPatientVoidedAndUnvoidedAgainAsAnUpdate() {
+		Patient patient = Context.getPatientService().getPatient(2);
+		Context.getPatientService().voidPatient(patient, "test");
+		Context.flushSession();
+		Context.getPatientService().unvoidPatient(patient);
+		commit();
+
+		assertEquals(ChangeLogEntry.UPDATE, getLastOperation("Patient", patient.getUuid()));
+		assertEquals(ChangeLogEntry.UPDATE, getLastOperation("Person", patient.getUuid()));
+	}
+
+	@Test
+	public void beforeTransactionCompletion_shouldRecordAPatientCreatedAndVoidedAsDeleted() {
+		Patient patient = createPatient();
+		Context.flushSession();
+		Context.getPatientService().voidPatient(patient, "test");
+		commit();
+
+		assertEquals(2L, countEntries(patient.getUuid()));
+		assertEquals(ChangeLogEntry.DELETE, getLastOperation("Patient", patient.getUuid()));
+		assertEquals(ChangeLogEntry.DELETE, getLastOperation("Person", patient.getUuid()));
+	}
+
+	@Test
+	public void beforeTransactionCompletion_shouldDateTheChangesAtTheCommitRatherThanTheFlush() throws Exception {
+		Patient patient = createPatient();
+		Context.flushSession();
+		Date flushedAt = new Date();
+		Thread.sleep(50);
+		Date committedAt = new Date();
+		interceptor.beforeTransactionCompletion(null);
+
+		FHIRDao dao = ContextUtil.getFHIRDao();
+		List<String> types = Collections.singletonList("Patient");
+		assertEquals(0L, dao.getChangedResourceCount(types, patient.getUuid(), null, flushedAt, true));
+		assertEquals(1L, dao.getChangedResourceCount(types, patient.getUuid(), committedAt, null, true));
+	}
+
+	@Test
+	public void afterTransactionCompletion_shouldDropTheChangesOfARolledBackTransaction() {
+		Patient patient = createPatient();
+		Context.flushSession();
+		// Hibernate only calls afterTransactionCompletion when a transaction is rolled back
+		interceptor.afterTransactionCompletion(null);
+		interceptor.beforeTransactionCompletion(null);
+
+		assertEquals(0L, countEntries(patient.getUuid()));
+	}
+
+	private Patient createPatient() {
+		Patient patient = new Patient();
+		patient.setGender("F");
+		patient.setBirthdate(new Date());
+		patient.addName(new PersonName("Change", null, "Log"));
+		PatientIdentifier identifier = new PatientIdentifier("change-log-1",
+				Context.getPatientService().getPatientIdentifierType(2), Context.getLocationService().getLocation(1));
+		identifier.setPreferred(true);
+		patient.addIdentifier(identifier);
+		return Context.getPatientService().savePatient(patient);
+	}
+
+	/**
+	 * Records the changes flushed so far the way a commit of the test transaction would
+	 */
+	private void commit() {
+		Context.flushSession();
+		interceptor.beforeTransactionCompletion(null);
+	}
+
+	private String getLastOperation(String resourceType, String uuid) {
+		FHIRDao dao = ContextUtil.getFHIRDao();
+		List<ChangeLogEntry> entries = dao.getChangedResources(Collections.singletonList(resourceType), uuid, null, null,
+				true, true, 0, 10);
+		assertEquals(1, entries.size());
+		return entries.get(0).getOperation();
+	}
+
+	private long countEntries(String uuid) {
+		return (Long) getSessionFactory().getCurrentSession()
+				.createQuery("select count(*) from ChangeLogEntry e where e.resourceUuid = :uuid")
+				.setString("uuid", uuid)
+				.uniqueResult();
+	}
+
+	private SessionFactory getSessionFactory() {
+		return Context.getRegisteredComponent("sessionFactory", SessionFactory.class);
+	}
+}
@@ -0,0 +1,172 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.db.hibernate;
+
+import org.hibernate.SessionFactory;
+import org.junit.Test;
+import org.openmrs.Concept;
+import org.openmrs.Obs;
+import org.openmrs.Patient;
+import org.openmrs.Provider;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.changelog.ChangeLogEntry;
+import org.openmrs.module.fhir.api.db.FHIRDao;
+import org.openmrs.module.fhir.api.util.ContextUtil;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class HibernateFHIRDaoTest extends BaseModuleContextSensitiveTest {
+
+	private static final List<String> PATIENT = Collections.singletonList("Patient");
+
+	private FHIRDao getDao() {
+		return ContextUtil.getFHIRDao();
+	}
+
+	@Test
+	public void getLastModified_shouldTakeTheDateAPatientWasVoidedIntoAccount() throws Exception {
+		Date voided = new SimpleDateFormat("yyyy-MM-dd").parse("2100-01-01");
+		Patient patient = Context.getPatientService().getPatient(7);
+		patient.setVoided(true);
+		patient.setDateVoided(voided);
+		Context.flushSession();
+
+		assertEquals(voided.getTime(), getDao().getLastModified(Patient.class, patient.getUuid()).getTime());
+		assertNull(getDao().getLastModified(Patient.class, "no such patient"));
+	}
+
+	@Test
+	public void getLastModified_shouldReadTheDatesOfTheProviderAndItsPerson() {
+		Provider provider = Context.getProviderService().getAllProviders().get(0);
+		assertNotNull(getDao().getLastModified(Provider.class, provider.getUuid()));
+	}
+
+	@Test
+	public void getLatestObs_shouldReturnTheLatestObsOfEachConcept() throws Exception {
+		Patient patient = Context.getPatientService().getPatient(7);
+		Concept weight = Context.getConceptService().getConcept(5089);
+		Concept cd4 = Context.getConceptService().getConcept(5497);
+		saveObs(patient, weight, "2100-01-01");
+		Obs latestWeight = saveObs(patient, weight, "2100-03-01");
+		Obs latestCd4 = saveObs(patient, cd4, "2100-02-01");
+
+		List<Obs> obs = getDao().getLatestObs(patient, Arrays.asList(weight, cd4), 1);
+		assertEquals(2, obs.size());
+		assertEquals(latestWeight.getUuid(), obs.get(0).getUuid());
+		assertEquals(latestCd4.getUuid(), obs.get(1).getUuid());
+	}
+
+	@Test
+	public void getLatestObs_shouldReturnTheMaxLatestObsOfTheConceptMostRecentFirst() throws Exception {
+		Patient patient = Context.getPatientService().getPatient(7);
+		Concept weight = Context.getConceptService().getConcept(5089);
+		saveObs(patient, weight, "2100-01-01");
+		Obs latest = saveObs(patient, weight, "2100-03-01");
+		Obs previous = saveObs(patient, weight, "2100-02-01");
+
+		List<Obs> obs = getDao().getLatestObs(patient, Collections.singletonList(weight), 2);
+		assertEquals(2, obs.size());
+		assertEquals(latest.getUuid(), obs.get(0).getUuid());
+		assertEquals(previous.getUuid(), obs.get(1).getUuid());
+	}
+
+	@Test
+	public void getChangedResources_shouldLeaveOutTheResourcesChangedAgainAfterTheUpperBound() throws Exception {
+		saveChange("changed-twice", ChangeLogEntry.CREATE, "2020-01-01");
+		saveChange("changed-twice", ChangeLogEntry.UPDATE, "2020-03-01");
+		saveChange("changed-once", ChangeLogEntry.CREATE, "2020-01-15");
+
+		Date to = parseDate("2020-02-01");
+		List<ChangeLogEntry> changes = getDao().getChangedResources(PATIENT, null, null, to, true, false, 0, 10);
+		assertEquals(1, changes.size());
+		assertEquals("changed-once", changes.get(0).getResourceUuid());
+		assertEquals(1, getDao().getChangedResourceCount(PATIENT, null, null, to, true));
+	}
+
+	@Test
+	public void getChangedResources_shouldReturnEachResourceOnceWithItsLastChange() throws Exception {
+		saveChange("changed-twice", ChangeLogEntry.CREATE, "2020-01-01");
+		saveChange("changed-twice", ChangeLogEntry.DELETE, "2020-03-01");
+		saveChange("changed-once", ChangeLogEntry.CREATE, "2020-01-15");
+
+		List<ChangeLogEntry> changes = getDao().getChangedResources(PATIENT, null, parseDate("2020-01-10"), null,
+				true, true, 0, 10);
+		assertEquals(2, changes.size());
+		assertEquals("changed-twice", changes.get(0).getResourceUuid());
+		assertEquals(ChangeLogEntry.DELETE, changes.get(0).getOperation());
+		assertEquals(parseDate("2020-03-01").getTime(), changes.get(0).getChangedAt().getTime());
+		assertEquals("changed-once", changes.get(1).getResourceUuid());
+		assertEquals(ChangeLogEntry.CREATE, changes.get(1).getOperation());
+		assertEquals(2, getDao().getChangedResourceCount(PATIENT, null, parseDate("2020-01-10"), null, true));
+	}
+
+	@Test
+	public void getChangedResources_shouldLeaveOutTheResourcesLastDeletedWhenTheyAreNotIncluded() throws Exception {
+		saveChange("deleted", ChangeLogEntry.CREATE, "2020-01-01");
+		saveChange("deleted", ChangeLogEntry.DELETE, "2020-03-01");
+		saveChange("restored", ChangeLogEntry.DELETE, "2020-01-01");
+		saveChange("restored", ChangeLogEntry.UPDATE, "2020-03-01");
+		saveChange("created", ChangeLogEntry.CREATE, "2020-01-15");
+
+		List<ChangeLogEntry> changes = getDao().getChangedResources(PATIENT, null, null, null, false, false, 0, 1);
+		assertEquals(1, changes.size());
+		assertEquals("created", changes.get(0).getResourceUuid());
+		changes = getDao().getChangedResources(PATIENT, null, null, null, false, false, 1, 1);
+		assertEquals(1, changes.size());
+		assertEquals("restored", changes.get(0).getResourceUuid());
+		assertEquals(2, getDao().getChangedResourceCount(PATIENT, null, null, null, false));
+	}
+
+	@Test
+	public void purgeChangeLog_shouldDeleteTheEntriesRecordedBeforeTheGivenTime() throws Exception {
+		saveChange("changed-twice", ChangeLogEntry.CREATE, "2020-01-01");
+		saveChange("changed-twice", ChangeLogEntry.UPDATE, "2020-03-01");
+		saveChange("changed-once", ChangeLogEntry.CREATE, "2020-01-15");
+
+		assertEquals(2, getDao().purgeChangeLog(parseDate("2020-02-01")));
+
+		List<ChangeLogEntry> changes = getDao().getChangedResources(PATIENT, null, null, null, true, true, 0, 10);
+		assertEquals(1, changes.size());
+		assertEquals("changed-twice", changes.get(0).getResourceUuid());
+		assertEquals(ChangeLogEntry.UPDATE, changes.get(0).getOperation());
+	}
+
+	private Obs saveObs(Patient patient, Concept concept, String obsDatetime) throws Exception {
+		Obs obs = new Obs(patient, concept, parseDate(obsDatetime), Context.getLocationService().getLocation(1));
+		obs.setValueNumeric(60d);
+		Context.getObsService().saveObs(obs, null);
+		Context.flushSession();
+		return obs;
+	}
+
+	private void saveChange(String uuid, String operation, String changedAt) throws Exception {
+		ChangeLogEntry entry = new ChangeLogEntry("Patient", uuid, parseDate(changedAt));
+		entry.setOperation(operation);
+		Context.getRegisteredComponent("sessionFactory", SessionFactory.class).getCurrentSession().save(entry);
+		Context.flushSession();
+	}
+
+	private Date parseDate(String date) throws Exception {
+		return new SimpleDateFormat("yyyy-MM-dd").parse(date);
+	}
+}
@@ -0,0 +1,37 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.export;
+
+import ca.uhn.fhir.rest.server.exceptions.ForbiddenOperationException;
+import org.junit.Test;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.RestrictedUserTestUtil;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+
+import java.util.Arrays;
+
+public class BulkExportManagerTest extends BaseModuleContextSensitiveTest {
+
+	@Test(expected = ForbiddenOperationException.class)
+	public void submit_shouldRequireThePrivilegeToReadEachExportedType() {
+		RestrictedUserTestUtil.becomeUserWithPrivileges("Export FHIR Data", "Get Patients");
+		try {
+			BulkExportManager.getInstance().submit("Patient/$export",
+					Arrays.asList(BulkExportType.PATIENT, BulkExportType.OBSERVATION), null, null);
+		}
+		finally {
+			Context.logout();
+		}
+	}
+}
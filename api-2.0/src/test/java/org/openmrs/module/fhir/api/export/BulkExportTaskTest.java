@@ -0,0 +1,59 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.export;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.openmrs.api.context.Context;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BulkExportTaskTest extends BaseModuleContextSensitiveTest {
+
+	@Test
+	public void run_shouldWriteTheResourcesOfTheRequestedPatientsAsNdjson() throws Exception {
+		File directory = File.createTempFile("fhir-export", "");
+		assertTrue(directory.delete());
+		org.openmrs.Patient patient = Context.getPatientService().getPatient(7);
+		BulkExportJob job = new BulkExportJob("Group/1/$export", 1,
+				Arrays.asList(BulkExportType.PATIENT, BulkExportType.OBSERVATION), null,
+				Collections.singleton(patient.getPatientId()), directory);
+		try {
+			new BulkExportTask(job).run();
+
+			assertEquals(BulkExportJob.Status.COMPLETED, job.getStatus());
+			assertEquals(2, job.getOutputs().size());
+			BulkExportJob.Output patients = job.getOutputs().get(0);
+			assertEquals("Patient", patients.getType());
+			assertEquals(1, patients.getCount());
+			List<String> lines = FileUtils.readLines(patients.getFile(), "UTF-8");
+			assertEquals(1, lines.size());
+			assertTrue(lines.get(0).contains(patient.getUuid()));
+
+			BulkExportJob.Output observations = job.getOutputs().get(1);
+			assertEquals(Context.getObsService().getObservationsByPerson(patient).size(), observations.getCount());
+			assertEquals(observations.getCount(), FileUtils.readLines(observations.getFile(), "UTF-8").size());
+		}
+		finally {
+			FileUtils.deleteDirectory(directory);
+		}
+	}
+}
@@ -0,0 +1,64 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.manager;
+
+import ca.uhn.fhir.parser.IParser;
+import org.hl7.fhir.dstu3.model.Patient;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FHIRContextFactoryTest {
+
+	@Test
+	public void getJsonParser_shouldReturnOneParserPerThread() throws Exception {
+		final IParser[] otherThreadParser = new IParser[1];
+		Thread thread = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				otherThreadParser[0] = FHIRContextFactory.getJsonParser();
+			}
+		});
+		thread.start();
+		thread.join();
+
+		assertSame(FHIRContextFactory.getJsonParser(), FHIRContextFactory.getJsonParser());
+		assertNotSame(FHIRContextFactory.getJsonParser(), otherThreadParser[0]);
+		assertSame(FHIRContextFactory.getFHIRContext(), otherThreadParser[0].getContext());
+	}
+
+	@Test
+	public void getPrettyParsers_shouldPrettyPrintWithoutChangingTheJsonParser() {
+		Patient patient = new Patient();
+		patient.setId("test_uuid");
+		patient.setActive(true);
+
+		assertEquals("{\"resourceType\":\"Patient\",\"id\":\"test_uuid\",\"active\":true}",
+				FHIRContextFactory.getJsonParser().encodeResourceToString(patient));
+		assertTrue(FHIRContextFactory.getPrettyJsonParser().encodeResourceToString(patient).contains("\n"));
+		assertTrue(FHIRContextFactory.getPrettyXmlParser().encodeResourceToString(patient).startsWith("<Patient"));
+		assertNotSame(FHIRContextFactory.getJsonParser(), FHIRContextFactory.getPrettyJsonParser());
+	}
+
+	@Test
+	public void releaseParsers_shouldGiveTheThreadNewParsers() {
+		IParser parser = FHIRContextFactory.getJsonParser();
+		FHIRContextFactory.releaseParsers();
+		assertNotSame(parser, FHIRContextFactory.getJsonParser());
+	}
+}
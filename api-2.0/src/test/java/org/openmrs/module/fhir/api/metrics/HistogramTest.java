@@ -0,0 +1,109 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramTest {
+
+	private static final long HIGHEST_TRACKABLE_VALUE = (1L << 37) - 1;
+
+	private static final int LAST_INDEX = 33 * 32 - 1;
+
+	@Test
+	public void getIndex_shouldCountTheValuesBelow64Exactly() {
+		for (long value = 0; value < 64; value++) {
+			assertEquals(value, Histogram.getIndex(value));
+			assertEquals(value, Histogram.getHighestValue((int) value));
+		}
+	}
+
+	@Test
+	public void getIndex_shouldSplitEachPowerOfTwoIn32Buckets() {
+		assertEquals(64, Histogram.getIndex(64));
+		assertEquals(64, Histogram.getIndex(65));
+		assertEquals(65, Histogram.getIndex(66));
+		assertEquals(65, Histogram.getHighestValue(64));
+		assertEquals(95, Histogram.getIndex(127));
+		assertEquals(96, Histogram.getIndex(128));
+		assertEquals(131, Histogram.getHighestValue(96));
+		assertEquals(190, Histogram.getIndex(1000));
+		assertEquals(1007, Histogram.getHighestValue(190));
+	}
+
+	@Test
+	public void getHighestValue_shouldMakeContiguousBucketsUpToTheHighestTrackableValue() {
+		for (int index = 0; index < LAST_INDEX; index++) {
+			long highest = Histogram.getHighestValue(index);
+			assertEquals(index, Histogram.getIndex(highest));
+			assertEquals(index + 1, Histogram.getIndex(highest + 1));
+			long lowest = index == 0 ? 0 : Histogram.getHighestValue(index - 1) + 1;
+			assertTrue(index < 32 || (highest - lowest + 1) * 32 <= lowest);
+		}
+		assertEquals(LAST_INDEX, Histogram.getIndex(HIGHEST_TRACKABLE_VALUE));
+		assertEquals(HIGHEST_TRACKABLE_VALUE, Histogram.getHighestValue(LAST_INDEX));
+	}
+
+	@Test
+	public void record_shouldClampTheValuesToTheTrackableRange() {
+		Histogram histogram = new Histogram();
+		histogram.record(-5);
+		histogram.record(Long.MAX_VALUE);
+
+		assertEquals(2, histogram.getCount());
+		assertEquals(HIGHEST_TRACKABLE_VALUE, histogram.getSum());
+		assertEquals(HIGHEST_TRACKABLE_VALUE, histogram.getMax());
+		assertEquals(0, histogram.getValueAtQuantile(0.5));
+		assertEquals(HIGHEST_TRACKABLE_VALUE, histogram.getValueAtQuantile(1));
+	}
+
+	@Test
+	public void getValueAtQuantile_shouldReturnTheHighestValueOfTheBucketTheQuantileFallsIn() {
+		Histogram histogram = new Histogram();
+		for (long value = 1; value <= 100; value++) {
+			histogram.record(value);
+		}
+
+		assertEquals(100, histogram.getCount());
+		assertEquals(5050, histogram.getSum());
+		assertEquals(50.5, histogram.getMean(), 0);
+		assertEquals(1, histogram.getValueAtQuantile(0));
+		assertEquals(25, histogram.getValueAtQuantile(0.25));
+		assertEquals(50, histogram.getValueAtQuantile(0.5));
+		assertEquals(75, histogram.getValueAtQuantile(0.75));
+		assertEquals(100, histogram.getValueAtQuantile(1));
+	}
+
+	@Test
+	public void getValueAtQuantile_shouldNotExceedTheMaximum() {
+		Histogram histogram = new Histogram();
+		histogram.record(1000);
+		histogram.record(1001);
+
+		assertEquals(1001, histogram.getValueAtQuantile(0.5));
+		assertEquals(1001, histogram.getMax());
+	}
+
+	@Test
+	public void getValueAtQuantile_shouldReturnZeroWhenNothingWasRecorded() {
+		Histogram histogram = new Histogram();
+
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMean(), 0);
+		assertEquals(0, histogram.getValueAtQuantile(0.99));
+	}
+}
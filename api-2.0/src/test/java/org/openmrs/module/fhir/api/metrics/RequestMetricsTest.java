@@ -0,0 +1,67 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RequestMetricsTest {
+
+	@Test
+	public void toPrometheusText_shouldRenderTheCountersAndSummariesOfEachOperation() {
+		RequestMetrics metrics = new RequestMetrics();
+		metrics.record("Patient", "read", 2000000, 512, 200);
+		metrics.record("Patient", "read", 4000000, 256, 404);
+		metrics.record(null, null, 1000, 0, 200);
+
+		String text = metrics.toPrometheusText();
+
+		assertTrue(text.startsWith("# HELP fhir_requests_total Number of FHIR requests by response status class\n"
+				+ "# TYPE fhir_requests_total counter\n"
+				+ "fhir_requests_total{resource=\"\",operation=\"unknown\",status=\"2xx\"} 1\n"
+				+ "fhir_requests_total{resource=\"Patient\",operation=\"read\",status=\"2xx\"} 1\n"
+				+ "fhir_requests_total{resource=\"Patient\",operation=\"read\",status=\"4xx\"} 1\n"
+				+ "# HELP fhir_request_errors_total"));
+		assertTrue(text.contains("fhir_request_errors_total{resource=\"\",operation=\"unknown\"} 0\n"
+				+ "fhir_request_errors_total{resource=\"Patient\",operation=\"read\"} 1\n"));
+		assertTrue(text.contains("# TYPE fhir_request_duration_seconds summary\n"));
+		assertTrue(text.contains("fhir_request_duration_seconds_sum{resource=\"Patient\",operation=\"read\"} 0.006\n"
+				+ "fhir_request_duration_seconds_count{resource=\"Patient\",operation=\"read\"} 2\n"));
+		assertTrue(text.contains("fhir_request_duration_seconds_max{resource=\"Patient\",operation=\"read\"} 0.004\n"));
+		assertTrue(text.contains("fhir_response_size_bytes{resource=\"Patient\",operation=\"read\",quantile=\"0.99\"} "
+				+ "512.0\n"));
+		assertTrue(text.endsWith("fhir_response_size_bytes_sum{resource=\"Patient\",operation=\"read\"} 768.0\n"
+				+ "fhir_response_size_bytes_count{resource=\"Patient\",operation=\"read\"} 2\n"));
+	}
+
+	@Test
+	public void toPrometheusText_shouldEscapeTheLabelValues() {
+		RequestMetrics metrics = new RequestMetrics();
+		metrics.record("Patient", "a\"b\\c", 1000, 0, 200);
+
+		assertTrue(metrics.toPrometheusText()
+				.contains("{resource=\"Patient\",operation=\"a\\\"b\\\\c\",status=\"2xx\"} 1\n"));
+	}
+
+	@Test
+	public void clear_shouldDiscardTheRecordedOperations() {
+		RequestMetrics metrics = new RequestMetrics();
+		metrics.record("Patient", "read", 1000, 0, 200);
+		metrics.clear();
+
+		assertEquals(0, metrics.getOperations().size());
+	}
+}
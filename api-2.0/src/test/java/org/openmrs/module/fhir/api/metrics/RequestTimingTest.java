@@ -0,0 +1,46 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.metrics;
+
+import org.junit.Test;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.PatientService;
+import org.openmrs.module.fhir.api.strategies.patient.PatientStrategyUtil;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RequestTimingTest extends BaseModuleContextSensitiveTest {
+
+	@Test
+	public void begin_shouldChargeTheStrategyDaoAndConversionPhasesOfAPatientRead() {
+		String patientUuid = Context.getPatientService().getPatient(7).getUuid();
+		RequestTiming timing = RequestTiming.start();
+		try {
+			assertNotNull(Context.getService(PatientService.class).getPatient(patientUuid));
+			assertTrue(timing.getDuration(RequestTiming.STRATEGY) > 0);
+			assertTrue(timing.getDuration(RequestTiming.DAO) > 0);
+			assertTrue(timing.getDuration(RequestTiming.CONVERSION) > 0);
+			assertEquals(0, timing.getDuration(RequestTiming.ENCODING));
+			assertTrue(timing.toServerTimingHeader().startsWith("strategy;dur="));
+		}
+		finally {
+			RequestTiming.finish();
+		}
+		assertSame(PatientStrategyUtil.getPatientStrategy(), PatientStrategyUtil.getPatientStrategy());
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.util;
+
+import org.hl7.fhir.dstu3.model.Patient;
+import org.junit.Test;
+import org.openmrs.PersonAttribute;
+import org.openmrs.PersonAttributeType;
+import org.openmrs.api.context.Context;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+
+public class FHIRPatientUtilTest extends BaseModuleContextSensitiveTest {
+
+	@Test
+	public void generatePatient_shouldSetTheVersionTheDaoReportsForThePatient() {
+		org.openmrs.Patient omrsPatient = Context.getPatientService().getPatient(7);
+		Patient patient = FHIRPatientUtil.generatePatient(omrsPatient);
+		Date lastModified = ContextUtil.getFHIRDao().getLastModified(org.openmrs.Patient.class, omrsPatient.getUuid());
+
+		assertEquals(lastModified.getTime(), patient.getMeta().getLastUpdated().getTime());
+		assertEquals(BaseOpenMRSDataUtil.getVersionId(lastModified), patient.getMeta().getVersionId());
+		assertEquals(omrsPatient.getUuid(), patient.getId());
+	}
+
+	@Test
+	public void generatePatient_shouldTakeTheDateAnAttributeWasVoidedIntoAccount() throws Exception {
+		Date voided = new SimpleDateFormat("yyyy-MM-dd").parse("2100-01-01");
+		org.openmrs.Patient omrsPatient = Context.getPatientService().getPatient(7);
+		PersonAttributeType stringType = null;
+		for (PersonAttributeType type : Context.getPersonService().getAllPersonAttributeTypes()) {
+			if (String.class.getName().equals(type.getFormat())) {
+				stringType = type;
+			}
+		}
+		PersonAttribute attribute = new PersonAttribute(stringType, "voided value");
+		omrsPatient.addAttribute(attribute);
+		Context.getPatientService().savePatient(omrsPatient);
+		attribute.setVoided(true);
+		attribute.setDateVoided(voided);
+		Context.flushSession();
+
+		assertEquals(voided, FHIRPatientUtil.generatePatient(omrsPatient).getMeta().getLastUpdated());
+		assertEquals(voided.getTime(), ContextUtil.getFHIRDao().getLastModified(org.openmrs.Patient.class,
+				omrsPatient.getUuid()).getTime());
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.util;
+
+import org.junit.Test;
+import org.openmrs.GlobalProperty;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.db.FHIRDao;
+import org.openmrs.module.fhir.api.metrics.RequestTiming;
+import org.openmrs.module.fhir.api.strategies.patient.GenericPatientStrategy;
+import org.openmrs.module.fhir.api.strategies.patient.PatientStrategyUtil;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+public class FHIRStrategyRegistryTest extends BaseModuleContextSensitiveTest {
+
+	@Test
+	public void getPatientStrategy_shouldSwapTheRegisteredStrategyWhenTheGlobalPropertyChanges() {
+		FHIRStrategyRegistry.load();
+		try {
+			GenericPatientStrategy strategy = PatientStrategyUtil.getPatientStrategy();
+			assertSame(strategy, PatientStrategyUtil.getPatientStrategy());
+			assertSame(ContextUtil.getObsHelper(), FHIRStrategyRegistry.getInstance().getObsHelper());
+
+			Context.getAdministrationService().saveGlobalProperty(
+					new GlobalProperty(FHIRStrategyRegistry.PATIENT_STRATEGY, "DefaultPatientStrategy"));
+			assertSame(Context.getRegisteredComponent("DefaultPatientStrategy", GenericPatientStrategy.class),
+					PatientStrategyUtil.getPatientStrategy());
+		}
+		finally {
+			FHIRStrategyRegistry.unload();
+		}
+	}
+
+	@Test
+	public void getFHIRDao_shouldResolveTheDaoOnceAndKeepIt() {
+		FHIRStrategyRegistry.load();
+		try {
+			FHIRDao dao = ContextUtil.getFHIRDao();
+			assertNotNull(dao);
+			assertSame(dao, ContextUtil.getFHIRDao());
+			assertSame(dao, RequestTiming.time(dao, FHIRDao.class, RequestTiming.DAO));
+		}
+		finally {
+			FHIRStrategyRegistry.unload();
+		}
+	}
+}
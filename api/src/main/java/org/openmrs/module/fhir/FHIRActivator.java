@@ -15,15 +15,32 @@ package org.openmrs.module.fhir;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.openmrs.module.DaemonToken;
+import org.openmrs.module.DaemonTokenAware;
 import org.openmrs.module.ModuleActivator;
+import org.openmrs.module.fhir.api.bulkimport.BulkImportManager;
+import org.openmrs.module.fhir.api.export.BulkExportManager;
+import org.openmrs.module.fhir.api.manager.FHIRContextFactory;
+import org.openmrs.module.fhir.api.util.FHIRGlobalProperties;
+import org.openmrs.module.fhir.api.util.FHIRStrategyRegistry;
 
 /**
  * This class contains the logic that is run every time this module is either started or stopped.
  */
-public class FHIRActivator implements ModuleActivator {
+public class FHIRActivator implements ModuleActivator, DaemonTokenAware {
 
 	protected Log log = LogFactory.getLog(getClass());
 
+	private DaemonToken daemonToken;
+
+	/**
+	 * @see DaemonTokenAware#setDaemonToken(DaemonToken)
+	 */
+	@Override
+	public void setDaemonToken(DaemonToken token) {
+		this.daemonToken = token;
+	}
+
 	/**
 	 * @see ModuleActivator#willRefreshContext()
 	 */
@@ -50,6 +67,26 @@ public class FHIRActivator implements ModuleActivator {
 	 * @see ModuleActivator#started()
 	 */
 	public void started() {
+		try {
+			FHIRGlobalProperties.load();
+		}
+		catch (Exception e) {
+			log.warn("Failed to load the FHIR global properties, they will be read from the database", e);
+		}
+		try {
+			FHIRStrategyRegistry.load();
+		}
+		catch (Exception e) {
+			log.warn("Failed to resolve the FHIR strategies, they will be looked up on each request", e);
+		}
+		try {
+			FHIRContextFactory.warmUp();
+		}
+		catch (Exception e) {
+			log.warn("Failed to warm up the FHIR context, the resource definitions will be scanned on first use", e);
+		}
+		BulkExportManager.getInstance().start(daemonToken);
+		BulkImportManager.getInstance().start(daemonToken);
 		log.info("FHIR Module started");
 	}
 
@@ -58,6 +95,11 @@ public class FHIRActivator implements ModuleActivator {
 	 */
 	public void willStop() {
 		log.info("Stopping FHIR Module");
+		BulkImportManager.getInstance().stop();
+		BulkExportManager.getInstance().stop();
+		FHIRStrategyRegistry.unload();
+		FHIRGlobalProperties.unload();
+		FHIRContextFactory.releaseParsers();
 	}
 
 	/**
@@ -0,0 +1,44 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api;
+
+import org.hl7.fhir.dstu3.model.Bundle;
+import org.openmrs.api.OpenmrsService;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+@Transactional
+public interface BundleService extends OpenmrsService {
+
+	/**
+	 * Processes a transaction Bundle. DELETE, POST, PUT and GET entries are processed in that order, urn:uuid
+	 * references between the entries are resolved before anything is stored and all the entries are committed in a
+	 * single transaction, or none of them if one fails.
+	 *
+	 * @param bundle the transaction Bundle
+	 * @return the transaction-response Bundle, with one entry per request entry in the same order
+	 */
+	Bundle processTransaction(Bundle bundle);
+
+	/**
+	 * Processes a batch Bundle. The entries are independent: the conditional matches and the reads are done in
+	 * parallel against the resources as they were before the batch, then the writes are processed in order each in
+	 * its own transaction. The failure of one entry is reported in its response without affecting the others.
+	 *
+	 * @param bundle the batch Bundle
+	 * @return the batch-response Bundle, with one entry per request entry in the same order
+	 */
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	Bundle processBatch(Bundle bundle);
+}
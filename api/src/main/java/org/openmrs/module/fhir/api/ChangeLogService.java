@@ -0,0 +1,67 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api;
+
+import ca.uhn.fhir.rest.server.IBundleProvider;
+import org.openmrs.api.OpenmrsService;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+
+/**
+ * Answers the history and _lastUpdated requests from the change log, so that finding what changed since a given time
+ * is a range scan of the log instead of a read of every resource. The log records which resources changed, not their
+ * past content, so each changed resource is returned once in its current version.
+ * <p/>
+ * A change is dated when its transaction commits, so a change committed after a request read the log may still be
+ * dated before the end of the range that request read. The requests therefore only read the changes older than the
+ * read lag set by the fhir.changeLog.readLagSeconds global property, and the returned bundles are published at the
+ * end of the range they read. A client polling the history should pass that time, the meta.lastUpdated of the
+ * bundle, as the _since of its next request rather than the time of its last request or of the last change it got.
+ */
+@Transactional
+public interface ChangeLogService extends OpenmrsService {
+
+	/**
+	 * Gets the history of the resources, most recent change first
+	 *
+	 * @param resourceType the resource type, or null for the history of the whole system
+	 * @param uuid         the id of a resource, or null for the history of all the resources of the type
+	 * @param since        if not null only the resources changed at or after this time are returned
+	 * @return the changed resources in their current version, and a delete entry for the resources whose last change
+	 * voided, retired or purged them, loaded page by page and published at the time up to which the log was read
+	 */
+	@Transactional(readOnly = true)
+	IBundleProvider getHistory(String resourceType, String uuid, Date since);
+
+	/**
+	 * Searches the resources of a type by the time of their last change
+	 *
+	 * @param resourceType the resource type
+	 * @param from         if not null only the resources last changed at or after this time are returned
+	 * @param to           if not null only the resources last changed at or before this time are returned, which is
+	 *                     capped at the current time minus the read lag
+	 * @return the matching resources which were not deleted, least recently changed first, loaded page by page
+	 */
+	@Transactional(readOnly = true)
+	IBundleProvider searchByLastUpdated(String resourceType, Date from, Date to);
+
+	/**
+	 * Deletes the changes older than the retention period set by the fhir.changeLog.retentionDays global property.
+	 * The resources whose last change is purged no longer appear in the history.
+	 *
+	 * @return the number of deleted changes
+	 */
+	int purgeExpiredChanges();
+}
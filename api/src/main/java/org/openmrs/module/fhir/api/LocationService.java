@@ -13,6 +13,8 @@
  */
 package org.openmrs.module.fhir.api;
 
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
 import org.hl7.fhir.dstu3.model.Location;
 import org.openmrs.api.OpenmrsService;
 import org.springframework.transaction.annotation.Transactional;
@@ -42,17 +44,17 @@ public interface LocationService extends OpenmrsService {
 	 * Search all active or inactive locations
 	 *
 	 * @param status boolean status
-	 * @return fhir location resource list
+	 * @return bundle provider of the matching locations, pages are loaded from the database on demand
 	 */
-	List<Location> searchLocationsByStatus(boolean status);
+	IBundleProvider searchLocationsByStatus(boolean status);
 
 	/**
-	 * Search locations by name
+	 * Search the active locations by name, honouring the :exact and :contains modifiers
 	 *
 	 * @param name location name to be search
-	 * @return fhir location resource list
+	 * @return bundle provider of the matching locations, pages are loaded from the database on demand
 	 */
-	List<Location> searchLocationsByName(String name);
+	IBundleProvider searchLocationsByName(StringParam name);
 
 	/**
 	 * Delete location by id
@@ -13,8 +13,11 @@
  */
 package org.openmrs.module.fhir.api;
 
+import ca.uhn.fhir.rest.param.QuantityAndListParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
 import org.hl7.fhir.dstu3.model.Observation;
+import org.hl7.fhir.dstu3.model.Parameters;
 import org.openmrs.api.OpenmrsService;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -38,9 +41,9 @@ public interface ObsService extends OpenmrsService {
 	 *
 	 * @param patientUUid         patient uuid
 	 * @param conceptNamesAndURIs names of the concepts with system uris in a map
-	 * @return fhir obs resource list
+	 * @return bundle provider of fhir obs resources
 	 */
-	List<Observation> searchObsByPatientAndConcept(String patientUUid, Map<String, String> conceptNamesAndURIs);
+	IBundleProvider searchObsByPatientAndConcept(String patientUUid, Map<String, String> conceptNamesAndURIs);
 
 	/**
 	 * Search observations by patient and concepts
@@ -54,33 +57,33 @@ public interface ObsService extends OpenmrsService {
 	 * Search observations by observation name
 	 *
 	 * @param conceptNamesAndURIs obs codes and system uris
-	 * @return fhir obs resource list
+	 * @return bundle provider of fhir obs resources
 	 */
-	List<Observation> searchObsByCode(Map<String, String> conceptNamesAndURIs);
+	IBundleProvider searchObsByCode(Map<String, String> conceptNamesAndURIs);
 
 	/**
 	 * Search observations by observation date
 	 *
 	 * @param date obs date
-	 * @return fhir obs resource list
+	 * @return bundle provider of fhir obs resources
 	 */
-	List<Observation> searchObsByDate(Date date);
+	IBundleProvider searchObsByDate(Date date);
 
 	/**
 	 * Search observations by person
 	 *
 	 * @param personUuid person uuid of the person which observations needs to search for
-	 * @return fhir obs resource list
+	 * @return bundle provider of fhir obs resources
 	 */
-	List<Observation> searchObsByPerson(String personUuid);
+	IBundleProvider searchObsByPerson(String personUuid);
 
 	/**
 	 * Search observations by value concept
 	 *
 	 * @param conceptName value concept name
-	 * @return fhir obs resource list
+	 * @return bundle provider of fhir obs resources
 	 */
-	List<Observation> searchObsByValueConcept(String conceptName);
+	IBundleProvider searchObsByValueConcept(String conceptName);
 
 	/**
 	 * Search observations by patient identifier
@@ -119,7 +122,58 @@ public interface ObsService extends OpenmrsService {
 	 *
 	 * @param patientUuid patient uuid
 	 * @param codings list of TokenParam (has code and system uri for example PIH|5086,CIEL|5089)
-	 * @return List of fhir observations
+	 * @return bundle provider of fhir observations
+	 */
+	IBundleProvider searchObsByPatientAndCode(String patientUuid, List<TokenParam> codings);
+
+	/**
+	 * Search observations by any combination of subject, codes, date range, encounter and numeric value, null
+	 * parameters are ignored
+	 *
+	 * @param subjectUuid   uuid of the person the observations belong to
+	 * @param codings       alternative codes of the observations
+	 * @param fromDate      the earliest observation date time, inclusive
+	 * @param toDate        the latest observation date time, inclusive
+	 * @param encounterUuid uuid of the encounter the observations were recorded in
+	 * @param values        value-quantity ranges the numeric value of the observations must fall in
+	 * @param ascending     true to return the oldest observations first
+	 * @return bundle provider of fhir observations
+	 */
+	IBundleProvider searchObs(String subjectUuid, List<TokenParam> codings, Date fromDate, Date toDate,
+			String encounterUuid, QuantityAndListParam values, boolean ascending);
+
+	/**
+	 * Get the most recent observations of a patient for each of their codes
+	 *
+	 * @param patientUuid patient uuid
+	 * @param codings     codes of the observations, all the codes of the patient when null or empty
+	 * @param max         the maximum number of observations to return per code
+	 * @return fhir observation resource list
+	 */
+	List<Observation> getLastObs(String patientUuid, List<TokenParam> codings, int max);
+
+	/**
+	 * Get the downsampled series of the numeric observations of a patient
+	 *
+	 * @param patientUuid patient uuid
+	 * @param codings     codes of the numeric observations, one series is returned per code
+	 * @param fromDate    the start of the series, the first observation if null
+	 * @param toDate      the end of the series, the last observation if null
+	 * @param points      the number of points each series is downsampled to
+	 * @return parameters holding a series parameter per code
+	 */
+	Parameters getObsTimeSeries(String patientUuid, List<TokenParam> codings, Date fromDate, Date toDate, int points);
+
+	/**
+	 * Get the statistics of the numeric observations of a patient, a group or everyone
+	 *
+	 * @param codings     codes of the numeric observations, statistics are returned per code
+	 * @param patientUuid if not null only the observations of this patient are aggregated
+	 * @param groupUuid   if not null only the observations of the members of this group are aggregated
+	 * @param fromDate    the earliest observation date time, if not null
+	 * @param toDate      the latest observation date time, if not null
+	 * @return parameters holding a statistics parameter per code
 	 */
-	List<Observation> searchObsByPatientAndCode(String patientUuid, List<TokenParam> codings);
+	Parameters getObsStatistics(List<TokenParam> codings, String patientUuid, String groupUuid, Date fromDate,
+			Date toDate);
 }
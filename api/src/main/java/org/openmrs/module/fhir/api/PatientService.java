@@ -13,11 +13,14 @@
  */
 package org.openmrs.module.fhir.api;
 
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
 import org.hl7.fhir.dstu3.model.Bundle;
 import org.hl7.fhir.dstu3.model.Patient;
 import org.openmrs.api.OpenmrsService;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Date;
 import java.util.List;
 
 @Transactional
@@ -59,23 +62,26 @@ public interface PatientService extends OpenmrsService {
 	/**
 	 * Search all patients either active or inactive
 	 *
-	 * @return active patients list
+	 * @param active true to search active patients, false to search voided ones
+	 * @return bundle provider of the matching patients, pages are loaded from the database on demand
 	 */
-	List<Patient> searchPatients(boolean active);
+	IBundleProvider searchPatients(boolean active);
 
 	/**
-	 * Search all patients by given name
+	 * Search active patients by given name, honouring the :exact and :contains modifiers
 	 *
-	 * @return active patients Bundle
+	 * @param givenName the given name to match
+	 * @return bundle provider of the matching patients, pages are loaded from the database on demand
 	 */
-	Bundle searchPatientsByGivenName(String givenName);
+	IBundleProvider searchPatientsByGivenName(StringParam givenName);
 
 	/**
-	 * Search all patients by given name
+	 * Search active patients by family name, honouring the :exact and :contains modifiers
 	 *
-	 * @return active patients Bundle
+	 * @param familyName the family name to match
+	 * @return bundle provider of the matching patients, pages are loaded from the database on demand
 	 */
-	Bundle searchPatientsByFamilyName(String familyName);
+	IBundleProvider searchPatientsByFamilyName(StringParam familyName);
 
 	/**
 	 * Search all patients by name
@@ -85,12 +91,15 @@ public interface PatientService extends OpenmrsService {
 	Bundle searchPatientsByName(String name);
 
 	/**
-	 * Get patient operations bundle resource
+	 * Get the resources of the patient $everything operation, deduplicated by resource type and id
 	 *
 	 * @param patientId the patient id to be search patients
-	 * @return patient resource bundle for operations
+	 * @param since     if not null only resources created or changed at or after this date are returned
+	 * @param types     if not empty only resources of these FHIR types are returned
+	 * @param count     the page size requested by the client, or null for the server default
+	 * @return bundle provider of the patient resources, pages are loaded from the database on demand
 	 */
-	Bundle getPatientOperationsById(String patientId);
+	IBundleProvider getPatientOperationsById(String patientId, Date since, List<String> types, Integer count);
 
 	/**
 	 * Delete patient by id
@@ -13,6 +13,8 @@
  */
 package org.openmrs.module.fhir.api;
 
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
 import org.hl7.fhir.dstu3.model.Practitioner;
 import org.openmrs.api.OpenmrsService;
 import org.springframework.transaction.annotation.Transactional;
@@ -57,20 +59,20 @@ public interface PractitionerService extends OpenmrsService {
 	List<Practitioner> searchPractitionersByName(String name);
 
 	/**
-	 * Search practitioners by givenName
+	 * Search practitioners by givenName, honouring the :exact and :contains modifiers
 	 *
 	 * @param givenName the name to be search
-	 * @return fhir practitioner resource list
+	 * @return bundle provider of the matching practitioners, pages are loaded from the database on demand
 	 */
-	List<Practitioner> searchPractitionersByGivenName(String givenName);
+	IBundleProvider searchPractitionersByGivenName(StringParam givenName);
 
 	/**
-	 * Search practitioners by familyName
+	 * Search practitioners by familyName, honouring the :exact and :contains modifiers
 	 *
 	 * @param familyName the name to be search
-	 * @return fhir practitioner resource list
+	 * @return bundle provider of the matching practitioners, pages are loaded from the database on demand
 	 */
-	List<Practitioner> searchPractitionersByFamilyName(String familyName);
+	IBundleProvider searchPractitionersByFamilyName(StringParam familyName);
 
 	/**
 	 * Search practitioners by identifier
@@ -0,0 +1,187 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.bulkimport;
+
+import java.io.File;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A bulk import requested by a client. The job is updated by the import task while it runs and read by the status
+ * requests of the client.
+ */
+public class BulkImportJob {
+
+	public enum Status {
+		ACCEPTED, IN_PROGRESS, COMPLETED, FAILED, CANCELLED
+	}
+
+	public static final String UPLOAD_FILE_NAME = "input.ndjson";
+
+	private final String id = UUID.randomUUID().toString();
+
+	private final Date transactionTime = new Date();
+
+	private final Integer requestedBy;
+
+	private final File directory;
+
+	private final File inputFile;
+
+	private final boolean upload;
+
+	private final int batchSize;
+
+	private final Map<String, Long> counts = new LinkedHashMap<String, Long>();
+
+	private volatile Status status = Status.ACCEPTED;
+
+	private volatile long linesRead;
+
+	private volatile long errorCount;
+
+	private volatile File errorFile;
+
+	private volatile String failure;
+
+	private volatile Date completedAt;
+
+	/**
+	 * @param requestedBy   the id of the user who requested the import
+	 * @param inputFile     the NDJSON file to import, null when the file is uploaded to the job directory
+	 * @param batchSize     the number of lines committed in each transaction
+	 * @param baseDirectory the directory the job directories are created in
+	 */
+	public BulkImportJob(Integer requestedBy, File inputFile, int batchSize, File baseDirectory) {
+		this.requestedBy = requestedBy;
+		this.directory = new File(baseDirectory, id);
+		this.upload = inputFile == null;
+		this.inputFile = upload ? new File(directory, UPLOAD_FILE_NAME) : inputFile;
+		this.batchSize = batchSize;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public Date getTransactionTime() {
+		return transactionTime;
+	}
+
+	public Integer getRequestedBy() {
+		return requestedBy;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	public File getInputFile() {
+		return inputFile;
+	}
+
+	/**
+	 * @return true if the input file was uploaded and is deleted once imported
+	 */
+	public boolean isUpload() {
+		return upload;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public void setStatus(Status status) {
+		this.status = status;
+		if (status == Status.COMPLETED || status == Status.FAILED) {
+			completedAt = new Date();
+		}
+	}
+
+	public boolean isCancelled() {
+		return status == Status.CANCELLED;
+	}
+
+	public long getLinesRead() {
+		return linesRead;
+	}
+
+	public void setLinesRead(long linesRead) {
+		this.linesRead = linesRead;
+	}
+
+	public long getErrorCount() {
+		return errorCount;
+	}
+
+	public void setErrorCount(long errorCount) {
+		this.errorCount = errorCount;
+	}
+
+	/**
+	 * @return the OperationOutcome NDJSON file the rejected lines are reported in, null if no line was rejected
+	 */
+	public File getErrorFile() {
+		return errorFile;
+	}
+
+	public void setErrorFile(File errorFile) {
+		this.errorFile = errorFile;
+	}
+
+	public String getFailure() {
+		return failure;
+	}
+
+	public void setFailure(String failure) {
+		this.failure = failure;
+	}
+
+	public Date getCompletedAt() {
+		return completedAt;
+	}
+
+	/**
+	 * @return a human readable summary of the lines processed so far
+	 */
+	public String getProgress() {
+		return linesRead + " lines read, " + getImportedCount() + " imported, " + errorCount + " rejected";
+	}
+
+	/**
+	 * @return a copy of the number of resources imported so far by resource type
+	 */
+	public synchronized Map<String, Long> getCounts() {
+		return new LinkedHashMap<String, Long>(counts);
+	}
+
+	public synchronized long getImportedCount() {
+		long total = 0;
+		for (Long count : counts.values()) {
+			total += count;
+		}
+		return total;
+	}
+
+	public synchronized void addImported(String resourceName, long count) {
+		Long current = counts.get(resourceName);
+		counts.put(resourceName, current == null ? count : current + count);
+	}
+}
@@ -0,0 +1,234 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.bulkimport;
+
+import ca.uhn.fhir.rest.server.exceptions.ForbiddenOperationException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.APIException;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.Daemon;
+import org.openmrs.module.DaemonToken;
+import org.openmrs.module.fhir.api.util.FHIRConstants;
+import org.openmrs.module.fhir.api.util.PrivilegeUtil;
+import org.openmrs.util.OpenmrsUtil;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps track of the bulk imports and runs them one after the other in a daemon thread. Local input files are read
+ * from the import directory of the application data directory, uploaded files are spooled to the directory of their
+ * job. Jobs only live in memory and their directories are deleted after {@link #RETENTION_PERIOD}.
+ */
+public class BulkImportManager {
+
+	private static final Log log = LogFactory.getLog(BulkImportManager.class);
+
+	public static final long RETENTION_PERIOD = 24 * 60 * 60 * 1000L;
+
+	private static final BulkImportManager instance = new BulkImportManager();
+
+	private final Map<String, BulkImportJob> jobs = new ConcurrentHashMap<String, BulkImportJob>();
+
+	private volatile DaemonToken daemonToken;
+
+	private ExecutorService executor;
+
+	private BulkImportManager() { }
+
+	public static BulkImportManager getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Starts accepting imports and deletes the job directories left by a previous run
+	 *
+	 * @param daemonToken the token of the module, used to run the imports as the daemon user
+	 */
+	public synchronized void start(DaemonToken daemonToken) {
+		this.daemonToken = daemonToken;
+		deleteDirectory(getJobDirectory());
+		executor = Executors.newSingleThreadExecutor();
+	}
+
+	/**
+	 * Stops the running import and drops all the jobs. The batches already committed are kept.
+	 */
+	public synchronized void stop() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+		for (BulkImportJob job : jobs.values()) {
+			job.setStatus(BulkImportJob.Status.CANCELLED);
+		}
+		jobs.clear();
+		daemonToken = null;
+	}
+
+	/**
+	 * Queues the import of a file of the import directory for the authenticated user
+	 *
+	 * @param fileName  the name of the file, relative to the import directory
+	 * @param batchSize the number of lines committed in each transaction
+	 * @return the queued job
+	 * @throws APIException if the file is not a readable file of the import directory
+	 * @throws ForbiddenOperationException if the user cannot store every type of imported resource
+	 */
+	public BulkImportJob submit(String fileName, int batchSize) {
+		requireImportPrivileges();
+		File inputFile = resolveInputFile(fileName);
+		BulkImportJob job = new BulkImportJob(Context.getAuthenticatedUser().getUserId(), inputFile, batchSize,
+				getJobDirectory());
+		queue(job);
+		return job;
+	}
+
+	/**
+	 * Copies an uploaded NDJSON stream to a new job directory and queues its import for the authenticated user
+	 *
+	 * @param upload    the NDJSON content
+	 * @param batchSize the number of lines committed in each transaction
+	 * @return the queued job
+	 * @throws ForbiddenOperationException if the user cannot store every type of imported resource
+	 */
+	public BulkImportJob submit(InputStream upload, int batchSize) throws IOException {
+		requireImportPrivileges();
+		BulkImportJob job = new BulkImportJob(Context.getAuthenticatedUser().getUserId(), null, batchSize,
+				getJobDirectory());
+		if (!job.getDirectory().mkdirs()) {
+			throw new IOException("Unable to create the import directory " + job.getDirectory().getAbsolutePath());
+		}
+		OutputStream out = new FileOutputStream(job.getInputFile());
+		try {
+			OpenmrsUtil.copyFile(upload, out);
+		}
+		finally {
+			out.close();
+		}
+		queue(job);
+		return job;
+	}
+
+	/**
+	 * @param jobId the id of a job
+	 * @return the job, or null if there is no such job or it has expired
+	 */
+	public BulkImportJob getJob(String jobId) {
+		return jobs.get(jobId);
+	}
+
+	/**
+	 * Stops a job before its next batch and deletes its files. The batches already committed are kept.
+	 *
+	 * @param jobId the id of a job
+	 * @return true if the job existed
+	 */
+	public boolean cancel(String jobId) {
+		BulkImportJob job = jobs.remove(jobId);
+		if (job == null) {
+			return false;
+		}
+		if (job.getStatus() != BulkImportJob.Status.COMPLETED && job.getStatus() != BulkImportJob.Status.FAILED) {
+			job.setStatus(BulkImportJob.Status.CANCELLED);
+		}
+		deleteDirectory(job.getDirectory());
+		return true;
+	}
+
+	private synchronized void queue(final BulkImportJob job) {
+		if (executor == null) {
+			throw new APIException("Bulk imports are not available until the FHIR module is started");
+		}
+		purgeExpiredJobs();
+
+		final DaemonToken token = daemonToken;
+		jobs.put(job.getId(), job);
+		executor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					Daemon.runInDaemonThread(new BulkImportTask(job), token).join();
+				}
+				catch (InterruptedException e) {
+					job.setStatus(BulkImportJob.Status.CANCELLED);
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+	}
+
+	/**
+	 * The imports run as the daemon user and a file may contain any of the importable types, so the user starting an
+	 * import must be allowed to store all of them
+	 */
+	private static void requireImportPrivileges() {
+		for (BulkImportType type : BulkImportType.values()) {
+			PrivilegeUtil.requirePrivileges(type.getPrivileges());
+		}
+	}
+
+	private void purgeExpiredJobs() {
+		long now = System.currentTimeMillis();
+		for (Iterator<BulkImportJob> it = jobs.values().iterator(); it.hasNext(); ) {
+			BulkImportJob job = it.next();
+			if (job.getCompletedAt() != null && now - job.getCompletedAt().getTime() > RETENTION_PERIOD) {
+				it.remove();
+				deleteDirectory(job.getDirectory());
+			}
+		}
+	}
+
+	private static File resolveInputFile(String fileName) {
+		File importDirectory = new File(OpenmrsUtil.getApplicationDataDirectory(), FHIRConstants.BULK_IMPORT_DIRECTORY);
+		try {
+			File inputFile = new File(importDirectory, fileName).getCanonicalFile();
+			if (!inputFile.getPath().startsWith(importDirectory.getCanonicalPath() + File.separator)) {
+				throw new APIException(fileName + " is not a file of the import directory");
+			}
+			if (!inputFile.isFile() || !inputFile.canRead()) {
+				throw new APIException("The import file " + fileName + " does not exist or cannot be read");
+			}
+			return inputFile;
+		}
+		catch (IOException e) {
+			throw new APIException("Unable to resolve the import file " + fileName, e);
+		}
+	}
+
+	private static File getJobDirectory() {
+		return new File(OpenmrsUtil.getApplicationDataDirectory(), FHIRConstants.BULK_IMPORT_JOB_DIRECTORY);
+	}
+
+	private static void deleteDirectory(File directory) {
+		try {
+			if (directory.exists()) {
+				OpenmrsUtil.deleteDirectory(directory);
+			}
+		}
+		catch (IOException e) {
+			log.warn("Unable to delete the import directory " + directory.getAbsolutePath(), e);
+		}
+	}
+}
@@ -0,0 +1,274 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.bulkimport;
+
+import ca.uhn.fhir.parser.IParser;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hl7.fhir.dstu3.model.OperationOutcome;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.openmrs.OpenmrsObject;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.manager.FHIRContextFactory;
+import org.openmrs.module.fhir.api.util.FHIRConstants;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Imports the NDJSON file of a {@link BulkImportJob}. The file is read line by line and the lines are committed in
+ * batches of {@link BulkImportJob#getBatchSize()}, one transaction per batch, with the Hibernate session flushed and
+ * cleared after each batch so the memory used does not grow with the size of the file.
+ * <p/>
+ * Lines which cannot be parsed or converted are reported in an OperationOutcome file without failing their batch. When
+ * storing a batch fails it is rolled back and its lines are imported again one transaction each, so only the lines
+ * which cannot be stored are rejected.
+ */
+public class BulkImportTask implements Runnable {
+
+	private static final Log log = LogFactory.getLog(BulkImportTask.class);
+
+	private static final String ERROR_TYPE = "OperationOutcome";
+
+	private final BulkImportJob job;
+
+	private TransactionTemplate transactionTemplate;
+
+	private Writer errorWriter;
+
+	private long errorCount;
+
+	public BulkImportTask(BulkImportJob job) {
+		this.job = job;
+	}
+
+	@Override
+	public void run() {
+		if (job.isCancelled()) {
+			return;
+		}
+		job.setStatus(BulkImportJob.Status.IN_PROGRESS);
+		BufferedReader reader = null;
+		try {
+			File directory = job.getDirectory();
+			if (!directory.isDirectory() && !directory.mkdirs()) {
+				throw new IOException("Unable to create the import directory " + directory.getAbsolutePath());
+			}
+			transactionTemplate = new TransactionTemplate(
+					Context.getRegisteredComponent("transactionManager", PlatformTransactionManager.class));
+
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(job.getInputFile()), "UTF-8"));
+			List<Line> batch = new ArrayList<Line>(job.getBatchSize());
+			long lineNumber = 0;
+			String text;
+			while (!job.isCancelled() && (text = reader.readLine()) != null) {
+				lineNumber++;
+				if (StringUtils.isBlank(text)) {
+					continue;
+				}
+				batch.add(new Line(lineNumber, text));
+				if (batch.size() >= job.getBatchSize()) {
+					importBatch(batch);
+					batch.clear();
+					job.setLinesRead(lineNumber);
+				}
+			}
+			if (!batch.isEmpty() && !job.isCancelled()) {
+				importBatch(batch);
+			}
+			job.setLinesRead(lineNumber);
+			closeErrors();
+			if (!job.isCancelled()) {
+				job.setStatus(BulkImportJob.Status.COMPLETED);
+			}
+		}
+		catch (Exception e) {
+			log.error("Bulk import " + job.getId() + " failed", e);
+			job.setFailure(e.getMessage());
+			job.setStatus(BulkImportJob.Status.FAILED);
+		}
+		finally {
+			closeQuietly(reader);
+			closeQuietly(errorWriter);
+			if (job.isUpload() && !job.getInputFile().delete()) {
+				log.debug("Unable to delete the uploaded file " + job.getInputFile().getAbsolutePath());
+			}
+		}
+	}
+
+	private void importBatch(final List<Line> batch) throws IOException {
+		try {
+			transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+
+				@Override
+				protected void doInTransactionWithoutResult(TransactionStatus status) {
+					for (Line line : batch) {
+						importLine(line);
+					}
+					Context.flushSession();
+				}
+			});
+			Context.clearSession();
+			report(batch);
+		}
+		catch (RuntimeException e) {
+			log.debug("Unable to store a batch of the import " + job.getId() + ", importing it line by line", e);
+			Context.clearSession();
+			for (final Line line : batch) {
+				try {
+					transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+
+						@Override
+						protected void doInTransactionWithoutResult(TransactionStatus status) {
+							importLine(line);
+							Context.flushSession();
+						}
+					});
+				}
+				catch (RuntimeException lineError) {
+					line.error = "The resource could not be stored: " + lineError.getMessage();
+				}
+				Context.clearSession();
+			}
+			report(batch);
+		}
+	}
+
+	/**
+	 * Parses, converts and stores a line. Parse and conversion errors are recorded on the line, storage errors are
+	 * thrown so the transaction is rolled back.
+	 */
+	private void importLine(Line line) {
+		line.type = null;
+		line.error = null;
+
+		IBaseResource resource;
+		try {
+			resource = FHIRContextFactory.getJsonParser().parseResource(line.text);
+		}
+		catch (RuntimeException e) {
+			line.error = "The line is not a valid FHIR JSON resource: " + e.getMessage();
+			return;
+		}
+
+		String resourceName = FHIRContextFactory.getFHIRContext().getResourceDefinition(resource).getName();
+		BulkImportType type = BulkImportType.forResourceName(resourceName);
+		if (type == null) {
+			line.error = "Resource type " + resourceName + " cannot be imported";
+			return;
+		}
+
+		List<String> errors = new ArrayList<String>();
+		OpenmrsObject object;
+		try {
+			object = type.convert(resource, errors);
+		}
+		catch (RuntimeException e) {
+			errors.add(e.getMessage());
+			object = null;
+		}
+		if (!errors.isEmpty() || object == null) {
+			line.error = "The " + resourceName + " could not be converted: " + StringUtils.join(errors, ", ");
+			return;
+		}
+
+		type.save(object, resource);
+		line.type = type;
+	}
+
+	private void report(List<Line> batch) throws IOException {
+		for (Line line : batch) {
+			if (line.error != null) {
+				writeError(line);
+			} else if (line.type != null) {
+				job.addImported(line.type.getResourceName(), 1);
+			}
+		}
+		job.setErrorCount(errorCount);
+	}
+
+	private void writeError(Line line) throws IOException {
+		if (errorWriter == null) {
+			errorWriter = openWriter(getErrorFile());
+			job.setErrorFile(getErrorFile());
+		}
+		OperationOutcome outcome = new OperationOutcome();
+		outcome.addIssue()
+				.setSeverity(OperationOutcome.IssueSeverity.ERROR)
+				.setCode(OperationOutcome.IssueType.PROCESSING)
+				.setDiagnostics(line.error)
+				.addLocation("Line " + line.number);
+		IParser parser = FHIRContextFactory.getJsonParser();
+		parser.encodeResourceToWriter(outcome, errorWriter);
+		errorWriter.write('\n');
+		errorCount++;
+	}
+
+	private void closeErrors() throws IOException {
+		if (errorWriter != null) {
+			errorWriter.close();
+			errorWriter = null;
+		}
+	}
+
+	private File getErrorFile() {
+		return new File(job.getDirectory(), ERROR_TYPE + FHIRConstants.NDJSON_EXTENSION);
+	}
+
+	private static Writer openWriter(File file) throws IOException {
+		return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+	}
+
+	private static void closeQuietly(Closeable closeable) {
+		if (closeable != null) {
+			try {
+				closeable.close();
+			}
+			catch (IOException e) {
+				log.debug("Unable to close the import file", e);
+			}
+		}
+	}
+
+	private static class Line {
+
+		private final long number;
+
+		private final String text;
+
+		private BulkImportType type;
+
+		private String error;
+
+		private Line(long number, String text) {
+			this.number = number;
+			this.text = text;
+		}
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.bulkimport;
+
+import org.hl7.fhir.dstu3.model.Encounter;
+import org.hl7.fhir.dstu3.model.Location;
+import org.hl7.fhir.dstu3.model.Observation;
+import org.hl7.fhir.dstu3.model.Patient;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.openmrs.Obs;
+import org.openmrs.OpenmrsObject;
+import org.openmrs.Visit;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.strategies.observation.ObservationStrategy;
+import org.openmrs.module.fhir.api.util.FHIRConstants;
+import org.openmrs.module.fhir.api.util.FHIREncounterUtil;
+import org.openmrs.module.fhir.api.util.FHIRLocationUtil;
+import org.openmrs.module.fhir.api.util.FHIRObsUtil;
+import org.openmrs.module.fhir.api.util.FHIRPatientUtil;
+import org.openmrs.module.fhir.api.util.FHIRUtils;
+import org.openmrs.module.fhir.api.util.FHIRVisitUtil;
+
+import java.util.List;
+
+/**
+ * The resource types which can be imported in bulk, with the reverse converter and the service call used to store
+ * each one. Unlike the create operations the stored object is not converted back to FHIR.
+ */
+public enum BulkImportType {
+
+	PATIENT("Patient", "Add Patients", "Edit Patients") {
+
+		@Override
+		public OpenmrsObject convert(IBaseResource resource, List<String> errors) {
+			return FHIRPatientUtil.generateOmrsPatient((Patient) resource, errors);
+		}
+
+		@Override
+		public void save(OpenmrsObject object, IBaseResource resource) {
+			Context.getPatientService().savePatient((org.openmrs.Patient) object);
+		}
+	},
+	LOCATION("Location", "Manage Locations") {
+
+		@Override
+		public OpenmrsObject convert(IBaseResource resource, List<String> errors) {
+			return FHIRLocationUtil.generateOpenMRSLocation((Location) resource, errors);
+		}
+
+		@Override
+		public void save(OpenmrsObject object, IBaseResource resource) {
+			Context.getLocationService().saveLocation((org.openmrs.Location) object);
+		}
+	},
+	ENCOUNTER("Encounter", "Add Encounters", "Edit Encounters", "Add Visits", "Edit Visits") {
+
+		@Override
+		public OpenmrsObject convert(IBaseResource resource, List<String> errors) {
+			Encounter encounter = (Encounter) resource;
+			if (FHIREncounterUtil.shouldBeConsideredAsVisit(encounter)) {
+				return FHIRVisitUtil.generateOMRSVisit(encounter, errors);
+			}
+
+			org.openmrs.Encounter omrsEncounter = FHIREncounterUtil.generateOMRSEncounter(encounter, errors);
+			if (encounter.getPartOf() != null && encounter.getPartOf().getReference() != null) {
+				String visitUuid = FHIRUtils.getObjectUuidByReference(encounter.getPartOf());
+				Visit visit = Context.getVisitService().getVisitByUuid(visitUuid);
+				if (visit == null) {
+					errors.add("No Encounters found for id : " + visitUuid);
+				} else if (omrsEncounter != null) {
+					omrsEncounter.setVisit(visit);
+				}
+			}
+			return omrsEncounter;
+		}
+
+		@Override
+		public void save(OpenmrsObject object, IBaseResource resource) {
+			if (object instanceof Visit) {
+				Context.getVisitService().saveVisit((Visit) object);
+			} else {
+				Context.getEncounterService().saveEncounter((org.openmrs.Encounter) object);
+			}
+		}
+	},
+	OBSERVATION("Observation", "Add Observations", "Edit Observations") {
+
+		@Override
+		public OpenmrsObject convert(IBaseResource resource, List<String> errors) {
+			Observation observation = (Observation) resource;
+			org.openmrs.Encounter encounter = null;
+			if (observation.getContext().getReference() != null) {
+				String encounterUuid = FHIRUtils.extractUuid(observation.getContext().getReference());
+				encounter = Context.getEncounterService().getEncounterByUuid(encounterUuid);
+			}
+			if (encounter != null) {
+				return FHIRObsUtil.generateOpenMRSObsWithEncounter(observation, encounter, errors);
+			}
+			return FHIRObsUtil.generateOpenMRSObs(observation, errors);
+		}
+
+		@Override
+		public void save(OpenmrsObject object, IBaseResource resource) {
+			Obs obs = Context.getObsService().saveObs((Obs) object, FHIRConstants.FHIR_CREATE_MESSAGE);
+			if (FHIRObsUtil.hasGroupMembers((Observation) resource)) {
+				ObservationStrategy.buildObsGroup((Observation) resource, obs);
+			}
+		}
+	};
+
+	private final String resourceName;
+
+	private final String[] privileges;
+
+	BulkImportType(String resourceName, String... privileges) {
+		this.resourceName = resourceName;
+		this.privileges = privileges;
+	}
+
+	public String getResourceName() {
+		return resourceName;
+	}
+
+	/**
+	 * @return the privileges needed to create and update the OpenMRS objects this type is stored as
+	 */
+	public String[] getPrivileges() {
+		return privileges.clone();
+	}
+
+	/**
+	 * Converts a parsed resource to the OpenMRS object it is stored as
+	 *
+	 * @param resource the parsed resource, of this type
+	 * @param errors   the list the conversion errors are added to
+	 * @return the OpenMRS object, only valid if no error was added
+	 */
+	public abstract OpenmrsObject convert(IBaseResource resource, List<String> errors);
+
+	/**
+	 * Stores a converted object
+	 *
+	 * @param object   the object returned by {@link #convert(IBaseResource, List)}
+	 * @param resource the resource it was converted from
+	 */
+	public abstract void save(OpenmrsObject object, IBaseResource resource);
+
+	/**
+	 * @param resourceName the name of a FHIR resource type
+	 * @return the import type for that resource type, or null if it cannot be imported
+	 */
+	public static BulkImportType forResourceName(String resourceName) {
+		for (BulkImportType type : values()) {
+			if (type.resourceName.equals(resourceName)) {
+				return type;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.bundle;
+
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import org.apache.commons.lang.StringUtils;
+import org.hl7.fhir.dstu3.model.Bundle;
+import org.hl7.fhir.dstu3.model.Resource;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The interaction requested by a Bundle entry, parsed from its request method and URL
+ */
+public class BundleEntryRequest {
+
+	private final int index;
+
+	private final Bundle.BundleEntryComponent entry;
+
+	private final Bundle.HTTPVerb method;
+
+	private final BundleEntryType type;
+
+	private final String id;
+
+	private final Map<String, String> criteria;
+
+	/**
+	 * @param index the position of the entry in the Bundle
+	 * @param entry the entry
+	 * @throws InvalidRequestException if the entry is not a supported interaction
+	 */
+	public BundleEntryRequest(int index, Bundle.BundleEntryComponent entry) {
+		this.index = index;
+		this.entry = entry;
+		this.method = entry.getRequest().getMethod();
+		if (method == null || method == Bundle.HTTPVerb.NULL) {
+			throw new InvalidRequestException("Entry " + index + " has no request method");
+		}
+
+		String url = StringUtils.defaultString(entry.getRequest().getUrl());
+		String query = method == Bundle.HTTPVerb.POST ? entry.getRequest().getIfNoneExist() : null;
+		if (url.contains("?")) {
+			query = url.substring(url.indexOf('?') + 1);
+			url = url.substring(0, url.indexOf('?'));
+		}
+		String[] path = StringUtils.strip(url, "/").split("/");
+
+		String resourceName = path[0];
+		if (StringUtils.isEmpty(resourceName) && entry.getResource() != null) {
+			resourceName = entry.getResource().getResourceType().name();
+		}
+		this.type = BundleEntryType.forResourceName(resourceName);
+		if (type == null) {
+			throw new InvalidRequestException("Entry " + index + ": resource type " + resourceName
+					+ " is not supported in Bundles");
+		}
+		this.id = path.length > 1 ? path[1] : null;
+		this.criteria = parseCriteria(query);
+
+		if (method != Bundle.HTTPVerb.POST && id == null && criteria.isEmpty()) {
+			throw new InvalidRequestException("Entry " + index + ": " + method.toCode() + " requires a resource id or "
+					+ "search criteria");
+		}
+		if (method == Bundle.HTTPVerb.GET && id == null) {
+			throw new InvalidRequestException("Entry " + index + ": searches are not supported in Bundles");
+		}
+		if ((method == Bundle.HTTPVerb.POST || method == Bundle.HTTPVerb.PUT) && entry.getResource() == null) {
+			throw new InvalidRequestException("Entry " + index + ": " + method.toCode() + " requires a resource");
+		}
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public Bundle.BundleEntryComponent getEntry() {
+		return entry;
+	}
+
+	public Bundle.HTTPVerb getMethod() {
+		return method;
+	}
+
+	public BundleEntryType getType() {
+		return type;
+	}
+
+	/**
+	 * @return the id in the request URL, null for creates and conditional interactions
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * @return true if the interaction is conditional on search criteria
+	 */
+	public boolean isConditional() {
+		return id == null && !criteria.isEmpty();
+	}
+
+	public Map<String, String> getCriteria() {
+		return criteria;
+	}
+
+	public Resource getResource() {
+		return entry.getResource();
+	}
+
+	private static Map<String, String> parseCriteria(String query) {
+		Map<String, String> criteria = new LinkedHashMap<String, String>();
+		if (StringUtils.isBlank(query)) {
+			return criteria;
+		}
+		for (String parameter : query.split("&")) {
+			if (parameter.isEmpty()) {
+				continue;
+			}
+			String[] nameAndValue = parameter.split("=", 2);
+			criteria.put(decode(nameAndValue[0]), nameAndValue.length > 1 ? decode(nameAndValue[1]) : "");
+		}
+		return criteria;
+	}
+
+	private static String decode(String value) {
+		try {
+			return URLDecoder.decode(value, "UTF-8");
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,426 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.bundle;
+
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.rest.server.exceptions.MethodNotAllowedException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import org.hl7.fhir.dstu3.model.AllergyIntolerance;
+import org.hl7.fhir.dstu3.model.Encounter;
+import org.hl7.fhir.dstu3.model.Group;
+import org.hl7.fhir.dstu3.model.Location;
+import org.hl7.fhir.dstu3.model.MedicationRequest;
+import org.hl7.fhir.dstu3.model.Observation;
+import org.hl7.fhir.dstu3.model.Patient;
+import org.hl7.fhir.dstu3.model.Person;
+import org.hl7.fhir.dstu3.model.Practitioner;
+import org.hl7.fhir.dstu3.model.ProcedureRequest;
+import org.hl7.fhir.dstu3.model.RelatedPerson;
+import org.hl7.fhir.dstu3.model.Resource;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.AllergyIntoleranceService;
+import org.openmrs.module.fhir.api.EncounterService;
+import org.openmrs.module.fhir.api.GroupService;
+import org.openmrs.module.fhir.api.LocationService;
+import org.openmrs.module.fhir.api.MedicationRequestService;
+import org.openmrs.module.fhir.api.ObsService;
+import org.openmrs.module.fhir.api.PatientService;
+import org.openmrs.module.fhir.api.PersonService;
+import org.openmrs.module.fhir.api.PractitionerService;
+import org.openmrs.module.fhir.api.ProcedureRequestService;
+import org.openmrs.module.fhir.api.RelatedPersonService;
+import org.openmrs.module.fhir.api.util.PrivilegeUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The resource types a transaction or batch Bundle can operate on, with the FHIR service calls used for each
+ * interaction and the objects whose privilege is needed to read them
+ */
+public enum BundleEntryType {
+
+	PATIENT("Patient", PrivilegeUtil.PATIENTS) {
+
+		@Override
+		public Resource create(Resource resource) {
+			return Context.getService(PatientService.class).createFHIRPatient((Patient) resource);
+		}
+
+		@Override
+		public Resource update(Resource resource, String uuid) {
+			return Context.getService(PatientService.class).updatePatient((Patient) resource, uuid);
+		}
+
+		@Override
+		public void delete(String uuid) {
+			Context.getService(PatientService.class).deletePatient(uuid);
+		}
+
+		@Override
+		protected Resource get(String uuid) {
+			return Context.getService(PatientService.class).getPatient(uuid);
+		}
+
+		@Override
+		protected List<String> searchByIdentifier(String identifier) {
+			List<String> uuids = new ArrayList<String>();
+			for (Patient patient : Context.getService(PatientService.class).searchPatientsByIdentifier(identifier)) {
+				uuids.add(patient.getIdElement().getIdPart());
+			}
+			return uuids;
+		}
+	},
+	PRACTITIONER("Practitioner", PrivilegeUtil.PROVIDERS) {
+
+		@Override
+		public Resource create(Resource resource) {
+			return Context.getService(PractitionerService.class).createFHIRPractitioner((Practitioner) resource);
+		}
+
+		@Override
+		public Resource update(Resource resource, String uuid) {
+			return Context.getService(PractitionerService.class).updatePractitioner((Practitioner) resource, uuid);
+		}
+
+		@Override
+		protected Resource get(String uuid) {
+			return Context.getService(PractitionerService.class).getPractitioner(uuid);
+		}
+
+		@Override
+		protected List<String> searchByIdentifier(String identifier) {
+			List<String> uuids = new ArrayList<String>();
+			for (Practitioner practitioner : Context.getService(PractitionerService.class)
+					.searchPractitionersByIdentifier(identifier)) {
+				uuids.add(practitioner.getIdElement().getIdPart());
+			}
+			return uuids;
+		}
+	},
+	PERSON("Person", PrivilegeUtil.PEOPLE) {
+
+		@Override
+		public Resource create(Resource resource) {
+			return Context.getService(PersonService.class).createFHIRPerson((Person) resource);
+		}
+
+		@Override
+		public Resource update(Resource resource, String uuid) {
+			return Context.getService(PersonService.class).updateFHIRPerson((Person) resource, uuid);
+		}
+
+		@Override
+		public void delete(String uuid) {
+			Context.getService(PersonService.class).retirePerson(uuid);
+		}
+
+		@Override
+		protected Resource get(String uuid) {
+			return Context.getService(PersonService.class).getPerson(uuid);
+		}
+	},
+	RELATED_PERSON("RelatedPerson", PrivilegeUtil.RELATIONSHIPS) {
+
+		@Override
+		public Resource create(Resource resource) {
+			return Context.getService(RelatedPersonService.class).createRelatedPerson((RelatedPerson) resource);
+		}
+
+		@Override
+		public Resource update(Resource resource, String uuid) {
+			return Context.getService(RelatedPersonService.class).updateRelatedPerson(uuid, (RelatedPerson) resource);
+		}
+
+		@Override
+		public void delete(String uuid) {
+			Context.getService(RelatedPersonService.class).deleteRelatedPerson(uuid);
+		}
+
+		@Override
+		protected Resource get(String uuid) {
+			return Context.getService(RelatedPersonService.class).getRelatedPerson(uuid);
+		}
+	},
+	LOCATION("Location", PrivilegeUtil.LOCATIONS) {
+
+		@Override
+		public Resource create(Resource resource) {
+			return Context.getService(LocationService.class).createLocation((Location) resource);
+		}
+
+		@Override
+		public Resource update(Resource resource, String uuid) {
+			return Context.getService(LocationService.class).updateLocation(uuid, (Location) resource);
+		}
+
+		@Override
+		public void delete(String uuid) {
+			Context.getService(LocationService.class).deleteLocation(uuid);
+		}
+
+		@Override
+		protected Resource get(String uuid) {
+			return Context.getService(LocationService.class).getLocation(uuid);
+		}
+	},
+	ENCOUNTER("Encounter", PrivilegeUtil.ENCOUNTERS) {
+
+		@Override
+		public Resource create(Resource resource) {
+			return Context.getService(EncounterService.class).createFHIREncounter((Encounter) resource);
+		}
+
+		@Override
+		public Resource update(Resource resource, String uuid) {
+			return Context.getService(EncounterService.class).updateEncounter((Encounter) resource, uuid);
+		}
+
+		@Override
+		public void delete(String uuid) {
+			Context.getService(EncounterService.class).deleteEncounter(uuid);
+		}
+
+		@Override
+		protected Resource get(String uuid) {
+			return Context.getService(EncounterService.class).getEncounter(uuid);
+		}
+	},
+	OBSERVATION("Observation", PrivilegeUtil.OBSERVATIONS) {
+
+		@Override
+		public Resource create(Resource resource) {
+			return Context.getService(ObsService.class).createFHIRObservation((Observation) resource);
+		}
+
+		@Override
+		public Resource update(Resource resource, String uuid) {
+			return Context.getService(ObsService.class).updateFHIRObservation((Observation) resource, uuid);
+		}
+
+		@Override
+		public void delete(String uuid) {
+			Context.getService(ObsService.class).deleteObs(uuid);
+		}
+
+		@Override
+		protected Resource get(String uuid) {
+			return Context.getService(ObsService.class).getObs(uuid);
+		}
+	},
+	ALLERGY_INTOLERANCE("AllergyIntolerance", PrivilegeUtil.ALLERGIES) {
+
+		@Override
+		public Resource create(Resource resource) {
+			return Context.getService(AllergyIntoleranceService.class).createAllergy((AllergyIntolerance) resource);
+		}
+
+		@Override
+		public Resource update(Resource resource, String uuid) {
+			return Context.getService(AllergyIntoleranceService.class)
+					.updateAllergy((AllergyIntolerance) resource, uuid);
+		}
+
+		@Override
+		public void delete(String uuid) {
+			Context.getService(AllergyIntoleranceService.class).deleteAllergy(uuid);
+		}
+
+		@Override
+		protected Resource get(String uuid) {
+			return Context.getService(AllergyIntoleranceService.class).getAllergyById(uuid);
+		}
+	},
+	GROUP("Group", PrivilegeUtil.PATIENT_COHORTS) {
+
+		@Override
+		public Resource create(Resource resource) {
+			return Context.getService(GroupService.class).createGroup((Group) resource);
+		}
+
+		@Override
+		public Resource update(Resource resource, String uuid) {
+			return Context.getService(GroupService.class).updateGroup((Group) resource, uuid);
+		}
+
+		@Override
+		public void delete(String uuid) {
+			Context.getService(GroupService.class).deleteGroup(uuid);
+		}
+
+		@Override
+		protected Resource get(String uuid) {
+			return Context.getService(GroupService.class).getGroup(uuid);
+		}
+	},
+	MEDICATION_REQUEST("MedicationRequest", PrivilegeUtil.ORDERS) {
+
+		@Override
+		public Resource create(Resource resource) {
+			return Context.getService(MedicationRequestService.class)
+					.createFHIRMedicationRequest((MedicationRequest) resource);
+		}
+
+		@Override
+		public Resource update(Resource resource, String uuid) {
+			return Context.getService(MedicationRequestService.class)
+					.updateFHIRMedicationRequest((MedicationRequest) resource, uuid);
+		}
+
+		@Override
+		public void delete(String uuid) {
+			Context.getService(MedicationRequestService.class).deleteMedicationRequest(uuid);
+		}
+
+		@Override
+		protected Resource get(String uuid) {
+			return Context.getService(MedicationRequestService.class).getMedicationRequestById(uuid);
+		}
+	},
+	PROCEDURE_REQUEST("ProcedureRequest", PrivilegeUtil.ORDERS) {
+
+		@Override
+		public Resource create(Resource resource) {
+			return Context.getService(ProcedureRequestService.class)
+					.createProcedureRequest((ProcedureRequest) resource);
+		}
+
+		@Override
+		public Resource update(Resource resource, String uuid) {
+			return Context.getService(ProcedureRequestService.class)
+					.updateProcedureRequest((ProcedureRequest) resource, uuid);
+		}
+
+		@Override
+		public void delete(String uuid) {
+			Context.getService(ProcedureRequestService.class).deleteProcedureRequest(uuid);
+		}
+
+		@Override
+		protected Resource get(String uuid) {
+			return Context.getService(ProcedureRequestService.class).getProcedureRequestByUuid(uuid);
+		}
+	};
+
+	private final String resourceName;
+
+	private final String privilegeObjects;
+
+	BundleEntryType(String resourceName, String privilegeObjects) {
+		this.resourceName = resourceName;
+		this.privilegeObjects = privilegeObjects;
+	}
+
+	public String getResourceName() {
+		return resourceName;
+	}
+
+	/**
+	 * @return the plural name of the OpenMRS objects the resources are read from, as used in their View and Get
+	 * privileges
+	 * @see PrivilegeUtil#requireViewPrivileges(String...)
+	 */
+	public String getPrivilegeObjects() {
+		return privilegeObjects;
+	}
+
+	/**
+	 * Creates a resource
+	 *
+	 * @param resource the resource to create, its id is used as the uuid of the new object
+	 * @return the created resource
+	 */
+	public abstract Resource create(Resource resource);
+
+	/**
+	 * Updates a resource, or creates it with the given uuid if it does not exist
+	 *
+	 * @param resource the new content of the resource
+	 * @param uuid     the uuid of the resource
+	 * @return the updated resource
+	 */
+	public abstract Resource update(Resource resource, String uuid);
+
+	/**
+	 * Deletes or retires a resource
+	 *
+	 * @param uuid the uuid of the resource
+	 */
+	public void delete(String uuid) {
+		throw new MethodNotAllowedException(resourceName + " resources cannot be deleted");
+	}
+
+	/**
+	 * @param uuid the uuid of a resource
+	 * @return the resource, or null if there is no such resource
+	 */
+	public Resource read(String uuid) {
+		try {
+			return get(uuid);
+		}
+		catch (ResourceNotFoundException e) {
+			return null;
+		}
+	}
+
+	protected abstract Resource get(String uuid);
+
+	/**
+	 * Finds the resources matching the criteria of a conditional interaction. Only the _id and, for the types which
+	 * support it, the identifier parameters are understood.
+	 *
+	 * @param parameter the name of the search parameter
+	 * @param value     the value of the search parameter
+	 * @return the uuids of the matching resources
+	 */
+	public List<String> search(String parameter, String value) {
+		List<String> uuids = new ArrayList<String>();
+		if ("_id".equals(parameter)) {
+			if (read(value) != null) {
+				uuids.add(value);
+			}
+			return uuids;
+		}
+		if ("identifier".equals(parameter)) {
+			String identifier = value.contains("|") ? value.substring(value.indexOf('|') + 1) : value;
+			List<String> matches = searchByIdentifier(identifier);
+			if (matches != null) {
+				return matches;
+			}
+		}
+		throw new InvalidRequestException("Conditional interactions on " + resourceName + " do not support the "
+				+ parameter + " parameter");
+	}
+
+	/**
+	 * @return the uuids of the resources with the given identifier, or null if the type cannot be searched by
+	 * identifier
+	 */
+	protected List<String> searchByIdentifier(String identifier) {
+		return null;
+	}
+
+	/**
+	 * @param resourceName the name of a FHIR resource type
+	 * @return the entry type for that resource type, or null if Bundles cannot operate on it
+	 */
+	public static BundleEntryType forResourceName(String resourceName) {
+		for (BundleEntryType type : values()) {
+			if (type.resourceName.equals(resourceName)) {
+				return type;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.cache;
+
+import org.openmrs.Drug;
+import org.openmrs.Location;
+import org.openmrs.OpenmrsObject;
+import org.openmrs.Patient;
+import org.openmrs.Provider;
+import org.openmrs.module.fhir.api.util.FHIRConstants;
+import org.openmrs.module.fhir.api.util.PrivilegeUtil;
+
+/**
+ * The resource types whose reads are served from the {@link ResourceCache}. They are the stable ones, read much more
+ * often than they change, whose last modified date tells whether a cached copy is still current.
+ */
+public enum CachedResourceType {
+
+	PATIENT(FHIRConstants.PATIENT, Patient.class, PrivilegeUtil.PATIENTS),
+
+	PRACTITIONER(FHIRConstants.PRACTITIONER, Provider.class, PrivilegeUtil.PROVIDERS),
+
+	LOCATION(FHIRConstants.LOCATION, Location.class, PrivilegeUtil.LOCATIONS),
+
+	MEDICATION(FHIRConstants.MEDICATION, Drug.class, PrivilegeUtil.CONCEPTS);
+
+	private final String resourceName;
+
+	private final Class<? extends OpenmrsObject> openmrsType;
+
+	private final String privilegeObjects;
+
+	CachedResourceType(String resourceName, Class<? extends OpenmrsObject> openmrsType, String privilegeObjects) {
+		this.resourceName = resourceName;
+		this.openmrsType = openmrsType;
+		this.privilegeObjects = privilegeObjects;
+	}
+
+	public String getResourceName() {
+		return resourceName;
+	}
+
+	/**
+	 * @return the OpenMRS type the resources are generated from
+	 */
+	public Class<? extends OpenmrsObject> getOpenmrsType() {
+		return openmrsType;
+	}
+
+	/**
+	 * Checks whether the authenticated user may read the resources without going through the OpenMRS service
+	 *
+	 * @return true if the user has the privilege needed to read the OpenMRS objects
+	 * @see PrivilegeUtil#hasViewPrivilege(String)
+	 */
+	public boolean isReadable() {
+		return PrivilegeUtil.hasViewPrivilege(privilegeObjects);
+	}
+
+	/**
+	 * @param resourceName a FHIR resource name
+	 * @return the cached type with that name, or null if the resources of that type are not cached
+	 */
+	public static CachedResourceType forResourceName(String resourceName) {
+		for (CachedResourceType type : values()) {
+			if (type.resourceName.equals(resourceName)) {
+				return type;
+			}
+		}
+		return null;
+	}
+}
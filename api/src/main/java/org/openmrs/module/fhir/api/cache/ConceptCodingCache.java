@@ -0,0 +1,249 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.cache;
+
+import org.hl7.fhir.dstu3.model.CodeableConcept;
+import org.openmrs.module.fhir.api.util.FHIRConstants;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the codeable concepts generated for OpenMRS concepts, keyed by concept id and locale. The cache holds at
+ * most {@link FHIRConstants#CONCEPT_CODING_CACHE_MAXIMUM_SIZE} entries, evicting the least recently used one when
+ * full, and drops entries older than {@link FHIRConstants#CONCEPT_CODING_CACHE_TIME_TO_LIVE} milliseconds.
+ * <p/>
+ * The cached codeable concepts are templates which are never handed out, every read returns a copy that the caller
+ * is free to modify. Entries are evicted by {@link ConceptCodingCacheAdvice} when concepts are saved.
+ */
+public class ConceptCodingCache {
+
+	private static final ConceptCodingCache instance = new ConceptCodingCache(
+			FHIRConstants.CONCEPT_CODING_CACHE_MAXIMUM_SIZE, FHIRConstants.CONCEPT_CODING_CACHE_TIME_TO_LIVE);
+
+	private final long timeToLive;
+
+	private final Map<Key, Entry> entries;
+
+	private final AtomicLong hitCount = new AtomicLong();
+
+	private final AtomicLong missCount = new AtomicLong();
+
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	/**
+	 * @param maximumSize the maximum number of entries
+	 * @param timeToLive  the time in milliseconds after which an entry expires
+	 */
+	public ConceptCodingCache(final int maximumSize, long timeToLive) {
+		this.timeToLive = timeToLive;
+		this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+				if (size() > maximumSize) {
+					evictionCount.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	public static ConceptCodingCache getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Gets a copy of the codeable concept cached for a concept
+	 *
+	 * @param conceptId the concept id
+	 * @param locale    the locale the codeable concept was generated in
+	 * @return a copy of the cached codeable concept, or null if it is not cached or has expired
+	 */
+	public CodeableConcept get(Integer conceptId, Locale locale) {
+		Key key = new Key(conceptId, locale);
+		CodeableConcept template = null;
+		synchronized (entries) {
+			Entry entry = entries.get(key);
+			if (entry != null) {
+				if (entry.isExpired()) {
+					entries.remove(key);
+					evictionCount.incrementAndGet();
+				} else {
+					template = entry.template;
+				}
+			}
+		}
+
+		if (template == null) {
+			missCount.incrementAndGet();
+			return null;
+		}
+		hitCount.incrementAndGet();
+		return template.copy();
+	}
+
+	/**
+	 * Checks whether a codeable concept is cached for a concept, without counting it as a read
+	 *
+	 * @param conceptId the concept id
+	 * @param locale    the locale the codeable concept was generated in
+	 * @return true if a codeable concept which has not expired is cached
+	 */
+	public boolean contains(Integer conceptId, Locale locale) {
+		if (conceptId == null) {
+			return false;
+		}
+		synchronized (entries) {
+			Entry entry = entries.get(new Key(conceptId, locale));
+			return entry != null && !entry.isExpired();
+		}
+	}
+
+	/**
+	 * Caches a copy of the codeable concept generated for a concept
+	 *
+	 * @param conceptId       the concept id
+	 * @param locale          the locale the codeable concept was generated in
+	 * @param codeableConcept the generated codeable concept
+	 */
+	public void put(Integer conceptId, Locale locale, CodeableConcept codeableConcept) {
+		Entry entry = new Entry(codeableConcept.copy(), System.currentTimeMillis() + timeToLive);
+		synchronized (entries) {
+			entries.put(new Key(conceptId, locale), entry);
+		}
+	}
+
+	/**
+	 * Evicts the codeable concepts cached for a concept in every locale
+	 *
+	 * @param conceptId the concept id
+	 */
+	public void evict(Integer conceptId) {
+		synchronized (entries) {
+			Iterator<Key> keys = entries.keySet().iterator();
+			while (keys.hasNext()) {
+				if (keys.next().conceptId.equals(conceptId)) {
+					keys.remove();
+					evictionCount.incrementAndGet();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Evicts every cached codeable concept
+	 */
+	public void clear() {
+		synchronized (entries) {
+			evictionCount.addAndGet(entries.size());
+			entries.clear();
+		}
+	}
+
+	/**
+	 * @return the number of cached codeable concepts, including the expired ones not evicted yet
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * @return the number of reads which found a cached codeable concept
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * @return the number of reads which did not find a cached codeable concept
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * @return the number of entries evicted because the cache was full, they expired or their concept was saved
+	 */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	/**
+	 * @return the ratio of reads which found a cached codeable concept, 0 if nothing was read yet
+	 */
+	public double getHitRatio() {
+		long hits = hitCount.get();
+		long total = hits + missCount.get();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	@Override
+	public String toString() {
+		return "ConceptCodingCache[size=" + size() + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+				+ ", evictions=" + getEvictionCount() + "]";
+	}
+
+	private static class Key {
+
+		private final Integer conceptId;
+
+		private final Locale locale;
+
+		private Key(Integer conceptId, Locale locale) {
+			this.conceptId = conceptId;
+			this.locale = locale;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return conceptId.equals(other.conceptId)
+					&& (locale == null ? other.locale == null : locale.equals(other.locale));
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * conceptId.hashCode() + (locale == null ? 0 : locale.hashCode());
+		}
+	}
+
+	private static class Entry {
+
+		private final CodeableConcept template;
+
+		private final long expiresAt;
+
+		private Entry(CodeableConcept template, long expiresAt) {
+			this.template = template;
+			this.expiresAt = expiresAt;
+		}
+
+		private boolean isExpired() {
+			return System.currentTimeMillis() > expiresAt;
+		}
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.cache;
+
+import org.openmrs.Concept;
+import org.springframework.aop.AfterReturningAdvice;
+
+import java.lang.reflect.Method;
+
+/**
+ * Advice around {@link org.openmrs.api.ConceptService} which evicts the cached codeable concepts of the concepts
+ * being saved, retired or purged. Saving a reference term or a concept source may change the codings of any concept
+ * mapped to it, so it clears the whole cache.
+ */
+public class ConceptCodingCacheAdvice implements AfterReturningAdvice {
+
+	@Override
+	public void afterReturning(Object returnValue, Method method, Object[] args, Object target) throws Throwable {
+		String methodName = method.getName();
+		if (!isModifyingMethod(methodName)) {
+			return;
+		}
+
+		ConceptCodingCache cache = ConceptCodingCache.getInstance();
+		if (methodName.endsWith("ConceptReferenceTerm") || methodName.endsWith("ConceptSource")) {
+			cache.clear();
+			return;
+		}
+
+		for (Object arg : args) {
+			if (arg instanceof Concept && ((Concept) arg).getConceptId() != null) {
+				cache.evict(((Concept) arg).getConceptId());
+			}
+		}
+		if (returnValue instanceof Concept && ((Concept) returnValue).getConceptId() != null) {
+			cache.evict(((Concept) returnValue).getConceptId());
+		}
+	}
+
+	private boolean isModifyingMethod(String methodName) {
+		return methodName.startsWith("save") || methodName.startsWith("retire") || methodName.startsWith("unretire")
+				|| methodName.startsWith("purge");
+	}
+}
@@ -0,0 +1,213 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * The numeric observations of a person for one concept, held as a compressed series of times and values ordered by
+ * time. Times are encoded as the variable length difference between consecutive deltas, so regularly spaced
+ * observations take a byte or two each, and values as the bytes of their XOR with the previous value, so repeated or
+ * slowly changing values take little more than a header byte.
+ * <p/>
+ * Instances are immutable and never expose the encoded bytes, the series is decoded on each read.
+ */
+public class ObsTimeSeries {
+
+	/**
+	 * An approximation of the memory taken by an instance besides its encoded bytes
+	 */
+	private static final int OVERHEAD_BYTES = 64;
+
+	private final int count;
+
+	private final byte[] times;
+
+	private final byte[] values;
+
+	private ObsTimeSeries(int count, byte[] times, byte[] values) {
+		this.count = count;
+		this.times = times;
+		this.values = values;
+	}
+
+	/**
+	 * Compresses a series
+	 *
+	 * @param times  the times of the observations in milliseconds, in ascending order
+	 * @param values the values of the observations, in the same order
+	 * @return the compressed series
+	 */
+	public static ObsTimeSeries encode(long[] times, double[] values) {
+		if (times.length != values.length) {
+			throw new IllegalArgumentException("A series needs as many times as values");
+		}
+
+		ByteArrayOutputStream timeBytes = new ByteArrayOutputStream();
+		ByteArrayOutputStream valueBytes = new ByteArrayOutputStream();
+		long previousTime = 0;
+		long previousDelta = 0;
+		long previousBits = 0;
+		for (int i = 0; i < times.length; i++) {
+			long delta = times[i] - previousTime;
+			writeVarLong(timeBytes, zigZag(delta - previousDelta));
+			previousTime = times[i];
+			previousDelta = delta;
+
+			long bits = Double.doubleToLongBits(values[i]);
+			writeXor(valueBytes, bits ^ previousBits);
+			previousBits = bits;
+		}
+		return new ObsTimeSeries(times.length, timeBytes.toByteArray(), valueBytes.toByteArray());
+	}
+
+	/**
+	 * @return the number of observations in the series
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * @return an approximation of the memory taken by the series
+	 */
+	public int getByteSize() {
+		return OVERHEAD_BYTES + times.length + values.length;
+	}
+
+	/**
+	 * @return the times of the observations in milliseconds, in ascending order
+	 */
+	public long[] getTimes() {
+		long[] decoded = new long[count];
+		int[] position = new int[1];
+		long time = 0;
+		long delta = 0;
+		for (int i = 0; i < count; i++) {
+			delta += unZigZag(readVarLong(times, position));
+			time += delta;
+			decoded[i] = time;
+		}
+		return decoded;
+	}
+
+	/**
+	 * @return the values of the observations, in the order of their times
+	 */
+	public double[] getValues() {
+		double[] decoded = new double[count];
+		int[] position = new int[1];
+		long bits = 0;
+		for (int i = 0; i < count; i++) {
+			bits ^= readXor(values, position);
+			decoded[i] = Double.longBitsToDouble(bits);
+		}
+		return decoded;
+	}
+
+	/**
+	 * Averages the values falling in consecutive buckets of time
+	 *
+	 * @param start   the start of the first bucket in milliseconds
+	 * @param period  the length of each bucket in milliseconds
+	 * @param buckets the number of buckets
+	 * @return the mean value of each bucket, {@link Double#NaN} for the buckets without observations
+	 */
+	public double[] downsample(long start, long period, int buckets) {
+		double[] sums = new double[buckets];
+		int[] counts = new int[buckets];
+		long[] decodedTimes = getTimes();
+		double[] decodedValues = getValues();
+		for (int i = 0; i < count; i++) {
+			if (decodedTimes[i] < start) {
+				continue;
+			}
+			long bucket = (decodedTimes[i] - start) / period;
+			if (bucket >= buckets) {
+				break;
+			}
+			sums[(int) bucket] += decodedValues[i];
+			counts[(int) bucket]++;
+		}
+
+		double[] means = new double[buckets];
+		Arrays.fill(means, Double.NaN);
+		for (int i = 0; i < buckets; i++) {
+			if (counts[i] > 0) {
+				means[i] = sums[i] / counts[i];
+			}
+		}
+		return means;
+	}
+
+	/**
+	 * Writes an XOR as a header byte followed by its bytes between the leading and trailing zero bytes. The header is 0
+	 * for an unchanged value, otherwise 1 + 8 * leading zero bytes + trailing zero bytes.
+	 */
+	private static void writeXor(ByteArrayOutputStream out, long xor) {
+		if (xor == 0) {
+			out.write(0);
+			return;
+		}
+		int leading = Long.numberOfLeadingZeros(xor) / 8;
+		int trailing = Long.numberOfTrailingZeros(xor) / 8;
+		out.write(1 + 8 * leading + trailing);
+		for (int i = 7 - leading; i >= trailing; i--) {
+			out.write((int) (xor >>> (8 * i)) & 0xFF);
+		}
+	}
+
+	private static long readXor(byte[] in, int[] position) {
+		int header = in[position[0]++] & 0xFF;
+		if (header == 0) {
+			return 0;
+		}
+		int leading = (header - 1) / 8;
+		int trailing = (header - 1) % 8;
+		long xor = 0;
+		for (int i = 7 - leading; i >= trailing; i--) {
+			xor |= (long) (in[position[0]++] & 0xFF) << (8 * i);
+		}
+		return xor;
+	}
+
+	private static void writeVarLong(ByteArrayOutputStream out, long value) {
+		while ((value & ~0x7FL) != 0) {
+			out.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	private static long readVarLong(byte[] in, int[] position) {
+		long value = 0;
+		int shift = 0;
+		byte next;
+		do {
+			next = in[position[0]++];
+			value |= (long) (next & 0x7F) << shift;
+			shift += 7;
+		} while ((next & 0x80) != 0);
+		return value;
+	}
+
+	private static long zigZag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long unZigZag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
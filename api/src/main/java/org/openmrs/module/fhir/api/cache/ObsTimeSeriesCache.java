@@ -0,0 +1,233 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.cache;
+
+import org.openmrs.module.fhir.api.util.FHIRConstants;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the numeric observation series of persons, keyed by person id and concept id. Series are loaded lazily by
+ * the readers and evicted by {@link ObsTimeSeriesEvictionInterceptor} when an observation of their person and concept
+ * is saved, voided or deleted. The cache holds at most {@link FHIRConstants#OBS_TIME_SERIES_CACHE_MAXIMUM_BYTES}
+ * bytes, evicting the least recently used series when full.
+ * <p/>
+ * Like {@link ResourceCache} each eviction moves the cache to a new generation, and a series is only stored if no
+ * eviction happened since it was loaded, so a read racing with a new observation cannot cache the old series.
+ */
+public class ObsTimeSeriesCache {
+
+	private static final ObsTimeSeriesCache instance = new ObsTimeSeriesCache(
+			FHIRConstants.OBS_TIME_SERIES_CACHE_MAXIMUM_BYTES);
+
+	private final long maximumBytes;
+
+	private final Map<Key, ObsTimeSeries> entries = new LinkedHashMap<Key, ObsTimeSeries>(16, 0.75f, true);
+
+	private long totalBytes;
+
+	private final AtomicLong generation = new AtomicLong();
+
+	private final AtomicLong hitCount = new AtomicLong();
+
+	private final AtomicLong missCount = new AtomicLong();
+
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	/**
+	 * @param maximumBytes the maximum number of bytes held by all the series
+	 */
+	public ObsTimeSeriesCache(long maximumBytes) {
+		this.maximumBytes = maximumBytes;
+	}
+
+	public static ObsTimeSeriesCache getInstance() {
+		return instance;
+	}
+
+	/**
+	 * @return the current generation, to be read before loading a series
+	 */
+	public long getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 * Gets the series cached for a person and a concept
+	 *
+	 * @param personId  the person id
+	 * @param conceptId the concept id
+	 * @return the series, or null if it is not cached
+	 */
+	public ObsTimeSeries get(Integer personId, Integer conceptId) {
+		ObsTimeSeries series;
+		synchronized (entries) {
+			series = entries.get(new Key(personId, conceptId));
+		}
+
+		if (series == null) {
+			missCount.incrementAndGet();
+		} else {
+			hitCount.incrementAndGet();
+		}
+		return series;
+	}
+
+	/**
+	 * Caches the series loaded for a person and a concept. Nothing is cached if an eviction happened since the given
+	 * generation or if the series alone would not fit in the cache.
+	 *
+	 * @param personId   the person id
+	 * @param conceptId  the concept id
+	 * @param series     the loaded series
+	 * @param generation the generation read before the series was loaded
+	 * @return true if the series was cached
+	 */
+	public boolean put(Integer personId, Integer conceptId, ObsTimeSeries series, long generation) {
+		if (series.getByteSize() > maximumBytes) {
+			return false;
+		}
+
+		Key key = new Key(personId, conceptId);
+		synchronized (entries) {
+			if (generation != this.generation.get()) {
+				return false;
+			}
+			remove(key);
+			entries.put(key, series);
+			totalBytes += series.getByteSize();
+
+			Iterator<ObsTimeSeries> eldest = entries.values().iterator();
+			while (totalBytes > maximumBytes && eldest.hasNext()) {
+				totalBytes -= eldest.next().getByteSize();
+				eldest.remove();
+				evictionCount.incrementAndGet();
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Evicts the series cached for a person and a concept
+	 *
+	 * @param personId  the person id
+	 * @param conceptId the concept id
+	 */
+	public void evict(Integer personId, Integer conceptId) {
+		synchronized (entries) {
+			generation.incrementAndGet();
+			if (remove(new Key(personId, conceptId))) {
+				evictionCount.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Evicts every cached series
+	 */
+	public void clear() {
+		synchronized (entries) {
+			generation.incrementAndGet();
+			evictionCount.addAndGet(entries.size());
+			entries.clear();
+			totalBytes = 0;
+		}
+	}
+
+	/**
+	 * @return the number of cached series
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * @return the number of bytes held by the cached series
+	 */
+	public long getTotalBytes() {
+		synchronized (entries) {
+			return totalBytes;
+		}
+	}
+
+	/**
+	 * @return the number of reads which found a cached series
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * @return the number of reads which did not find a cached series
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * @return the number of series evicted because the cache was full or one of their observations changed
+	 */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	@Override
+	public String toString() {
+		return "ObsTimeSeriesCache[size=" + size() + ", bytes=" + getTotalBytes() + ", hits=" + getHitCount()
+				+ ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "]";
+	}
+
+	private boolean remove(Key key) {
+		ObsTimeSeries removed = entries.remove(key);
+		if (removed == null) {
+			return false;
+		}
+		totalBytes -= removed.getByteSize();
+		return true;
+	}
+
+	private static class Key {
+
+		private final Integer personId;
+
+		private final Integer conceptId;
+
+		private Key(Integer personId, Integer conceptId) {
+			this.personId = personId;
+			this.conceptId = conceptId;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return personId.equals(other.personId) && conceptId.equals(other.conceptId);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * personId.hashCode() + conceptId.hashCode();
+		}
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.cache;
+
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.Transaction;
+import org.hibernate.type.Type;
+import org.openmrs.Concept;
+import org.openmrs.Obs;
+import org.openmrs.Person;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Hibernate interceptor which evicts from the {@link ObsTimeSeriesCache} the series of the observations being saved,
+ * voided or deleted. An observation moved to another person or concept evicts both its old and its new series. It is
+ * picked up by the OpenMRS session factory like any other {@link org.hibernate.Interceptor} bean.
+ * <p/>
+ * Series are evicted when the change is first flushed and again once its transaction completes, so a series loaded
+ * from another session before the commit does not outlive it.
+ */
+public class ObsTimeSeriesEvictionInterceptor extends EmptyInterceptor {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final ThreadLocal<Set<List<Integer>>> pendingEvictions = new ThreadLocal<Set<List<Integer>>>() {
+
+		@Override
+		protected Set<List<Integer>> initialValue() {
+			return new LinkedHashSet<List<Integer>>();
+		}
+	};
+
+	@Override
+	public boolean onFlushDirty(Object entity, Serializable id, Object[] currentState, Object[] previousState,
+			String[] propertyNames, Type[] types) {
+		if (entity instanceof Obs) {
+			evict((Obs) entity);
+			if (previousState != null) {
+				evict(getProperty("person", previousState, propertyNames),
+						getProperty("concept", previousState, propertyNames));
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean onSave(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		if (entity instanceof Obs) {
+			evict((Obs) entity);
+		}
+		return false;
+	}
+
+	@Override
+	public void onDelete(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		if (entity instanceof Obs) {
+			evict((Obs) entity);
+		}
+	}
+
+	@Override
+	public void afterTransactionBegin(Transaction tx) {
+		pendingEvictions.get().clear();
+	}
+
+	@Override
+	public void afterTransactionCompletion(Transaction tx) {
+		Set<List<Integer>> evictions = pendingEvictions.get();
+		if (evictions.isEmpty()) {
+			return;
+		}
+		for (List<Integer> eviction : evictions) {
+			ObsTimeSeriesCache.getInstance().evict(eviction.get(0), eviction.get(1));
+		}
+		evictions.clear();
+	}
+
+	private void evict(Obs obs) {
+		evict(obs.getPerson(), obs.getConcept());
+	}
+
+	private void evict(Object person, Object concept) {
+		if (!(person instanceof Person) || !(concept instanceof Concept)) {
+			return;
+		}
+		Integer personId = ((Person) person).getPersonId();
+		Integer conceptId = ((Concept) concept).getConceptId();
+		if (personId == null || conceptId == null) {
+			return;
+		}
+		if (pendingEvictions.get().add(Arrays.asList(personId, conceptId))) {
+			ObsTimeSeriesCache.getInstance().evict(personId, conceptId);
+		}
+	}
+
+	private Object getProperty(String name, Object[] state, String[] propertyNames) {
+		for (int i = 0; i < propertyNames.length; i++) {
+			if (name.equals(propertyNames[i])) {
+				return state[i];
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,288 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.cache;
+
+import ca.uhn.fhir.rest.server.EncodingEnum;
+import org.openmrs.module.fhir.api.util.FHIRConstants;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the encoded bytes of the resources read through the REST server, keyed by resource type, uuid and encoding.
+ * Each entry remembers the last modified date of the OpenMRS object it was generated from, as returned by
+ * {@link org.openmrs.module.fhir.api.db.FHIRDao#getLastModified}, and is only served while that date has not moved, so
+ * an update made outside of this JVM never returns a stale resource. The cache holds at most
+ * {@link FHIRConstants#RESOURCE_CACHE_MAXIMUM_BYTES} bytes, evicting the least recently used entries when full.
+ * <p/>
+ * Changes which do not move that date, like a new patient attribute, are evicted by
+ * {@link ResourceCacheEvictionInterceptor}. Each eviction moves the cache to a new generation, and an entry is only
+ * stored if no eviction happened since its object was loaded, so a read racing with an update cannot cache the old
+ * resource.
+ */
+public class ResourceCache {
+
+	private static final ResourceCache instance = new ResourceCache(FHIRConstants.RESOURCE_CACHE_MAXIMUM_BYTES);
+
+	private final long maximumBytes;
+
+	private final Map<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+
+	private long totalBytes;
+
+	private final AtomicLong generation = new AtomicLong();
+
+	private final AtomicLong hitCount = new AtomicLong();
+
+	private final AtomicLong missCount = new AtomicLong();
+
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	/**
+	 * @param maximumBytes the maximum number of bytes held by all the entries
+	 */
+	public ResourceCache(long maximumBytes) {
+		this.maximumBytes = maximumBytes;
+	}
+
+	public static ResourceCache getInstance() {
+		return instance;
+	}
+
+	/**
+	 * @return the current generation, to be read before loading an object whose resource may be cached
+	 */
+	public long getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 * Gets the encoded resource cached for an OpenMRS object
+	 *
+	 * @param type         the resource type
+	 * @param uuid         the uuid of the OpenMRS object
+	 * @param lastModified the current last modified date of the OpenMRS object
+	 * @param encoding     the encoding of the resource
+	 * @return the encoded resource, or null if it is not cached or the object changed since it was cached
+	 */
+	public byte[] get(CachedResourceType type, String uuid, Date lastModified, EncodingEnum encoding) {
+		Key key = new Key(type, uuid, encoding);
+		byte[] content = null;
+		synchronized (entries) {
+			Entry entry = entries.get(key);
+			if (entry != null) {
+				if (entry.lastModified == lastModified.getTime()) {
+					content = entry.content;
+				} else {
+					remove(key);
+					evictionCount.incrementAndGet();
+				}
+			}
+		}
+
+		if (content == null) {
+			missCount.incrementAndGet();
+			return null;
+		}
+		hitCount.incrementAndGet();
+		return content;
+	}
+
+	/**
+	 * Caches the encoded resource generated for an OpenMRS object. Nothing is cached if an eviction happened since
+	 * the given generation or if the resource alone would not fit in the cache.
+	 *
+	 * @param type         the resource type
+	 * @param uuid         the uuid of the OpenMRS object
+	 * @param lastModified the last modified date the OpenMRS object had when it was loaded
+	 * @param encoding     the encoding of the resource
+	 * @param content      the encoded resource, which must not be modified afterwards
+	 * @param generation   the generation read before the OpenMRS object was loaded
+	 * @return true if the resource was cached
+	 */
+	public boolean put(CachedResourceType type, String uuid, Date lastModified, EncodingEnum encoding, byte[] content,
+			long generation) {
+		if (content.length > maximumBytes) {
+			return false;
+		}
+
+		Key key = new Key(type, uuid, encoding);
+		synchronized (entries) {
+			if (generation != this.generation.get()) {
+				return false;
+			}
+			remove(key);
+			entries.put(key, new Entry(lastModified.getTime(), content));
+			totalBytes += content.length;
+
+			Iterator<Entry> eldest = entries.values().iterator();
+			while (totalBytes > maximumBytes && eldest.hasNext()) {
+				totalBytes -= eldest.next().content.length;
+				eldest.remove();
+				evictionCount.incrementAndGet();
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Evicts the resource cached for an OpenMRS object in every encoding
+	 *
+	 * @param type the resource type
+	 * @param uuid the uuid of the OpenMRS object
+	 */
+	public void evict(CachedResourceType type, String uuid) {
+		synchronized (entries) {
+			generation.incrementAndGet();
+			for (EncodingEnum encoding : EncodingEnum.values()) {
+				if (remove(new Key(type, uuid, encoding))) {
+					evictionCount.incrementAndGet();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Evicts every cached resource of a type
+	 *
+	 * @param type the resource type
+	 */
+	public void evictAll(CachedResourceType type) {
+		synchronized (entries) {
+			generation.incrementAndGet();
+			Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+			while (iterator.hasNext()) {
+				Map.Entry<Key, Entry> next = iterator.next();
+				if (next.getKey().type == type) {
+					totalBytes -= next.getValue().content.length;
+					iterator.remove();
+					evictionCount.incrementAndGet();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Evicts every cached resource
+	 */
+	public void clear() {
+		synchronized (entries) {
+			generation.incrementAndGet();
+			evictionCount.addAndGet(entries.size());
+			entries.clear();
+			totalBytes = 0;
+		}
+	}
+
+	/**
+	 * @return the number of cached resources
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * @return the number of bytes held by the cached resources
+	 */
+	public long getTotalBytes() {
+		synchronized (entries) {
+			return totalBytes;
+		}
+	}
+
+	/**
+	 * @return the number of reads which found a current cached resource
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * @return the number of reads which did not find a current cached resource
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * @return the number of entries evicted because the cache was full or their object changed
+	 */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	@Override
+	public String toString() {
+		return "ResourceCache[size=" + size() + ", bytes=" + getTotalBytes() + ", hits=" + getHitCount() + ", misses="
+				+ getMissCount() + ", evictions=" + getEvictionCount() + "]";
+	}
+
+	private boolean remove(Key key) {
+		Entry removed = entries.remove(key);
+		if (removed == null) {
+			return false;
+		}
+		totalBytes -= removed.content.length;
+		return true;
+	}
+
+	private static class Key {
+
+		private final CachedResourceType type;
+
+		private final String uuid;
+
+		private final EncodingEnum encoding;
+
+		private Key(CachedResourceType type, String uuid, EncodingEnum encoding) {
+			this.type = type;
+			this.uuid = uuid;
+			this.encoding = encoding;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return type == other.type && encoding == other.encoding && uuid.equals(other.uuid);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * type.hashCode() + uuid.hashCode()) + encoding.hashCode();
+		}
+	}
+
+	private static class Entry {
+
+		private final long lastModified;
+
+		private final byte[] content;
+
+		private Entry(long lastModified, byte[] content) {
+			this.lastModified = lastModified;
+			this.content = content;
+		}
+	}
+}
@@ -0,0 +1,173 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.cache;
+
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.Transaction;
+import org.hibernate.type.Type;
+import org.openmrs.Concept;
+import org.openmrs.ConceptMap;
+import org.openmrs.ConceptName;
+import org.openmrs.Drug;
+import org.openmrs.Location;
+import org.openmrs.PatientIdentifier;
+import org.openmrs.Person;
+import org.openmrs.PersonAddress;
+import org.openmrs.PersonAttribute;
+import org.openmrs.PersonName;
+import org.openmrs.Provider;
+
+import java.io.Serializable;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Hibernate interceptor which evicts from the {@link ResourceCache} the resources generated from the objects being
+ * saved, updated or deleted, including the changes to objects like names or identifiers which end up in the resource
+ * of another object. It is picked up by the OpenMRS session factory like any other {@link org.hibernate.Interceptor}
+ * bean.
+ * <p/>
+ * Resources are evicted when the change is first flushed and again once its transaction completes, so a resource
+ * cached from another session before the commit does not outlive it.
+ */
+public class ResourceCacheEvictionInterceptor extends EmptyInterceptor {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final ThreadLocal<Set<Eviction>> pendingEvictions = new ThreadLocal<Set<Eviction>>() {
+
+		@Override
+		protected Set<Eviction> initialValue() {
+			return new LinkedHashSet<Eviction>();
+		}
+	};
+
+	@Override
+	public boolean onFlushDirty(Object entity, Serializable id, Object[] currentState, Object[] previousState,
+			String[] propertyNames, Type[] types) {
+		evict(entity);
+		return false;
+	}
+
+	@Override
+	public boolean onSave(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		evict(entity);
+		return false;
+	}
+
+	@Override
+	public void onDelete(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		evict(entity);
+	}
+
+	@Override
+	public void afterTransactionBegin(Transaction tx) {
+		pendingEvictions.get().clear();
+	}
+
+	@Override
+	public void afterTransactionCompletion(Transaction tx) {
+		Set<Eviction> evictions = pendingEvictions.get();
+		if (evictions.isEmpty()) {
+			return;
+		}
+		for (Eviction eviction : evictions) {
+			eviction.apply();
+		}
+		evictions.clear();
+	}
+
+	private void evict(Object entity) {
+		if (entity instanceof Person) {
+			evictPerson((Person) entity);
+		} else if (entity instanceof PersonName) {
+			evictPerson(((PersonName) entity).getPerson());
+		} else if (entity instanceof PersonAddress) {
+			evictPerson(((PersonAddress) entity).getPerson());
+		} else if (entity instanceof PersonAttribute) {
+			evictPerson(((PersonAttribute) entity).getPerson());
+		} else if (entity instanceof PatientIdentifier) {
+			evictPerson(((PatientIdentifier) entity).getPatient());
+		} else if (entity instanceof Provider) {
+			evict(CachedResourceType.PRACTITIONER, ((Provider) entity).getUuid());
+		} else if (entity instanceof Location) {
+			// a location resource shows the name of its parent
+			evict(CachedResourceType.LOCATION, null);
+		} else if (entity instanceof Drug) {
+			evict(CachedResourceType.MEDICATION, ((Drug) entity).getUuid());
+		} else if (entity instanceof Concept || entity instanceof ConceptName || entity instanceof ConceptMap) {
+			evict(CachedResourceType.MEDICATION, null);
+		}
+	}
+
+	/**
+	 * The practitioner resources show the names and addresses of their person, whose providers are not known here, so
+	 * all of them are evicted
+	 */
+	private void evictPerson(Person person) {
+		if (person == null) {
+			return;
+		}
+		evict(CachedResourceType.PATIENT, person.getUuid());
+		evict(CachedResourceType.PRACTITIONER, null);
+	}
+
+	/**
+	 * @param type the resource type
+	 * @param uuid the uuid of the OpenMRS object, or null to evict every resource of the type
+	 */
+	private void evict(CachedResourceType type, String uuid) {
+		Eviction eviction = new Eviction(type, uuid);
+		if (pendingEvictions.get().add(eviction)) {
+			eviction.apply();
+		}
+	}
+
+	private static class Eviction {
+
+		private final CachedResourceType type;
+
+		private final String uuid;
+
+		private Eviction(CachedResourceType type, String uuid) {
+			this.type = type;
+			this.uuid = uuid;
+		}
+
+		private void apply() {
+			if (uuid == null) {
+				ResourceCache.getInstance().evictAll(type);
+			} else {
+				ResourceCache.getInstance().evict(type, uuid);
+			}
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Eviction)) {
+				return false;
+			}
+			Eviction other = (Eviction) o;
+			return type == other.type && (uuid == null ? other.uuid == null : uuid.equals(other.uuid));
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * type.hashCode() + (uuid == null ? 0 : uuid.hashCode());
+		}
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.changelog;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * A row of the fhir_change_log table, recording that a resource was created, updated or deleted. Only the type and
+ * the id of the resource are recorded, its content is read from the OpenMRS objects when needed.
+ */
+public class ChangeLogEntry implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final String CREATE = "CREATE";
+
+	public static final String UPDATE = "UPDATE";
+
+	public static final String DELETE = "DELETE";
+
+	private Integer changeLogId;
+
+	private String resourceType;
+
+	private String resourceUuid;
+
+	private String operation;
+
+	private Date changedAt;
+
+	public ChangeLogEntry() {
+	}
+
+	/**
+	 * Creates the summary of the changes of a resource, as returned by the change log queries
+	 *
+	 * @param resourceType the resource type
+	 * @param resourceUuid the id of the resource
+	 * @param changedAt    the time of its last change
+	 */
+	public ChangeLogEntry(String resourceType, String resourceUuid, Date changedAt) {
+		this.resourceType = resourceType;
+		this.resourceUuid = resourceUuid;
+		this.changedAt = changedAt;
+	}
+
+	public Integer getChangeLogId() {
+		return changeLogId;
+	}
+
+	public void setChangeLogId(Integer changeLogId) {
+		this.changeLogId = changeLogId;
+	}
+
+	public String getResourceType() {
+		return resourceType;
+	}
+
+	public void setResourceType(String resourceType) {
+		this.resourceType = resourceType;
+	}
+
+	public String getResourceUuid() {
+		return resourceUuid;
+	}
+
+	public void setResourceUuid(String resourceUuid) {
+		this.resourceUuid = resourceUuid;
+	}
+
+	/**
+	 * @return one of {@link #CREATE}, {@link #UPDATE} or {@link #DELETE}
+	 */
+	public String getOperation() {
+		return operation;
+	}
+
+	public void setOperation(String operation) {
+		this.operation = operation;
+	}
+
+	public Date getChangedAt() {
+		return changedAt;
+	}
+
+	public void setChangedAt(Date changedAt) {
+		this.changedAt = changedAt;
+	}
+}
@@ -0,0 +1,270 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.changelog;
+
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.jdbc.Work;
+import org.hibernate.type.Type;
+import org.openmrs.Cohort;
+import org.openmrs.DrugOrder;
+import org.openmrs.Encounter;
+import org.openmrs.Location;
+import org.openmrs.Obs;
+import org.openmrs.Patient;
+import org.openmrs.PatientIdentifier;
+import org.openmrs.Person;
+import org.openmrs.PersonAddress;
+import org.openmrs.PersonAttribute;
+import org.openmrs.PersonName;
+import org.openmrs.Provider;
+import org.openmrs.Relationship;
+import org.openmrs.Retireable;
+import org.openmrs.Visit;
+import org.openmrs.Voidable;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.bundle.BundleEntryType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Hibernate interceptor which records in the fhir_change_log table the resources created, updated and deleted by
+ * each transaction. Saving or voiding a mapped OpenMRS object, or one of the objects shown in the resource of another
+ * one like the name of a patient, records a change of the resources generated from it. Voided and retired objects
+ * are recorded as deleted.
+ * <p/>
+ * The changes of a transaction are collected as it is flushed, merged per resource and inserted with plain JDBC just
+ * before it commits, so they are committed or rolled back with it. They are all stamped with the time of the commit
+ * rather than of the flush, so a change cannot be dated earlier than changes already visible to the readers by more
+ * than the time the commit itself takes. Nothing is recorded while the table does not exist, which is the case until
+ * the module's Liquibase changes have run.
+ */
+public class ChangeLogInterceptor extends EmptyInterceptor {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger log = LoggerFactory.getLogger(ChangeLogInterceptor.class);
+
+	private static final String TABLE = "fhir_change_log";
+
+	private static final String INSERT = "insert into " + TABLE
+			+ " (resource_type, resource_uuid, operation, changed_at) values (?, ?, ?, ?)";
+
+	private static final ThreadLocal<Map<String, ChangeLogEntry>> pendingChanges =
+			new ThreadLocal<Map<String, ChangeLogEntry>>() {
+
+				@Override
+				protected Map<String, ChangeLogEntry> initialValue() {
+					return new LinkedHashMap<String, ChangeLogEntry>();
+				}
+			};
+
+	private transient volatile Boolean tableExists;
+
+	@Override
+	public boolean onSave(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		record(entity, ChangeLogEntry.CREATE);
+		return false;
+	}
+
+	@Override
+	public boolean onFlushDirty(Object entity, Serializable id, Object[] currentState, Object[] previousState,
+			String[] propertyNames, Type[] types) {
+		record(entity, ChangeLogEntry.UPDATE);
+		return false;
+	}
+
+	@Override
+	public void onDelete(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		record(entity, ChangeLogEntry.DELETE);
+	}
+
+	@Override
+	public void afterTransactionBegin(Transaction tx) {
+		pendingChanges.get().clear();
+	}
+
+	@Override
+	public void beforeTransactionCompletion(Transaction tx) {
+		final Map<String, ChangeLogEntry> changes = pendingChanges.get();
+		if (changes.isEmpty() || Boolean.FALSE.equals(tableExists)) {
+			changes.clear();
+			return;
+		}
+
+		Date committedAt = new Date();
+		for (ChangeLogEntry change : changes.values()) {
+			change.setChangedAt(committedAt);
+		}
+		try {
+			getSessionFactory().getCurrentSession().doWork(new Work() {
+
+				@Override
+				public void execute(Connection connection) throws SQLException {
+					if (tableExists == null) {
+						tableExists = tableExists(connection);
+						if (!tableExists) {
+							log.warn("The {} table does not exist, the changes to the FHIR resources are not recorded",
+									TABLE);
+							return;
+						}
+					}
+					insert(connection, changes);
+				}
+			});
+		}
+		finally {
+			changes.clear();
+		}
+	}
+
+	@Override
+	public void afterTransactionCompletion(Transaction tx) {
+		pendingChanges.get().clear();
+	}
+
+	private void record(Object entity, String operation) {
+		if (!ChangeLogEntry.DELETE.equals(operation) && isVoidedOrRetired(entity)) {
+			operation = ChangeLogEntry.DELETE;
+		}
+
+		if (entity instanceof Patient) {
+			record(BundleEntryType.PATIENT, ((Patient) entity).getUuid(), operation, false);
+			record(BundleEntryType.PERSON, ((Patient) entity).getUuid(), operation, false);
+		} else if (entity instanceof Person) {
+			recordPerson((Person) entity, operation, false);
+		} else if (entity instanceof PersonName) {
+			recordPerson(((PersonName) entity).getPerson(), ChangeLogEntry.UPDATE, true);
+		} else if (entity instanceof PersonAddress) {
+			recordPerson(((PersonAddress) entity).getPerson(), ChangeLogEntry.UPDATE, true);
+		} else if (entity instanceof PersonAttribute) {
+			recordPerson(((PersonAttribute) entity).getPerson(), ChangeLogEntry.UPDATE, true);
+		} else if (entity instanceof PatientIdentifier) {
+			Patient patient = ((PatientIdentifier) entity).getPatient();
+			if (patient != null) {
+				record(BundleEntryType.PATIENT, patient.getUuid(), ChangeLogEntry.UPDATE, true);
+			}
+		} else if (entity instanceof Provider) {
+			record(BundleEntryType.PRACTITIONER, ((Provider) entity).getUuid(), operation, false);
+		} else if (entity instanceof Location) {
+			record(BundleEntryType.LOCATION, ((Location) entity).getUuid(), operation, false);
+		} else if (entity instanceof Encounter) {
+			record(BundleEntryType.ENCOUNTER, ((Encounter) entity).getUuid(), operation, false);
+		} else if (entity instanceof Visit) {
+			record(BundleEntryType.ENCOUNTER, ((Visit) entity).getUuid(), operation, false);
+		} else if (entity instanceof Obs) {
+			record(BundleEntryType.OBSERVATION, ((Obs) entity).getUuid(), operation, false);
+		} else if (entity instanceof Relationship) {
+			record(BundleEntryType.RELATED_PERSON, ((Relationship) entity).getUuid(), operation, false);
+		} else if (entity instanceof Cohort) {
+			record(BundleEntryType.GROUP, ((Cohort) entity).getUuid(), operation, false);
+		} else if (entity instanceof DrugOrder) {
+			record(BundleEntryType.MEDICATION_REQUEST, ((DrugOrder) entity).getUuid(), operation, false);
+		}
+	}
+
+	private void recordPerson(Person person, String operation, boolean dependent) {
+		if (person == null) {
+			return;
+		}
+		record(BundleEntryType.PERSON, person.getUuid(), operation, dependent);
+		if (person.isPatient()) {
+			record(BundleEntryType.PATIENT, person.getUuid(), operation, dependent);
+		}
+	}
+
+	/**
+	 * Merges a change with the earlier changes of the resource in the transaction. The last change of the object
+	 * itself wins, so that an object voided and unvoided again is updated, except that a created resource stays
+	 * created unless it is deleted. The change of a dependent object, like a name voided with its patient, never
+	 * overrides the change of the resource.
+	 *
+	 * @param dependent whether the change is that of an object shown in the resource rather than of its own object
+	 */
+	private void record(BundleEntryType type, String uuid, String operation, boolean dependent) {
+		if (uuid == null) {
+			return;
+		}
+		String key = type.getResourceName() + "/" + uuid;
+		Map<String, ChangeLogEntry> changes = pendingChanges.get();
+		ChangeLogEntry change = changes.get(key);
+		if (change == null) {
+			change = new ChangeLogEntry(type.getResourceName(), uuid, null);
+			change.setOperation(operation);
+			changes.put(key, change);
+			return;
+		}
+		boolean createdAndUpdated = ChangeLogEntry.CREATE.equals(change.getOperation())
+				&& ChangeLogEntry.UPDATE.equals(operation);
+		if (!dependent && !createdAndUpdated) {
+			change.setOperation(operation);
+		}
+	}
+
+	private boolean isVoidedOrRetired(Object entity) {
+		if (entity instanceof Voidable) {
+			return Boolean.TRUE.equals(((Voidable) entity).isVoided());
+		}
+		return entity instanceof Retireable && Boolean.TRUE.equals(((Retireable) entity).isRetired());
+	}
+
+	private void insert(Connection connection, Map<String, ChangeLogEntry> changes) throws SQLException {
+		PreparedStatement statement = connection.prepareStatement(INSERT);
+		try {
+			for (ChangeLogEntry change : changes.values()) {
+				statement.setString(1, change.getResourceType());
+				statement.setString(2, change.getResourceUuid());
+				statement.setString(3, change.getOperation());
+				statement.setTimestamp(4, new Timestamp(change.getChangedAt().getTime()));
+				statement.addBatch();
+			}
+			statement.executeBatch();
+		}
+		finally {
+			statement.close();
+		}
+	}
+
+	private boolean tableExists(Connection connection) throws SQLException {
+		DatabaseMetaData metaData = connection.getMetaData();
+		for (String name : new String[] { TABLE, TABLE.toUpperCase() }) {
+			ResultSet tables = metaData.getTables(connection.getCatalog(), null, name, null);
+			try {
+				if (tables.next()) {
+					return true;
+				}
+			}
+			finally {
+				tables.close();
+			}
+		}
+		return false;
+	}
+
+	private SessionFactory getSessionFactory() {
+		return Context.getRegisteredComponent("sessionFactory", SessionFactory.class);
+	}
+}
@@ -0,0 +1,44 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.changelog;
+
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.ChangeLogService;
+import org.openmrs.scheduler.tasks.AbstractTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Scheduled task deleting the changes older than the retention period from the fhir_change_log table, so that the
+ * table does not grow with every change ever made. Registered to run daily by the module's Liquibase changes.
+ */
+public class PurgeChangeLogTask extends AbstractTask {
+
+	private static final Logger log = LoggerFactory.getLogger(PurgeChangeLogTask.class);
+
+	@Override
+	public void execute() {
+		if (isExecuting) {
+			return;
+		}
+		startExecuting();
+		try {
+			int purged = Context.getService(ChangeLogService.class).purgeExpiredChanges();
+			log.info("Purged {} expired changes from the FHIR change log", purged);
+		}
+		finally {
+			stopExecuting();
+		}
+	}
+}
@@ -1,7 +1,5 @@
 package org.openmrs.module.fhir.api.client;
 
-import ca.uhn.fhir.context.FhirContext;
-import ca.uhn.fhir.parser.IParser;
 import org.hl7.fhir.dstu3.model.AllergyIntolerance;
 import org.hl7.fhir.dstu3.model.Encounter;
 import org.hl7.fhir.dstu3.model.Group;
@@ -13,6 +11,7 @@ import org.hl7.fhir.dstu3.model.Practitioner;
 import org.hl7.fhir.dstu3.model.Person;
 import org.hl7.fhir.dstu3.model.ProcedureRequest;
 import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.openmrs.module.fhir.api.manager.FHIRContextFactory;
 import org.springframework.http.HttpInputMessage;
 import org.springframework.http.HttpOutputMessage;
 import org.springframework.http.MediaType;
@@ -57,8 +56,6 @@ public class FHIRHttpMessageConverter extends AbstractHttpMessageConverter<IBase
 		SUPPORTED_CLASSES.add(ProcedureRequest.class);
 	}
 
-	private IParser parser = FhirContext.forDstu3().newJsonParser();
-
 	public FHIRHttpMessageConverter() {
 		super(new MediaType(TYPE, SUBTYPE_1, Charset.forName(CHARSET)),
 				new MediaType(TYPE, SUBTYPE_2, Charset.forName(CHARSET)));
@@ -74,7 +71,7 @@ public class FHIRHttpMessageConverter extends AbstractHttpMessageConverter<IBase
 			HttpMessageNotReadableException {
 		try {
 			String json = convertStreamToString(inputMessage.getBody());
-			return parser.parseResource(json);
+			return FHIRContextFactory.getJsonParser().parseResource(json);
 		}
 		catch (IOException e) {
 			throw new HttpMessageNotReadableException("Could not read JSON: " + e.getMessage(), e);
@@ -84,7 +81,7 @@ public class FHIRHttpMessageConverter extends AbstractHttpMessageConverter<IBase
 	@Override
 	protected void writeInternal(IBaseResource o, HttpOutputMessage outputMessage) throws HttpMessageNotWritableException {
 		try {
-			String json = parser.encodeResourceToString(o);
+			String json = FHIRContextFactory.getJsonParser().encodeResourceToString(o);
 			outputMessage.getBody().write(json.getBytes());
 		}
 		catch (IOException e) {
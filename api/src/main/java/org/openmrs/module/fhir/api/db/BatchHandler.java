@@ -0,0 +1,31 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.db;
+
+import java.util.List;
+
+/**
+ * Receives the objects read by a {@link FHIRDao} cursor, a batch at a time. The objects of a batch are evicted from
+ * the Hibernate session once {@link #handle(List)} returns, so they must be fully used, lazy associations included,
+ * before then.
+ *
+ * @param <T> the type of the objects read
+ */
+public interface BatchHandler<T> {
+
+	/**
+	 * @param batch the next objects read, in the order of the query
+	 */
+	void handle(List<T> batch);
+}
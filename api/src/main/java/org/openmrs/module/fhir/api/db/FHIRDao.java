@@ -13,9 +13,22 @@
  */
 package org.openmrs.module.fhir.api.db;
 
+import org.openmrs.Concept;
+import org.openmrs.ConceptNumeric;
+import org.openmrs.Encounter;
+import org.openmrs.Location;
+import org.openmrs.Obs;
+import org.openmrs.OpenmrsObject;
 import org.openmrs.Order;
+import org.openmrs.Patient;
+import org.openmrs.Person;
+import org.openmrs.Provider;
+import org.openmrs.module.fhir.api.cache.ObsTimeSeries;
+import org.openmrs.module.fhir.api.changelog.ChangeLogEntry;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -40,4 +53,361 @@ public interface FHIRDao {
 	 * @return the id of the encounter to get
 	 */
 	Integer getEncounterIdForObsOrder(int orderId);
+
+	/**
+	 * Counts the non voided observations matching the given criteria
+	 *
+	 * @param criteria the restrictions on the observations
+	 * @return the number of matching observations
+	 */
+	long getObsCount(ObsSearchCriteria criteria);
+
+	/**
+	 * Gets a page of the non voided observations matching the given criteria, ordered by their date time and, for
+	 * observations made at the same time, by their id
+	 *
+	 * @param criteria    the restrictions on the observations
+	 * @param firstResult the index of the first observation to return
+	 * @param maxResults  the maximum number of observations to return
+	 * @return the matching observations
+	 */
+	List<Obs> getObs(ObsSearchCriteria criteria, int firstResult, int maxResults);
+
+	/**
+	 * Reads a page of the non voided observations matching the given criteria with a forward only cursor, in the
+	 * order of {@link #getObs(ObsSearchCriteria, int, int)}. The observations are handed over in batches and evicted
+	 * from the session after each batch, so the memory held by the session does not grow with the page. It must only
+	 * be used to read observations.
+	 *
+	 * @param criteria    the restrictions on the observations
+	 * @param firstResult the index of the first observation to read
+	 * @param maxResults  the maximum number of observations to read
+	 * @param batchSize   the number of observations fetched from the database and handed over at a time
+	 * @param handler     receives the observations
+	 */
+	void scrollObs(ObsSearchCriteria criteria, int firstResult, int maxResults, int batchSize,
+			BatchHandler<Obs> handler);
+
+	/**
+	 * Gets the most recent non voided observations of a person for each of their question concepts. The top
+	 * observations of every concept are selected by the database.
+	 *
+	 * @param person   the person the observations belong to
+	 * @param concepts if not null or empty only observations of these question concepts are returned
+	 * @param max      the maximum number of observations to return per concept
+	 * @return the selected observations, grouped by concept and most recent first
+	 */
+	List<Obs> getLatestObs(Person person, List<Concept> concepts, int max);
+
+	/**
+	 * Loads the numeric values of the non voided observations of a person for a concept, without loading the
+	 * observations themselves
+	 *
+	 * @param person  the person the observations belong to
+	 * @param concept the question concept of the observations
+	 * @return the compressed series of the observation date times and values, oldest first
+	 */
+	ObsTimeSeries getObsTimeSeries(Person person, Concept concept);
+
+	/**
+	 * Aggregates in the database the numeric values of the non voided observations of a concept
+	 *
+	 * @param concept   the question concept of the observations
+	 * @param personIds if not null only observations of these persons are aggregated
+	 * @param fromDate  if not null only observations made at or after this date time are aggregated
+	 * @param toDate    if not null only observations made at or before this date time are aggregated
+	 * @return the count, sum, minimum, maximum, first and last value of the observations
+	 */
+	ObsStatistics getObsStatistics(Concept concept, Collection<Integer> personIds, Date fromDate, Date toDate);
+
+	/**
+	 * Counts the patients by their voided status
+	 *
+	 * @param voided true to count voided patients, false to count active ones
+	 * @return the number of matching patients
+	 */
+	long getPatientCount(boolean voided);
+
+	/**
+	 * Gets a page of patients by their voided status, ordered by patient id
+	 *
+	 * @param voided      true to get voided patients, false to get active ones
+	 * @param afterId     if not null only patients with a greater patient id are returned
+	 * @param firstResult the index of the first patient to return
+	 * @param maxResults  the maximum number of patients to return
+	 * @return the matching patients
+	 */
+	List<Patient> getPatients(boolean voided, Integer afterId, int firstResult, int maxResults);
+
+	/**
+	 * Counts the non voided patients having a non voided name matching the given parts. Each patient is counted once,
+	 * however many of its names match. Null name parts are ignored.
+	 *
+	 * @param givenName  the given name to match
+	 * @param familyName the family name to match
+	 * @param matchMode  how the name parts are matched
+	 * @return the number of matching patients
+	 */
+	long getPatientCountByName(String givenName, String familyName, StringMatchMode matchMode);
+
+	/**
+	 * Gets a page of the non voided patients having a non voided name matching the given parts, ordered by patient
+	 * id. Null name parts are ignored.
+	 *
+	 * @param givenName   the given name to match
+	 * @param familyName  the family name to match
+	 * @param matchMode   how the name parts are matched
+	 * @param afterId     if not null only patients with a greater patient id are returned
+	 * @param firstResult the index of the first patient to return
+	 * @param maxResults  the maximum number of patients to return
+	 * @return the matching patients
+	 */
+	List<Patient> getPatientsByName(String givenName, String familyName, StringMatchMode matchMode, Integer afterId,
+			int firstResult, int maxResults);
+
+	/**
+	 * Counts the non retired providers whose person has a non voided name matching the given parts. Null name parts
+	 * are ignored.
+	 *
+	 * @param givenName  the given name to match
+	 * @param familyName the family name to match
+	 * @param matchMode  how the name parts are matched
+	 * @return the number of matching providers
+	 */
+	long getProviderCountByName(String givenName, String familyName, StringMatchMode matchMode);
+
+	/**
+	 * Gets a page of the non retired providers whose person has a non voided name matching the given parts, ordered
+	 * by provider id. Null name parts are ignored.
+	 *
+	 * @param givenName   the given name to match
+	 * @param familyName  the family name to match
+	 * @param matchMode   how the name parts are matched
+	 * @param afterId     if not null only providers with a greater provider id are returned
+	 * @param firstResult the index of the first provider to return
+	 * @param maxResults  the maximum number of providers to return
+	 * @return the matching providers
+	 */
+	List<Provider> getProvidersByName(String givenName, String familyName, StringMatchMode matchMode, Integer afterId,
+			int firstResult, int maxResults);
+
+	/**
+	 * Counts the locations by their retired status and name
+	 *
+	 * @param retired   true to count retired locations, false to count active ones
+	 * @param name      if not null only locations whose name matches it are counted
+	 * @param matchMode how the name is matched
+	 * @return the number of matching locations
+	 */
+	long getLocationCount(boolean retired, String name, StringMatchMode matchMode);
+
+	/**
+	 * Gets a page of locations by their retired status and name, ordered by location id
+	 *
+	 * @param retired     true to get retired locations, false to get active ones
+	 * @param name        if not null only locations whose name matches it are returned
+	 * @param matchMode   how the name is matched
+	 * @param afterId     if not null only locations with a greater location id are returned
+	 * @param firstResult the index of the first location to return
+	 * @param maxResults  the maximum number of locations to return
+	 * @return the matching locations
+	 */
+	List<Location> getLocations(boolean retired, String name, StringMatchMode matchMode, Integer afterId,
+			int firstResult, int maxResults);
+
+	/**
+	 * Gets the ids of the non voided encounters of a patient, oldest first
+	 *
+	 * @param patient the patient the encounters belong to
+	 * @param since   if not null only encounters created or changed at or after this date are returned
+	 * @return the encounter ids
+	 */
+	List<Integer> getEncounterIds(Patient patient, Date since);
+
+	/**
+	 * Gets the ids of the non voided observations recorded in the non voided encounters of a patient
+	 *
+	 * @param patient         the patient the observations belong to
+	 * @param since           if not null only observations created at or after this date are returned
+	 * @param excludedConcept if not null observations of this question concept are left out
+	 * @return the observation ids
+	 */
+	List<Integer> getEncounterObsIds(Patient patient, Date since, Concept excludedConcept);
+
+	/**
+	 * Gets the distinct ids of the providers of the non voided encounters of a patient
+	 *
+	 * @param patient the patient the encounters belong to
+	 * @param since   if not null only encounters created or changed at or after this date are considered
+	 * @return the provider ids
+	 */
+	List<Integer> getEncounterProviderIds(Patient patient, Date since);
+
+	/**
+	 * Gets the ids of the non voided visits of a patient, oldest first
+	 *
+	 * @param patient the patient the visits belong to
+	 * @param since   if not null only visits created or changed at or after this date are returned
+	 * @return the visit ids
+	 */
+	List<Integer> getVisitIds(Patient patient, Date since);
+
+	/**
+	 * Gets the distinct ids of the locations of the non voided encounters and visits of a patient
+	 *
+	 * @param patient the patient the encounters and visits belong to
+	 * @param since   if not null only encounters and visits created or changed at or after this date are considered
+	 * @return the location ids
+	 */
+	List<Integer> getPatientLocationIds(Patient patient, Date since);
+
+	/**
+	 * Gets observations by their ids
+	 *
+	 * @param obsIds the observation ids
+	 * @return the observations, in no particular order
+	 */
+	List<Obs> getObsByIds(Collection<Integer> obsIds);
+
+	/**
+	 * Loads persons together with their names in one query
+	 *
+	 * @param personIds the person ids
+	 * @return the persons, in no particular order
+	 */
+	List<Person> getPersonsWithNames(Collection<Integer> personIds);
+
+	/**
+	 * Loads the patients among the given persons together with their identifiers in one query
+	 *
+	 * @param personIds the person ids
+	 * @return the persons which are patients, in no particular order
+	 */
+	List<Patient> getPatientsWithIdentifiers(Collection<Integer> personIds);
+
+	/**
+	 * Initializes the providers of the given encounters in one query
+	 *
+	 * @param encounters encounters attached to the current session
+	 */
+	void initializeEncounterProviders(Collection<Encounter> encounters);
+
+	/**
+	 * Initializes what {@link org.openmrs.module.fhir.api.util.FHIRPatientUtil#generatePatient(Patient)} reads from
+	 * the given patients: their identifiers with their types, names, addresses and attributes with their types, in one
+	 * query whatever the number of patients
+	 *
+	 * @param patients patients attached to the current session
+	 */
+	void initializePatients(Collection<Patient> patients);
+
+	/**
+	 * Initializes what {@link org.openmrs.module.fhir.api.util.FHIREncounterUtil#generateEncounter(Encounter)} reads
+	 * from the given encounters: their type, location, form, visit with its type, patient names and identifiers and
+	 * providers with their roles, in one query whatever the number of encounters
+	 *
+	 * @param encounters encounters attached to the current session
+	 */
+	void initializeEncounters(Collection<Encounter> encounters);
+
+	/**
+	 * Initializes what {@link org.openmrs.module.fhir.api.util.FHIRPractitionerUtil#generatePractitioner(Provider)}
+	 * reads from the given providers: their person with its names and addresses, in one query whatever the number of
+	 * providers
+	 *
+	 * @param providers providers attached to the current session
+	 */
+	void initializeProviders(Collection<Provider> providers);
+
+	/**
+	 * Initializes the names and the mappings, with their reference terms and sources, of the given concepts in two
+	 * queries
+	 *
+	 * @param concepts concepts attached to the current session
+	 */
+	void initializeConceptNamesAndMappings(Collection<Concept> concepts);
+
+	/**
+	 * Initializes the reactions, with their concepts, of the given allergies of the Allergy API of OpenMRS 2.0 in one
+	 * query whatever the number of allergies
+	 *
+	 * @param allergies allergies attached to the current session
+	 */
+	void initializeAllergyReactions(Collection<? extends OpenmrsObject> allergies);
+
+	/**
+	 * Gets the numeric concepts among the given concepts
+	 *
+	 * @param conceptIds the concept ids
+	 * @return the numeric concepts, in no particular order
+	 */
+	List<ConceptNumeric> getConceptNumerics(Collection<Integer> conceptIds);
+
+	/**
+	 * Gets the next chunk of objects to export, ordered by primary key. Voided objects are left out.
+	 *
+	 * @param type            the mapped OpenMRS type
+	 * @param patientProperty the property holding the id of the patient the objects belong to, only used when
+	 *                        {@code patientIds} is not null
+	 * @param patientIds      if not null only the objects of these patients are returned, the ids are bound to an in
+	 *                        list so callers split large sets of patients
+	 * @param since           if not null only the objects created or changed at or after this date are returned
+	 * @param afterId         if not null only the objects with a greater primary key are returned
+	 * @param maxResults      the maximum number of objects to return
+	 * @return the objects in the chunk
+	 */
+	<T> List<T> getExportChunk(Class<T> type, String patientProperty, Collection<Integer> patientIds, Date since,
+			Integer afterId, int maxResults);
+
+	/**
+	 * Gets when an object was last modified, without loading it. For a person or a patient the names, addresses,
+	 * attributes and identifiers are taken into account, and for a provider its person with its names and addresses,
+	 * the same way as {@link org.openmrs.module.fhir.api.util.BaseOpenMRSDataUtil#getLastModified} does for the
+	 * generated resources.
+	 *
+	 * @param type the mapped OpenMRS type, which must have the dateCreated and dateChanged properties
+	 * @param uuid the uuid of the object
+	 * @return the latest date the object or its dependents were created, changed, voided or retired, or null if there
+	 * is no such object
+	 */
+	Date getLastModified(Class<? extends OpenmrsObject> type, String uuid);
+
+	/**
+	 * Counts the resources changed in a time range according to the change log. A resource is counted when its last
+	 * change falls in the range, once however many times it changed.
+	 *
+	 * @param resourceTypes  if not null only the resources of these types are counted
+	 * @param uuid           if not null only the resource with this id is counted
+	 * @param from           if not null only the resources changed at or after this time are counted
+	 * @param to             if not null only the resources not changed after this time are counted
+	 * @param includeDeleted whether the resources whose last change deleted them are counted
+	 * @return the number of changed resources
+	 */
+	long getChangedResourceCount(Collection<String> resourceTypes, String uuid, Date from, Date to,
+			boolean includeDeleted);
+
+	/**
+	 * Gets a page of the resources changed in a time range according to the change log, with the time of their last
+	 * change, in the order of that time
+	 *
+	 * @param resourceTypes  if not null only the resources of these types are returned
+	 * @param uuid           if not null only the resource with this id is returned
+	 * @param from           if not null only the resources changed at or after this time are returned
+	 * @param to             if not null only the resources not changed after this time are returned
+	 * @param includeDeleted whether the resources whose last change deleted them are returned
+	 * @param newestFirst    whether the most recently changed resources come first
+	 * @param firstResult    the index of the first resource to return
+	 * @param maxResults     the maximum number of resources to return
+	 * @return one entry per changed resource with its last operation, without an id
+	 */
+	List<ChangeLogEntry> getChangedResources(Collection<String> resourceTypes, String uuid, Date from, Date to,
+			boolean includeDeleted, boolean newestFirst, int firstResult, int maxResults);
+
+	/**
+	 * Deletes the change log entries recorded before a time
+	 *
+	 * @param before the time of the oldest entry to keep
+	 * @return the number of deleted entries
+	 */
+	int purgeChangeLog(Date before);
 }
@@ -0,0 +1,186 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.db;
+
+import org.openmrs.Concept;
+import org.openmrs.Encounter;
+import org.openmrs.Person;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The restrictions of an observation search, compiled by {@link FHIRDao} into a single query on the obs table. Null or
+ * empty restrictions are ignored, list restrictions match any of their elements.
+ */
+public class ObsSearchCriteria {
+
+	private List<Person> persons;
+
+	private List<Concept> questions;
+
+	private List<Concept> answers;
+
+	private List<Encounter> encounters;
+
+	private Date fromDate;
+
+	private Date toDate;
+
+	private Double minValue;
+
+	private boolean minValueInclusive = true;
+
+	private Double maxValue;
+
+	private boolean maxValueInclusive = true;
+
+	private boolean ascending;
+
+	/**
+	 * @return the persons the observations belong to
+	 */
+	public List<Person> getPersons() {
+		return persons;
+	}
+
+	public ObsSearchCriteria setPersons(List<Person> persons) {
+		this.persons = persons;
+		return this;
+	}
+
+	/**
+	 * @return the question concepts of the observations
+	 */
+	public List<Concept> getQuestions() {
+		return questions;
+	}
+
+	public ObsSearchCriteria setQuestions(List<Concept> questions) {
+		this.questions = questions;
+		return this;
+	}
+
+	/**
+	 * @return the coded answers of the observations
+	 */
+	public List<Concept> getAnswers() {
+		return answers;
+	}
+
+	public ObsSearchCriteria setAnswers(List<Concept> answers) {
+		this.answers = answers;
+		return this;
+	}
+
+	/**
+	 * @return the encounters the observations were recorded in
+	 */
+	public List<Encounter> getEncounters() {
+		return encounters;
+	}
+
+	public ObsSearchCriteria setEncounters(List<Encounter> encounters) {
+		this.encounters = encounters;
+		return this;
+	}
+
+	/**
+	 * @return the earliest observation date time, inclusive
+	 */
+	public Date getFromDate() {
+		return fromDate;
+	}
+
+	public ObsSearchCriteria setFromDate(Date fromDate) {
+		this.fromDate = fromDate;
+		return this;
+	}
+
+	/**
+	 * @return the latest observation date time, inclusive
+	 */
+	public Date getToDate() {
+		return toDate;
+	}
+
+	public ObsSearchCriteria setToDate(Date toDate) {
+		this.toDate = toDate;
+		return this;
+	}
+
+	/**
+	 * @return the lower bound of the numeric value of the observations
+	 */
+	public Double getMinValue() {
+		return minValue;
+	}
+
+	public boolean isMinValueInclusive() {
+		return minValueInclusive;
+	}
+
+	/**
+	 * Narrows the numeric value of the observations to be above a bound, a bound below the current one is ignored
+	 *
+	 * @param value     the lower bound
+	 * @param inclusive whether observations with the bound as value match
+	 * @return this criteria
+	 */
+	public ObsSearchCriteria restrictMinValue(double value, boolean inclusive) {
+		if (minValue == null || value > minValue || (value == minValue && !inclusive)) {
+			minValue = value;
+			minValueInclusive = inclusive;
+		}
+		return this;
+	}
+
+	/**
+	 * @return the upper bound of the numeric value of the observations
+	 */
+	public Double getMaxValue() {
+		return maxValue;
+	}
+
+	public boolean isMaxValueInclusive() {
+		return maxValueInclusive;
+	}
+
+	/**
+	 * Narrows the numeric value of the observations to be below a bound, a bound above the current one is ignored
+	 *
+	 * @param value     the upper bound
+	 * @param inclusive whether observations with the bound as value match
+	 * @return this criteria
+	 */
+	public ObsSearchCriteria restrictMaxValue(double value, boolean inclusive) {
+		if (maxValue == null || value < maxValue || (value == maxValue && !inclusive)) {
+			maxValue = value;
+			maxValueInclusive = inclusive;
+		}
+		return this;
+	}
+
+	/**
+	 * @return true if the observations are ordered oldest first, by default the most recent come first
+	 */
+	public boolean isAscending() {
+		return ascending;
+	}
+
+	public ObsSearchCriteria setAscending(boolean ascending) {
+		this.ascending = ascending;
+		return this;
+	}
+}
@@ -0,0 +1,146 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.db;
+
+import java.util.Date;
+
+/**
+ * Aggregates of the numeric values of a set of observations, computed by the database. Statistics of disjoint sets of
+ * observations can be merged, so a large set can be aggregated in parts.
+ */
+public class ObsStatistics {
+
+	private long count;
+
+	private double sum;
+
+	private Double minimum;
+
+	private Double maximum;
+
+	private Date firstDate;
+
+	private Double firstValue;
+
+	private Date lastDate;
+
+	private Double lastValue;
+
+	/**
+	 * Adds the aggregates of a set of observations
+	 *
+	 * @param count   the number of observations
+	 * @param sum     the sum of their values
+	 * @param minimum the smallest value
+	 * @param maximum the largest value
+	 */
+	public void addAggregates(long count, double sum, double minimum, double maximum) {
+		if (count == 0) {
+			return;
+		}
+		this.sum += sum;
+		this.minimum = this.count == 0 ? minimum : Math.min(this.minimum, minimum);
+		this.maximum = this.count == 0 ? maximum : Math.max(this.maximum, maximum);
+		this.count += count;
+	}
+
+	/**
+	 * Keeps an observation as the first one if none earlier was added
+	 *
+	 * @param date  the date time of the observation
+	 * @param value its value
+	 */
+	public void addFirst(Date date, double value) {
+		if (firstDate == null || date.before(firstDate)) {
+			firstDate = date;
+			firstValue = value;
+		}
+	}
+
+	/**
+	 * Keeps an observation as the last one if none later was added
+	 *
+	 * @param date  the date time of the observation
+	 * @param value its value
+	 */
+	public void addLast(Date date, double value) {
+		if (lastDate == null || !date.before(lastDate)) {
+			lastDate = date;
+			lastValue = value;
+		}
+	}
+
+	/**
+	 * @return the number of observations
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the sum of the values
+	 */
+	public double getSum() {
+		return sum;
+	}
+
+	/**
+	 * @return the mean value, or null if there are no observations
+	 */
+	public Double getMean() {
+		return count == 0 ? null : sum / count;
+	}
+
+	/**
+	 * @return the smallest value, or null if there are no observations
+	 */
+	public Double getMinimum() {
+		return minimum;
+	}
+
+	/**
+	 * @return the largest value, or null if there are no observations
+	 */
+	public Double getMaximum() {
+		return maximum;
+	}
+
+	/**
+	 * @return the date time of the earliest observation, or null if there are no observations
+	 */
+	public Date getFirstDate() {
+		return firstDate;
+	}
+
+	/**
+	 * @return the value of the earliest observation, or null if there are no observations
+	 */
+	public Double getFirstValue() {
+		return firstValue;
+	}
+
+	/**
+	 * @return the date time of the latest observation, or null if there are no observations
+	 */
+	public Date getLastDate() {
+		return lastDate;
+	}
+
+	/**
+	 * @return the value of the latest observation, or null if there are no observations
+	 */
+	public Double getLastValue() {
+		return lastValue;
+	}
+}
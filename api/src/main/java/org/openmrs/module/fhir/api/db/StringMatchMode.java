@@ -0,0 +1,104 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.db;
+
+import ca.uhn.fhir.rest.param.StringParam;
+
+/**
+ * How a string search parameter is matched against a database column, mirroring the FHIR string search modifiers.
+ * Matching is left to the database collation, so that the indexes on the searched columns can be used.
+ */
+public enum StringMatchMode {
+
+	/**
+	 * The column starts with the value, the default FHIR behaviour
+	 */
+	STARTS_WITH,
+
+	/**
+	 * The column equals the value, the {@code :exact} modifier
+	 */
+	EXACT,
+
+	/**
+	 * The column contains the value anywhere, the {@code :contains} modifier
+	 */
+	CONTAINS;
+
+	/**
+	 * The character escaping the wildcards of the like patterns. A backslash is avoided as MySQL and H2 do not read
+	 * it the same way in a string literal.
+	 */
+	public static final char ESCAPE_CHARACTER = '!';
+
+	/**
+	 * Converts a value to the pattern the column is compared with. The like wildcards and the escape character
+	 * contained in the value are escaped, so that they are matched literally.
+	 *
+	 * @param value the searched value
+	 * @return the value to bind to the query
+	 */
+	public String toPattern(String value) {
+		switch (this) {
+			case EXACT:
+				return value;
+			case CONTAINS:
+				return "%" + escape(value) + "%";
+			default:
+				return escape(value) + "%";
+		}
+	}
+
+	/**
+	 * Gets the HQL condition comparing a column with the pattern bound to a named parameter
+	 *
+	 * @param column    the compared column
+	 * @param parameter the name of the parameter the pattern is bound to
+	 * @return the condition
+	 */
+	public String getCondition(String column, String parameter) {
+		if (this == EXACT) {
+			return column + " = :" + parameter;
+		}
+		return column + " like :" + parameter + " escape '" + ESCAPE_CHARACTER + "'";
+	}
+
+	private static String escape(String value) {
+		StringBuilder escaped = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '%' || c == '_' || c == ESCAPE_CHARACTER) {
+				escaped.append(ESCAPE_CHARACTER);
+			}
+			escaped.append(c);
+		}
+		return escaped.toString();
+	}
+
+	/**
+	 * Gets the match mode requested by the modifiers of a string parameter
+	 *
+	 * @param param the string parameter
+	 * @return the match mode
+	 */
+	public static StringMatchMode of(StringParam param) {
+		if (param.isExact()) {
+			return EXACT;
+		}
+		if (param.isContains()) {
+			return CONTAINS;
+		}
+		return STARTS_WITH;
+	}
+}
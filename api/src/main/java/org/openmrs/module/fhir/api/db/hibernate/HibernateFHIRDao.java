@@ -13,24 +13,71 @@
  */
 package org.openmrs.module.fhir.api.db.hibernate;
 
+import org.hibernate.Criteria;
+import org.hibernate.HibernateException;
+import org.hibernate.Query;
+import org.hibernate.SQLQuery;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.metadata.ClassMetadata;
+import org.openmrs.Concept;
+import org.openmrs.ConceptNumeric;
+import org.openmrs.Encounter;
+import org.openmrs.Location;
+import org.openmrs.Obs;
+import org.openmrs.OpenmrsObject;
 import org.openmrs.Order;
+import org.openmrs.Patient;
+import org.openmrs.Person;
+import org.openmrs.Provider;
+import org.openmrs.Retireable;
+import org.openmrs.Voidable;
+import org.openmrs.module.fhir.api.cache.ObsTimeSeries;
+import org.openmrs.module.fhir.api.changelog.ChangeLogEntry;
+import org.openmrs.module.fhir.api.db.BatchHandler;
 import org.openmrs.module.fhir.api.db.FHIRDao;
+import org.openmrs.module.fhir.api.db.ObsSearchCriteria;
+import org.openmrs.module.fhir.api.db.ObsStatistics;
+import org.openmrs.module.fhir.api.db.StringMatchMode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * It is a default implementation of  {@link FHIRDao}.
  */
 public class HibernateFHIRDao implements FHIRDao {
 
+	private static final int OBS_STATISTICS_CHUNK_SIZE = 1000;
+
+	private static final String[] DATA_DATES = { "dateCreated", "dateChanged", "dateVoided" };
+
+	private static final String[] METADATA_DATES = { "dateCreated", "dateChanged", "dateRetired" };
+
+	private static final String[] PERSON_DATES = { "personDateCreated", "personDateChanged", "personDateVoided" };
+
 	protected final Logger log = LoggerFactory.getLogger(this.getClass());
 
+	private volatile Boolean windowFunctionsSupported;
+
 	private SessionFactory sessionFactory;
 
 	/**
@@ -61,6 +108,984 @@ public class HibernateFHIRDao implements FHIRDao {
 		}
 	}
 
+	/**
+	 * @see FHIRDao#getObsCount(ObsSearchCriteria)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public long getObsCount(ObsSearchCriteria criteria) {
+		Criteria obsCriteria = createObsCriteria(criteria);
+		obsCriteria.setProjection(Projections.rowCount());
+		return ((Number) obsCriteria.uniqueResult()).longValue();
+	}
+
+	/**
+	 * @see FHIRDao#getObs(ObsSearchCriteria, int, int)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	@SuppressWarnings("unchecked")
+	public List<Obs> getObs(ObsSearchCriteria criteria, int firstResult, int maxResults) {
+		Criteria obsCriteria = createObsCriteria(criteria);
+		addObsOrder(obsCriteria, criteria.isAscending());
+		obsCriteria.setFirstResult(firstResult);
+		obsCriteria.setMaxResults(maxResults);
+		return obsCriteria.list();
+	}
+
+	/**
+	 * The JDBC fetch size is set to the batch size, MySQL only streams the rows of a cursor when the connection has
+	 * useCursorFetch enabled and otherwise reads the page at once.
+	 *
+	 * @see FHIRDao#scrollObs(ObsSearchCriteria, int, int, int, BatchHandler)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public void scrollObs(ObsSearchCriteria criteria, int firstResult, int maxResults, int batchSize,
+			BatchHandler<Obs> handler) {
+		Criteria obsCriteria = createObsCriteria(criteria);
+		addObsOrder(obsCriteria, criteria.isAscending());
+		obsCriteria.setFirstResult(firstResult);
+		obsCriteria.setMaxResults(maxResults);
+		obsCriteria.setFetchSize(batchSize);
+		scroll(obsCriteria.scroll(ScrollMode.FORWARD_ONLY), batchSize, handler);
+	}
+
+	/**
+	 * The latest observation of every concept is selected by joining the observations of the person to their latest
+	 * date per concept. More observations per concept are ranked with a window function, falling back to a query per
+	 * concept, each limited to max rows of the person and concept index, when the database has no window functions
+	 * like MySQL before 8.0.
+	 *
+	 * @see FHIRDao#getLatestObs(Person, List, int)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public List<Obs> getLatestObs(Person person, List<Concept> concepts, int max) {
+		Set<Integer> conceptIds = new TreeSet<Integer>();
+		if (concepts != null) {
+			for (Concept concept : concepts) {
+				conceptIds.add(concept.getConceptId());
+			}
+		}
+		if (max == 1) {
+			return getLatestObsByDate(person, conceptIds);
+		}
+		if (!Boolean.FALSE.equals(windowFunctionsSupported)) {
+			try {
+				List<Obs> obs = getLatestObsByRank(person, conceptIds, max);
+				windowFunctionsSupported = true;
+				return obs;
+			}
+			catch (HibernateException e) {
+				if (windowFunctionsSupported != null) {
+					throw e;
+				}
+				log.info("The database does not support window functions, the latest obs are selected per concept", e);
+				windowFunctionsSupported = false;
+			}
+		}
+		return getLatestObsPerConcept(person, conceptIds, max);
+	}
+
+	/**
+	 * Selects the observations at the latest date of each concept, keeping the last entered one when several share it
+	 */
+	@SuppressWarnings("unchecked")
+	private List<Obs> getLatestObsByDate(Person person, Set<Integer> conceptIds) {
+		String conceptFilter = conceptIds.isEmpty() ? "" : " and concept_id in (:conceptIds)";
+		SQLQuery query = getCurrentSession().createSQLQuery("select o.* from obs o join (select concept_id,"
+				+ " max(obs_datetime) latest_datetime from obs where person_id = :personId and voided = :voided"
+				+ conceptFilter + " group by concept_id) l on o.concept_id = l.concept_id"
+				+ " and o.obs_datetime = l.latest_datetime where o.person_id = :personId and o.voided = :voided"
+				+ " order by o.concept_id, o.obs_id desc");
+		setLatestObsParameters(query, person, conceptIds);
+		List<Obs> obs = new ArrayList<Obs>();
+		Integer conceptId = null;
+		for (Obs latest : (List<Obs>) query.list()) {
+			if (!latest.getConcept().getConceptId().equals(conceptId)) {
+				conceptId = latest.getConcept().getConceptId();
+				obs.add(latest);
+			}
+		}
+		return obs;
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<Obs> getLatestObsByRank(Person person, Set<Integer> conceptIds, int max) {
+		String conceptFilter = conceptIds.isEmpty() ? "" : " and concept_id in (:conceptIds)";
+		SQLQuery query = getCurrentSession().createSQLQuery("select o.* from (select obs.*, row_number() over"
+				+ " (partition by concept_id order by obs_datetime desc, obs_id desc) obs_rank from obs"
+				+ " where person_id = :personId and voided = :voided" + conceptFilter + ") o where o.obs_rank <= :max"
+				+ " order by o.concept_id, o.obs_rank");
+		setLatestObsParameters(query, person, conceptIds);
+		query.setInteger("max", max);
+		return query.list();
+	}
+
+	private void setLatestObsParameters(SQLQuery query, Person person, Set<Integer> conceptIds) {
+		query.addEntity("o", Obs.class);
+		query.setInteger("personId", person.getPersonId());
+		query.setBoolean("voided", false);
+		if (!conceptIds.isEmpty()) {
+			query.setParameterList("conceptIds", conceptIds);
+		}
+	}
+
+	/**
+	 * Selects the latest observations of each concept with its own query, plus one to list the concepts of the person
+	 * when none are given
+	 */
+	@SuppressWarnings("unchecked")
+	private List<Obs> getLatestObsPerConcept(Person person, Set<Integer> conceptIds, int max) {
+		if (conceptIds.isEmpty()) {
+			conceptIds.addAll(getCurrentSession().createQuery("select distinct o.concept.conceptId from Obs o"
+					+ " where o.person = :person and o.voided = false")
+					.setParameter("person", person)
+					.list());
+		}
+
+		Query query = getCurrentSession().createQuery("select o from Obs o where o.person = :person"
+				+ " and o.concept.conceptId = :conceptId and o.voided = false order by o.obsDatetime desc, o.obsId desc");
+		query.setParameter("person", person);
+		query.setMaxResults(max);
+		List<Obs> obs = new ArrayList<Obs>();
+		for (Integer conceptId : conceptIds) {
+			query.setParameter("conceptId", conceptId);
+			obs.addAll(query.list());
+		}
+		return obs;
+	}
+
+	/**
+	 * @see FHIRDao#getObsTimeSeries(Person, Concept)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	@SuppressWarnings("unchecked")
+	public ObsTimeSeries getObsTimeSeries(Person person, Concept concept) {
+		List<Object[]> rows = getCurrentSession().createQuery("select o.obsDatetime, o.valueNumeric from Obs o"
+				+ " where o.person = :person and o.concept = :concept and o.voided = false and o.valueNumeric is not null"
+				+ " order by o.obsDatetime, o.obsId")
+				.setParameter("person", person)
+				.setParameter("concept", concept)
+				.list();
+		long[] times = new long[rows.size()];
+		double[] values = new double[rows.size()];
+		for (int i = 0; i < rows.size(); i++) {
+			times[i] = ((Date) rows.get(i)[0]).getTime();
+			values[i] = ((Number) rows.get(i)[1]).doubleValue();
+		}
+		return ObsTimeSeries.encode(times, values);
+	}
+
+	/**
+	 * Large sets of persons are aggregated in chunks whose statistics are merged, to keep the in clauses short.
+	 *
+	 * @see FHIRDao#getObsStatistics(Concept, Collection, Date, Date)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public ObsStatistics getObsStatistics(Concept concept, Collection<Integer> personIds, Date fromDate, Date toDate) {
+		ObsStatistics statistics = new ObsStatistics();
+		if (personIds == null) {
+			addObsStatistics(statistics, concept, null, fromDate, toDate);
+			return statistics;
+		}
+		List<Integer> ids = new ArrayList<Integer>(personIds);
+		for (int i = 0; i < ids.size(); i += OBS_STATISTICS_CHUNK_SIZE) {
+			addObsStatistics(statistics, concept, ids.subList(i, Math.min(i + OBS_STATISTICS_CHUNK_SIZE, ids.size())),
+					fromDate, toDate);
+		}
+		return statistics;
+	}
+
+	private void addObsStatistics(ObsStatistics statistics, Concept concept, List<Integer> personIds, Date fromDate,
+			Date toDate) {
+		String restrictions = " from Obs o where o.concept = :concept and o.voided = false"
+				+ " and o.valueNumeric is not null"
+				+ (personIds != null ? " and o.person.personId in (:personIds)" : "")
+				+ (fromDate != null ? " and o.obsDatetime >= :fromDate" : "")
+				+ (toDate != null ? " and o.obsDatetime <= :toDate" : "");
+
+		Object[] aggregates = (Object[]) createObsStatisticsQuery("select count(o.valueNumeric), sum(o.valueNumeric),"
+				+ " min(o.valueNumeric), max(o.valueNumeric)" + restrictions, concept, personIds, fromDate, toDate)
+				.uniqueResult();
+		long count = ((Number) aggregates[0]).longValue();
+		if (count == 0) {
+			return;
+		}
+		statistics.addAggregates(count, ((Number) aggregates[1]).doubleValue(), ((Number) aggregates[2]).doubleValue(),
+				((Number) aggregates[3]).doubleValue());
+
+		Object[] first = (Object[]) createObsStatisticsQuery("select o.obsDatetime, o.valueNumeric" + restrictions
+				+ " order by o.obsDatetime, o.obsId", concept, personIds, fromDate, toDate).setMaxResults(1)
+				.uniqueResult();
+		statistics.addFirst((Date) first[0], ((Number) first[1]).doubleValue());
+
+		Object[] last = (Object[]) createObsStatisticsQuery("select o.obsDatetime, o.valueNumeric" + restrictions
+				+ " order by o.obsDatetime desc, o.obsId desc", concept, personIds, fromDate, toDate).setMaxResults(1)
+				.uniqueResult();
+		statistics.addLast((Date) last[0], ((Number) last[1]).doubleValue());
+	}
+
+	private Query createObsStatisticsQuery(String hql, Concept concept, List<Integer> personIds, Date fromDate,
+			Date toDate) {
+		Query query = getCurrentSession().createQuery(hql);
+		query.setParameter("concept", concept);
+		if (personIds != null) {
+			query.setParameterList("personIds", personIds);
+		}
+		if (fromDate != null) {
+			query.setParameter("fromDate", fromDate);
+		}
+		if (toDate != null) {
+			query.setParameter("toDate", toDate);
+		}
+		return query;
+	}
+
+	/**
+	 * @see FHIRDao#getPatientCount(boolean)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public long getPatientCount(boolean voided) {
+		Criteria criteria = getCurrentSession().createCriteria(Patient.class);
+		criteria.add(Restrictions.eq("voided", voided));
+		criteria.setProjection(Projections.rowCount());
+		return ((Number) criteria.uniqueResult()).longValue();
+	}
+
+	/**
+	 * @see FHIRDao#getPatients(boolean, Integer, int, int)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	@SuppressWarnings("unchecked")
+	public List<Patient> getPatients(boolean voided, Integer afterId, int firstResult, int maxResults) {
+		Criteria criteria = getCurrentSession().createCriteria(Patient.class);
+		criteria.add(Restrictions.eq("voided", voided));
+		if (afterId != null) {
+			criteria.add(Restrictions.gt("patientId", afterId));
+		}
+		criteria.addOrder(org.hibernate.criterion.Order.asc("patientId"));
+		criteria.setFirstResult(firstResult);
+		criteria.setMaxResults(maxResults);
+		return criteria.list();
+	}
+
+	/**
+	 * @see FHIRDao#getPatientCountByName(String, String, StringMatchMode)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public long getPatientCountByName(String givenName, String familyName, StringMatchMode matchMode) {
+		String hql = "select count(p) from Patient p where p.voided = false and p.patientId in ("
+				+ getPersonNameSubquery(givenName, familyName, matchMode) + ")";
+		Query query = getCurrentSession().createQuery(hql);
+		setPersonNameParameters(query, givenName, familyName, matchMode);
+		return ((Number) query.uniqueResult()).longValue();
+	}
+
+	/**
+	 * @see FHIRDao#getPatientsByName(String, String, StringMatchMode, Integer, int, int)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	@SuppressWarnings("unchecked")
+	public List<Patient> getPatientsByName(String givenName, String familyName, StringMatchMode matchMode,
+			Integer afterId, int firstResult, int maxResults) {
+		String hql = "from Patient p where p.voided = false and p.patientId in ("
+				+ getPersonNameSubquery(givenName, familyName, matchMode) + ")"
+				+ (afterId != null ? " and p.patientId > :afterId" : "") + " order by p.patientId";
+		Query query = getCurrentSession().createQuery(hql);
+		setPersonNameParameters(query, givenName, familyName, matchMode);
+		if (afterId != null) {
+			query.setInteger("afterId", afterId);
+		}
+		query.setFirstResult(firstResult);
+		query.setMaxResults(maxResults);
+		return query.list();
+	}
+
+	/**
+	 * @see FHIRDao#getProviderCountByName(String, String, StringMatchMode)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public long getProviderCountByName(String givenName, String familyName, StringMatchMode matchMode) {
+		String hql = "select count(pr) from Provider pr where pr.retired = false and pr.person.personId in ("
+				+ getPersonNameSubquery(givenName, familyName, matchMode) + ")";
+		Query query = getCurrentSession().createQuery(hql);
+		setPersonNameParameters(query, givenName, familyName, matchMode);
+		return ((Number) query.uniqueResult()).longValue();
+	}
+
+	/**
+	 * @see FHIRDao#getProvidersByName(String, String, StringMatchMode, Integer, int, int)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	@SuppressWarnings("unchecked")
+	public List<Provider> getProvidersByName(String givenName, String familyName, StringMatchMode matchMode,
+			Integer afterId, int firstResult, int maxResults) {
+		String hql = "from Provider pr where pr.retired = false and pr.person.personId in ("
+				+ getPersonNameSubquery(givenName, familyName, matchMode) + ")"
+				+ (afterId != null ? " and pr.providerId > :afterId" : "") + " order by pr.providerId";
+		Query query = getCurrentSession().createQuery(hql);
+		setPersonNameParameters(query, givenName, familyName, matchMode);
+		if (afterId != null) {
+			query.setInteger("afterId", afterId);
+		}
+		query.setFirstResult(firstResult);
+		query.setMaxResults(maxResults);
+		return query.list();
+	}
+
+	/**
+	 * @see FHIRDao#getLocationCount(boolean, String, StringMatchMode)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public long getLocationCount(boolean retired, String name, StringMatchMode matchMode) {
+		Query query = createLocationQuery("select count(l)", retired, name, matchMode, null, "");
+		return ((Number) query.uniqueResult()).longValue();
+	}
+
+	/**
+	 * @see FHIRDao#getLocations(boolean, String, StringMatchMode, Integer, int, int)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	@SuppressWarnings("unchecked")
+	public List<Location> getLocations(boolean retired, String name, StringMatchMode matchMode, Integer afterId,
+			int firstResult, int maxResults) {
+		Query query = createLocationQuery("select l", retired, name, matchMode, afterId, " order by l.locationId");
+		query.setFirstResult(firstResult);
+		query.setMaxResults(maxResults);
+		return query.list();
+	}
+
+	/**
+	 * @see FHIRDao#getEncounterIds(Patient, Date)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	@SuppressWarnings("unchecked")
+	public List<Integer> getEncounterIds(Patient patient, Date since) {
+		String hql = "select e.encounterId from Encounter e where e.patient = :patient and e.voided = false"
+				+ getChangedSinceRestriction("e", since) + " order by e.encounterDatetime, e.encounterId";
+		return createPatientQuery(hql, patient, since).list();
+	}
+
+	/**
+	 * @see FHIRDao#getEncounterObsIds(Patient, Date, Concept)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	@SuppressWarnings("unchecked")
+	public List<Integer> getEncounterObsIds(Patient patient, Date since, Concept excludedConcept) {
+		String hql = "select o.obsId from Obs o where o.encounter.patient = :patient and o.encounter.voided = false"
+				+ " and o.voided = false" + (since != null ? " and o.dateCreated >= :since" : "")
+				+ (excludedConcept != null ? " and o.concept <> :excludedConcept" : "") + " order by o.obsId";
+		Query query = createPatientQuery(hql, patient, since);
+		if (excludedConcept != null) {
+			query.setParameter("excludedConcept", excludedConcept);
+		}
+		return query.list();
+	}
+
+	/**
+	 * @see FHIRDao#getEncounterProviderIds(Patient, Date)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	@SuppressWarnings("unchecked")
+	public List<Integer> getEncounterProviderIds(Patient patient, Date since) {
+		String hql = "select distinct ep.provider.providerId from EncounterProvider ep, Encounter e"
+				+ " where ep.encounter = e and e.patient = :patient and e.voided = false and ep.voided = false"
+				+ getChangedSinceRestriction("e", since);
+		return createPatientQuery(hql, patient, since).list();
+	}
+
+	/**
+	 * @see FHIRDao#getVisitIds(Patient, Date)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	@SuppressWarnings("unchecked")
+	public List<Integer> getVisitIds(Patient patient, Date since) {
+		String hql = "select v.visitId from Visit v where v.patient = :patient and v.voided = false"
+				+ getChangedSinceRestriction("v", since) + " order by v.startDatetime, v.visitId";
+		return createPatientQuery(hql, patient, since).list();
+	}
+
+	/**
+	 * @see FHIRDao#getPatientLocationIds(Patient, Date)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	@SuppressWarnings("unchecked")
+	public List<Integer> getPatientLocationIds(Patient patient, Date since) {
+		Set<Integer> locationIds = new LinkedHashSet<Integer>();
+		locationIds.addAll(createPatientQuery("select distinct e.location.locationId from Encounter e"
+				+ " where e.patient = :patient and e.voided = false" + getChangedSinceRestriction("e", since), patient,
+				since).list());
+		locationIds.addAll(createPatientQuery("select distinct v.location.locationId from Visit v"
+				+ " where v.patient = :patient and v.voided = false" + getChangedSinceRestriction("v", since), patient,
+				since).list());
+		return new ArrayList<Integer>(locationIds);
+	}
+
+	/**
+	 * @see FHIRDao#getObsByIds(Collection)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	@SuppressWarnings("unchecked")
+	public List<Obs> getObsByIds(Collection<Integer> obsIds) {
+		if (obsIds == null || obsIds.isEmpty()) {
+			return Collections.emptyList();
+		}
+		return getCurrentSession().createQuery("from Obs o where o.obsId in (:obsIds)")
+				.setParameterList("obsIds", obsIds)
+				.list();
+	}
+
+	/**
+	 * @see FHIRDao#getPersonsWithNames(Collection)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	@SuppressWarnings("unchecked")
+	public List<Person> getPersonsWithNames(Collection<Integer> personIds) {
+		if (personIds == null || personIds.isEmpty()) {
+			return Collections.emptyList();
+		}
+		return getCurrentSession().createQuery(
+				"select distinct p from Person p left join fetch p.names where p.personId in (:personIds)")
+				.setParameterList("personIds", personIds)
+				.list();
+	}
+
+	/**
+	 * @see FHIRDao#getPatientsWithIdentifiers(Collection)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	@SuppressWarnings("unchecked")
+	public List<Patient> getPatientsWithIdentifiers(Collection<Integer> personIds) {
+		if (personIds == null || personIds.isEmpty()) {
+			return Collections.emptyList();
+		}
+		return getCurrentSession().createQuery(
+				"select distinct p from Patient p left join fetch p.identifiers where p.patientId in (:personIds)")
+				.setParameterList("personIds", personIds)
+				.list();
+	}
+
+	/**
+	 * @see FHIRDao#initializeEncounterProviders(Collection)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public void initializeEncounterProviders(Collection<Encounter> encounters) {
+		if (encounters == null || encounters.isEmpty()) {
+			return;
+		}
+		getCurrentSession().createQuery("select distinct e from Encounter e left join fetch e.encounterProviders ep"
+				+ " left join fetch ep.provider where e in (:encounters)")
+				.setParameterList("encounters", encounters)
+				.list();
+	}
+
+	/**
+	 * The collections are fetched together, so each patient comes back as the product of its identifiers, names,
+	 * addresses and attributes. Patients rarely have more than a couple of each, which costs less than a round trip
+	 * per collection.
+	 *
+	 * @see FHIRDao#initializePatients(Collection)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public void initializePatients(Collection<Patient> patients) {
+		if (patients == null || patients.isEmpty()) {
+			return;
+		}
+		getCurrentSession().createQuery("select distinct p from Patient p left join fetch p.identifiers i"
+				+ " left join fetch i.identifierType left join fetch p.names left join fetch p.addresses"
+				+ " left join fetch p.attributes a left join fetch a.attributeType where p in (:patients)")
+				.setParameterList("patients", patients)
+				.list();
+	}
+
+	/**
+	 * The providers and the patient identifiers and names are fetched with the encounters, so each encounter comes back
+	 * as the product of those collections, which are small.
+	 *
+	 * @see FHIRDao#initializeEncounters(Collection)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public void initializeEncounters(Collection<Encounter> encounters) {
+		if (encounters == null || encounters.isEmpty()) {
+			return;
+		}
+		getCurrentSession().createQuery("select distinct e from Encounter e join fetch e.encounterType"
+				+ " left join fetch e.location left join fetch e.form left join fetch e.visit v left join fetch v.visitType"
+				+ " left join fetch e.encounterProviders ep left join fetch ep.provider left join fetch ep.encounterRole"
+				+ " join fetch e.patient p left join fetch p.identifiers i left join fetch i.identifierType"
+				+ " left join fetch p.names where e in (:encounters)")
+				.setParameterList("encounters", encounters)
+				.list();
+	}
+
+	/**
+	 * @see FHIRDao#initializeProviders(Collection)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public void initializeProviders(Collection<Provider> providers) {
+		if (providers == null || providers.isEmpty()) {
+			return;
+		}
+		getCurrentSession().createQuery("select distinct pr from Provider pr left join fetch pr.person p"
+				+ " left join fetch p.names left join fetch p.addresses where pr in (:providers)")
+				.setParameterList("providers", providers)
+				.list();
+	}
+
+	/**
+	 * @see FHIRDao#initializeConceptNamesAndMappings(Collection)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public void initializeConceptNamesAndMappings(Collection<Concept> concepts) {
+		if (concepts == null || concepts.isEmpty()) {
+			return;
+		}
+		getCurrentSession().createQuery("select distinct c from Concept c left join fetch c.names where c in (:concepts)")
+				.setParameterList("concepts", concepts)
+				.list();
+		getCurrentSession().createQuery("select distinct c from Concept c left join fetch c.conceptMappings m"
+				+ " left join fetch m.conceptReferenceTerm t left join fetch t.conceptSource where c in (:concepts)")
+				.setParameterList("concepts", concepts)
+				.list();
+	}
+
+	/**
+	 * The allergy is named in the query rather than referenced, as its class only exists from OpenMRS 2.0.
+	 *
+	 * @see FHIRDao#initializeAllergyReactions(Collection)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public void initializeAllergyReactions(Collection<? extends OpenmrsObject> allergies) {
+		if (allergies == null || allergies.isEmpty()) {
+			return;
+		}
+		getCurrentSession().createQuery("select distinct a from Allergy a left join fetch a.reactions r"
+				+ " left join fetch r.reaction where a in (:allergies)")
+				.setParameterList("allergies", allergies)
+				.list();
+	}
+
+	/**
+	 * @see FHIRDao#getLastModified(Class, String)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public Date getLastModified(Class<? extends OpenmrsObject> type, String uuid) {
+		StringBuilder hql = new StringBuilder("select ");
+		String[] dates = getDateProperties(type);
+		for (int i = 0; i < dates.length; i++) {
+			hql.append(i > 0 ? ", o." : "o.").append(dates[i]);
+		}
+		if (Person.class.isAssignableFrom(type)) {
+			appendLastModified(hql, "PersonName", "person", "o", DATA_DATES);
+			appendLastModified(hql, "PersonAddress", "person", "o", DATA_DATES);
+			appendLastModified(hql, "PersonAttribute", "person", "o", DATA_DATES);
+			if (Patient.class.isAssignableFrom(type)) {
+				appendLastModified(hql, "PatientIdentifier", "patient", "o", DATA_DATES);
+			}
+		} else if (Provider.class.isAssignableFrom(type)) {
+			appendLastModified(hql, "Person", "personId", "o.person.personId", PERSON_DATES);
+			appendLastModified(hql, "PersonName", "person", "o.person", DATA_DATES);
+			appendLastModified(hql, "PersonAddress", "person", "o.person", DATA_DATES);
+		}
+		hql.append(" from ").append(type.getName()).append(" o where o.uuid = :uuid");
+
+		List<?> results = getCurrentSession().createQuery(hql.toString())
+				.setString("uuid", uuid)
+				.list();
+		if (results.isEmpty()) {
+			return null;
+		}
+		Date lastModified = null;
+		for (Object date : (Object[]) results.get(0)) {
+			if (date != null && (lastModified == null || ((Date) date).after(lastModified))) {
+				lastModified = (Date) date;
+			}
+		}
+		return lastModified;
+	}
+
+	/**
+	 * The audit dates of a person are mapped to properties prefixed with person, which a patient maps again from its
+	 * own table under the usual names
+	 *
+	 * @return the mapped properties holding the dates an object of the given type was created, changed, voided or
+	 * retired
+	 */
+	private static String[] getDateProperties(Class<?> type) {
+		if (Person.class.equals(type)) {
+			return PERSON_DATES;
+		} else if (Voidable.class.isAssignableFrom(type)) {
+			return DATA_DATES;
+		} else if (Retireable.class.isAssignableFrom(type)) {
+			return METADATA_DATES;
+		}
+		return new String[] { "dateCreated", "dateChanged" };
+	}
+
+	/**
+	 * Appends the latest dates the dependent objects of an object were created, changed and voided to the select
+	 * clause
+	 */
+	private void appendLastModified(StringBuilder hql, String dependentType, String property, String owner,
+			String[] dates) {
+		String where = " from " + dependentType + " d where d." + property + " = " + owner + ")";
+		for (String date : dates) {
+			hql.append(", (select max(d.").append(date).append(")").append(where);
+		}
+	}
+
+	/**
+	 * @see FHIRDao#getConceptNumerics(Collection)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	@SuppressWarnings("unchecked")
+	public List<ConceptNumeric> getConceptNumerics(Collection<Integer> conceptIds) {
+		if (conceptIds == null || conceptIds.isEmpty()) {
+			return Collections.emptyList();
+		}
+		return getCurrentSession().createQuery("from ConceptNumeric cn where cn.conceptId in (:conceptIds)")
+				.setParameterList("conceptIds", conceptIds)
+				.list();
+	}
+
+	/**
+	 * @see FHIRDao#getExportChunk(Class, String, Collection, Date, Integer, int)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	@SuppressWarnings("unchecked")
+	public <T> List<T> getExportChunk(Class<T> type, String patientProperty, Collection<Integer> patientIds, Date since,
+			Integer afterId, int maxResults) {
+		if (patientIds != null && patientIds.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		ClassMetadata metadata = sessionFactory.getClassMetadata(type);
+		List<String> properties = Arrays.asList(metadata.getPropertyNames());
+		String idProperty = metadata.getIdentifierPropertyName();
+
+		Criteria criteria = getCurrentSession().createCriteria(type);
+		if (properties.contains("voided")) {
+			criteria.add(Restrictions.eq("voided", false));
+		}
+		if (patientIds != null) {
+			criteria.add(Restrictions.in(patientProperty, patientIds));
+		}
+		if (since != null) {
+			if (properties.contains("dateChanged")) {
+				criteria.add(Restrictions.or(Restrictions.ge("dateChanged", since), Restrictions.ge("dateCreated", since)));
+			} else {
+				criteria.add(Restrictions.ge("dateCreated", since));
+			}
+		}
+		if (afterId != null) {
+			criteria.add(Restrictions.gt(idProperty, afterId));
+		}
+		criteria.addOrder(org.hibernate.criterion.Order.asc(idProperty));
+		criteria.setMaxResults(maxResults);
+		return criteria.list();
+	}
+
+	/**
+	 * @see FHIRDao#getChangedResourceCount(Collection, String, Date, Date, boolean)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public long getChangedResourceCount(Collection<String> resourceTypes, String uuid, Date from, Date to,
+			boolean includeDeleted) {
+		if (resourceTypes != null && resourceTypes.isEmpty()) {
+			return 0;
+		}
+		// counting distinct pairs is not portable, and a resource has the same uuid in its Patient and Person types
+		Query query = createChangeLogQuery("select count(distinct e.resourceUuid)", resourceTypes, uuid, from, to,
+				includeDeleted, " group by e.resourceType");
+		long count = 0;
+		for (Object typeCount : query.list()) {
+			count += ((Number) typeCount).longValue();
+		}
+		return count;
+	}
+
+	/**
+	 * @see FHIRDao#getChangedResources(Collection, String, Date, Date, boolean, boolean, int, int)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	@SuppressWarnings("unchecked")
+	public List<ChangeLogEntry> getChangedResources(Collection<String> resourceTypes, String uuid, Date from, Date to,
+			boolean includeDeleted, boolean newestFirst, int firstResult, int maxResults) {
+		if (resourceTypes != null && resourceTypes.isEmpty()) {
+			return new ArrayList<ChangeLogEntry>();
+		}
+		String direction = newestFirst ? " desc" : " asc";
+		List<ChangeLogEntry> entries = createChangeLogQuery("select new " + ChangeLogEntry.class.getName()
+						+ "(e.resourceType, e.resourceUuid, max(e.changedAt))", resourceTypes, uuid, from, to,
+				includeDeleted, " group by e.resourceType, e.resourceUuid order by max(e.changedAt)" + direction
+						+ ", e.resourceType" + direction + ", e.resourceUuid" + direction)
+				.setFirstResult(firstResult)
+				.setMaxResults(maxResults)
+				.list();
+		setLastOperations(entries);
+		return entries;
+	}
+
+	/**
+	 * @see FHIRDao#purgeChangeLog(Date)
+	 */
+	@Override
+	@Transactional
+	public int purgeChangeLog(Date before) {
+		return getCurrentSession().createQuery("delete from ChangeLogEntry e where e.changedAt < :before")
+				.setTimestamp("before", before)
+				.executeUpdate();
+	}
+
+	/**
+	 * Sets the operation of the last change of each resource of a page, which cannot be selected with the time of
+	 * that change by the grouped query. Changes at the same time are ordered by their id.
+	 */
+	@SuppressWarnings("unchecked")
+	private void setLastOperations(List<ChangeLogEntry> entries) {
+		if (entries.isEmpty()) {
+			return;
+		}
+		Set<String> uuids = new HashSet<String>();
+		for (ChangeLogEntry entry : entries) {
+			uuids.add(entry.getResourceUuid());
+		}
+		List<Object[]> rows = getCurrentSession().createQuery("select e.resourceType, e.resourceUuid, e.operation"
+				+ " from ChangeLogEntry e where e.resourceUuid in (:uuids) and not exists (select l.changeLogId"
+				+ " from ChangeLogEntry l where " + isLaterChange("l", "e") + ")")
+				.setParameterList("uuids", uuids)
+				.list();
+		Map<String, String> operations = new HashMap<String, String>();
+		for (Object[] row : rows) {
+			operations.put(row[0] + "/" + row[1], (String) row[2]);
+		}
+		for (ChangeLogEntry entry : entries) {
+			entry.setOperation(operations.get(entry.getResourceType() + "/" + entry.getResourceUuid()));
+		}
+	}
+
+	/**
+	 * Creates a query on the change log entries in a time range. The lower bound only needs to be checked on the
+	 * entries themselves, as a resource whose last change is in the range has an entry in it, while the upper bound
+	 * also leaves out the resources changed again later. The resources whose last change deleted them are left out
+	 * when they are not included, so that they are neither counted nor take a place in the pages.
+	 */
+	private Query createChangeLogQuery(String select, Collection<String> resourceTypes, String uuid, Date from,
+			Date to, boolean includeDeleted, String groupBy) {
+		StringBuilder hql = new StringBuilder(select).append(" from ChangeLogEntry e where 1 = 1");
+		if (resourceTypes != null) {
+			hql.append(" and e.resourceType in (:resourceTypes)");
+		}
+		if (uuid != null) {
+			hql.append(" and e.resourceUuid = :uuid");
+		}
+		if (from != null) {
+			hql.append(" and e.changedAt >= :from");
+		}
+		if (to != null) {
+			hql.append(" and e.changedAt <= :to and not exists (select l.changeLogId from ChangeLogEntry l"
+					+ " where l.resourceType = e.resourceType and l.resourceUuid = e.resourceUuid and l.changedAt > :to)");
+		}
+		if (!includeDeleted) {
+			hql.append(" and not exists (select d.changeLogId from ChangeLogEntry d"
+					+ " where d.resourceType = e.resourceType and d.resourceUuid = e.resourceUuid"
+					+ " and d.operation = '" + ChangeLogEntry.DELETE + "' and not exists (select l.changeLogId"
+					+ " from ChangeLogEntry l where " + isLaterChange("l", "d") + "))");
+		}
+		hql.append(groupBy);
+
+		Query query = getCurrentSession().createQuery(hql.toString());
+		if (resourceTypes != null) {
+			query.setParameterList("resourceTypes", resourceTypes);
+		}
+		if (uuid != null) {
+			query.setString("uuid", uuid);
+		}
+		if (from != null) {
+			query.setTimestamp("from", from);
+		}
+		if (to != null) {
+			query.setTimestamp("to", to);
+		}
+		return query;
+	}
+
+	private Query createLocationQuery(String select, boolean retired, String name, StringMatchMode matchMode,
+			Integer afterId, String orderBy) {
+		StringBuilder hql = new StringBuilder(select).append(" from Location l where l.retired = :retired");
+		if (name != null) {
+			hql.append(" and ").append(matchMode.getCondition("l.name", "name"));
+		}
+		if (afterId != null) {
+			hql.append(" and l.locationId > :afterId");
+		}
+		hql.append(orderBy);
+
+		Query query = getCurrentSession().createQuery(hql.toString());
+		query.setBoolean("retired", retired);
+		if (name != null) {
+			query.setString("name", matchMode.toPattern(name));
+		}
+		if (afterId != null) {
+			query.setInteger("afterId", afterId);
+		}
+		return query;
+	}
+
+	/**
+	 * @return the HQL condition that a change log entry is a later change of the resource of another one, changes at
+	 * the same time being ordered by their id
+	 */
+	private static String isLaterChange(String later, String change) {
+		return later + ".resourceType = " + change + ".resourceType and " + later + ".resourceUuid = " + change
+				+ ".resourceUuid and (" + later + ".changedAt > " + change + ".changedAt or " + later + ".changedAt = "
+				+ change + ".changedAt and " + later + ".changeLogId > " + change + ".changeLogId)";
+	}
+
+	private Query createPatientQuery(String hql, Patient patient, Date since) {
+		Query query = getCurrentSession().createQuery(hql);
+		query.setParameter("patient", patient);
+		if (since != null) {
+			query.setTimestamp("since", since);
+		}
+		return query;
+	}
+
+	private String getChangedSinceRestriction(String alias, Date since) {
+		if (since == null) {
+			return "";
+		}
+		return " and coalesce(" + alias + ".dateChanged, " + alias + ".dateCreated) >= :since";
+	}
+
+	/**
+	 * Selects the ids of the persons having a non voided name matching the given parts. Using a sub query keeps a
+	 * person with several matching names from being returned more than once.
+	 */
+	private String getPersonNameSubquery(String givenName, String familyName, StringMatchMode matchMode) {
+		StringBuilder hql = new StringBuilder("select n.person.personId from PersonName n where n.voided = false");
+		if (givenName != null) {
+			hql.append(" and ").append(matchMode.getCondition("n.givenName", "givenName"));
+		}
+		if (familyName != null) {
+			hql.append(" and ").append(matchMode.getCondition("n.familyName", "familyName"));
+		}
+		return hql.toString();
+	}
+
+	private void setPersonNameParameters(Query query, String givenName, String familyName, StringMatchMode matchMode) {
+		if (givenName != null) {
+			query.setString("givenName", matchMode.toPattern(givenName));
+		}
+		if (familyName != null) {
+			query.setString("familyName", matchMode.toPattern(familyName));
+		}
+	}
+
+	private Criteria createObsCriteria(ObsSearchCriteria search) {
+		Criteria criteria = getCurrentSession().createCriteria(Obs.class);
+		criteria.add(Restrictions.eq("voided", false));
+		if (search.getPersons() != null && !search.getPersons().isEmpty()) {
+			criteria.add(Restrictions.in("person", search.getPersons()));
+		}
+		if (search.getQuestions() != null && !search.getQuestions().isEmpty()) {
+			criteria.add(Restrictions.in("concept", search.getQuestions()));
+		}
+		if (search.getAnswers() != null && !search.getAnswers().isEmpty()) {
+			criteria.add(Restrictions.in("valueCoded", search.getAnswers()));
+		}
+		if (search.getEncounters() != null && !search.getEncounters().isEmpty()) {
+			criteria.add(Restrictions.in("encounter", search.getEncounters()));
+		}
+		if (search.getFromDate() != null) {
+			criteria.add(Restrictions.ge("obsDatetime", search.getFromDate()));
+		}
+		if (search.getToDate() != null) {
+			criteria.add(Restrictions.le("obsDatetime", search.getToDate()));
+		}
+		if (search.getMinValue() != null) {
+			criteria.add(search.isMinValueInclusive() ? Restrictions.ge("valueNumeric", search.getMinValue())
+					: Restrictions.gt("valueNumeric", search.getMinValue()));
+		}
+		if (search.getMaxValue() != null) {
+			criteria.add(search.isMaxValueInclusive() ? Restrictions.le("valueNumeric", search.getMaxValue())
+					: Restrictions.lt("valueNumeric", search.getMaxValue()));
+		}
+		return criteria;
+	}
+
+	private void addObsOrder(Criteria criteria, boolean ascending) {
+		if (ascending) {
+			criteria.addOrder(org.hibernate.criterion.Order.asc("obsDatetime"));
+			criteria.addOrder(org.hibernate.criterion.Order.asc("obsId"));
+		} else {
+			criteria.addOrder(org.hibernate.criterion.Order.desc("obsDatetime"));
+			criteria.addOrder(org.hibernate.criterion.Order.desc("obsId"));
+		}
+	}
+
+	/**
+	 * Hands the rows of a cursor over in batches, evicting each batch from the session once it is handled
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> void scroll(ScrollableResults results, int batchSize, BatchHandler<T> handler) {
+		try {
+			List<T> batch = new ArrayList<T>(batchSize);
+			while (results.next()) {
+				batch.add((T) results.get(0));
+				if (batch.size() == batchSize) {
+					handleBatch(batch, handler);
+					batch = new ArrayList<T>(batchSize);
+				}
+			}
+			if (!batch.isEmpty()) {
+				handleBatch(batch, handler);
+			}
+		}
+		finally {
+			results.close();
+		}
+	}
+
+	private <T> void handleBatch(List<T> batch, BatchHandler<T> handler) {
+		handler.handle(batch);
+		Session session = getCurrentSession();
+		for (T object : batch) {
+			session.evict(object);
+		}
+	}
+
 	private Session getCurrentSession() {
 		try {
 			return sessionFactory.getCurrentSession();
@@ -33,6 +33,7 @@ import org.openmrs.api.context.Context;
 import org.openmrs.module.fhir.api.ObsService;
 import org.openmrs.module.fhir.api.db.FHIRDao;
 import org.openmrs.module.fhir.api.diagnosticreport.DiagnosticReportHandler;
+import org.openmrs.module.fhir.api.util.BaseOpenMRSDataUtil;
 import org.openmrs.module.fhir.api.util.FHIRConstants;
 import org.openmrs.module.fhir.api.util.FHIRObsUtil;
 import org.openmrs.module.fhir.api.util.FHIRPatientUtil;
@@ -390,6 +391,7 @@ public abstract class AbstractDiagnosticReportHandler implements DiagnosticRepor
 		DiagnosticReport diagnosticReport = new DiagnosticReport();
 		// Set ID
 		diagnosticReport.setId(new IdType(RESOURCE_TYPE, order.getAccessionNumber()));
+		BaseOpenMRSDataUtil.setMeta(diagnosticReport, omrsDiagnosticReportEncounter);
 		// @required: Get EncounterDateTime and set as `Issued` date
 		diagnosticReport.setIssued(omrsDiagnosticReportEncounter.getEncounterDatetime());
 
@@ -21,6 +21,7 @@ import org.openmrs.Obs;
 import org.openmrs.api.EncounterService;
 import org.openmrs.api.ObsService;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.util.BaseOpenMRSDataUtil;
 import org.openmrs.module.fhir.api.util.ErrorUtil;
 import org.openmrs.module.fhir.api.util.FHIRConstants;
 import org.openmrs.module.fhir.api.util.FHIRImagingStudyUtil;
@@ -104,6 +105,7 @@ public class RadiologyHandler extends AbstractDiagnosticReportHandler {
 
 		// Set ID
 		diagnosticReport.setId(new IdType(FHIRConstants.DIAGNOSTIC_REPORT, omrsDiagnosticReport.getUuid()));
+		BaseOpenMRSDataUtil.setMeta(diagnosticReport, omrsDiagnosticReport);
 
 		// Get Obs and set as `Name`
 		// Get Obs and set as `Status`
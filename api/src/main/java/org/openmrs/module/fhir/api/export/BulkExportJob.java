@@ -0,0 +1,216 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.export;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A bulk export requested by a client. The job is updated by the export task while it runs and read by the status
+ * requests of the client.
+ */
+public class BulkExportJob {
+
+	public enum Status {
+		ACCEPTED, IN_PROGRESS, COMPLETED, FAILED, CANCELLED
+	}
+
+	private final String id = UUID.randomUUID().toString();
+
+	private final Date transactionTime = new Date();
+
+	private final String request;
+
+	private final Integer requestedBy;
+
+	private final List<BulkExportType> types;
+
+	private final Date since;
+
+	private final Set<Integer> patientIds;
+
+	private final File directory;
+
+	private final List<Output> outputs = new ArrayList<Output>();
+
+	private final List<Output> errors = new ArrayList<Output>();
+
+	private volatile Status status = Status.ACCEPTED;
+
+	private volatile String progress;
+
+	private volatile String failure;
+
+	private volatile Date completedAt;
+
+	/**
+	 * @param request       the URL of the kick-off request
+	 * @param requestedBy   the id of the user who requested the export
+	 * @param types         the types to export
+	 * @param since         if not null only resources created or changed since this date are exported
+	 * @param patientIds    if not null only the resources of these patients are exported
+	 * @param baseDirectory the directory the export directories are created in
+	 */
+	public BulkExportJob(String request, Integer requestedBy, List<BulkExportType> types, Date since,
+			Set<Integer> patientIds, File baseDirectory) {
+		this.request = request;
+		this.requestedBy = requestedBy;
+		this.types = Collections.unmodifiableList(new ArrayList<BulkExportType>(types));
+		this.since = since;
+		this.patientIds = patientIds == null ? null : Collections.unmodifiableSet(patientIds);
+		this.directory = new File(baseDirectory, id);
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public Date getTransactionTime() {
+		return transactionTime;
+	}
+
+	public String getRequest() {
+		return request;
+	}
+
+	public Integer getRequestedBy() {
+		return requestedBy;
+	}
+
+	public List<BulkExportType> getTypes() {
+		return types;
+	}
+
+	public Date getSince() {
+		return since;
+	}
+
+	public Set<Integer> getPatientIds() {
+		return patientIds;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public void setStatus(Status status) {
+		this.status = status;
+		if (status == Status.COMPLETED || status == Status.FAILED) {
+			completedAt = new Date();
+		}
+	}
+
+	public boolean isCancelled() {
+		return status == Status.CANCELLED;
+	}
+
+	public String getProgress() {
+		return progress;
+	}
+
+	public void setProgress(String progress) {
+		this.progress = progress;
+	}
+
+	public String getFailure() {
+		return failure;
+	}
+
+	public void setFailure(String failure) {
+		this.failure = failure;
+	}
+
+	public Date getCompletedAt() {
+		return completedAt;
+	}
+
+	/**
+	 * @return a copy of the files written so far
+	 */
+	public synchronized List<Output> getOutputs() {
+		return new ArrayList<Output>(outputs);
+	}
+
+	public synchronized void addOutput(Output output) {
+		outputs.add(output);
+	}
+
+	/**
+	 * @return a copy of the OperationOutcome files written so far
+	 */
+	public synchronized List<Output> getErrors() {
+		return new ArrayList<Output>(errors);
+	}
+
+	public synchronized void addError(Output error) {
+		errors.add(error);
+	}
+
+	/**
+	 * @param fileName the name of a file of the export
+	 * @return the file, or null if the export did not write a file with that name
+	 */
+	public synchronized File getFile(String fileName) {
+		for (Output output : outputs) {
+			if (output.getFile().getName().equals(fileName)) {
+				return output.getFile();
+			}
+		}
+		for (Output error : errors) {
+			if (error.getFile().getName().equals(fileName)) {
+				return error.getFile();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * An NDJSON file of an export
+	 */
+	public static class Output {
+
+		private final String type;
+
+		private final File file;
+
+		private final long count;
+
+		public Output(String type, File file, long count) {
+			this.type = type;
+			this.file = file;
+			this.count = count;
+		}
+
+		public String getType() {
+			return type;
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		public long getCount() {
+			return count;
+		}
+	}
+}
@@ -0,0 +1,181 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.export;
+
+import ca.uhn.fhir.rest.server.exceptions.ForbiddenOperationException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.APIException;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.Daemon;
+import org.openmrs.module.DaemonToken;
+import org.openmrs.module.fhir.api.util.FHIRConstants;
+import org.openmrs.module.fhir.api.util.PrivilegeUtil;
+import org.openmrs.util.OpenmrsUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps track of the bulk exports and runs them one after the other in a daemon thread. Jobs only live in memory, the
+ * files of finished jobs are deleted after {@link #RETENTION_PERIOD} and the whole export directory is cleaned when
+ * the module starts.
+ */
+public class BulkExportManager {
+
+	private static final Log log = LogFactory.getLog(BulkExportManager.class);
+
+	public static final long RETENTION_PERIOD = 24 * 60 * 60 * 1000L;
+
+	private static final BulkExportManager instance = new BulkExportManager();
+
+	private final Map<String, BulkExportJob> jobs = new ConcurrentHashMap<String, BulkExportJob>();
+
+	private volatile DaemonToken daemonToken;
+
+	private ExecutorService executor;
+
+	private BulkExportManager() { }
+
+	public static BulkExportManager getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Starts accepting exports and deletes the files left by a previous run
+	 *
+	 * @param daemonToken the token of the module, used to run the exports as the daemon user
+	 */
+	public synchronized void start(DaemonToken daemonToken) {
+		this.daemonToken = daemonToken;
+		deleteDirectory(getExportDirectory());
+		executor = Executors.newSingleThreadExecutor();
+	}
+
+	/**
+	 * Stops the running export and drops all the jobs
+	 */
+	public synchronized void stop() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+		for (BulkExportJob job : jobs.values()) {
+			job.setStatus(BulkExportJob.Status.CANCELLED);
+		}
+		jobs.clear();
+		daemonToken = null;
+	}
+
+	/**
+	 * Queues an export for the authenticated user. The export runs as the daemon user, so the authenticated user must be
+	 * able to read each of the exported types.
+	 *
+	 * @param request    the URL of the kick-off request
+	 * @param types      the types to export
+	 * @param since      if not null only resources created or changed since this date are exported
+	 * @param patientIds if not null only the resources of these patients are exported
+	 * @return the queued job
+	 * @throws ForbiddenOperationException if the user cannot read one of the types
+	 */
+	public synchronized BulkExportJob submit(String request, List<BulkExportType> types, Date since,
+			Set<Integer> patientIds) {
+		for (BulkExportType type : types) {
+			PrivilegeUtil.requireViewPrivileges(type.getPrivilegeObjects());
+		}
+		if (executor == null) {
+			throw new APIException("Bulk exports are not available until the FHIR module is started");
+		}
+		purgeExpiredJobs();
+
+		final BulkExportJob job = new BulkExportJob(request, Context.getAuthenticatedUser().getUserId(), types, since,
+				patientIds, getExportDirectory());
+		final DaemonToken token = daemonToken;
+		jobs.put(job.getId(), job);
+		executor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					Daemon.runInDaemonThread(new BulkExportTask(job), token).join();
+				}
+				catch (InterruptedException e) {
+					job.setStatus(BulkExportJob.Status.CANCELLED);
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		return job;
+	}
+
+	/**
+	 * @param jobId the id of a job
+	 * @return the job, or null if there is no such job or it has expired
+	 */
+	public BulkExportJob getJob(String jobId) {
+		return jobs.get(jobId);
+	}
+
+	/**
+	 * Cancels a job and deletes its files
+	 *
+	 * @param jobId the id of a job
+	 * @return true if the job existed
+	 */
+	public boolean cancel(String jobId) {
+		BulkExportJob job = jobs.remove(jobId);
+		if (job == null) {
+			return false;
+		}
+		if (job.getStatus() != BulkExportJob.Status.COMPLETED && job.getStatus() != BulkExportJob.Status.FAILED) {
+			job.setStatus(BulkExportJob.Status.CANCELLED);
+		}
+		deleteDirectory(job.getDirectory());
+		return true;
+	}
+
+	private void purgeExpiredJobs() {
+		long now = System.currentTimeMillis();
+		for (Iterator<BulkExportJob> it = jobs.values().iterator(); it.hasNext(); ) {
+			BulkExportJob job = it.next();
+			if (job.getCompletedAt() != null && now - job.getCompletedAt().getTime() > RETENTION_PERIOD) {
+				it.remove();
+				deleteDirectory(job.getDirectory());
+			}
+		}
+	}
+
+	private static File getExportDirectory() {
+		return new File(OpenmrsUtil.getApplicationDataDirectory(), FHIRConstants.BULK_EXPORT_DIRECTORY);
+	}
+
+	private static void deleteDirectory(File directory) {
+		try {
+			if (directory.exists()) {
+				OpenmrsUtil.deleteDirectory(directory);
+			}
+		}
+		catch (IOException e) {
+			log.warn("Unable to delete the export directory " + directory.getAbsolutePath(), e);
+		}
+	}
+}
@@ -0,0 +1,209 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.export;
+
+import ca.uhn.fhir.parser.IParser;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hl7.fhir.dstu3.model.OperationOutcome;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.openmrs.OpenmrsObject;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.manager.FHIRContextFactory;
+import org.openmrs.module.fhir.api.util.ContextUtil;
+import org.openmrs.module.fhir.api.util.FHIRConstants;
+import org.openmrs.util.OpenmrsUtil;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Writes the NDJSON files of a {@link BulkExportJob}. Each type is read in chunks ordered by primary key, every chunk
+ * starting after the last key of the previous one, and the Hibernate session is cleared after each chunk so the
+ * memory used does not grow with the size of the export.
+ * <p/>
+ * Objects which cannot be converted are reported in an OperationOutcome file instead of failing the export.
+ */
+public class BulkExportTask implements Runnable {
+
+	private static final Log log = LogFactory.getLog(BulkExportTask.class);
+
+	private static final String ERROR_TYPE = "OperationOutcome";
+
+	private final BulkExportJob job;
+
+	private Writer errorWriter;
+
+	private long errorCount;
+
+	public BulkExportTask(BulkExportJob job) {
+		this.job = job;
+	}
+
+	@Override
+	public void run() {
+		if (job.isCancelled()) {
+			return;
+		}
+		job.setStatus(BulkExportJob.Status.IN_PROGRESS);
+		try {
+			File directory = job.getDirectory();
+			if (!directory.isDirectory() && !directory.mkdirs()) {
+				throw new IOException("Unable to create the export directory " + directory.getAbsolutePath());
+			}
+			for (BulkExportType type : job.getTypes()) {
+				if (job.isCancelled()) {
+					break;
+				}
+				export(type);
+			}
+			closeErrors();
+			if (job.isCancelled()) {
+				OpenmrsUtil.deleteDirectory(directory);
+			} else {
+				job.setStatus(BulkExportJob.Status.COMPLETED);
+			}
+		}
+		catch (Exception e) {
+			log.error("Bulk export " + job.getId() + " failed", e);
+			job.setFailure(e.getMessage());
+			job.setStatus(BulkExportJob.Status.FAILED);
+		}
+		finally {
+			closeQuietly(errorWriter);
+		}
+	}
+
+	private void export(BulkExportType type) throws IOException {
+		File file = new File(job.getDirectory(), type.getResourceName() + FHIRConstants.NDJSON_EXTENSION);
+		Writer writer = openWriter(file);
+		long count = 0;
+		try {
+			if (type.isPatientCompartment() && job.getPatientIds() != null) {
+				// a group can be large, so its patients are queried a chunk at a time to keep the in lists bounded
+				List<Integer> patientIds = new ArrayList<Integer>(new TreeSet<Integer>(job.getPatientIds()));
+				int chunkSize = FHIRConstants.BULK_EXPORT_PATIENT_CHUNK_SIZE;
+				for (int i = 0; i < patientIds.size() && !job.isCancelled(); i += chunkSize) {
+					count = export(type, patientIds.subList(i, Math.min(i + chunkSize, patientIds.size())), writer,
+							count);
+				}
+			} else {
+				count = export(type, null, writer, count);
+			}
+		}
+		finally {
+			writer.close();
+		}
+		job.addOutput(new BulkExportJob.Output(type.getResourceName(), file, count));
+	}
+
+	/**
+	 * Writes the objects of a type in chunks
+	 *
+	 * @param patientIds if not null only the objects of these patients are written
+	 * @param count      the number of objects of the type written so far
+	 * @return the number of objects of the type written, including the ones written before
+	 */
+	private long export(BulkExportType type, List<Integer> patientIds, Writer writer, long count) throws IOException {
+		Integer afterId = null;
+		List<? extends OpenmrsObject> chunk;
+		do {
+			chunk = ContextUtil.getFHIRDao().getExportChunk(type.getOpenmrsType(), type.getPatientProperty(),
+					patientIds, job.getSince(), afterId, FHIRConstants.BULK_EXPORT_CHUNK_SIZE);
+			if (chunk.isEmpty()) {
+				break;
+			}
+			count += write(type, chunk, writer);
+			afterId = chunk.get(chunk.size() - 1).getId();
+			job.setProgress(type.getResourceName() + ": " + count + " exported");
+			Context.clearSession();
+		} while (chunk.size() == FHIRConstants.BULK_EXPORT_CHUNK_SIZE && !job.isCancelled());
+		return count;
+	}
+
+	private long write(BulkExportType type, List<? extends OpenmrsObject> chunk, Writer writer) throws IOException {
+		IParser parser = FHIRContextFactory.getJsonParser();
+		List<IBaseResource> resources;
+		try {
+			resources = type.convert(chunk);
+		}
+		catch (RuntimeException e) {
+			log.debug("Unable to convert a chunk of " + type.getResourceName() + ", converting one by one", e);
+			resources = new ArrayList<IBaseResource>();
+			for (OpenmrsObject object : chunk) {
+				try {
+					resources.add(type.convert(object));
+				}
+				catch (RuntimeException conversionError) {
+					writeError(type.getResourceName() + " " + object.getUuid() + " could not be exported: "
+							+ conversionError.getMessage());
+				}
+			}
+		}
+
+		for (IBaseResource resource : resources) {
+			parser.encodeResourceToWriter(resource, writer);
+			writer.write('\n');
+		}
+		return resources.size();
+	}
+
+	private void writeError(String message) throws IOException {
+		if (errorWriter == null) {
+			errorWriter = openWriter(getErrorFile());
+		}
+		OperationOutcome outcome = new OperationOutcome();
+		outcome.addIssue()
+				.setSeverity(OperationOutcome.IssueSeverity.ERROR)
+				.setCode(OperationOutcome.IssueType.EXCEPTION)
+				.setDiagnostics(message);
+		FHIRContextFactory.getJsonParser().encodeResourceToWriter(outcome, errorWriter);
+		errorWriter.write('\n');
+		errorCount++;
+	}
+
+	private void closeErrors() throws IOException {
+		if (errorWriter != null) {
+			errorWriter.close();
+			errorWriter = null;
+			job.addError(new BulkExportJob.Output(ERROR_TYPE, getErrorFile(), errorCount));
+		}
+	}
+
+	private File getErrorFile() {
+		return new File(job.getDirectory(), ERROR_TYPE + FHIRConstants.NDJSON_EXTENSION);
+	}
+
+	private static Writer openWriter(File file) throws IOException {
+		return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+	}
+
+	private static void closeQuietly(Writer writer) {
+		if (writer != null) {
+			try {
+				writer.close();
+			}
+			catch (IOException e) {
+				log.debug("Unable to close the export file", e);
+			}
+		}
+	}
+}
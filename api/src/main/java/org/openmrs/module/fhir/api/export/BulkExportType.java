@@ -0,0 +1,161 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.export;
+
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.openmrs.Encounter;
+import org.openmrs.Location;
+import org.openmrs.Obs;
+import org.openmrs.OpenmrsObject;
+import org.openmrs.Patient;
+import org.openmrs.Provider;
+import org.openmrs.module.fhir.api.util.FHIREncounterUtil;
+import org.openmrs.module.fhir.api.util.FHIRLocationUtil;
+import org.openmrs.module.fhir.api.util.FHIRObsUtil;
+import org.openmrs.module.fhir.api.util.FHIRPatientUtil;
+import org.openmrs.module.fhir.api.util.FHIRPractitionerUtil;
+import org.openmrs.module.fhir.api.util.PrivilegeUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The resource types which can be exported in bulk, with the OpenMRS type each one is read from
+ */
+public enum BulkExportType {
+
+	PATIENT("Patient", Patient.class, "patientId", PrivilegeUtil.PATIENTS) {
+
+		@Override
+		public IBaseResource convert(OpenmrsObject object) {
+			return FHIRPatientUtil.generatePatient((Patient) object);
+		}
+	},
+	PRACTITIONER("Practitioner", Provider.class, null, PrivilegeUtil.PROVIDERS) {
+
+		@Override
+		public IBaseResource convert(OpenmrsObject object) {
+			return FHIRPractitionerUtil.generatePractitioner((Provider) object);
+		}
+	},
+	LOCATION("Location", Location.class, null, PrivilegeUtil.LOCATIONS) {
+
+		@Override
+		public IBaseResource convert(OpenmrsObject object) {
+			return FHIRLocationUtil.generateLocation((Location) object);
+		}
+	},
+	ENCOUNTER("Encounter", Encounter.class, "patient.patientId", PrivilegeUtil.ENCOUNTERS) {
+
+		@Override
+		public IBaseResource convert(OpenmrsObject object) {
+			return FHIREncounterUtil.generateEncounter((Encounter) object);
+		}
+	},
+	OBSERVATION("Observation", Obs.class, "person.personId", PrivilegeUtil.OBSERVATIONS) {
+
+		@Override
+		public IBaseResource convert(OpenmrsObject object) {
+			return FHIRObsUtil.generateObs((Obs) object);
+		}
+
+		@Override
+		public List<IBaseResource> convert(List<? extends OpenmrsObject> objects) {
+			List<Obs> obsList = new ArrayList<Obs>();
+			for (OpenmrsObject object : objects) {
+				obsList.add((Obs) object);
+			}
+			return new ArrayList<IBaseResource>(FHIRObsUtil.generateObs(obsList));
+		}
+	};
+
+	private final String resourceName;
+
+	private final Class<? extends OpenmrsObject> openmrsType;
+
+	private final String patientProperty;
+
+	private final String privilegeObjects;
+
+	BulkExportType(String resourceName, Class<? extends OpenmrsObject> openmrsType, String patientProperty,
+			String privilegeObjects) {
+		this.resourceName = resourceName;
+		this.openmrsType = openmrsType;
+		this.patientProperty = patientProperty;
+		this.privilegeObjects = privilegeObjects;
+	}
+
+	/**
+	 * Converts a single OpenMRS object
+	 *
+	 * @param object an object of the OpenMRS type
+	 * @return the FHIR resource
+	 */
+	public abstract IBaseResource convert(OpenmrsObject object);
+
+	/**
+	 * Converts a chunk of OpenMRS objects
+	 *
+	 * @param objects objects of the OpenMRS type
+	 * @return the FHIR resources, in the same order
+	 */
+	public List<IBaseResource> convert(List<? extends OpenmrsObject> objects) {
+		List<IBaseResource> resources = new ArrayList<IBaseResource>();
+		for (OpenmrsObject object : objects) {
+			resources.add(convert(object));
+		}
+		return resources;
+	}
+
+	public String getResourceName() {
+		return resourceName;
+	}
+
+	public Class<? extends OpenmrsObject> getOpenmrsType() {
+		return openmrsType;
+	}
+
+	/**
+	 * @return the property holding the id of the patient an object belongs to, or null if the type is not part of the
+	 * patient compartment
+	 */
+	public String getPatientProperty() {
+		return patientProperty;
+	}
+
+	public boolean isPatientCompartment() {
+		return patientProperty != null;
+	}
+
+	/**
+	 * @return the plural name of the OpenMRS objects used in the privilege needed to read them
+	 * @see PrivilegeUtil#requireViewPrivileges(String...)
+	 */
+	public String getPrivilegeObjects() {
+		return privilegeObjects;
+	}
+
+	/**
+	 * @param resourceName a FHIR resource type name
+	 * @return the matching export type, or null if the resource type cannot be exported
+	 */
+	public static BulkExportType forResourceName(String resourceName) {
+		for (BulkExportType type : values()) {
+			if (type.resourceName.equals(resourceName)) {
+				return type;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,445 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.impl;
+
+import ca.uhn.fhir.rest.server.exceptions.BaseServerResponseException;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.rest.server.exceptions.PreconditionFailedException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import ca.uhn.fhir.rest.server.exceptions.UnprocessableEntityException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hl7.fhir.dstu3.model.Bundle;
+import org.hl7.fhir.dstu3.model.OperationOutcome;
+import org.hl7.fhir.dstu3.model.Reference;
+import org.hl7.fhir.dstu3.model.Resource;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.UserContext;
+import org.openmrs.api.impl.BaseOpenmrsService;
+import org.openmrs.module.fhir.api.BundleService;
+import org.openmrs.module.fhir.api.bundle.BundleEntryRequest;
+import org.openmrs.module.fhir.api.db.FHIRDao;
+import org.openmrs.module.fhir.api.manager.FHIRContextFactory;
+import org.openmrs.module.fhir.api.util.FHIRUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+/**
+ * It is a default implementation of {@link org.openmrs.module.fhir.api.BundleService}.
+ */
+public class BundleServiceImpl extends BaseOpenmrsService implements BundleService {
+
+	protected final Log log = LogFactory.getLog(this.getClass());
+
+	private static final String URN_UUID = "urn:uuid:";
+
+	private static final Pattern UUID_PATTERN = Pattern.compile("[0-9a-fA-F]{8}(-[0-9a-fA-F]{4}){3}-[0-9a-fA-F]{12}");
+
+	private static final List<Bundle.HTTPVerb> PROCESSING_ORDER = Arrays.asList(Bundle.HTTPVerb.DELETE,
+			Bundle.HTTPVerb.POST, Bundle.HTTPVerb.PUT, Bundle.HTTPVerb.GET);
+
+	private FHIRDao dao;
+
+	/**
+	 * @return the dao
+	 */
+	public FHIRDao getDao() {
+		return dao;
+	}
+
+	/**
+	 * @param dao the dao to set
+	 */
+	public void setDao(FHIRDao dao) {
+		this.dao = dao;
+	}
+
+	/**
+	 * @see org.openmrs.module.fhir.api.BundleService#processTransaction(Bundle)
+	 */
+	@Override
+	public Bundle processTransaction(Bundle bundle) {
+		if (bundle.getType() != Bundle.BundleType.TRANSACTION) {
+			throw new InvalidRequestException("Expected a transaction Bundle");
+		}
+
+		List<BundleEntryRequest> requests = new ArrayList<BundleEntryRequest>();
+		for (int i = 0; i < bundle.getEntry().size(); i++) {
+			requests.add(new BundleEntryRequest(i, bundle.getEntry().get(i)));
+		}
+
+		Map<String, String> references = new HashMap<String, String>();
+		Map<Integer, String> matches = new HashMap<Integer, String>();
+		for (BundleEntryRequest request : requests) {
+			String reference = assignId(request, matches);
+			String fullUrl = request.getEntry().getFullUrl();
+			if (reference != null && fullUrl != null) {
+				references.put(fullUrl, reference);
+			}
+		}
+		for (BundleEntryRequest request : requests) {
+			resolveReferences(request.getResource(), references);
+		}
+
+		Bundle.BundleEntryComponent[] responses = new Bundle.BundleEntryComponent[requests.size()];
+		for (Bundle.HTTPVerb method : PROCESSING_ORDER) {
+			for (BundleEntryRequest request : requests) {
+				if (request.getMethod() != method) {
+					continue;
+				}
+				try {
+					responses[request.getIndex()] = process(request, matches.get(request.getIndex()));
+				}
+				catch (BaseServerResponseException e) {
+					throw BaseServerResponseException.newInstance(e.getStatusCode(),
+							"Entry " + request.getIndex() + ": " + e.getMessage());
+				}
+				catch (RuntimeException e) {
+					throw new UnprocessableEntityException("Entry " + request.getIndex() + ": " + e.getMessage());
+				}
+			}
+		}
+
+		Bundle response = new Bundle();
+		response.setType(Bundle.BundleType.TRANSACTIONRESPONSE);
+		for (Bundle.BundleEntryComponent entry : responses) {
+			response.addEntry(entry);
+		}
+		return response;
+	}
+
+	/**
+	 * The entries are processed in two passes. The reads go first: the conditional matches and the GET entries are
+	 * prepared on up to {@link FHIRUtils#getBatchWorkers()} worker threads, each given the user context of the calling
+	 * thread, and so see the resources as they were before the batch. The writes then run one after the other on the
+	 * calling thread, each in its own transaction so a failed entry is rolled back alone.
+	 *
+	 * @see org.openmrs.module.fhir.api.BundleService#processBatch(Bundle)
+	 */
+	@Override
+	public Bundle processBatch(Bundle bundle) {
+		if (bundle.getType() != Bundle.BundleType.BATCH) {
+			throw new InvalidRequestException("Expected a batch Bundle");
+		}
+
+		final TransactionTemplate transactionTemplate = new TransactionTemplate(
+				Context.getRegisteredComponent("transactionManager", PlatformTransactionManager.class));
+		List<BatchEntry> entries = prepareBatch(bundle, transactionTemplate);
+
+		Bundle response = new Bundle();
+		response.setType(Bundle.BundleType.BATCHRESPONSE);
+		for (final BatchEntry entry : entries) {
+			if (entry.response == null) {
+				try {
+					entry.response = transactionTemplate.execute(
+							new TransactionCallback<Bundle.BundleEntryComponent>() {
+
+								@Override
+								public Bundle.BundleEntryComponent doInTransaction(TransactionStatus status) {
+									Bundle.BundleEntryComponent response = process(entry.request, entry.match);
+									Context.flushSession();
+									return response;
+								}
+							});
+				}
+				catch (RuntimeException e) {
+					Context.clearSession();
+					entry.response = failure(e);
+				}
+			}
+			response.addEntry(entry.response);
+		}
+		return response;
+	}
+
+	/**
+	 * Parses the entries of a batch, matches the conditional ones and answers the GET ones. The entries that need
+	 * the database are shared out between worker threads when there are several of them.
+	 *
+	 * @return the entries in the order of the batch, the ones still to be written without a response
+	 */
+	private List<BatchEntry> prepareBatch(Bundle bundle, final TransactionTemplate transactionTemplate) {
+		List<BatchEntry> entries = new ArrayList<BatchEntry>();
+		List<BatchEntry> reads = new ArrayList<BatchEntry>();
+		for (int i = 0; i < bundle.getEntry().size(); i++) {
+			BatchEntry entry = new BatchEntry(i, bundle.getEntry().get(i));
+			entries.add(entry);
+			try {
+				entry.request = new BundleEntryRequest(i, entry.entry);
+			}
+			catch (RuntimeException e) {
+				entry.response = failure(e);
+				continue;
+			}
+			if (entry.request.isConditional() || entry.request.getMethod() == Bundle.HTTPVerb.GET) {
+				reads.add(entry);
+			} else {
+				prepare(entry, transactionTemplate);
+			}
+		}
+
+		int workers = Math.min(FHIRUtils.getBatchWorkers(), reads.size());
+		if (workers <= 1) {
+			for (BatchEntry entry : reads) {
+				prepare(entry, transactionTemplate);
+			}
+			return entries;
+		}
+
+		final UserContext userContext = Context.getUserContext();
+		ExecutorService executor = Executors.newFixedThreadPool(workers);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (final BatchEntry entry : reads) {
+				futures.add(executor.submit(new Runnable() {
+
+					@Override
+					public void run() {
+						Context.openSession();
+						Context.setUserContext(userContext);
+						try {
+							prepare(entry, transactionTemplate);
+						}
+						finally {
+							Context.clearUserContext();
+							Context.closeSession();
+						}
+					}
+				}));
+			}
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					futures.get(i).get();
+				}
+				catch (ExecutionException e) {
+					log.error("Failed to prepare entry " + reads.get(i).index + " of the batch", e.getCause());
+					reads.get(i).response = failure(e.getCause());
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InternalErrorException("Interrupted while preparing the batch", e);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		return entries;
+	}
+
+	/**
+	 * Assigns the uuid of an entry and answers it if it is a GET, in a transaction that is only read from. A failure
+	 * becomes the response of the entry.
+	 */
+	private void prepare(final BatchEntry entry, TransactionTemplate transactionTemplate) {
+		try {
+			transactionTemplate.execute(new TransactionCallback<Object>() {
+
+				@Override
+				public Object doInTransaction(TransactionStatus status) {
+					Map<Integer, String> matches = new HashMap<Integer, String>();
+					assignId(entry.request, matches);
+					entry.match = matches.get(entry.index);
+					if (entry.request.getMethod() == Bundle.HTTPVerb.GET) {
+						entry.response = process(entry.request, entry.match);
+					}
+					return null;
+				}
+			});
+		}
+		catch (RuntimeException e) {
+			Context.clearSession();
+			entry.response = failure(e);
+		}
+	}
+
+	/**
+	 * Decides the uuid an entry operates on. Creates get the uuid of their urn:uuid full URL, or keep the id of their
+	 * resource, and conditional interactions are matched against the existing resources.
+	 *
+	 * @param request the entry
+	 * @param matches the map the uuid matched by a conditional interaction is put in, by entry index
+	 * @return the reference other entries use to point at the resource of this entry, or null if there is none
+	 */
+	private String assignId(BundleEntryRequest request, Map<Integer, String> matches) {
+		String resourceName = request.getType().getResourceName();
+		if (request.isConditional()) {
+			String match = match(request);
+			if (match != null) {
+				matches.put(request.getIndex(), match);
+				return resourceName + "/" + match;
+			}
+		} else if (request.getId() != null) {
+			return resourceName + "/" + request.getId();
+		}
+
+		Resource resource = request.getResource();
+		if (resource == null) {
+			return null;
+		}
+		String fullUrl = request.getEntry().getFullUrl();
+		String uuid;
+		if (fullUrl != null && fullUrl.startsWith(URN_UUID)
+				&& UUID_PATTERN.matcher(fullUrl.substring(URN_UUID.length())).matches()) {
+			uuid = fullUrl.substring(URN_UUID.length());
+		} else if (resource.hasIdElement() && resource.getIdElement().hasIdPart()
+				&& !resource.getIdElement().getValue().startsWith("urn:")) {
+			uuid = resource.getIdElement().getIdPart();
+		} else {
+			uuid = UUID.randomUUID().toString();
+		}
+		resource.setId(uuid);
+		return resourceName + "/" + uuid;
+	}
+
+	/**
+	 * @return the uuid of the single resource matching a conditional interaction, or null if none match
+	 */
+	private String match(BundleEntryRequest request) {
+		List<String> uuids = null;
+		for (Map.Entry<String, String> criterion : request.getCriteria().entrySet()) {
+			List<String> found = request.getType().search(criterion.getKey(), criterion.getValue());
+			if (uuids == null) {
+				uuids = new ArrayList<String>(found);
+			} else {
+				uuids.retainAll(found);
+			}
+		}
+		if (uuids == null || uuids.isEmpty()) {
+			return null;
+		}
+		if (uuids.size() > 1) {
+			throw new PreconditionFailedException("The search criteria of entry " + request.getIndex() + " match "
+					+ uuids.size() + " resources");
+		}
+		return uuids.get(0);
+	}
+
+	private void resolveReferences(Resource resource, Map<String, String> references) {
+		if (resource == null || references.isEmpty()) {
+			return;
+		}
+		for (Reference reference : FHIRContextFactory.getFHIRContext().newTerser()
+				.getAllPopulatedChildElementsOfType(resource, Reference.class)) {
+			String resolved = references.get(reference.getReference());
+			if (resolved != null) {
+				reference.setReference(resolved);
+			}
+		}
+	}
+
+	private Bundle.BundleEntryComponent process(BundleEntryRequest request, String match) {
+		String resourceName = request.getType().getResourceName();
+		Resource result = null;
+		String uuid;
+		String status;
+		switch (request.getMethod()) {
+			case POST:
+				if (match != null) {
+					uuid = match;
+					status = "200 OK";
+				} else {
+					result = request.getType().create(request.getResource());
+					uuid = result.getIdElement().getIdPart();
+					status = "201 Created";
+				}
+				break;
+			case PUT:
+				uuid = request.isConditional() ? match : request.getId();
+				if (uuid == null) {
+					result = request.getType().create(request.getResource());
+					uuid = result.getIdElement().getIdPart();
+					status = "201 Created";
+				} else {
+					status = request.getType().read(uuid) == null ? "201 Created" : "200 OK";
+					request.getResource().setId(uuid);
+					result = request.getType().update(request.getResource(), uuid);
+				}
+				break;
+			case DELETE:
+				uuid = request.isConditional() ? match : request.getId();
+				if (uuid != null) {
+					request.getType().delete(uuid);
+				}
+				status = "204 No Content";
+				break;
+			default:
+				uuid = request.getId();
+				result = request.getType().read(uuid);
+				if (result == null) {
+					throw new ResourceNotFoundException(resourceName + "/" + uuid + " is not found");
+				}
+				status = "200 OK";
+		}
+
+		Bundle.BundleEntryComponent entry = new Bundle.BundleEntryComponent();
+		entry.setResource(result);
+		entry.getResponse().setStatus(status);
+		if (uuid != null && request.getMethod() != Bundle.HTTPVerb.DELETE) {
+			entry.getResponse().setLocation(resourceName + "/" + uuid);
+		}
+		return entry;
+	}
+
+	private Bundle.BundleEntryComponent failure(Throwable error) {
+		int statusCode = error instanceof BaseServerResponseException ?
+				((BaseServerResponseException) error).getStatusCode() : UnprocessableEntityException.STATUS_CODE;
+		OperationOutcome outcome = new OperationOutcome();
+		outcome.addIssue()
+				.setSeverity(OperationOutcome.IssueSeverity.ERROR)
+				.setCode(OperationOutcome.IssueType.PROCESSING)
+				.setDiagnostics(error.getMessage());
+
+		Bundle.BundleEntryComponent entry = new Bundle.BundleEntryComponent();
+		entry.getResponse().setStatus(String.valueOf(statusCode));
+		entry.getResponse().setOutcome(outcome);
+		return entry;
+	}
+
+	/**
+	 * An entry of a batch on its way through the two passes of {@link #processBatch(Bundle)}.
+	 */
+	private static class BatchEntry {
+
+		private final int index;
+
+		private final Bundle.BundleEntryComponent entry;
+
+		private BundleEntryRequest request;
+
+		private String match;
+
+		private Bundle.BundleEntryComponent response;
+
+		private BatchEntry(int index, Bundle.BundleEntryComponent entry) {
+			this.index = index;
+			this.entry = entry;
+		}
+	}
+}
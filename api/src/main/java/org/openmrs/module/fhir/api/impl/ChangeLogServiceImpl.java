@@ -0,0 +1,195 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.impl;
+
+import ca.uhn.fhir.model.api.ResourceMetadataKeyEnum;
+import ca.uhn.fhir.rest.server.IBundleProvider;
+import org.hl7.fhir.dstu3.model.Bundle;
+import org.hl7.fhir.dstu3.model.IdType;
+import org.hl7.fhir.dstu3.model.InstantType;
+import org.hl7.fhir.dstu3.model.Resource;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
+import org.openmrs.api.impl.BaseOpenmrsService;
+import org.openmrs.module.fhir.api.ChangeLogService;
+import org.openmrs.module.fhir.api.bundle.BundleEntryType;
+import org.openmrs.module.fhir.api.changelog.ChangeLogEntry;
+import org.openmrs.module.fhir.api.db.FHIRDao;
+import org.openmrs.module.fhir.api.manager.FHIRContextFactory;
+import org.openmrs.module.fhir.api.paging.DatabaseBundleProvider;
+import org.openmrs.module.fhir.api.util.ContextUtil;
+import org.openmrs.module.fhir.api.util.FHIRUtils;
+import org.openmrs.module.fhir.api.util.PrivilegeUtil;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+public class ChangeLogServiceImpl extends BaseOpenmrsService implements ChangeLogService {
+
+	private FHIRDao dao;
+
+	public FHIRDao getDao() {
+		return dao;
+	}
+
+	public void setDao(FHIRDao dao) {
+		this.dao = dao;
+	}
+
+	/**
+	 * @see ChangeLogService#getHistory(String, String, Date)
+	 */
+	@Override
+	public IBundleProvider getHistory(String resourceType, String uuid, Date since) {
+		return new ChangeLogBundleProvider(resourceType, uuid, since, null, true, true);
+	}
+
+	/**
+	 * @see ChangeLogService#searchByLastUpdated(String, Date, Date)
+	 */
+	@Override
+	public IBundleProvider searchByLastUpdated(String resourceType, Date from, Date to) {
+		return new ChangeLogBundleProvider(resourceType, null, from, to, false, false);
+	}
+
+	/**
+	 * @see ChangeLogService#purgeExpiredChanges()
+	 */
+	@Override
+	public int purgeExpiredChanges() {
+		int retentionDays = FHIRUtils.getChangeLogRetentionDays();
+		if (retentionDays <= 0) {
+			return 0;
+		}
+		Calendar before = Calendar.getInstance();
+		before.add(Calendar.DAY_OF_MONTH, -retentionDays);
+		return dao.purgeChangeLog(before.getTime());
+	}
+
+	/**
+	 * Pages through the changed resources with the change log queries and reads the resources of each page. Resources
+	 * whose last change deleted them are returned as delete entries in a history and left out of a search by the
+	 * queries themselves, so that the totals and pages match what is returned. The changes more recent than the read
+	 * lag are left out, as transactions still committing may record changes dated before them.
+	 */
+	private static class ChangeLogBundleProvider extends DatabaseBundleProvider<ChangeLogEntry> {
+
+		private final String resourceType;
+
+		private final String uuid;
+
+		private final Date from;
+
+		private final Date to;
+
+		private final Date readUntil;
+
+		private final boolean newestFirst;
+
+		private final boolean includeDeleted;
+
+		private ChangeLogBundleProvider(String resourceType, String uuid, Date from, Date to, boolean newestFirst,
+				boolean includeDeleted) {
+			super(getPrivilegeObjects(resourceType));
+			this.resourceType = resourceType;
+			this.uuid = uuid;
+			this.from = from;
+			this.readUntil = new Date(System.currentTimeMillis() - FHIRUtils.getChangeLogReadLagSeconds() * 1000L);
+			this.to = to == null || to.after(readUntil) ? readUntil : to;
+			this.newestFirst = newestFirst;
+			this.includeDeleted = includeDeleted;
+		}
+
+		/**
+		 * The history of a type requires the privilege of the type, the system history is limited to the types the
+		 * user can read
+		 */
+		private static String[] getPrivilegeObjects(String resourceType) {
+			BundleEntryType type = resourceType == null ? null : BundleEntryType.forResourceName(resourceType);
+			return type == null ? new String[0] : new String[] { type.getPrivilegeObjects() };
+		}
+
+		/**
+		 * @return the requested types the authenticated user can read
+		 */
+		private List<String> getReadableTypes() {
+			List<String> types = new ArrayList<String>();
+			for (BundleEntryType type : BundleEntryType.values()) {
+				if ((resourceType == null || type.getResourceName().equals(resourceType))
+						&& PrivilegeUtil.hasViewPrivilege(type.getPrivilegeObjects())) {
+					types.add(type.getResourceName());
+				}
+			}
+			return types;
+		}
+
+		/**
+		 * @return the time up to which the log is read, which clients polling the history pass as their next _since
+		 */
+		@Override
+		public IPrimitiveType<Date> getPublished() {
+			return new InstantType(readUntil);
+		}
+
+		@Override
+		protected long count() {
+			return ContextUtil.getFHIRDao().getChangedResourceCount(getReadableTypes(), uuid, from, to, includeDeleted);
+		}
+
+		@Override
+		protected List<ChangeLogEntry> fetch(int firstResult, int maxResults) {
+			return ContextUtil.getFHIRDao().getChangedResources(getReadableTypes(), uuid, from, to, includeDeleted,
+					newestFirst, firstResult, maxResults);
+		}
+
+		@Override
+		protected IBaseResource convert(ChangeLogEntry entry) {
+			BundleEntryType type = BundleEntryType.forResourceName(entry.getResourceType());
+			if (type == null || !PrivilegeUtil.hasViewPrivilege(type.getPrivilegeObjects())) {
+				return null;
+			}
+			if (ChangeLogEntry.DELETE.equals(entry.getOperation())) {
+				return createDeleteEntry(entry);
+			}
+			return type.read(entry.getResourceUuid());
+		}
+
+		/**
+		 * Creates an empty resource with the id of a deleted one, which the server turns into a history entry with the
+		 * DELETE method and no resource
+		 */
+		private IBaseResource createDeleteEntry(ChangeLogEntry entry) {
+			Resource resource = (Resource) FHIRContextFactory.getFHIRContext()
+					.getResourceDefinition(entry.getResourceType()).newInstance();
+			resource.setId(new IdType(entry.getResourceType(), entry.getResourceUuid()));
+			resource.getMeta().setLastUpdated(entry.getChangedAt());
+			ResourceMetadataKeyEnum.ENTRY_TRANSACTION_METHOD.put(resource, Bundle.HTTPVerb.DELETE.toCode());
+			return resource;
+		}
+
+		@Override
+		protected List<IBaseResource> convert(List<ChangeLogEntry> entries) {
+			List<IBaseResource> resources = new ArrayList<IBaseResource>();
+			for (ChangeLogEntry entry : entries) {
+				IBaseResource resource = convert(entry);
+				if (resource != null) {
+					resources.add(resource);
+				}
+			}
+			return resources;
+		}
+	}
+}
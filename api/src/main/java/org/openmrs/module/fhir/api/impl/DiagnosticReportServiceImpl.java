@@ -29,6 +29,7 @@ import org.openmrs.module.fhir.api.db.FHIRDao;
 import org.openmrs.module.fhir.api.diagnosticreport.DiagnosticReportHandler;
 import org.openmrs.module.fhir.api.util.FHIRConstants;
 import org.openmrs.module.fhir.api.util.FHIRDiagnosticReportUtil;
+import org.openmrs.module.fhir.api.util.FHIRGlobalProperties;
 import org.openmrs.util.OpenmrsClassLoader;
 
 import java.util.HashMap;
@@ -58,7 +59,7 @@ public class DiagnosticReportServiceImpl extends BaseOpenmrsService implements D
 
 	//TODO: find a better way to do this!
 	private void loadHandlerMap() {
-		String orderTypeHandlerMapText = Context.getAdministrationService().getGlobalProperty(FHIR_DIAGNOSTICREPORT_ORDER_TYPE_TO_HANDLER_MAP);
+		String orderTypeHandlerMapText = FHIRGlobalProperties.get(FHIR_DIAGNOSTICREPORT_ORDER_TYPE_TO_HANDLER_MAP);
 		if (!StringUtils.isEmpty(orderTypeHandlerMapText)) {
 			String[] parts = orderTypeHandlerMapText.trim().split(",");
 			for (String part : parts) {
@@ -13,6 +13,8 @@
  */
 package org.openmrs.module.fhir.api.impl;
 
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hl7.fhir.dstu3.model.Location;
@@ -63,10 +65,10 @@ public class LocationServiceImpl extends BaseOpenmrsService implements LocationS
 	}
 
 	/**
-	 * @see org.openmrs.module.fhir.api.LocationService#searchLocationsByName(String)
+	 * @see org.openmrs.module.fhir.api.LocationService#searchLocationsByName(StringParam)
 	 */
 	@Override
-	public List<Location> searchLocationsByName(String name) {
+	public IBundleProvider searchLocationsByName(StringParam name) {
 		return LocationStrategyUtil.getLocationStrategy().searchLocationsByName(name);
 	}
 
@@ -74,7 +76,7 @@ public class LocationServiceImpl extends BaseOpenmrsService implements LocationS
 	 * @see org.openmrs.module.fhir.api.LocationService#searchLocationsByStatus(boolean)
 	 */
 	@Override
-	public List<Location> searchLocationsByStatus(boolean status) {
+	public IBundleProvider searchLocationsByStatus(boolean status) {
 		return LocationStrategyUtil.getLocationStrategy().searchLocationsByStatus(status);
 	}
 
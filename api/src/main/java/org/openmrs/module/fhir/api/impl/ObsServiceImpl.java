@@ -13,10 +13,13 @@
  */
 package org.openmrs.module.fhir.api.impl;
 
+import ca.uhn.fhir.rest.param.QuantityAndListParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hl7.fhir.dstu3.model.Observation;
+import org.hl7.fhir.dstu3.model.Parameters;
 import org.openmrs.api.impl.BaseOpenmrsService;
 import org.openmrs.module.fhir.api.ObsService;
 import org.openmrs.module.fhir.api.db.FHIRDao;
@@ -59,7 +62,7 @@ public class ObsServiceImpl extends BaseOpenmrsService implements ObsService {
 	/**
 	 * @see org.openmrs.module.fhir.api.ObsService#searchObsByPatientAndConcept(String, java.util.Map)
 	 */
-	public List<Observation> searchObsByPatientAndConcept(String patientUUid, Map<String, String> conceptNamesAndURIs) {
+	public IBundleProvider searchObsByPatientAndConcept(String patientUUid, Map<String, String> conceptNamesAndURIs) {
 		return ObservationStrategyUtil.getObservationStrategy()
 				.searchObservationByPatientAndConcept(patientUUid, conceptNamesAndURIs);
 	}
@@ -74,28 +77,28 @@ public class ObsServiceImpl extends BaseOpenmrsService implements ObsService {
 	/**
 	 * @see org.openmrs.module.fhir.api.ObsService#searchObsByCode(java.util.Map)
 	 */
-	public List<Observation> searchObsByCode(Map<String, String> conceptNamesAndURIs) {
+	public IBundleProvider searchObsByCode(Map<String, String> conceptNamesAndURIs) {
 		return ObservationStrategyUtil.getObservationStrategy().searchObservationsByCode(conceptNamesAndURIs);
 	}
 
 	/**
 	 * @see org.openmrs.module.fhir.api.ObsService#searchObsByDate(java.util.Date)
 	 */
-	public List<Observation> searchObsByDate(Date date) {
+	public IBundleProvider searchObsByDate(Date date) {
 		return ObservationStrategyUtil.getObservationStrategy().searchObservationByDate(date);
 	}
 
 	/**
 	 * @see org.openmrs.module.fhir.api.ObsService#searchObsByPerson(String)
 	 */
-	public List<Observation> searchObsByPerson(String personUuid) {
+	public IBundleProvider searchObsByPerson(String personUuid) {
 		return ObservationStrategyUtil.getObservationStrategy().searchObservationByPerson(personUuid);
 	}
 
 	/**
 	 * @see org.openmrs.module.fhir.api.ObsService#searchObsByValueConcept(String)
 	 */
-	public List<Observation> searchObsByValueConcept(String conceptName) {
+	public IBundleProvider searchObsByValueConcept(String conceptName) {
 		return ObservationStrategyUtil.getObservationStrategy().searchObservationByValueConcept(conceptName);
 	}
 
@@ -134,8 +137,47 @@ public class ObsServiceImpl extends BaseOpenmrsService implements ObsService {
 	 * @see ObsService#searchObsByPatientAndCode(java.lang.String, java.util.List)
 	 */
 	@Override
-	public List<Observation> searchObsByPatientAndCode(String patientUuid, List<TokenParam> codings) {
+	public IBundleProvider searchObsByPatientAndCode(String patientUuid, List<TokenParam> codings) {
 		return ObservationStrategyUtil.getObservationStrategy().searchObservationByPatientAndCode(patientUuid,
 				codings);
 	}
+
+	/**
+	 * @see ObsService#searchObs(String, java.util.List, java.util.Date, java.util.Date, String,
+	 * ca.uhn.fhir.rest.param.QuantityAndListParam, boolean)
+	 */
+	@Override
+	public IBundleProvider searchObs(String subjectUuid, List<TokenParam> codings, Date fromDate, Date toDate,
+			String encounterUuid, QuantityAndListParam values, boolean ascending) {
+		return ObservationStrategyUtil.getObservationStrategy().searchObservations(subjectUuid, codings, fromDate,
+				toDate, encounterUuid, values, ascending);
+	}
+
+	/**
+	 * @see ObsService#getLastObs(String, java.util.List, int)
+	 */
+	@Override
+	public List<Observation> getLastObs(String patientUuid, List<TokenParam> codings, int max) {
+		return ObservationStrategyUtil.getObservationStrategy().getLastObservations(patientUuid, codings, max);
+	}
+
+	/**
+	 * @see ObsService#getObsTimeSeries(String, java.util.List, java.util.Date, java.util.Date, int)
+	 */
+	@Override
+	public Parameters getObsTimeSeries(String patientUuid, List<TokenParam> codings, Date fromDate, Date toDate,
+			int points) {
+		return ObservationStrategyUtil.getObservationStrategy().getObservationTimeSeries(patientUuid, codings,
+				fromDate, toDate, points);
+	}
+
+	/**
+	 * @see ObsService#getObsStatistics(java.util.List, String, String, java.util.Date, java.util.Date)
+	 */
+	@Override
+	public Parameters getObsStatistics(List<TokenParam> codings, String patientUuid, String groupUuid, Date fromDate,
+			Date toDate) {
+		return ObservationStrategyUtil.getObservationStrategy().getObservationStatistics(codings, patientUuid,
+				groupUuid, fromDate, toDate);
+	}
 }
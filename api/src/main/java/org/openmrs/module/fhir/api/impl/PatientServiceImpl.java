@@ -13,6 +13,8 @@
  */
 package org.openmrs.module.fhir.api.impl;
 
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hl7.fhir.dstu3.model.Bundle;
@@ -22,6 +24,7 @@ import org.openmrs.module.fhir.api.PatientService;
 import org.openmrs.module.fhir.api.db.FHIRDao;
 import org.openmrs.module.fhir.api.strategies.patient.PatientStrategyUtil;
 
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -78,21 +81,21 @@ public class PatientServiceImpl extends BaseOpenmrsService implements PatientSer
 	/**
 	 * @see org.openmrs.module.fhir.api.PatientService#searchPatients(boolean)
 	 */
-	public List<Patient> searchPatients(boolean active) {
+	public IBundleProvider searchPatients(boolean active) {
 		return PatientStrategyUtil.getPatientStrategy().searchPatients(active);
 	}
 
 	/**
-	 * @see org.openmrs.module.fhir.api.PatientService#searchPatientsByGivenName(String)
+	 * @see org.openmrs.module.fhir.api.PatientService#searchPatientsByGivenName(StringParam)
 	 */
-	public Bundle searchPatientsByGivenName(String givenName) {
+	public IBundleProvider searchPatientsByGivenName(StringParam givenName) {
 		return PatientStrategyUtil.getPatientStrategy().searchPatientsByGivenName(givenName);
 	}
 
 	/**
-	 * @see org.openmrs.module.fhir.api.PatientService#searchPatientsByFamilyName(String)
+	 * @see org.openmrs.module.fhir.api.PatientService#searchPatientsByFamilyName(StringParam)
 	 */
-	public Bundle searchPatientsByFamilyName(String familyName) {
+	public IBundleProvider searchPatientsByFamilyName(StringParam familyName) {
 		return PatientStrategyUtil.getPatientStrategy().searchPatientsByFamilyName(familyName);
 	}
 
@@ -104,10 +107,10 @@ public class PatientServiceImpl extends BaseOpenmrsService implements PatientSer
 	}
 
 	/**
-	 * @see org.openmrs.module.fhir.api.PatientService#getPatientOperationsById(String)
+	 * @see org.openmrs.module.fhir.api.PatientService#getPatientOperationsById(String, Date, List, Integer)
 	 */
-	public Bundle getPatientOperationsById(String patientId) {
-		return PatientStrategyUtil.getPatientStrategy().getPatientOperationsById(patientId);
+	public IBundleProvider getPatientOperationsById(String patientId, Date since, List<String> types, Integer count) {
+		return PatientStrategyUtil.getPatientStrategy().getPatientOperationsById(patientId, since, types, count);
 	}
 
 	/**
@@ -13,6 +13,8 @@
  */
 package org.openmrs.module.fhir.api.impl;
 
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hl7.fhir.dstu3.model.Practitioner;
@@ -68,16 +70,16 @@ public class PractitionerServiceImpl extends BaseOpenmrsService implements Pract
 	}
 
 	/**
-	 * @see org.openmrs.module.fhir.api.PractitionerService#searchPractitionersByGivenName(String)
+	 * @see org.openmrs.module.fhir.api.PractitionerService#searchPractitionersByGivenName(StringParam)
 	 */
-	public List<Practitioner> searchPractitionersByGivenName(String givenName) {
+	public IBundleProvider searchPractitionersByGivenName(StringParam givenName) {
 		return PractitionerStrategyUtil.getPractitionerStrategy().searchPractitionersByGivenName(givenName);
 	}
 
 	/**
-	 * @see org.openmrs.module.fhir.api.PractitionerService#searchPractitionersByFamilyName(String)
+	 * @see org.openmrs.module.fhir.api.PractitionerService#searchPractitionersByFamilyName(StringParam)
 	 */
-	public List<Practitioner> searchPractitionersByFamilyName(String familyName) {
+	public IBundleProvider searchPractitionersByFamilyName(StringParam familyName) {
 		return PractitionerStrategyUtil.getPractitionerStrategy().searchPractitionersByFamilyName(familyName);
 	}
 
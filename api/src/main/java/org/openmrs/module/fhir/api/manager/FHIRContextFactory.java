@@ -14,12 +14,100 @@
 package org.openmrs.module.fhir.api.manager;
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.IParser;
+import org.hl7.fhir.dstu3.model.ResourceType;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Holds the single DSTU3 {@link FhirContext} shared by the REST server, the converters and the sync client. Creating a
+ * context scans the whole model, so it is created once and warmed up when the module starts.
+ * <p/>
+ * Parsers are not thread safe, so each thread gets its own parsers. They are kept in a map weakly keyed by the thread
+ * rather than in thread locals, as the server threads outlive the module and their thread locals would keep its
+ * classloader from being collected once the module is stopped. Callers must not change the settings of the returned
+ * parsers; when different settings are needed create a parser from {@link #getFHIRContext()}.
+ */
 public class FHIRContextFactory {
 
-	private static final FhirContext context = new FhirContext();
+	private static final FhirContext context = FhirContext.forDstu3();
+
+	private static final Map<Thread, Parsers> parsers = Collections.synchronizedMap(new WeakHashMap<Thread, Parsers>());
 
 	public static FhirContext getFHIRContext() {
 		return context;
 	}
+
+	/**
+	 * @return the JSON parser of the current thread
+	 */
+	public static IParser getJsonParser() {
+		Parsers threadParsers = getParsers();
+		if (threadParsers.json == null) {
+			threadParsers.json = context.newJsonParser();
+		}
+		return threadParsers.json;
+	}
+
+	/**
+	 * @return the pretty printing JSON parser of the current thread, encoding like the server does by default
+	 */
+	public static IParser getPrettyJsonParser() {
+		Parsers threadParsers = getParsers();
+		if (threadParsers.prettyJson == null) {
+			threadParsers.prettyJson = context.newJsonParser().setPrettyPrint(true);
+		}
+		return threadParsers.prettyJson;
+	}
+
+	/**
+	 * @return the pretty printing XML parser of the current thread, encoding like the server does by default
+	 */
+	public static IParser getPrettyXmlParser() {
+		Parsers threadParsers = getParsers();
+		if (threadParsers.prettyXml == null) {
+			threadParsers.prettyXml = context.newXmlParser().setPrettyPrint(true);
+		}
+		return threadParsers.prettyXml;
+	}
+
+	/**
+	 * Scans the definitions of all the DSTU3 resources, so the first requests do not pay for it
+	 */
+	public static void warmUp() {
+		for (ResourceType resourceType : ResourceType.values()) {
+			context.getResourceDefinition(resourceType.name());
+		}
+	}
+
+	/**
+	 * Drops the parsers of all the threads, called when the module stops
+	 */
+	public static void releaseParsers() {
+		parsers.clear();
+	}
+
+	private static Parsers getParsers() {
+		Thread thread = Thread.currentThread();
+		Parsers threadParsers = parsers.get(thread);
+		if (threadParsers == null) {
+			threadParsers = new Parsers();
+			parsers.put(thread, threadParsers);
+		}
+		return threadParsers;
+	}
+
+	/**
+	 * The parsers of a thread, only ever used by that thread
+	 */
+	private static class Parsers {
+
+		private IParser json;
+
+		private IParser prettyJson;
+
+		private IParser prettyXml;
+	}
 }
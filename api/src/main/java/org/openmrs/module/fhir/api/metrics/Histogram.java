@@ -0,0 +1,131 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative long values with a relative precision of about 3%, recorded without locking. Like
+ * HdrHistogram, the values are counted in buckets which double in width every 32 buckets, so small and large values are
+ * both resolved to their two most significant decimal digits with a fixed, small amount of memory.
+ * <p/>
+ * Recording only increments atomic counters. The quantiles are computed from a walk of the counters, which may see a
+ * value being recorded concurrently in one counter and not yet in another, so they are approximate while requests are
+ * in flight.
+ */
+public class Histogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+	private static final int MAXIMUM_MAGNITUDE = 36;
+
+	private static final long HIGHEST_TRACKABLE_VALUE = (1L << (MAXIMUM_MAGNITUDE + 1)) - 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray(
+			(MAXIMUM_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT);
+
+	private final AtomicLong totalCount = new AtomicLong();
+
+	private final AtomicLong sum = new AtomicLong();
+
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a value, negative values are recorded as 0 and values of 2^37 or more as 2^37 - 1
+	 *
+	 * @param value the value to record
+	 */
+	public void record(long value) {
+		long recorded = Math.min(Math.max(value, 0), HIGHEST_TRACKABLE_VALUE);
+		counts.incrementAndGet(getIndex(recorded));
+		sum.addAndGet(recorded);
+		totalCount.incrementAndGet();
+
+		long current = max.get();
+		while (recorded > current && !max.compareAndSet(current, recorded)) {
+			current = max.get();
+		}
+	}
+
+	public long getCount() {
+		return totalCount.get();
+	}
+
+	public long getSum() {
+		return sum.get();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @return the mean of the recorded values, 0 if none was recorded
+	 */
+	public double getMean() {
+		long count = totalCount.get();
+		return count == 0 ? 0 : (double) sum.get() / count;
+	}
+
+	/**
+	 * Gets the value below or at which the given fraction of the recorded values fall
+	 *
+	 * @param quantile the fraction, between 0 and 1
+	 * @return the highest value of the bucket the quantile falls in, 0 if no value was recorded
+	 */
+	public long getValueAtQuantile(double quantile) {
+		long count = totalCount.get();
+		if (count == 0) {
+			return 0;
+		}
+
+		long target = Math.max(1, (long) Math.ceil(Math.min(Math.max(quantile, 0), 1) * count));
+		long seen = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			seen += counts.get(i);
+			if (seen >= target) {
+				return Math.min(getHighestValue(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * @return the index of the bucket counting a value between 0 and {@link #HIGHEST_TRACKABLE_VALUE}
+	 */
+	static int getIndex(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		int magnitude = 63 - Long.numberOfLeadingZeros(value);
+		int shift = magnitude - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+		return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+	}
+
+	/**
+	 * @return the highest value counted by the bucket at an index
+	 */
+	static long getHighestValue(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+		int shift = index / SUB_BUCKET_COUNT - 1;
+		long lowest = (long) (SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The metrics of one operation on one resource type: the number of requests by status class, their latency and the
+ * size of their responses
+ */
+public class OperationMetrics {
+
+	private final String resourceName;
+
+	private final String operation;
+
+	private final Histogram latency = new Histogram();
+
+	private final Histogram responseSize = new Histogram();
+
+	private final AtomicLongArray statusCounts = new AtomicLongArray(6);
+
+	/**
+	 * @param resourceName the resource type, empty for the server level operations
+	 * @param operation    the operation
+	 */
+	public OperationMetrics(String resourceName, String operation) {
+		this.resourceName = resourceName;
+		this.operation = operation;
+	}
+
+	/**
+	 * Records a completed request
+	 *
+	 * @param durationMicros the time taken to answer the request, in microseconds
+	 * @param responseBytes  the number of bytes written in the response body
+	 * @param status         the HTTP status of the response
+	 */
+	public void record(long durationMicros, long responseBytes, int status) {
+		latency.record(durationMicros);
+		responseSize.record(responseBytes);
+		statusCounts.incrementAndGet(getStatusClass(status));
+	}
+
+	public String getResourceName() {
+		return resourceName;
+	}
+
+	public String getOperation() {
+		return operation;
+	}
+
+	/**
+	 * @return the latency of the requests, in microseconds
+	 */
+	public Histogram getLatency() {
+		return latency;
+	}
+
+	/**
+	 * @return the size of the response bodies, in bytes
+	 */
+	public Histogram getResponseSize() {
+		return responseSize;
+	}
+
+	public long getRequestCount() {
+		return latency.getCount();
+	}
+
+	/**
+	 * @return the number of requests answered with a 4xx or 5xx status
+	 */
+	public long getErrorCount() {
+		return statusCounts.get(4) + statusCounts.get(5);
+	}
+
+	/**
+	 * @param statusClass the first digit of the HTTP status, 0 counts the requests with an invalid status
+	 * @return the number of requests answered with a status of the class
+	 */
+	public long getStatusCount(int statusClass) {
+		return statusCounts.get(statusClass);
+	}
+
+	private static int getStatusClass(int status) {
+		int statusClass = status / 100;
+		return statusClass >= 1 && statusClass <= 5 ? statusClass : 0;
+	}
+}
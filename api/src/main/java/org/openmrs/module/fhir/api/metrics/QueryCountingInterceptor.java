@@ -0,0 +1,32 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.metrics;
+
+import org.hibernate.EmptyInterceptor;
+
+/**
+ * Hibernate interceptor which counts the SQL statements prepared for the timed request of the current thread, see
+ * {@link RequestTiming}. It is picked up by the OpenMRS session factory like any other
+ * {@link org.hibernate.Interceptor} bean.
+ */
+public class QueryCountingInterceptor extends EmptyInterceptor {
+
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	public String onPrepareStatement(String sql) {
+		RequestTiming.countQuery();
+		return sql;
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Collects the {@link OperationMetrics} of the requests answered by the REST server, per resource type and operation,
+ * and renders them in the Prometheus text format. The number of series is bounded by the resource types and operations
+ * the server supports, requests which do not resolve to one are all counted under the {@code unknown} operation.
+ */
+public class RequestMetrics {
+
+	public static final String UNKNOWN_OPERATION = "unknown";
+
+	private static final double[] QUANTILES = { 0.5, 0.9, 0.95, 0.99 };
+
+	private static final String[] STATUS_CLASSES = { "other", "1xx", "2xx", "3xx", "4xx", "5xx" };
+
+	private static final RequestMetrics instance = new RequestMetrics();
+
+	private final ConcurrentMap<String, OperationMetrics> operations = new ConcurrentHashMap<String, OperationMetrics>();
+
+	public static RequestMetrics getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Records a completed request
+	 *
+	 * @param resourceName  the resource type, null for the server level operations
+	 * @param operation     the operation, null if the request did not resolve to one
+	 * @param durationNanos the time taken to answer the request, in nanoseconds
+	 * @param responseBytes the number of bytes written in the response body
+	 * @param status        the HTTP status of the response
+	 */
+	public void record(String resourceName, String operation, long durationNanos, long responseBytes, int status) {
+		getOperationMetrics(resourceName, operation).record(durationNanos / 1000, responseBytes, status);
+	}
+
+	/**
+	 * @return the metrics of all the operations requested so far, ordered by resource type and operation
+	 */
+	public List<OperationMetrics> getOperations() {
+		List<OperationMetrics> result = new ArrayList<OperationMetrics>(operations.values());
+		Collections.sort(result, new Comparator<OperationMetrics>() {
+
+			@Override
+			public int compare(OperationMetrics first, OperationMetrics second) {
+				int byResource = first.getResourceName().compareTo(second.getResourceName());
+				return byResource != 0 ? byResource : first.getOperation().compareTo(second.getOperation());
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Discards all the metrics recorded so far
+	 */
+	public void clear() {
+		operations.clear();
+	}
+
+	/**
+	 * @return the metrics in the Prometheus text exposition format, latencies in seconds and sizes in bytes
+	 */
+	public String toPrometheusText() {
+		List<OperationMetrics> metrics = getOperations();
+		StringBuilder text = new StringBuilder();
+
+		appendHeader(text, "fhir_requests_total", "counter", "Number of FHIR requests by response status class");
+		for (OperationMetrics operation : metrics) {
+			for (int i = 0; i < STATUS_CLASSES.length; i++) {
+				long count = operation.getStatusCount(i);
+				if (count > 0) {
+					appendSample(text, "fhir_requests_total", operation, "status", STATUS_CLASSES[i], count);
+				}
+			}
+		}
+
+		appendHeader(text, "fhir_request_errors_total", "counter", "Number of FHIR requests answered with an error");
+		for (OperationMetrics operation : metrics) {
+			appendSample(text, "fhir_request_errors_total", operation, null, null, operation.getErrorCount());
+		}
+
+		appendHeader(text, "fhir_request_duration_seconds", "summary", "Time taken to answer FHIR requests");
+		for (OperationMetrics operation : metrics) {
+			appendSummary(text, "fhir_request_duration_seconds", operation, operation.getLatency(), 1000000.0);
+		}
+
+		appendHeader(text, "fhir_request_duration_seconds_max", "gauge", "Longest time taken to answer a FHIR request");
+		for (OperationMetrics operation : metrics) {
+			appendSample(text, "fhir_request_duration_seconds_max", operation, null, null,
+					operation.getLatency().getMax() / 1000000.0);
+		}
+
+		appendHeader(text, "fhir_response_size_bytes", "summary", "Size of the FHIR response bodies");
+		for (OperationMetrics operation : metrics) {
+			appendSummary(text, "fhir_response_size_bytes", operation, operation.getResponseSize(), 1.0);
+		}
+		return text.toString();
+	}
+
+	private OperationMetrics getOperationMetrics(String resourceName, String operation) {
+		String resource = resourceName == null ? "" : resourceName;
+		String name = operation == null ? UNKNOWN_OPERATION : operation;
+		String key = resource + "/" + name;
+		OperationMetrics metrics = operations.get(key);
+		if (metrics == null) {
+			OperationMetrics created = new OperationMetrics(resource, name);
+			metrics = operations.putIfAbsent(key, created);
+			if (metrics == null) {
+				metrics = created;
+			}
+		}
+		return metrics;
+	}
+
+	private void appendHeader(StringBuilder text, String name, String type, String help) {
+		text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+
+	private void appendSummary(StringBuilder text, String name, OperationMetrics operation, Histogram histogram,
+			double unit) {
+		for (double quantile : QUANTILES) {
+			appendSample(text, name, operation, "quantile", String.valueOf(quantile),
+					histogram.getValueAtQuantile(quantile) / unit);
+		}
+		appendSample(text, name + "_sum", operation, null, null, histogram.getSum() / unit);
+		appendSample(text, name + "_count", operation, null, null, histogram.getCount());
+	}
+
+	private void appendSample(StringBuilder text, String name, OperationMetrics operation, String label,
+			String labelValue, Number value) {
+		text.append(name).append("{resource=\"").append(escape(operation.getResourceName()))
+				.append("\",operation=\"").append(escape(operation.getOperation())).append('"');
+		if (label != null) {
+			text.append(',').append(label).append("=\"").append(labelValue).append('"');
+		}
+		text.append("} ").append(value).append('\n');
+	}
+
+	private String escape(String labelValue) {
+		return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+}
@@ -0,0 +1,263 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Breaks down the time taken by the request being processed on the current thread into phases: the strategies, the
+ * helpers, the DAO, the conversion to FHIR and the encoding of the response. Each phase is timed exclusively of the
+ * phases nested in it, so a strategy loading objects through the DAO is only charged for its own work. The number of
+ * SQL statements prepared by Hibernate is counted alongside.
+ * <p/>
+ * The server starts the timing of each request when enabled. Without a timing on the current thread, beginning a phase
+ * returns a phase which does nothing and {@link #time(Object, Class, String)} returns the component itself, so the
+ * instrumented layers cost nothing outside of timed requests.
+ */
+public class RequestTiming {
+
+	public static final String STRATEGY = "strategy";
+
+	public static final String HELPER = "helper";
+
+	public static final String DAO = "dao";
+
+	public static final String CONVERSION = "conversion";
+
+	public static final String ENCODING = "encoding";
+
+	private static final ThreadLocal<RequestTiming> current = new ThreadLocal<RequestTiming>();
+
+	private static final Phase NO_PHASE = new Phase(null, null, null);
+
+	private final long start = System.nanoTime();
+
+	private final Map<String, Long> durations = new LinkedHashMap<String, Long>();
+
+	private Phase currentPhase;
+
+	private int queryCount;
+
+	private RequestTiming() {
+		for (String phase : new String[] { STRATEGY, HELPER, DAO, CONVERSION, ENCODING }) {
+			durations.put(phase, 0L);
+		}
+	}
+
+	/**
+	 * Starts timing the request processed on the current thread
+	 *
+	 * @return the timing of the request
+	 */
+	public static RequestTiming start() {
+		RequestTiming timing = new RequestTiming();
+		current.set(timing);
+		return timing;
+	}
+
+	/**
+	 * @return the timing of the request processed on the current thread, or null if it is not timed
+	 */
+	public static RequestTiming getCurrent() {
+		return current.get();
+	}
+
+	/**
+	 * Stops timing the request processed on the current thread
+	 */
+	public static void finish() {
+		current.remove();
+	}
+
+	/**
+	 * Begins a phase of the current request, to be ended in a finally block
+	 *
+	 * @param name the name of the phase
+	 * @return the phase
+	 */
+	public static Phase begin(String name) {
+		RequestTiming timing = current.get();
+		if (timing == null) {
+			return NO_PHASE;
+		}
+		timing.currentPhase = new Phase(timing, name, timing.currentPhase);
+		return timing.currentPhase;
+	}
+
+	/**
+	 * Counts a SQL statement prepared for the current request
+	 */
+	public static void countQuery() {
+		RequestTiming timing = current.get();
+		if (timing != null) {
+			timing.queryCount++;
+		}
+	}
+
+	/**
+	 * Times the calls made to a component during the current request
+	 *
+	 * @param component the component, may be null
+	 * @param type      the interface the calls are made through
+	 * @param phase     the phase the calls are charged to
+	 * @return a proxy timing the calls if the current request is timed, the component itself otherwise
+	 */
+	public static <T> T time(T component, Class<T> type, String phase) {
+		if (current.get() == null) {
+			return component;
+		}
+		return instrument(component, type, phase);
+	}
+
+	/**
+	 * Times the calls made to a component during every timed request, for the components resolved once and kept
+	 *
+	 * @param component the component, may be null
+	 * @param type      the interface the calls are made through
+	 * @param phase     the phase the calls are charged to
+	 * @return a proxy timing the calls made during timed requests, or the component itself if it cannot be proxied
+	 */
+	public static <T> T instrument(T component, Class<T> type, String phase) {
+		if (component == null || !type.isInterface()
+				|| (Proxy.isProxyClass(component.getClass())
+				&& Proxy.getInvocationHandler(component) instanceof TimingHandler)) {
+			return component;
+		}
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+				new TimingHandler(component, phase)));
+	}
+
+	/**
+	 * @return the time elapsed since the request started, in nanoseconds
+	 */
+	public long getElapsed() {
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * @param phase the name of a phase
+	 * @return the time spent in the phase, nested phases excluded, in nanoseconds
+	 */
+	public long getDuration(String phase) {
+		Long duration = durations.get(phase);
+		return duration == null ? 0 : duration;
+	}
+
+	/**
+	 * @return the number of SQL statements prepared so far
+	 */
+	public int getQueryCount() {
+		return queryCount;
+	}
+
+	/**
+	 * @return the value of a Server-Timing header for the phases completed so far
+	 */
+	public String toServerTimingHeader() {
+		StringBuilder header = new StringBuilder();
+		for (Map.Entry<String, Long> duration : durations.entrySet()) {
+			if (duration.getValue() > 0) {
+				header.append(duration.getKey()).append(";dur=").append(toMillis(duration.getValue())).append(", ");
+			}
+		}
+		header.append("queries;desc=\"").append(queryCount).append("\", ");
+		header.append("total;dur=").append(toMillis(getElapsed()));
+		return header.toString();
+	}
+
+	/**
+	 * @return the phases completed so far, for the access log
+	 */
+	public String toLogMessage() {
+		StringBuilder message = new StringBuilder();
+		for (Map.Entry<String, Long> duration : durations.entrySet()) {
+			message.append(duration.getKey()).append('=').append(toMillis(duration.getValue())).append("ms ");
+		}
+		message.append("queries=").append(queryCount).append(" total=").append(toMillis(getElapsed())).append("ms");
+		return message.toString();
+	}
+
+	private static String toMillis(long nanos) {
+		return String.format(Locale.ROOT, "%.1f", nanos / 1000000.0);
+	}
+
+	/**
+	 * A phase of a request, ended by {@link #end()}
+	 */
+	public static class Phase {
+
+		private final RequestTiming timing;
+
+		private final String name;
+
+		private final Phase parent;
+
+		private final long start = System.nanoTime();
+
+		private long nestedNanos;
+
+		private Phase(RequestTiming timing, String name, Phase parent) {
+			this.timing = timing;
+			this.name = name;
+			this.parent = parent;
+		}
+
+		/**
+		 * Ends the phase, charging its time minus the time of its nested phases
+		 */
+		public void end() {
+			if (timing == null) {
+				return;
+			}
+			long elapsed = System.nanoTime() - start;
+			timing.durations.put(name, timing.getDuration(name) + elapsed - nestedNanos);
+			if (parent != null) {
+				parent.nestedNanos += elapsed;
+			}
+			timing.currentPhase = parent;
+		}
+	}
+
+	private static class TimingHandler implements InvocationHandler {
+
+		private final Object component;
+
+		private final String phase;
+
+		private TimingHandler(Object component, String phase) {
+			this.component = component;
+			this.phase = phase;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			Phase timed = begin(phase);
+			try {
+				return method.invoke(component, args);
+			}
+			catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+			finally {
+				timed.end();
+			}
+		}
+	}
+}
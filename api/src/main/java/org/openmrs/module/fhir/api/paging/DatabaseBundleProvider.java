@@ -0,0 +1,169 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.paging;
+
+import ca.uhn.fhir.rest.server.IBundleProvider;
+import org.hl7.fhir.dstu3.model.InstantType;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
+import org.openmrs.module.fhir.api.metrics.RequestTiming;
+import org.openmrs.module.fhir.api.util.PrivilegeUtil;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A search result which is evaluated page by page against the database. Only the total count is queried when the
+ * search is executed, each page requested by the paging provider is loaded and converted on demand.
+ * <p/>
+ * Instances are kept by the paging provider between requests, so implementations must only hold the search
+ * parameters and never the loaded OpenMRS objects.
+ * <p/>
+ * The queries bypass the OpenMRS services and their privilege checks, so the privileges needed to read the objects are
+ * checked each time the count or a page is requested.
+ * <p/>
+ * It backs the searches scanning a whole table: the observation, patient, practitioner and location searches. The
+ * searches narrowed to an id or to the chart of one patient, like the encounters, allergies and medication requests of
+ * a patient, still return lists which the paging provider of the server pages in memory.
+ *
+ * @param <T> the OpenMRS type returned by the page queries
+ */
+public abstract class DatabaseBundleProvider<T> implements IBundleProvider {
+
+	private final InstantType published = InstantType.withCurrentTime();
+
+	private final String[] privilegeObjects;
+
+	private Integer size;
+
+	/**
+	 * @param privilegeObjects the plural names of the OpenMRS objects read by the search, as used in their View and Get
+	 *                         privileges
+	 * @see PrivilegeUtil#requireViewPrivileges(String...)
+	 */
+	protected DatabaseBundleProvider(String... privilegeObjects) {
+		this.privilegeObjects = privilegeObjects;
+	}
+
+	/**
+	 * Counts all the OpenMRS objects matching the search
+	 *
+	 * @return the total number of matches
+	 */
+	protected abstract long count();
+
+	/**
+	 * Loads a single page of OpenMRS objects matching the search
+	 *
+	 * @param firstResult the index of the first object to load
+	 * @param maxResults  the maximum number of objects to load
+	 * @return the objects in the page
+	 */
+	protected abstract List<T> fetch(int firstResult, int maxResults);
+
+	/**
+	 * Converts a loaded OpenMRS object to its FHIR representation
+	 *
+	 * @param object the OpenMRS object
+	 * @return the FHIR resource
+	 */
+	protected abstract IBaseResource convert(T object);
+
+	/**
+	 * Converts a loaded page of OpenMRS objects to their FHIR representation. Override it when a page can be converted
+	 * more efficiently as a whole than object by object.
+	 *
+	 * @param objects the OpenMRS objects of the page
+	 * @return the FHIR resources, in the same order
+	 */
+	protected List<IBaseResource> convert(List<T> objects) {
+		List<IBaseResource> resources = new ArrayList<IBaseResource>();
+		for (T object : objects) {
+			resources.add(convert(object));
+		}
+		return resources;
+	}
+
+	@Override
+	public IPrimitiveType<Date> getPublished() {
+		return published;
+	}
+
+	@Override
+	public List<IBaseResource> getResources(int fromIndex, int toIndex) {
+		PrivilegeUtil.requireViewPrivileges(privilegeObjects);
+		int first = Math.max(fromIndex, 0);
+		int last = Math.min(toIndex, size());
+		if (last <= first) {
+			return new ArrayList<IBaseResource>();
+		}
+		return load(first, last - first);
+	}
+
+	/**
+	 * Loads a page of OpenMRS objects and converts it to FHIR resources. Override it to convert the objects while
+	 * they are being read rather than once the whole page is loaded.
+	 *
+	 * @param firstResult the index of the first object to load
+	 * @param maxResults  the maximum number of objects to load
+	 * @return the FHIR resources of the page
+	 */
+	protected List<IBaseResource> load(int firstResult, int maxResults) {
+		List<T> objects;
+		RequestTiming.Phase phase = RequestTiming.begin(RequestTiming.DAO);
+		try {
+			objects = fetch(firstResult, maxResults);
+		}
+		finally {
+			phase.end();
+		}
+
+		phase = RequestTiming.begin(RequestTiming.CONVERSION);
+		try {
+			return convert(objects);
+		}
+		finally {
+			phase.end();
+		}
+	}
+
+	/**
+	 * Returns null so that the paging provider stores this result and hands out its own search id
+	 */
+	@Override
+	public String getUuid() {
+		return null;
+	}
+
+	@Override
+	public Integer preferredPageSize() {
+		return null;
+	}
+
+	@Override
+	public int size() {
+		PrivilegeUtil.requireViewPrivileges(privilegeObjects);
+		if (size == null) {
+			RequestTiming.Phase phase = RequestTiming.begin(RequestTiming.DAO);
+			try {
+				size = (int) Math.min(count(), Integer.MAX_VALUE);
+			}
+			finally {
+				phase.end();
+			}
+		}
+		return size;
+	}
+}
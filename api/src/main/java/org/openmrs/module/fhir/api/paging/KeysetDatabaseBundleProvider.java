@@ -0,0 +1,79 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.paging;
+
+import java.util.List;
+
+/**
+ * A {@link DatabaseBundleProvider} for results ordered by an ascending integer primary key. It remembers the key of
+ * the last object of the previous page, so when a client walks the result page by page the next page is fetched with
+ * a {@code key > last key} restriction instead of an offset the database would have to scan past.
+ *
+ * @param <T> the OpenMRS type returned by the page queries
+ */
+public abstract class KeysetDatabaseBundleProvider<T> extends DatabaseBundleProvider<T> {
+
+	private volatile PageBoundary lastBoundary;
+
+	/**
+	 * @see DatabaseBundleProvider#DatabaseBundleProvider(String...)
+	 */
+	protected KeysetDatabaseBundleProvider(String... privilegeObjects) {
+		super(privilegeObjects);
+	}
+
+	/**
+	 * Loads a page of OpenMRS objects ordered by their primary key
+	 *
+	 * @param afterId     if not null only objects with a greater primary key are loaded
+	 * @param firstResult the index of the first object to load, relative to {@code afterId}
+	 * @param maxResults  the maximum number of objects to load
+	 * @return the objects in the page
+	 */
+	protected abstract List<T> fetch(Integer afterId, int firstResult, int maxResults);
+
+	/**
+	 * @param object a loaded OpenMRS object
+	 * @return the primary key of the object
+	 */
+	protected abstract Integer getId(T object);
+
+	@Override
+	protected List<T> fetch(int firstResult, int maxResults) {
+		PageBoundary boundary = lastBoundary;
+		List<T> page;
+		if (boundary != null && boundary.index == firstResult) {
+			page = fetch(boundary.id, 0, maxResults);
+		} else {
+			page = fetch(null, firstResult, maxResults);
+		}
+
+		if (!page.isEmpty()) {
+			lastBoundary = new PageBoundary(firstResult + page.size(), getId(page.get(page.size() - 1)));
+		}
+		return page;
+	}
+
+	private static class PageBoundary {
+
+		private final int index;
+
+		private final Integer id;
+
+		private PageBoundary(int index, Integer id) {
+			this.index = index;
+			this.id = id;
+		}
+	}
+}
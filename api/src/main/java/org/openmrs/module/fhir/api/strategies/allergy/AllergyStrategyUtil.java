@@ -14,11 +14,22 @@
 package org.openmrs.module.fhir.api.strategies.allergy;
 
 import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.metrics.RequestTiming;
+import org.openmrs.module.fhir.api.util.FHIRStrategyRegistry;
 import org.openmrs.module.fhir.api.util.FHIRUtils;
 
 public class AllergyStrategyUtil {
 
 	public static GenericAllergyStrategy getAllergyStrategy() {
+		return RequestTiming.time(lookupAllergyStrategy(), GenericAllergyStrategy.class, RequestTiming.STRATEGY);
+	}
+
+	private static GenericAllergyStrategy lookupAllergyStrategy() {
+		FHIRStrategyRegistry registry = FHIRStrategyRegistry.getInstance();
+		if (registry != null && registry.getAllergyStrategy() != null) {
+			return registry.getAllergyStrategy();
+		}
+
 		String strategy = FHIRUtils.getAllergyStrategy();
 
 		return Context.getRegisteredComponent(strategy, GenericAllergyStrategy.class);
@@ -13,12 +13,23 @@
  */
 package org.openmrs.module.fhir.api.strategies.appointment;
 
+import org.openmrs.module.fhir.api.metrics.RequestTiming;
 import org.openmrs.module.fhir.api.util.FHIRConstants;
+import org.openmrs.module.fhir.api.util.FHIRStrategyRegistry;
 import org.openmrs.module.fhir.api.util.FHIRUtils;
 
 public class AppointmentStrategyUtil {
 
 	public static GenericAppointmentStrategy getAppointmentStrategy() {
+		return RequestTiming.time(lookupAppointmentStrategy(), GenericAppointmentStrategy.class, RequestTiming.STRATEGY);
+	}
+
+	private static GenericAppointmentStrategy lookupAppointmentStrategy() {
+		FHIRStrategyRegistry registry = FHIRStrategyRegistry.getInstance();
+		if (registry != null && registry.getAppointmentStrategy() != null) {
+			return registry.getAppointmentStrategy();
+		}
+
 		String strategy = FHIRUtils.getAppointmentStrategy();
 		if (FHIRConstants.APPOINTMENT_MODULE_STRATEGY.equals(strategy)) {
 			return new AppointmentModuleStrategy();
@@ -14,11 +14,22 @@
 package org.openmrs.module.fhir.api.strategies.condition;
 
 import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.metrics.RequestTiming;
+import org.openmrs.module.fhir.api.util.FHIRStrategyRegistry;
 import org.openmrs.module.fhir.api.util.FHIRUtils;
 
 public class ConditionStrategyUtil {
 
 	public static GenericConditionStrategy getConditionStrategy() {
+		return RequestTiming.time(lookupConditionStrategy(), GenericConditionStrategy.class, RequestTiming.STRATEGY);
+	}
+
+	private static GenericConditionStrategy lookupConditionStrategy() {
+		FHIRStrategyRegistry registry = FHIRStrategyRegistry.getInstance();
+		if (registry != null && registry.getConditionStrategy() != null) {
+			return registry.getConditionStrategy();
+		}
+
 		String strategy = FHIRUtils.getConditionStrategy();
 
 		return strategy == null ? new ConditionStrategy() :
@@ -18,6 +18,7 @@ import org.openmrs.Visit;
 import org.openmrs.api.EncounterService;
 import org.openmrs.api.VisitService;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.util.ContextUtil;
 import org.openmrs.module.fhir.api.util.FHIRConstants;
 import org.openmrs.module.fhir.api.util.FHIREncounterUtil;
 import org.openmrs.module.fhir.api.util.FHIRLocationUtil;
@@ -29,6 +30,7 @@ import org.openmrs.module.fhir.api.util.StrategyUtil;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -51,6 +53,7 @@ public class EncounterStrategy implements GenericEncounterStrategy {
 				return null;
 			}
 		}
+		ContextUtil.getFHIRDao().initializeEncounters(Collections.singletonList(omrsEncounter));
 		return FHIREncounterUtil.generateEncounter(omrsEncounter);
 	}
 
@@ -62,6 +65,7 @@ public class EncounterStrategy implements GenericEncounterStrategy {
 		org.openmrs.Encounter omrsEncounter = Context.getEncounterService().getEncounterByUuid(id);
 		List<Encounter> encounterList = new ArrayList<>();
 		if (omrsEncounter != null) {
+			ContextUtil.getFHIRDao().initializeEncounters(Collections.singletonList(omrsEncounter));
 			encounterList.add(FHIREncounterUtil.generateEncounter(omrsEncounter));
 		} else {
 			Visit visit = Context.getVisitService().getVisitByUuid(id);
@@ -85,6 +89,7 @@ public class EncounterStrategy implements GenericEncounterStrategy {
 
 		for (Patient patient : patientList) {
 			List<org.openmrs.Encounter> encounters = Context.getEncounterService().getEncountersByPatient(patient);
+			ContextUtil.getFHIRDao().initializeEncounters(encounters);
 			for (org.openmrs.Encounter encounter : encounters) {
 				fhirEncountersList.add(FHIREncounterUtil.generateEncounter(encounter));
 			}
@@ -238,6 +243,7 @@ public class EncounterStrategy implements GenericEncounterStrategy {
 
 		for (Patient patient : patientList) {
 			List<org.openmrs.Encounter> encounters = Context.getEncounterService().getEncountersByPatient(patient);
+			ContextUtil.getFHIRDao().initializeEncounters(encounters);
 			for (org.openmrs.Encounter encounter : encounters) {
 				fhirEncounterList = addEncountersByPartOf(encounter, partOf, fhirEncounterList);
 			}
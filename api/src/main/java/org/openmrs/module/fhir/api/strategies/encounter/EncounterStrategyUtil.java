@@ -1,11 +1,22 @@
 package org.openmrs.module.fhir.api.strategies.encounter;
 
 import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.metrics.RequestTiming;
+import org.openmrs.module.fhir.api.util.FHIRStrategyRegistry;
 import org.openmrs.module.fhir.api.util.FHIRUtils;
 
 public class EncounterStrategyUtil {
 
 	public static GenericEncounterStrategy getEncounterStrategy() {
+		return RequestTiming.time(lookupEncounterStrategy(), GenericEncounterStrategy.class, RequestTiming.STRATEGY);
+	}
+
+	private static GenericEncounterStrategy lookupEncounterStrategy() {
+		FHIRStrategyRegistry registry = FHIRStrategyRegistry.getInstance();
+		if (registry != null && registry.getEncounterStrategy() != null) {
+			return registry.getEncounterStrategy();
+		}
+
 		String strategy = FHIRUtils.getEncounterStrategy();
 
 		return strategy == null ? new EncounterStrategy() :
@@ -1,11 +1,22 @@
 package org.openmrs.module.fhir.api.strategies.group;
 
 import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.metrics.RequestTiming;
+import org.openmrs.module.fhir.api.util.FHIRStrategyRegistry;
 import org.openmrs.module.fhir.api.util.FHIRUtils;
 
 public class GroupStrategyUtil {
 
 	public static GenericGroupStrategy getGroupStrategy() {
+		return RequestTiming.time(lookupGroupStrategy(), GenericGroupStrategy.class, RequestTiming.STRATEGY);
+	}
+
+	private static GenericGroupStrategy lookupGroupStrategy() {
+		FHIRStrategyRegistry registry = FHIRStrategyRegistry.getInstance();
+		if (registry != null && registry.getGroupStrategy() != null) {
+			return registry.getGroupStrategy();
+		}
+
 		String strategy = FHIRUtils.getGroupStrategy();
 
 		return strategy == null ? new GroupStrategy()
@@ -1,5 +1,7 @@
 package org.openmrs.module.fhir.api.strategies.location;
 
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
 import org.hl7.fhir.dstu3.model.Location;
 
 import java.util.List;
@@ -10,9 +12,9 @@ public interface GenericLocationStrategy {
 
 	List<Location> searchLocationsByUuid(String uuid);
 
-	List<Location> searchLocationsByStatus(boolean status);
+	IBundleProvider searchLocationsByStatus(boolean status);
 
-	List<Location> searchLocationsByName(String name);
+	IBundleProvider searchLocationsByName(StringParam name);
 
 	void deleteLocation(String uuid);
 
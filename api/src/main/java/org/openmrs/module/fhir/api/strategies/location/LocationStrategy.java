@@ -1,12 +1,18 @@
 package org.openmrs.module.fhir.api.strategies.location;
 
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
 import ca.uhn.fhir.rest.server.exceptions.UnprocessableEntityException;
-import org.apache.commons.lang.StringUtils;
 import org.hl7.fhir.dstu3.model.Location;
+import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.db.StringMatchMode;
+import org.openmrs.module.fhir.api.paging.KeysetDatabaseBundleProvider;
+import org.openmrs.module.fhir.api.util.ContextUtil;
 import org.openmrs.module.fhir.api.util.ErrorUtil;
 import org.openmrs.module.fhir.api.util.FHIRLocationUtil;
 import org.openmrs.module.fhir.api.util.FHIRUtils;
+import org.openmrs.module.fhir.api.util.PrivilegeUtil;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
@@ -35,34 +41,13 @@ public class LocationStrategy implements GenericLocationStrategy {
 	}
 
 	@Override
-	public List<Location> searchLocationsByName(String name) {
-		List<org.openmrs.Location> omrsLocations = Context.getLocationService().getLocations(name);
-		List<Location> locationList = new ArrayList<Location>();
-		for (org.openmrs.Location location : omrsLocations) {
-			if (StringUtils.startsWithIgnoreCase(location.getName(), name)) {
-				locationList.add(FHIRLocationUtil.generateLocation(location));
-			}
-		}
-		return locationList;
+	public IBundleProvider searchLocationsByName(StringParam name) {
+		return searchLocations(false, name.getValue(), StringMatchMode.of(name));
 	}
 
 	@Override
-	public List<Location> searchLocationsByStatus(boolean status) {
-		//TODO this method looks for all the locations which is inefficient. Reimplement after API revamp
-		List<org.openmrs.Location> omrsLocations = Context.getLocationService().getAllLocations(true);
-		List<Location> locationList = new ArrayList<Location>();
-		for (org.openmrs.Location location : omrsLocations) {
-			if (status) {
-				if (!location.isRetired()) {
-					locationList.add(FHIRLocationUtil.generateLocation(location));
-				}
-			} else {
-				if (location.isRetired()) {
-					locationList.add(FHIRLocationUtil.generateLocation(location));
-				}
-			}
-		}
-		return locationList;
+	public IBundleProvider searchLocationsByStatus(boolean status) {
+		return searchLocations(!status, null, null);
 	}
 
 	@Override
@@ -95,4 +80,30 @@ public class LocationStrategy implements GenericLocationStrategy {
 		omrsLocation = Context.getLocationService().saveLocation(omrsLocation);
 		return FHIRLocationUtil.generateLocation(omrsLocation);
 	}
+
+	private IBundleProvider searchLocations(final boolean retired, final String name, final StringMatchMode matchMode) {
+		return new KeysetDatabaseBundleProvider<org.openmrs.Location>(PrivilegeUtil.LOCATIONS) {
+
+			@Override
+			protected long count() {
+				return ContextUtil.getFHIRDao().getLocationCount(retired, name, matchMode);
+			}
+
+			@Override
+			protected List<org.openmrs.Location> fetch(Integer afterId, int firstResult, int maxResults) {
+				return ContextUtil.getFHIRDao().getLocations(retired, name, matchMode, afterId, firstResult,
+						maxResults);
+			}
+
+			@Override
+			protected Integer getId(org.openmrs.Location location) {
+				return location.getLocationId();
+			}
+
+			@Override
+			protected IBaseResource convert(org.openmrs.Location location) {
+				return FHIRLocationUtil.generateLocation(location);
+			}
+		};
+	}
 }
@@ -1,11 +1,22 @@
 package org.openmrs.module.fhir.api.strategies.location;
 
 import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.metrics.RequestTiming;
+import org.openmrs.module.fhir.api.util.FHIRStrategyRegistry;
 import org.openmrs.module.fhir.api.util.FHIRUtils;
 
 public class LocationStrategyUtil {
 
 	public static GenericLocationStrategy getLocationStrategy() {
+		return RequestTiming.time(lookupLocationStrategy(), GenericLocationStrategy.class, RequestTiming.STRATEGY);
+	}
+
+	private static GenericLocationStrategy lookupLocationStrategy() {
+		FHIRStrategyRegistry registry = FHIRStrategyRegistry.getInstance();
+		if (registry != null && registry.getLocationStrategy() != null) {
+			return registry.getLocationStrategy();
+		}
+
 		String strategy = FHIRUtils.getLocationStrategy();
 
 		return (strategy == null) ? new LocationStrategy() :
@@ -1,11 +1,22 @@
 package org.openmrs.module.fhir.api.strategies.medication;
 
 import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.metrics.RequestTiming;
+import org.openmrs.module.fhir.api.util.FHIRStrategyRegistry;
 import org.openmrs.module.fhir.api.util.FHIRUtils;
 
 public class MedicationStrategyUtil {
 
 	public static GenericMedicationStrategy getMedicationStrategy() {
+		return RequestTiming.time(lookupMedicationStrategy(), GenericMedicationStrategy.class, RequestTiming.STRATEGY);
+	}
+
+	private static GenericMedicationStrategy lookupMedicationStrategy() {
+		FHIRStrategyRegistry registry = FHIRStrategyRegistry.getInstance();
+		if (registry != null && registry.getMedicationStrategy() != null) {
+			return registry.getMedicationStrategy();
+		}
+
 		String strategy = FHIRUtils.getMedicationStrategy();
 		return strategy == null ? new MedicationStrategy() :
 				Context.getRegisteredComponent(strategy, GenericMedicationStrategy.class);
@@ -1,11 +1,23 @@
 package org.openmrs.module.fhir.api.strategies.medicationrequest;
 
 import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.metrics.RequestTiming;
+import org.openmrs.module.fhir.api.util.FHIRStrategyRegistry;
 import org.openmrs.module.fhir.api.util.FHIRUtils;
 
 public class MedicationRequestStrategyUtil {
 
 	public static GenericMedicationRequestStrategy getMedicationRequestStrategy() {
+		return RequestTiming.time(lookupMedicationRequestStrategy(), GenericMedicationRequestStrategy.class,
+				RequestTiming.STRATEGY);
+	}
+
+	private static GenericMedicationRequestStrategy lookupMedicationRequestStrategy() {
+		FHIRStrategyRegistry registry = FHIRStrategyRegistry.getInstance();
+		if (registry != null && registry.getMedicationRequestStrategy() != null) {
+			return registry.getMedicationRequestStrategy();
+		}
+
 		String strategy = FHIRUtils.getMedicationRequestStrategy();
 		return strategy == null ? new MedicationRequestStrategy() :
 				Context.getRegisteredComponent(strategy, GenericMedicationRequestStrategy.class);
@@ -1,7 +1,10 @@
 package org.openmrs.module.fhir.api.strategies.observation;
 
+import ca.uhn.fhir.rest.param.QuantityAndListParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
 import org.hl7.fhir.dstu3.model.Observation;
+import org.hl7.fhir.dstu3.model.Parameters;
 
 import java.util.Date;
 import java.util.List;
@@ -11,17 +14,17 @@ public interface GenericObservationStrategy {
 
 	Observation getObservation(String uuid);
 
-	List<Observation> searchObservationByPatientAndConcept(String patientUuid, Map<String, String> conceptNamesAndURIs);
+	IBundleProvider searchObservationByPatientAndConcept(String patientUuid, Map<String, String> conceptNamesAndURIs);
 
 	List<Observation> searchObservationByUuid(String uuid);
 
-	List<Observation> searchObservationsByCode(Map<String, String> conceptNamesAndURIs);
+	IBundleProvider searchObservationsByCode(Map<String, String> conceptNamesAndURIs);
 
-	List<Observation> searchObservationByDate(Date date);
+	IBundleProvider searchObservationByDate(Date date);
 
-	List<Observation> searchObservationByPerson(String personUuid);
+	IBundleProvider searchObservationByPerson(String personUuid);
 
-	List<Observation> searchObservationByValueConcept(String conceptName);
+	IBundleProvider searchObservationByValueConcept(String conceptName);
 
 	List<Observation> searchObservationByPatientIdentifier(String identifier);
 
@@ -36,7 +39,59 @@ public interface GenericObservationStrategy {
 	 *
 	 * @param patientUuid patient uuid
 	 * @param codings     List of TokenParam, for example PIH|5089,CIEL|5086
-	 * @return List of fhir observation resources
+	 * @return bundle provider of fhir observation resources
 	 */
-	List<Observation> searchObservationByPatientAndCode(String patientUuid, List<TokenParam> codings);
+	IBundleProvider searchObservationByPatientAndCode(String patientUuid, List<TokenParam> codings);
+
+	/**
+	 * Search observations by any combination of subject, codes, date range, encounter and numeric value with a
+	 * single query, null parameters are ignored
+	 *
+	 * @param subjectUuid   uuid of the person the observations belong to
+	 * @param codings       alternative codes of the observations, a code without system is a concept uuid
+	 * @param fromDate      the earliest observation date time, inclusive
+	 * @param toDate        the latest observation date time, inclusive
+	 * @param encounterUuid uuid of the encounter the observations were recorded in
+	 * @param values        value-quantity ranges the numeric value of the observations must fall in
+	 * @param ascending     true to return the oldest observations first instead of the most recent
+	 * @return bundle provider of fhir observation resources
+	 */
+	IBundleProvider searchObservations(String subjectUuid, List<TokenParam> codings, Date fromDate, Date toDate,
+			String encounterUuid, QuantityAndListParam values, boolean ascending);
+
+	/**
+	 * Get the most recent observations of a patient for each of their codes, the $lastn operation
+	 *
+	 * @param patientUuid patient uuid
+	 * @param codings     codes of the observations, all the codes of the patient when null or empty
+	 * @param max         the maximum number of observations to return per code
+	 * @return the observations, grouped by code and most recent first
+	 */
+	List<Observation> getLastObservations(String patientUuid, List<TokenParam> codings, int max);
+
+	/**
+	 * Get the downsampled series of the numeric observations of a patient, the $timeseries operation
+	 *
+	 * @param patientUuid patient uuid
+	 * @param codings     codes of the numeric observations, one series is returned per code
+	 * @param fromDate    the start of the series, the first observation by default
+	 * @param toDate      the end of the series, the last observation by default
+	 * @param points      the number of points each series is downsampled to
+	 * @return parameters holding a series parameter per code
+	 */
+	Parameters getObservationTimeSeries(String patientUuid, List<TokenParam> codings, Date fromDate, Date toDate,
+			int points);
+
+	/**
+	 * Get the statistics of the numeric observations of a patient, a group or everyone, the $stats operation
+	 *
+	 * @param codings     codes of the numeric observations, statistics are returned per code
+	 * @param patientUuid if not null only the observations of this patient are aggregated
+	 * @param groupUuid   if not null only the observations of the members of this group are aggregated
+	 * @param fromDate    if not null only observations made at or after this date time are aggregated
+	 * @param toDate      if not null only observations made at or before this date time are aggregated
+	 * @return parameters holding a statistics parameter per code
+	 */
+	Parameters getObservationStatistics(List<TokenParam> codings, String patientUuid, String groupUuid, Date fromDate,
+			Date toDate);
 }
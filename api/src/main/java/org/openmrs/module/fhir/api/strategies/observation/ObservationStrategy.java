@@ -1,31 +1,59 @@
 package org.openmrs.module.fhir.api.strategies.observation;
 
+import ca.uhn.fhir.rest.param.ParamPrefixEnum;
+import ca.uhn.fhir.rest.param.QuantityAndListParam;
+import ca.uhn.fhir.rest.param.QuantityOrListParam;
+import ca.uhn.fhir.rest.param.QuantityParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.BundleProviders;
+import ca.uhn.fhir.rest.server.IBundleProvider;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.exceptions.UnprocessableEntityException;
+import org.hl7.fhir.dstu3.model.DateTimeType;
+import org.hl7.fhir.dstu3.model.IntegerType;
 import org.hl7.fhir.dstu3.model.Observation;
+import org.hl7.fhir.dstu3.model.Parameters;
+import org.hl7.fhir.dstu3.model.SampledData;
+import org.hl7.fhir.dstu3.model.SimpleQuantity;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.openmrs.Cohort;
 import org.openmrs.Concept;
+import org.openmrs.ConceptNumeric;
 import org.openmrs.Encounter;
 import org.openmrs.Obs;
 import org.openmrs.Patient;
 import org.openmrs.Person;
 import org.openmrs.api.ObsService;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.cache.ObsTimeSeries;
+import org.openmrs.module.fhir.api.cache.ObsTimeSeriesCache;
+import org.openmrs.module.fhir.api.db.BatchHandler;
+import org.openmrs.module.fhir.api.db.ObsSearchCriteria;
+import org.openmrs.module.fhir.api.db.ObsStatistics;
+import org.openmrs.module.fhir.api.paging.DatabaseBundleProvider;
 import org.openmrs.module.fhir.api.util.ConceptSourceNameURIPair;
+import org.openmrs.module.fhir.api.util.ContextUtil;
 import org.openmrs.module.fhir.api.util.FHIRConstants;
 import org.openmrs.module.fhir.api.util.FHIRObsUtil;
 import org.openmrs.module.fhir.api.util.FHIRUtils;
+import org.openmrs.module.fhir.api.util.PrivilegeUtil;
 import org.openmrs.module.fhir.api.util.StrategyUtil;
 import org.springframework.stereotype.Component;
 
+import java.math.BigDecimal;
+import java.math.MathContext;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Component("DefaultObservationStrategy")
 public class ObservationStrategy implements GenericObservationStrategy {
 
+	private static final MathContext QUANTITY_PRECISION = new MathContext(10);
+
 	@Override
 	public Observation getObservation(String uuid) {
 		Obs omrsObs = Context.getObsService().getObsByUuid(uuid);
@@ -36,37 +64,15 @@ public class ObservationStrategy implements GenericObservationStrategy {
 	}
 
 	@Override
-	public List<Observation> searchObservationByPatientAndConcept(String patientUuid,
+	public IBundleProvider searchObservationByPatientAndConcept(String patientUuid,
 			Map<String, String> conceptNamesAndURIs) {
 		Patient patient = Context.getPatientService().getPatientByUuid(patientUuid);
-		Concept concept;
-		List<Observation> obsList = new ArrayList<Observation>();
-		String codingSystem = FHIRUtils.getConceptCodingSystem();
-		String systemName;
-		for (Map.Entry<String, String> entry : conceptNamesAndURIs.entrySet()) {
-			if (entry.getValue() == null || entry.getValue().isEmpty()) {
-				if (codingSystem == null || FHIRConstants.OPENMRS_CONCEPT_CODING_SYSTEM.equals(codingSystem)) {
-					concept = Context.getConceptService().getConceptByUuid(entry.getKey());
-				} else {
-					systemName = FHIRConstants.conceptSourceURINameMap.get(entry.getValue());
-					if (systemName == null || systemName.isEmpty()) {
-						return obsList;
-					}
-					concept = Context.getConceptService().getConceptByMapping(entry.getKey(), systemName);
-				}
-			} else {
-				systemName = FHIRConstants.conceptSourceURINameMap.get(entry.getValue());
-				if (systemName == null || systemName.isEmpty()) {
-					return obsList;
-				}
-				concept = Context.getConceptService().getConceptByMapping(entry.getKey(), systemName);
-			}
-			List<Obs> obs = Context.getObsService().getObservationsByPersonAndConcept(patient, concept);
-			for (Obs ob : obs) {
-				obsList.add(FHIRObsUtil.generateObs(ob));
-			}
+		List<Concept> concepts = getConcepts(conceptNamesAndURIs);
+		if (patient == null || concepts.isEmpty()) {
+			return BundleProviders.newEmptyList();
 		}
-		return obsList;
+		return searchObservations(new ObsSearchCriteria().setPersons(Collections.<Person>singletonList(patient))
+				.setQuestions(concepts));
 	}
 
 	@Override
@@ -80,94 +86,41 @@ public class ObservationStrategy implements GenericObservationStrategy {
 	}
 
 	@Override
-	public List<Observation> searchObservationsByCode(Map<String, String> conceptNamesAndURIs) {
-		String codingSystem = FHIRUtils.getConceptCodingSystem();
-		List<Observation> obsList = new ArrayList<Observation>();
-		List<Obs> omrsObs = new ArrayList<Obs>();
-		Concept concept = null;
-		String systemName;
-		//Check system uri specified and if so find system name and query appropriate concept
-		for (Map.Entry<String, String> entry : conceptNamesAndURIs.entrySet()) {
-			if (entry.getValue() == null || entry.getValue().isEmpty()) {
-				if (codingSystem == null || FHIRConstants.OPENMRS_CONCEPT_CODING_SYSTEM.equals(codingSystem)) {
-					concept = Context.getConceptService().getConceptByUuid(entry.getKey());
-				} else {
-					systemName = FHIRConstants.conceptSourceURINameMap.get(entry.getValue());
-					if (systemName == null || systemName.isEmpty()) {
-						return obsList;
-					}
-					concept = Context.getConceptService().getConceptByMapping(entry.getKey(), systemName);
-				}
-			} else {
-				systemName = FHIRConstants.conceptSourceURINameMap.get(entry.getValue());
-				if (systemName == null || systemName.isEmpty()) {
-					return obsList;
-				}
-				concept = Context.getConceptService().getConceptByMapping(entry.getKey(), systemName);
-			}
-
-			if (concept == null) {
-				return obsList;
-			}
-
-			List<Concept> concepts = new ArrayList<Concept>();
-			concepts.add(concept);
-			omrsObs = Context.getObsService().getObservations(null, null, concepts, null, null, null, null, null,
-					null, null, null, false);
-
-			for (Obs obs : omrsObs) {
-				obsList.add(FHIRObsUtil.generateObs(obs));
-			}
+	public IBundleProvider searchObservationsByCode(Map<String, String> conceptNamesAndURIs) {
+		List<Concept> concepts = getConcepts(conceptNamesAndURIs);
+		if (concepts.isEmpty()) {
+			return BundleProviders.newEmptyList();
 		}
-		return obsList;
+		return searchObservations(new ObsSearchCriteria().setQuestions(concepts));
 	}
 
 	@Override
-	public List<Observation> searchObservationByDate(Date date) {
-		List<Obs> omrsObs = Context.getObsService().getObservations(null, null, null, null, null, null, null, null,
-				null, date, date, false);
-		List<Observation> obsList = new ArrayList<Observation>();
-		for (Obs obs : omrsObs) {
-			obsList.add(FHIRObsUtil.generateObs(obs));
-		}
-		return obsList;
+	public IBundleProvider searchObservationByDate(Date date) {
+		return searchObservations(new ObsSearchCriteria().setFromDate(date).setToDate(date));
 	}
 
 	@Override
-	public List<Observation> searchObservationByPerson(String personUuid) {
+	public IBundleProvider searchObservationByPerson(String personUuid) {
 		Person person = Context.getPersonService().getPersonByUuid(personUuid);
-		List<Obs> omrsObs = Context.getObsService().getObservationsByPerson(person);
-		List<Observation> obsList = new ArrayList<Observation>();
-		for (Obs obs : omrsObs) {
-			obsList.add(FHIRObsUtil.generateObs(obs));
+		if (person == null) {
+			return BundleProviders.newEmptyList();
 		}
-		return obsList;
+		return searchObservations(new ObsSearchCriteria().setPersons(Collections.singletonList(person)));
 	}
 
 	@Override
-	public List<Observation> searchObservationByValueConcept(String conceptName) {
+	public IBundleProvider searchObservationByValueConcept(String conceptName) {
 		Concept concept = Context.getConceptService().getConcept(conceptName);
-		List<Concept> conceptsAnswers = new ArrayList<Concept>();
-		conceptsAnswers.add(concept);
-		List<Obs> omrsObs = Context.getObsService().getObservations(null, null, null, conceptsAnswers, null, null, null,
-				null,
-				null, null, null, false);
-		List<Observation> obsList = new ArrayList<Observation>();
-		for (Obs obs : omrsObs) {
-			obsList.add(FHIRObsUtil.generateObs(obs));
+		if (concept == null) {
+			return BundleProviders.newEmptyList();
 		}
-		return obsList;
+		return searchObservations(new ObsSearchCriteria().setAnswers(Collections.singletonList(concept)));
 	}
 
 	@Override
 	public List<Observation> searchObservationByPatientIdentifier(String identifier) {
-		List<Observation> fhirObsList = new ArrayList<Observation>();
-
 		List<Obs> ormsObs = Context.getObsService().getObservations(identifier);
-		for (Obs obs : ormsObs) {
-			fhirObsList.add(FHIRObsUtil.generateObs(obs));
-		}
-		return fhirObsList;
+		return FHIRObsUtil.generateObs(ormsObs);
 	}
 
 	@Override
@@ -223,34 +176,227 @@ public class ObservationStrategy implements GenericObservationStrategy {
 	 * @see GenericObservationStrategy#searchObservationByPatientAndCode(java.lang.String, java.util.List)
 	 */
 	@Override
-	public List<Observation> searchObservationByPatientAndCode(String patientUuid, List<TokenParam> codings) {
+	public IBundleProvider searchObservationByPatientAndCode(String patientUuid, List<TokenParam> codings) {
 		Patient patient = Context.getPatientService().getPatientByUuid(patientUuid);
-		List<Observation> obsList = new ArrayList<>();
-		if (codings.isEmpty()) {
-			return obsList;
-		} else {
-			for (TokenParam tokenParam : codings) {
-				obsList.addAll(getObservations(patient, getConcept(tokenParam)));
+		List<Concept> concepts = new ArrayList<Concept>();
+		for (TokenParam tokenParam : codings) {
+			Concept concept = getConcept(tokenParam);
+			if (concept != null) {
+				concepts.add(concept);
 			}
 		}
-		return obsList;
+		if (patient == null || concepts.isEmpty()) {
+			return BundleProviders.newEmptyList();
+		}
+		return searchObservations(new ObsSearchCriteria().setPersons(Collections.<Person>singletonList(patient))
+				.setQuestions(concepts));
+	}
+
+	/**
+	 * @see GenericObservationStrategy#searchObservations(String, java.util.List, java.util.Date, java.util.Date,
+	 * String, ca.uhn.fhir.rest.param.QuantityAndListParam, boolean)
+	 */
+	@Override
+	public IBundleProvider searchObservations(String subjectUuid, List<TokenParam> codings, Date fromDate, Date toDate,
+			String encounterUuid, QuantityAndListParam values, boolean ascending) {
+		ObsSearchCriteria criteria = new ObsSearchCriteria().setFromDate(fromDate).setToDate(toDate)
+				.setAscending(ascending);
+		if (subjectUuid != null) {
+			Person person = Context.getPersonService().getPersonByUuid(subjectUuid);
+			if (person == null) {
+				return BundleProviders.newEmptyList();
+			}
+			criteria.setPersons(Collections.singletonList(person));
+		}
+		if (codings != null && !codings.isEmpty()) {
+			List<Concept> concepts = new ArrayList<Concept>();
+			for (TokenParam coding : codings) {
+				Concept concept = getConceptByCodeOrUuid(coding);
+				if (concept != null) {
+					concepts.add(concept);
+				}
+			}
+			if (concepts.isEmpty()) {
+				return BundleProviders.newEmptyList();
+			}
+			criteria.setQuestions(concepts);
+		}
+		if (encounterUuid != null) {
+			Encounter encounter = Context.getEncounterService().getEncounterByUuid(encounterUuid);
+			if (encounter == null) {
+				return BundleProviders.newEmptyList();
+			}
+			criteria.setEncounters(Collections.singletonList(encounter));
+		}
+		if (values != null) {
+			restrictValues(criteria, values);
+		}
+		return searchObservations(criteria);
+	}
+
+	/**
+	 * @see GenericObservationStrategy#getLastObservations(String, java.util.List, int)
+	 */
+	@Override
+	public List<Observation> getLastObservations(String patientUuid, List<TokenParam> codings, int max) {
+		PrivilegeUtil.requireViewPrivileges(PrivilegeUtil.OBSERVATIONS);
+		Patient patient = Context.getPatientService().getPatientByUuid(patientUuid);
+		if (patient == null) {
+			return new ArrayList<Observation>();
+		}
+		List<Concept> concepts = new ArrayList<Concept>();
+		if (codings != null && !codings.isEmpty()) {
+			for (TokenParam coding : codings) {
+				Concept concept = getConceptByCodeOrUuid(coding);
+				if (concept != null) {
+					concepts.add(concept);
+				}
+			}
+			if (concepts.isEmpty()) {
+				return new ArrayList<Observation>();
+			}
+		}
+		return FHIRObsUtil.generateObs(ContextUtil.getFHIRDao().getLatestObs(patient, concepts, max));
+	}
+
+	/**
+	 * @see GenericObservationStrategy#getObservationTimeSeries(String, java.util.List, java.util.Date,
+	 * java.util.Date, int)
+	 */
+	@Override
+	public Parameters getObservationTimeSeries(String patientUuid, List<TokenParam> codings, Date fromDate,
+			Date toDate, int points) {
+		PrivilegeUtil.requireViewPrivileges(PrivilegeUtil.OBSERVATIONS);
+		Parameters parameters = new Parameters();
+		Patient patient = Context.getPatientService().getPatientByUuid(patientUuid);
+		if (patient == null) {
+			return parameters;
+		}
+		for (TokenParam coding : codings) {
+			Concept concept = getConceptByCodeOrUuid(coding);
+			if (concept != null && concept.isNumeric()) {
+				ObsTimeSeries series = getTimeSeries(patient, concept);
+				parameters.addParameter(createSeriesParameter(concept, series, fromDate, toDate, points));
+			}
+		}
+		return parameters;
+	}
+
+	/**
+	 * @see GenericObservationStrategy#getObservationStatistics(java.util.List, String, String, java.util.Date,
+	 * java.util.Date)
+	 */
+	@Override
+	public Parameters getObservationStatistics(List<TokenParam> codings, String patientUuid, String groupUuid,
+			Date fromDate, Date toDate) {
+		PrivilegeUtil.requireViewPrivileges(PrivilegeUtil.OBSERVATIONS);
+		Set<Integer> personIds = null;
+		if (patientUuid != null) {
+			Patient patient = Context.getPatientService().getPatientByUuid(patientUuid);
+			personIds = patient != null ? Collections.singleton(patient.getPersonId())
+					: Collections.<Integer>emptySet();
+		} else if (groupUuid != null) {
+			Cohort cohort = Context.getCohortService().getCohortByUuid(groupUuid);
+			personIds = cohort != null ? cohort.getMemberIds() : Collections.<Integer>emptySet();
+		}
+
+		Parameters parameters = new Parameters();
+		for (TokenParam coding : codings) {
+			Concept concept = getConceptByCodeOrUuid(coding);
+			if (concept != null && concept.isNumeric()) {
+				ObsStatistics statistics = personIds != null && personIds.isEmpty() ? new ObsStatistics()
+						: ContextUtil.getFHIRDao().getObsStatistics(concept, personIds, fromDate, toDate);
+				parameters.addParameter(createStatisticsParameter(concept, statistics));
+			}
+		}
+		return parameters;
+	}
+
+	/**
+	 * Creates a paged search over the non voided observations matching the given criteria, only the requested pages
+	 * are loaded and converted. A page is read with a cursor and converted in batches which are then evicted from the
+	 * session, so searches matching most of the obs table, like the ones by code or value concept, do not fill the
+	 * session however large the page.
+	 *
+	 * @param criteria the restrictions on the observations
+	 * @return bundle provider of fhir observations
+	 */
+	private IBundleProvider searchObservations(final ObsSearchCriteria criteria) {
+		return new DatabaseBundleProvider<Obs>(PrivilegeUtil.OBSERVATIONS) {
+
+			@Override
+			protected long count() {
+				return ContextUtil.getFHIRDao().getObsCount(criteria);
+			}
+
+			@Override
+			protected List<Obs> fetch(int firstResult, int maxResults) {
+				return ContextUtil.getFHIRDao().getObs(criteria, firstResult, maxResults);
+			}
+
+			@Override
+			protected IBaseResource convert(Obs obs) {
+				return FHIRObsUtil.generateObs(obs);
+			}
+
+			@Override
+			protected List<IBaseResource> convert(List<Obs> obsList) {
+				return new ArrayList<IBaseResource>(FHIRObsUtil.generateObs(obsList));
+			}
+
+			@Override
+			protected List<IBaseResource> load(int firstResult, int maxResults) {
+				final List<IBaseResource> resources = new ArrayList<IBaseResource>();
+				ContextUtil.getFHIRDao().scrollObs(criteria, firstResult, maxResults,
+						FHIRConstants.OBS_SCROLL_BATCH_SIZE, new BatchHandler<Obs>() {
+
+							@Override
+							public void handle(List<Obs> batch) {
+								resources.addAll(convert(batch));
+							}
+						});
+				return resources;
+			}
+		};
 	}
 
 	/**
-	 * Get observations by patient and concept
+	 * Resolves concepts from codes and their system uris, stops at the first code which cannot be resolved
 	 *
-	 * @param patient openmrs patient
-	 * @param concept openmrs concept
-	 * @return List of fhir observations
+	 * @param conceptNamesAndURIs codes and system uris
+	 * @return the resolved concepts
 	 */
-	private List<Observation> getObservations(Patient patient, Concept concept) {
-		List<Observation> obsList = new ArrayList<>();
-		List<Obs> obs = Context.getObsService()
-				.getObservationsByPersonAndConcept(patient, concept);
-		for (Obs ob : obs) {
-			obsList.add(FHIRObsUtil.generateObs(ob));
+	private List<Concept> getConcepts(Map<String, String> conceptNamesAndURIs) {
+		String codingSystem = FHIRUtils.getConceptCodingSystem();
+		List<Concept> concepts = new ArrayList<Concept>();
+		Concept concept;
+		String systemName;
+		//Check system uri specified and if so find system name and query appropriate concept
+		for (Map.Entry<String, String> entry : conceptNamesAndURIs.entrySet()) {
+			if (entry.getValue() == null || entry.getValue().isEmpty()) {
+				if (codingSystem == null || FHIRConstants.OPENMRS_CONCEPT_CODING_SYSTEM.equals(codingSystem)) {
+					concept = Context.getConceptService().getConceptByUuid(entry.getKey());
+				} else {
+					systemName = FHIRConstants.conceptSourceURINameMap.get(entry.getValue());
+					if (systemName == null || systemName.isEmpty()) {
+						return concepts;
+					}
+					concept = Context.getConceptService().getConceptByMapping(entry.getKey(), systemName);
+				}
+			} else {
+				systemName = FHIRConstants.conceptSourceURINameMap.get(entry.getValue());
+				if (systemName == null || systemName.isEmpty()) {
+					return concepts;
+				}
+				concept = Context.getConceptService().getConceptByMapping(entry.getKey(), systemName);
+			}
+
+			if (concept == null) {
+				return concepts;
+			}
+			concepts.add(concept);
 		}
-		return obsList;
+		return concepts;
 	}
 
 	/**
@@ -260,12 +406,197 @@ public class ObservationStrategy implements GenericObservationStrategy {
 	 * @return Openmrs concept
 	 */
 	private Concept getConcept(TokenParam tokenParam) {
+		if (tokenParam.getSystem() == null) {
+			return null;
+		}
 		ConceptSourceNameURIPair conceptSourceNameURIPair = FHIRConstants.conceptSourceMap
 				.get(tokenParam.getSystem().toLowerCase());
+		if (conceptSourceNameURIPair == null) {
+			return null;
+		}
 		return Context.getConceptService()
 				.getConceptByMapping(tokenParam.getValue(), conceptSourceNameURIPair.getConceptSourceName());
 	}
 
+	/**
+	 * Get concept by TokenParam, a code without a system is taken as the uuid of the concept
+	 *
+	 * @param tokenParam FHIR TokenParam with a code and an optional system name or uri (for example CIEL|5089)
+	 * @return Openmrs concept
+	 */
+	private Concept getConceptByCodeOrUuid(TokenParam tokenParam) {
+		if (tokenParam.getSystem() == null || tokenParam.getSystem().isEmpty()) {
+			return Context.getConceptService().getConceptByUuid(tokenParam.getValue());
+		}
+		String systemName = FHIRConstants.conceptSourceURINameMap.get(tokenParam.getSystem());
+		if (systemName == null) {
+			return getConcept(tokenParam);
+		}
+		return Context.getConceptService().getConceptByMapping(tokenParam.getValue(), systemName);
+	}
+
+	/**
+	 * Narrows the numeric value of the searched observations by value-quantity parameters. Each parameter joined with
+	 * "and" narrows the range further, the units of the quantities are not compared.
+	 *
+	 * @param criteria the restrictions on the observations
+	 * @param values   the value-quantity parameters
+	 */
+	private void restrictValues(ObsSearchCriteria criteria, QuantityAndListParam values) {
+		for (QuantityOrListParam orList : values.getValuesAsQueryTokens()) {
+			List<QuantityParam> quantities = orList.getValuesAsQueryTokens();
+			if (quantities.size() != 1) {
+				throw new InvalidRequestException("Alternative values of value-quantity are not supported");
+			}
+			QuantityParam quantity = quantities.get(0);
+			if (quantity.getValue() == null) {
+				throw new InvalidRequestException("A value-quantity parameter has no value");
+			}
+			double value = quantity.getValue().doubleValue();
+			ParamPrefixEnum prefix = quantity.getPrefix() == null ? ParamPrefixEnum.EQUAL : quantity.getPrefix();
+			switch (prefix) {
+				case EQUAL:
+					criteria.restrictMinValue(value, true).restrictMaxValue(value, true);
+					break;
+				case GREATERTHAN:
+					criteria.restrictMinValue(value, false);
+					break;
+				case GREATERTHAN_OR_EQUALS:
+					criteria.restrictMinValue(value, true);
+					break;
+				case LESSTHAN:
+					criteria.restrictMaxValue(value, false);
+					break;
+				case LESSTHAN_OR_EQUALS:
+					criteria.restrictMaxValue(value, true);
+					break;
+				default:
+					throw new InvalidRequestException(
+							"The " + prefix.getValue() + " prefix is not supported by value-quantity");
+			}
+		}
+	}
+
+	/**
+	 * Gets the numeric series of a person for a concept from the cache, loading it on a miss
+	 */
+	private ObsTimeSeries getTimeSeries(Person person, Concept concept) {
+		ObsTimeSeriesCache cache = ObsTimeSeriesCache.getInstance();
+		ObsTimeSeries series = cache.get(person.getPersonId(), concept.getConceptId());
+		if (series == null) {
+			long generation = cache.getGeneration();
+			series = ContextUtil.getFHIRDao().getObsTimeSeries(person, concept);
+			cache.put(person.getPersonId(), concept.getConceptId(), series, generation);
+		}
+		return series;
+	}
+
+	/**
+	 * Creates the parameter of a series, its values are averaged over equal periods of time and returned as sampled
+	 * data, "E" marking the periods without observations
+	 *
+	 * @param concept  the question concept of the series
+	 * @param series   the series
+	 * @param fromDate the start of the series, the first observation if null
+	 * @param toDate   the end of the series, the last observation if null
+	 * @param points   the maximum number of periods
+	 * @return the series parameter
+	 */
+	private Parameters.ParametersParameterComponent createSeriesParameter(Concept concept, ObsTimeSeries series,
+			Date fromDate, Date toDate, int points) {
+		Parameters.ParametersParameterComponent parameter = new Parameters.ParametersParameterComponent();
+		parameter.setName("series");
+		parameter.addPart().setName("code").setValue(FHIRUtils.createCodeableConcept(concept));
+
+		long[] times = series.getTimes();
+		if (times.length == 0) {
+			parameter.addPart().setName("count").setValue(new IntegerType(0));
+			return parameter;
+		}
+		long start = fromDate != null ? fromDate.getTime() : times[0];
+		long end = toDate != null ? toDate.getTime() : times[times.length - 1];
+		int count = 0;
+		for (long time : times) {
+			if (time >= start && time <= end) {
+				count++;
+			}
+		}
+		parameter.addPart().setName("count").setValue(new IntegerType(count));
+		if (end < start) {
+			return parameter;
+		}
+
+		long span = end - start + 1;
+		long period = Math.max(1, (span + points - 1) / points);
+		int buckets = (int) ((span + period - 1) / period);
+		StringBuilder data = new StringBuilder();
+		for (double mean : series.downsample(start, period, buckets)) {
+			if (data.length() > 0) {
+				data.append(' ');
+			}
+			if (Double.isNaN(mean)) {
+				data.append('E');
+			} else {
+				data.append(BigDecimal.valueOf(mean).round(QUANTITY_PRECISION).stripTrailingZeros().toPlainString());
+			}
+		}
+
+		SampledData sampledData = new SampledData();
+		sampledData.setOrigin(createQuantity(0, getUnits(concept)));
+		sampledData.setPeriod(new BigDecimal(period));
+		sampledData.setDimensions(1);
+		sampledData.setData(data.toString());
+
+		parameter.addPart().setName("start").setValue(new DateTimeType(new Date(start)));
+		parameter.addPart().setName("end").setValue(new DateTimeType(new Date(end)));
+		parameter.addPart().setName("data").setValue(sampledData);
+		return parameter;
+	}
+
+	/**
+	 * Creates the parameter of the statistics of a concept, only the count is returned when there are no observations
+	 *
+	 * @param concept    the question concept of the observations
+	 * @param statistics the statistics of the observations
+	 * @return the statistics parameter
+	 */
+	private Parameters.ParametersParameterComponent createStatisticsParameter(Concept concept,
+			ObsStatistics statistics) {
+		Parameters.ParametersParameterComponent parameter = new Parameters.ParametersParameterComponent();
+		parameter.setName("statistics");
+		parameter.addPart().setName("code").setValue(FHIRUtils.createCodeableConcept(concept));
+		parameter.addPart().setName("count").setValue(
+				new IntegerType((int) Math.min(statistics.getCount(), Integer.MAX_VALUE)));
+		if (statistics.getCount() == 0) {
+			return parameter;
+		}
+
+		String units = getUnits(concept);
+		parameter.addPart().setName("minimum").setValue(createQuantity(statistics.getMinimum(), units));
+		parameter.addPart().setName("maximum").setValue(createQuantity(statistics.getMaximum(), units));
+		parameter.addPart().setName("mean").setValue(createQuantity(statistics.getMean(), units));
+		parameter.addPart().setName("first").setValue(createQuantity(statistics.getFirstValue(), units));
+		parameter.addPart().setName("firstDate").setValue(new DateTimeType(statistics.getFirstDate()));
+		parameter.addPart().setName("last").setValue(createQuantity(statistics.getLastValue(), units));
+		parameter.addPart().setName("lastDate").setValue(new DateTimeType(statistics.getLastDate()));
+		return parameter;
+	}
+
+	private SimpleQuantity createQuantity(double value, String units) {
+		SimpleQuantity quantity = new SimpleQuantity();
+		quantity.setValue(BigDecimal.valueOf(value).round(QUANTITY_PRECISION));
+		if (units != null) {
+			quantity.setUnit(units);
+			quantity.setCode(units);
+		}
+		return quantity;
+	}
+
+	private String getUnits(Concept concept) {
+		ConceptNumeric conceptNumeric = Context.getConceptService().getConceptNumeric(concept.getConceptId());
+		return conceptNumeric != null ? conceptNumeric.getUnits() : null;
+	}
+
 	private Observation createObservation(Observation observation, String uuid) {
 		uuid = FHIRUtils.extractUuid(uuid);
 		StrategyUtil.setIdIfNeeded(observation, uuid);
@@ -1,11 +1,22 @@
 package org.openmrs.module.fhir.api.strategies.observation;
 
 import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.metrics.RequestTiming;
+import org.openmrs.module.fhir.api.util.FHIRStrategyRegistry;
 import org.openmrs.module.fhir.api.util.FHIRUtils;
 
 public class ObservationStrategyUtil {
 
 	public static GenericObservationStrategy getObservationStrategy() {
+		return RequestTiming.time(lookupObservationStrategy(), GenericObservationStrategy.class, RequestTiming.STRATEGY);
+	}
+
+	private static GenericObservationStrategy lookupObservationStrategy() {
+		FHIRStrategyRegistry registry = FHIRStrategyRegistry.getInstance();
+		if (registry != null && registry.getObservationStrategy() != null) {
+			return registry.getObservationStrategy();
+		}
+
 		String strategy = FHIRUtils.getObservationStrategy();
 
 		return strategy == null ? new ObservationStrategy() :
@@ -1,8 +1,11 @@
 package org.openmrs.module.fhir.api.strategies.patient;
 
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
 import org.hl7.fhir.dstu3.model.Bundle;
 import org.hl7.fhir.dstu3.model.Patient;
 
+import java.util.Date;
 import java.util.List;
 
 public interface GenericPatientStrategy {
@@ -15,15 +18,15 @@ public interface GenericPatientStrategy {
 
 	List<Patient> searchPatientsByIdentifier(String identifierValue);
 
-	List<Patient> searchPatients(boolean active);
+	IBundleProvider searchPatients(boolean active);
 
-	Bundle searchPatientsByGivenName(String givenName);
+	IBundleProvider searchPatientsByGivenName(StringParam givenName);
 
-	Bundle searchPatientsByFamilyName(String familyName);
+	IBundleProvider searchPatientsByFamilyName(StringParam familyName);
 
 	Bundle searchPatientsByName(String name);
 
-	Bundle getPatientOperationsById(String patientId);
+	IBundleProvider getPatientOperationsById(String patientId, Date since, List<String> types, Integer count);
 
 	void deletePatient(String uuid);
 
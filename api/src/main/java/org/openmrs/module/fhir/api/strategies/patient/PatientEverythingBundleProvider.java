@@ -0,0 +1,277 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.strategies.patient;
+
+import ca.uhn.fhir.rest.server.IBundleProvider;
+import org.hl7.fhir.dstu3.model.InstantType;
+import org.hl7.fhir.dstu3.model.Observation;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
+import org.openmrs.Concept;
+import org.openmrs.Encounter;
+import org.openmrs.Location;
+import org.openmrs.Obs;
+import org.openmrs.Provider;
+import org.openmrs.Relationship;
+import org.openmrs.Visit;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.db.FHIRDao;
+import org.openmrs.module.fhir.api.util.ContextUtil;
+import org.openmrs.module.fhir.api.util.FHIRConstants;
+import org.openmrs.module.fhir.api.util.FHIREncounterUtil;
+import org.openmrs.module.fhir.api.util.FHIRFamilyMemberHistoryUtil;
+import org.openmrs.module.fhir.api.util.FHIRLocationUtil;
+import org.openmrs.module.fhir.api.util.FHIRObsUtil;
+import org.openmrs.module.fhir.api.util.FHIRPatientUtil;
+import org.openmrs.module.fhir.api.util.FHIRPractitionerUtil;
+import org.openmrs.module.fhir.api.util.FHIRUtils;
+import org.openmrs.module.fhir.api.util.FHIRVisitUtil;
+import org.openmrs.module.fhir.api.util.PrivilegeUtil;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The result of the patient $everything operation. Only the keys of the resources belonging to the patient are
+ * collected up front, deduplicated by resource type and id. The resources of a page are loaded and converted when the
+ * paging provider asks for them, so a response never holds more than one page of the patient record.
+ */
+class PatientEverythingBundleProvider implements IBundleProvider {
+
+	private final InstantType published = InstantType.withCurrentTime();
+
+	private final Integer pageSize;
+
+	private final int patientId;
+
+	private final List<EntryKey> keys;
+
+	/**
+	 * @param patient  the patient to return the record of
+	 * @param since    if not null only resources created or changed at or after this date are included
+	 * @param types    if not empty only resources of these FHIR types are included
+	 * @param pageSize the page size requested by the client, or null for the server default
+	 */
+	PatientEverythingBundleProvider(org.openmrs.Patient patient, Date since, Collection<String> types,
+			Integer pageSize) {
+		this.patientId = patient.getPatientId();
+		this.pageSize = pageSize;
+		this.keys = new ArrayList<EntryKey>(collectKeys(patient, since, types));
+	}
+
+	@Override
+	public IPrimitiveType<Date> getPublished() {
+		return published;
+	}
+
+	@Override
+	public List<IBaseResource> getResources(int fromIndex, int toIndex) {
+		List<IBaseResource> resources = new ArrayList<IBaseResource>();
+		int first = Math.max(fromIndex, 0);
+		int last = Math.min(toIndex, keys.size());
+		Map<Integer, Observation> observations = loadObservations(keys.subList(Math.min(first, last), last));
+		for (int i = first; i < last; i++) {
+			EntryKey key = keys.get(i);
+			IBaseResource resource = key.type == EntryType.OBSERVATION ? observations.get(key.id) : load(key);
+			if (resource != null) {
+				resources.add(resource);
+			}
+		}
+		return resources;
+	}
+
+	/**
+	 * Returns null so that the paging provider stores this result and hands out its own search id
+	 */
+	@Override
+	public String getUuid() {
+		return null;
+	}
+
+	@Override
+	public Integer preferredPageSize() {
+		return pageSize;
+	}
+
+	@Override
+	public int size() {
+		return keys.size();
+	}
+
+	private Set<EntryKey> collectKeys(org.openmrs.Patient patient, Date since, Collection<String> types) {
+		FHIRDao dao = ContextUtil.getFHIRDao();
+		Set<EntryKey> collected = new LinkedHashSet<EntryKey>();
+
+		if (isIncluded(EntryType.PATIENT, types) && isChangedSince(patient.getDateChanged(), patient.getDateCreated(),
+				since)) {
+			collected.add(new EntryKey(EntryType.PATIENT, patient.getPatientId()));
+		}
+		if (isIncluded(EntryType.ENCOUNTER, types)) {
+			addKeys(collected, EntryType.ENCOUNTER, dao.getEncounterIds(patient, since));
+		}
+		if (isIncluded(EntryType.OBSERVATION, types)) {
+			// with the obs allergy strategy the allergy observations are returned as allergies, not observations
+			Concept excludedConcept = null;
+			boolean includeObs = true;
+			if (FHIRConstants.OBS_ALLERGY_STRATEGY.equals(FHIRUtils.getAllergyStrategy())) {
+				excludedConcept = Context.getConceptService().getConceptByUuid(
+						FHIRUtils.getObsAllergyStrategyConceptUuid());
+				includeObs = excludedConcept != null;
+			}
+			if (includeObs) {
+				addKeys(collected, EntryType.OBSERVATION, dao.getEncounterObsIds(patient, since, excludedConcept));
+			}
+		}
+		if (isIncluded(EntryType.LOCATION, types)) {
+			addKeys(collected, EntryType.LOCATION, dao.getPatientLocationIds(patient, since));
+		}
+		if (isIncluded(EntryType.PRACTITIONER, types)) {
+			addKeys(collected, EntryType.PRACTITIONER, dao.getEncounterProviderIds(patient, since));
+		}
+		if (isIncluded(EntryType.FAMILY_MEMBER_HISTORY, types) && !patient.isVoided()) {
+			for (Relationship relationship : Context.getPersonService().getRelationshipsByPerson(patient)) {
+				if (isChangedSince(relationship.getDateChanged(), relationship.getDateCreated(), since)) {
+					collected.add(new EntryKey(EntryType.FAMILY_MEMBER_HISTORY, relationship.getRelationshipId()));
+				}
+			}
+		}
+		if (isIncluded(EntryType.VISIT, types)) {
+			addKeys(collected, EntryType.VISIT, dao.getVisitIds(patient, since));
+		}
+		return collected;
+	}
+
+	/**
+	 * Observations make up most of a patient record, so the ones of a page are loaded and converted in bulk
+	 */
+	private Map<Integer, Observation> loadObservations(List<EntryKey> pageKeys) {
+		List<Integer> obsIds = new ArrayList<Integer>();
+		for (EntryKey key : pageKeys) {
+			if (key.type == EntryType.OBSERVATION) {
+				obsIds.add(key.id);
+			}
+		}
+
+		Map<Integer, Observation> observations = new HashMap<Integer, Observation>();
+		if (obsIds.isEmpty()) {
+			return observations;
+		}
+		// the obs are read through the DAO, the other resources through the OpenMRS services which check privileges
+		PrivilegeUtil.requireViewPrivileges(PrivilegeUtil.OBSERVATIONS);
+		List<Obs> obsList = ContextUtil.getFHIRDao().getObsByIds(obsIds);
+		List<Observation> generated = FHIRObsUtil.generateObs(obsList);
+		for (int i = 0; i < obsList.size(); i++) {
+			observations.put(obsList.get(i).getObsId(), generated.get(i));
+		}
+		return observations;
+	}
+
+	private IBaseResource load(EntryKey key) {
+		switch (key.type) {
+			case PATIENT:
+				return FHIRPatientUtil.generatePatient(Context.getPatientService().getPatient(key.id));
+			case ENCOUNTER:
+				Encounter encounter = Context.getEncounterService().getEncounter(key.id);
+				return encounter == null ? null : FHIREncounterUtil.generateEncounter(encounter);
+			case LOCATION:
+				Location location = Context.getLocationService().getLocation(key.id);
+				return location == null ? null : FHIRLocationUtil.generateLocation(location);
+			case PRACTITIONER:
+				Provider provider = Context.getProviderService().getProvider(key.id);
+				return provider == null ? null : FHIRPractitionerUtil.generatePractitioner(provider);
+			case FAMILY_MEMBER_HISTORY:
+				Relationship relationship = Context.getPersonService().getRelationship(key.id);
+				return relationship == null ? null : FHIRFamilyMemberHistoryUtil.generateFamilyMemberHistory(
+						relationship, Context.getPatientService().getPatient(patientId));
+			case VISIT:
+				Visit visit = Context.getVisitService().getVisit(key.id);
+				return visit == null ? null : FHIRVisitUtil.generateEncounter(visit);
+			default:
+				return null;
+		}
+	}
+
+	private static void addKeys(Set<EntryKey> collected, EntryType type, List<Integer> ids) {
+		for (Integer id : ids) {
+			collected.add(new EntryKey(type, id));
+		}
+	}
+
+	private static boolean isIncluded(EntryType type, Collection<String> types) {
+		return types == null || types.isEmpty() || types.contains(type.resourceType);
+	}
+
+	private static boolean isChangedSince(Date dateChanged, Date dateCreated, Date since) {
+		if (since == null) {
+			return true;
+		}
+		Date lastUpdated = dateChanged != null ? dateChanged : dateCreated;
+		return lastUpdated != null && !lastUpdated.before(since);
+	}
+
+	/**
+	 * The kinds of OpenMRS objects making up a patient record, with the FHIR type they are returned as
+	 */
+	private enum EntryType {
+
+		PATIENT(FHIRConstants.PATIENT),
+		ENCOUNTER(FHIRConstants.ENCOUNTER),
+		OBSERVATION(FHIRConstants.OBSERVATION),
+		LOCATION(FHIRConstants.LOCATION),
+		PRACTITIONER(FHIRConstants.PRACTITIONER),
+		FAMILY_MEMBER_HISTORY(FHIRConstants.FAMILY_MEMBER_HISTORY),
+		VISIT(FHIRConstants.ENCOUNTER);
+
+		private final String resourceType;
+
+		EntryType(String resourceType) {
+			this.resourceType = resourceType;
+		}
+	}
+
+	private static class EntryKey {
+
+		private final EntryType type;
+
+		private final Integer id;
+
+		private EntryKey(EntryType type, Integer id) {
+			this.type = type;
+			this.id = id;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof EntryKey)) {
+				return false;
+			}
+			EntryKey other = (EntryKey) o;
+			return type == other.type && id.equals(other.id);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * type.hashCode() + id.hashCode();
+		}
+	}
+}
@@ -1,30 +1,32 @@
 package org.openmrs.module.fhir.api.strategies.patient;
 
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.server.BundleProviders;
+import ca.uhn.fhir.rest.server.IBundleProvider;
 import ca.uhn.fhir.rest.server.exceptions.MethodNotAllowedException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
 import ca.uhn.fhir.rest.server.exceptions.UnprocessableEntityException;
 import org.hl7.fhir.dstu3.model.Bundle;
-import org.hl7.fhir.dstu3.model.FamilyMemberHistory;
 import org.hl7.fhir.dstu3.model.IdType;
 import org.hl7.fhir.dstu3.model.Patient;
-import org.openmrs.Encounter;
+import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.openmrs.PatientIdentifierType;
-import org.openmrs.PersonName;
-import org.openmrs.Visit;
 import org.openmrs.api.APIException;
 import org.openmrs.api.PatientService;
 import org.openmrs.api.context.Context;
-import org.openmrs.module.fhir.api.EncounterService;
-import org.openmrs.module.fhir.api.FamilyMemberHistoryService;
+import org.openmrs.module.fhir.api.db.StringMatchMode;
+import org.openmrs.module.fhir.api.paging.KeysetDatabaseBundleProvider;
+import org.openmrs.module.fhir.api.util.ContextUtil;
 import org.openmrs.module.fhir.api.util.FHIRConstants;
-import org.openmrs.module.fhir.api.util.FHIRLocationUtil;
 import org.openmrs.module.fhir.api.util.FHIRPatientUtil;
 import org.openmrs.module.fhir.api.util.FHIRUtils;
-import org.openmrs.module.fhir.api.util.FHIRVisitUtil;
+import org.openmrs.module.fhir.api.util.PrivilegeUtil;
 import org.openmrs.module.fhir.api.util.StrategyUtil;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 
 import static org.openmrs.module.fhir.api.util.FHIRUtils.extractUuid;
@@ -39,6 +41,7 @@ public class PatientStrategy implements GenericPatientStrategy {
 		if (omrsPatient == null || omrsPatient.isVoided()) {
 			return null;
 		}
+		ContextUtil.getFHIRDao().initializePatients(Collections.singletonList(omrsPatient));
 		return FHIRPatientUtil.generatePatient(omrsPatient);
 	}
 
@@ -49,6 +52,7 @@ public class PatientStrategy implements GenericPatientStrategy {
 
 		List<Patient> patientList = new ArrayList<>();
 		if (omrsPatient != null && !omrsPatient.isVoided()) {
+			ContextUtil.getFHIRDao().initializePatients(Collections.singletonList(omrsPatient));
 			patientList.add(FHIRPatientUtil.generatePatient(omrsPatient));
 		}
 		return patientList;
@@ -62,6 +66,7 @@ public class PatientStrategy implements GenericPatientStrategy {
 		List<org.openmrs.Patient> patientList = patientService.getPatients(identifierValue, null,
 				patientIdentifierTypes, true);
 
+		ContextUtil.getFHIRDao().initializePatients(patientList);
 		List<Patient> fhirPatientList = new ArrayList<>();
 		for (org.openmrs.Patient patient : patientList) {
 			fhirPatientList.add(FHIRPatientUtil.generatePatient(patient));
@@ -76,6 +81,7 @@ public class PatientStrategy implements GenericPatientStrategy {
 		List<org.openmrs.Patient> patientList = patientService
 				.getPatients(identifier, null, allPatientIdentifierTypes, true);
 
+		ContextUtil.getFHIRDao().initializePatients(patientList);
 		List<Patient> fhirPatientList = new ArrayList<>();
 		for (org.openmrs.Patient patient : patientList) {
 			fhirPatientList.add(FHIRPatientUtil.generatePatient(patient));
@@ -84,88 +90,85 @@ public class PatientStrategy implements GenericPatientStrategy {
 	}
 
 	@Override
-	public List<Patient> searchPatients(boolean active) {
-		//TODO this method looks for all the patients which is inefficient. Reimplement after API revamp
-		List<org.openmrs.Patient> patients = Context.getPatientService().getAllPatients(true);
+	public IBundleProvider searchPatients(boolean active) {
+		final boolean voided = !active;
+		return new KeysetDatabaseBundleProvider<org.openmrs.Patient>(PrivilegeUtil.PATIENTS) {
 
-		List<Patient> fhirPatientList = new ArrayList<>();
-		for (org.openmrs.Patient patient : patients) {
-			if (active) {
-				if (!patient.isVoided()) {
-					fhirPatientList.add(FHIRPatientUtil.generatePatient(patient));
-				}
-			} else {
-				if (patient.isVoided()) {
-					fhirPatientList.add(FHIRPatientUtil.generatePatient(patient));
-				}
+			@Override
+			protected long count() {
+				return ContextUtil.getFHIRDao().getPatientCount(voided);
 			}
-		}
-		return fhirPatientList;
-	}
 
-	@Override
-	public Bundle searchPatientsByGivenName(String givenName) {
-		List<org.openmrs.Patient> patients = searchPatientByQuery(givenName);
+			@Override
+			protected List<org.openmrs.Patient> fetch(Integer afterId, int firstResult, int maxResults) {
+				return ContextUtil.getFHIRDao().getPatients(voided, afterId, firstResult, maxResults);
+			}
 
-		List<Patient> fhirPatientList = new ArrayList<>();
-		//Go through the patients given by the openmrs core api and find them patient who has the givenName matching
-		for (org.openmrs.Patient patient : patients) {
-			if (givenName.toLowerCase().contains(patient.getGivenName().toLowerCase())) {
-				fhirPatientList.add(FHIRPatientUtil.generatePatient(patient));
-			} else {
-				for (PersonName personName : patient.getNames()) {
-					if (givenName.toLowerCase().contains(personName.getGivenName().toLowerCase())) {
-						fhirPatientList.add(FHIRPatientUtil.generatePatient(patient));
-					}
-				}
+			@Override
+			protected Integer getId(org.openmrs.Patient patient) {
+				return patient.getPatientId();
 			}
-		}
 
-		Bundle bundle = new Bundle();
-		List<Bundle.BundleEntryComponent> filteredList = new ArrayList<>();
-		for (Patient fhirPatient : fhirPatientList) {
-			Bundle.BundleEntryComponent entry = new Bundle.BundleEntryComponent();
-			entry.setResource(fhirPatient);
-			filteredList.add(entry);
-		}
-		bundle.setEntry(filteredList);
+			@Override
+			protected IBaseResource convert(org.openmrs.Patient patient) {
+				return FHIRPatientUtil.generatePatient(patient);
+			}
 
-		return bundle;
+			@Override
+			protected List<IBaseResource> convert(List<org.openmrs.Patient> patients) {
+				ContextUtil.getFHIRDao().initializePatients(patients);
+				return super.convert(patients);
+			}
+		};
 	}
 
 	@Override
-	public Bundle searchPatientsByFamilyName(String familyName) {
-		List<org.openmrs.Patient> patients = searchPatientByQuery(familyName);
+	public IBundleProvider searchPatientsByGivenName(StringParam givenName) {
+		return searchPatientsByName(givenName.getValue(), null, StringMatchMode.of(givenName));
+	}
 
-		List<Patient> fhirPatientList = new ArrayList<>();
-		//Go through the patients given by the openmrs core api and find them patient who has the familyName matching
-		for (org.openmrs.Patient patient : patients) {
-			if (familyName.toLowerCase().contains(patient.getFamilyName().toLowerCase())) {
-				fhirPatientList.add(FHIRPatientUtil.generatePatient(patient));
-			} else {
-				for (PersonName personName : patient.getNames()) {
-					if (familyName.toLowerCase().contains(personName.getFamilyName().toLowerCase())) {
-						fhirPatientList.add(FHIRPatientUtil.generatePatient(patient));
-					}
-				}
+	@Override
+	public IBundleProvider searchPatientsByFamilyName(StringParam familyName) {
+		return searchPatientsByName(null, familyName.getValue(), StringMatchMode.of(familyName));
+	}
+
+	private IBundleProvider searchPatientsByName(final String givenName, final String familyName,
+			final StringMatchMode matchMode) {
+		return new KeysetDatabaseBundleProvider<org.openmrs.Patient>(PrivilegeUtil.PATIENTS) {
+
+			@Override
+			protected long count() {
+				return ContextUtil.getFHIRDao().getPatientCountByName(givenName, familyName, matchMode);
 			}
-		}
 
-		Bundle bundle = new Bundle();
-		List<Bundle.BundleEntryComponent> filteredList = new ArrayList<>();
-		for (Patient fhirPatient : fhirPatientList) {
-			Bundle.BundleEntryComponent entry = new Bundle.BundleEntryComponent();
-			entry.setResource(fhirPatient);
-			filteredList.add(entry);
-		}
-		bundle.setEntry(filteredList);
+			@Override
+			protected List<org.openmrs.Patient> fetch(Integer afterId, int firstResult, int maxResults) {
+				return ContextUtil.getFHIRDao().getPatientsByName(givenName, familyName, matchMode, afterId,
+						firstResult, maxResults);
+			}
 
-		return bundle;
+			@Override
+			protected Integer getId(org.openmrs.Patient patient) {
+				return patient.getPatientId();
+			}
+
+			@Override
+			protected IBaseResource convert(org.openmrs.Patient patient) {
+				return FHIRPatientUtil.generatePatient(patient);
+			}
+
+			@Override
+			protected List<IBaseResource> convert(List<org.openmrs.Patient> patients) {
+				ContextUtil.getFHIRDao().initializePatients(patients);
+				return super.convert(patients);
+			}
+		};
 	}
 
 	@Override
 	public Bundle searchPatientsByName(String name) {
 		List<org.openmrs.Patient> patients = searchPatientByQuery(name);
+		ContextUtil.getFHIRDao().initializePatients(patients);
 
 		List<Patient> fhirPatientList = new ArrayList<>();
 		for (org.openmrs.Patient patient : patients) {
@@ -185,40 +188,12 @@ public class PatientStrategy implements GenericPatientStrategy {
 	}
 
 	@Override
-	public Bundle getPatientOperationsById(String patientId) {
-		EncounterService encounterService = Context.getService(EncounterService.class);
-		FamilyMemberHistoryService familyMemberHistoryService = Context.getService(FamilyMemberHistoryService.class);
+	public IBundleProvider getPatientOperationsById(String patientId, Date since, List<String> types, Integer count) {
 		org.openmrs.Patient omsrPatient = Context.getPatientService().getPatientByUuid(patientId);
-
-		Bundle bundle = new Bundle();
-		if (omsrPatient != null) {
-			Bundle.BundleEntryComponent patient = bundle.addEntry();
-			patient.setResource(FHIRPatientUtil.generatePatient(omsrPatient));
-
-			//Set Enconter resources using encounter everything operation
-			for (Encounter enc : Context.getEncounterService().getEncountersByPatient(omsrPatient)) {
-				encounterService.getEncounterOperationsById(enc.getUuid(), bundle, false);
-			}
-
-			//Set patients' relationships
-			for (FamilyMemberHistory familyMemberHistory : familyMemberHistoryService.searchFamilyMemberHistoryByPersonId(omsrPatient
-					.getUuid())) {
-				bundle.addEntry().setResource(familyMemberHistory);
-			}
-
-			//Set visits
-			for (Visit visit : Context.getVisitService().getVisitsByPatient(omsrPatient)) {
-				bundle.addEntry().setResource(FHIRVisitUtil.generateEncounter(visit));
-				if (visit.getLocation() != null) {
-					bundle.addEntry().setResource(FHIRLocationUtil.generateLocation(visit.getLocation()));
-				}
-			}
-
-			List<Bundle.BundleEntryComponent> filteredList = rejectResourceDuplicates(bundle);
-
-			bundle.setEntry(filteredList);
+		if (omsrPatient == null) {
+			return BundleProviders.newEmptyList();
 		}
-		return bundle;
+		return new PatientEverythingBundleProvider(omsrPatient, since, types, count);
 	}
 
 	@Override
@@ -292,22 +267,4 @@ public class PatientStrategy implements GenericPatientStrategy {
 	private List<org.openmrs.Patient> searchPatientByQuery(String query) {
 		return Context.getPatientService().getPatients(query);
 	}
-
-	private List<Bundle.BundleEntryComponent> rejectResourceDuplicates(Bundle bundle) {
-		List<Bundle.BundleEntryComponent> result = new ArrayList<>();
-
-		for (Bundle.BundleEntryComponent temp : bundle.getEntry()) {
-			boolean contains = false;
-			for (Bundle.BundleEntryComponent filtered : result) {
-				if (filtered.getResource().getId().equals(temp.getResource().getId())) {
-					contains = true;
-				}
-			}
-			if (!contains) {
-				result.add(temp);
-			}
-		}
-
-		return result;
-	}
 }
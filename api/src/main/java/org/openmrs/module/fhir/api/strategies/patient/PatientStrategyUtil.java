@@ -1,11 +1,22 @@
 package org.openmrs.module.fhir.api.strategies.patient;
 
 import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.metrics.RequestTiming;
+import org.openmrs.module.fhir.api.util.FHIRStrategyRegistry;
 import org.openmrs.module.fhir.api.util.FHIRUtils;
 
 public class PatientStrategyUtil {
 
 	public static GenericPatientStrategy getPatientStrategy() {
+		return RequestTiming.time(lookupPatientStrategy(), GenericPatientStrategy.class, RequestTiming.STRATEGY);
+	}
+
+	private static GenericPatientStrategy lookupPatientStrategy() {
+		FHIRStrategyRegistry registry = FHIRStrategyRegistry.getInstance();
+		if (registry != null && registry.getPatientStrategy() != null) {
+			return registry.getPatientStrategy();
+		}
+
 		String strategy = FHIRUtils.getPatientStrategy();
 
 		return strategy == null ?
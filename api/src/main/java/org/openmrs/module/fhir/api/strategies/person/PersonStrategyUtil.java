@@ -1,11 +1,22 @@
 package org.openmrs.module.fhir.api.strategies.person;
 
 import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.metrics.RequestTiming;
+import org.openmrs.module.fhir.api.util.FHIRStrategyRegistry;
 import org.openmrs.module.fhir.api.util.FHIRUtils;
 
 public class PersonStrategyUtil {
 
 	public static GenericPersonStrategy getPersonStrategy() {
+		return RequestTiming.time(lookupPersonStrategy(), GenericPersonStrategy.class, RequestTiming.STRATEGY);
+	}
+
+	private static GenericPersonStrategy lookupPersonStrategy() {
+		FHIRStrategyRegistry registry = FHIRStrategyRegistry.getInstance();
+		if (registry != null && registry.getPersonStrategy() != null) {
+			return registry.getPersonStrategy();
+		}
+
 		String strategy = FHIRUtils.getPersonStrategy();
 
 		return strategy == null ?
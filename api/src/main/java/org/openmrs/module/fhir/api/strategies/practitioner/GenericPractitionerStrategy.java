@@ -1,5 +1,7 @@
 package org.openmrs.module.fhir.api.strategies.practitioner;
 
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
 import org.hl7.fhir.dstu3.model.Practitioner;
 
 import java.util.List;
@@ -12,9 +14,9 @@ public interface GenericPractitionerStrategy {
 
 	List<Practitioner> searchPractitionersByName(String name);
 
-	List<Practitioner> searchPractitionersByGivenName(String givenName);
+	IBundleProvider searchPractitionersByGivenName(StringParam givenName);
 
-	List<Practitioner> searchPractitionersByFamilyName(String familyName);
+	IBundleProvider searchPractitionersByFamilyName(StringParam familyName);
 
 	List<Practitioner> searchPractitionersByIdentifier(String identifier);
 
@@ -1,22 +1,29 @@
 package org.openmrs.module.fhir.api.strategies.practitioner;
 
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
 import ca.uhn.fhir.rest.server.exceptions.UnprocessableEntityException;
 import org.hl7.fhir.dstu3.model.HumanName;
 import org.hl7.fhir.dstu3.model.Identifier;
 import org.hl7.fhir.dstu3.model.Practitioner;
 import org.hl7.fhir.dstu3.model.StringType;
+import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.openmrs.Person;
-import org.openmrs.PersonName;
 import org.openmrs.Provider;
 import org.openmrs.api.ProviderService;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.db.StringMatchMode;
+import org.openmrs.module.fhir.api.paging.KeysetDatabaseBundleProvider;
+import org.openmrs.module.fhir.api.util.ContextUtil;
 import org.openmrs.module.fhir.api.util.ErrorUtil;
 import org.openmrs.module.fhir.api.util.FHIRConstants;
 import org.openmrs.module.fhir.api.util.FHIRPractitionerUtil;
+import org.openmrs.module.fhir.api.util.PrivilegeUtil;
 import org.openmrs.module.fhir.api.util.StrategyUtil;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import static java.lang.String.valueOf;
@@ -31,6 +38,7 @@ public class PractitionerStrategy implements GenericPractitionerStrategy {
 		if (omrsProvider == null || omrsProvider.isRetired()) {
 			return null;
 		}
+		ContextUtil.getFHIRDao().initializeProviders(Collections.singletonList(omrsProvider));
 		return FHIRPractitionerUtil.generatePractitioner(omrsProvider);
 	}
 
@@ -39,6 +47,7 @@ public class PractitionerStrategy implements GenericPractitionerStrategy {
 		Provider omrsProvider = Context.getProviderService().getProviderByUuid(uuid);
 		List<Practitioner> practitioners = new ArrayList<>();
 		if (omrsProvider != null && !omrsProvider.isRetired()) {
+			ContextUtil.getFHIRDao().initializeProviders(Collections.singletonList(omrsProvider));
 			practitioners.add(FHIRPractitionerUtil.generatePractitioner(omrsProvider));
 		}
 		return practitioners;
@@ -47,6 +56,7 @@ public class PractitionerStrategy implements GenericPractitionerStrategy {
 	@Override
 	public List<Practitioner> searchPractitionersByName(String name) {
 		List<Provider> omrsProviders = searchProvidersByQuery(name);
+		ContextUtil.getFHIRDao().initializeProviders(omrsProviders);
 		List<Practitioner> practitioners = new ArrayList<>();
 		for (Provider provider : omrsProviders) {
 			practitioners.add(FHIRPractitionerUtil.generatePractitioner(provider));
@@ -55,47 +65,13 @@ public class PractitionerStrategy implements GenericPractitionerStrategy {
 	}
 
 	@Override
-	public List<Practitioner> searchPractitionersByGivenName(String givenName) {
-		List<Provider> omrsProviders = searchProvidersByQuery(givenName);
-		List<Practitioner> practitioners = new ArrayList<>();
-		for (Provider provider : omrsProviders) {
-			if (provider.getPerson() != null) {
-				//Search through the provider given name for check whether given name exist in the returned provider
-				// resource
-
-				if (givenName.equalsIgnoreCase(provider.getPerson().getGivenName())) {
-					practitioners.add(FHIRPractitionerUtil.generatePractitioner(provider));
-				} else {
-					for (PersonName personName : provider.getPerson().getNames()) {
-						if (givenName.equalsIgnoreCase(personName.getGivenName())) {
-							practitioners.add(FHIRPractitionerUtil.generatePractitioner(provider));
-						}
-					}
-				}
-			}
-		}
-		return practitioners;
+	public IBundleProvider searchPractitionersByGivenName(StringParam givenName) {
+		return searchPractitionersByName(givenName.getValue(), null, StringMatchMode.of(givenName));
 	}
 
 	@Override
-	public List<Practitioner> searchPractitionersByFamilyName(String familyName) {
-		List<Provider> omrsProviders = searchProvidersByQuery(familyName);
-		List<Practitioner> practitioners = new ArrayList<>();
-		for (Provider provider : omrsProviders) {
-			//Search through the provider family name for check whether family name exist in the returned provider resource
-			if (provider.getPerson() != null) {
-				if (familyName.equalsIgnoreCase(provider.getPerson().getFamilyName())) {
-					practitioners.add(FHIRPractitionerUtil.generatePractitioner(provider));
-				} else {
-					for (PersonName personName : provider.getPerson().getNames()) {
-						if (familyName.equalsIgnoreCase(personName.getFamilyName())) {
-							practitioners.add(FHIRPractitionerUtil.generatePractitioner(provider));
-						}
-					}
-				}
-			}
-		}
-		return practitioners;
+	public IBundleProvider searchPractitionersByFamilyName(StringParam familyName) {
+		return searchPractitionersByName(null, familyName.getValue(), StringMatchMode.of(familyName));
 	}
 
 	@Override
@@ -182,6 +158,39 @@ public class PractitionerStrategy implements GenericPractitionerStrategy {
 		}
 	}
 
+	private IBundleProvider searchPractitionersByName(final String givenName, final String familyName,
+			final StringMatchMode matchMode) {
+		return new KeysetDatabaseBundleProvider<Provider>(PrivilegeUtil.PROVIDERS) {
+
+			@Override
+			protected long count() {
+				return ContextUtil.getFHIRDao().getProviderCountByName(givenName, familyName, matchMode);
+			}
+
+			@Override
+			protected List<Provider> fetch(Integer afterId, int firstResult, int maxResults) {
+				return ContextUtil.getFHIRDao().getProvidersByName(givenName, familyName, matchMode, afterId,
+						firstResult, maxResults);
+			}
+
+			@Override
+			protected Integer getId(Provider provider) {
+				return provider.getProviderId();
+			}
+
+			@Override
+			protected IBaseResource convert(Provider provider) {
+				return FHIRPractitionerUtil.generatePractitioner(provider);
+			}
+
+			@Override
+			protected List<IBaseResource> convert(List<Provider> providers) {
+				ContextUtil.getFHIRDao().initializeProviders(providers);
+				return super.convert(providers);
+			}
+		};
+	}
+
 	private List<Provider> searchProvidersByQuery(String query) {
 		return Context.getProviderService().getProviders(query, null, null, null, false);
 	}
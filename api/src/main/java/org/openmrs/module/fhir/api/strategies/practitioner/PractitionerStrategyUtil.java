@@ -1,11 +1,17 @@
 package org.openmrs.module.fhir.api.strategies.practitioner;
 
 import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.util.FHIRStrategyRegistry;
 import org.openmrs.module.fhir.api.util.FHIRUtils;
 
 public class PractitionerStrategyUtil {
 
 	public static PractitionerStrategy getPractitionerStrategy() {
+		FHIRStrategyRegistry registry = FHIRStrategyRegistry.getInstance();
+		if (registry != null && registry.getPractitionerStrategy() != null) {
+			return registry.getPractitionerStrategy();
+		}
+
 		String strategy = FHIRUtils.getPractitionerStrategy();
 
 		return (strategy == null) ? new PractitionerStrategy() :
@@ -1,11 +1,23 @@
 package org.openmrs.module.fhir.api.strategies.procedurerequest;
 
 import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.metrics.RequestTiming;
+import org.openmrs.module.fhir.api.util.FHIRStrategyRegistry;
 import org.openmrs.module.fhir.api.util.FHIRUtils;
 
 public class ProcedureRequestStrategyUtil {
 
 	public static GenericProcedureRequestStrategy getProcedureRequestStrategy() {
+		return RequestTiming.time(lookupProcedureRequestStrategy(), GenericProcedureRequestStrategy.class,
+				RequestTiming.STRATEGY);
+	}
+
+	private static GenericProcedureRequestStrategy lookupProcedureRequestStrategy() {
+		FHIRStrategyRegistry registry = FHIRStrategyRegistry.getInstance();
+		if (registry != null && registry.getProcedureRequestStrategy() != null) {
+			return registry.getProcedureRequestStrategy();
+		}
+
 		String strategy = FHIRUtils.getProcedureRequestStrategy();
 		return strategy == null ? new ProcedureRequestStrategy() :
 				Context.getRegisteredComponent(strategy, GenericProcedureRequestStrategy.class);
@@ -1,11 +1,17 @@
 package org.openmrs.module.fhir.api.strategies.relatedperson;
 
 import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.util.FHIRStrategyRegistry;
 import org.openmrs.module.fhir.api.util.FHIRUtils;
 
 public class RelatedPersonStrageryUtil {
 
 	public static GenericRelatedPersonStrategy getPersonStrategy() {
+		FHIRStrategyRegistry registry = FHIRStrategyRegistry.getInstance();
+		if (registry != null && registry.getRelatedPersonStrategy() != null) {
+			return registry.getRelatedPersonStrategy();
+		}
+
 		String strategy = FHIRUtils.getRelatedPersonStrategy();
 
 		return strategy == null ? new RelatedPersonStrategy() :
@@ -3,14 +3,31 @@ package org.openmrs.module.fhir.api.util;
 import org.hl7.fhir.dstu3.model.DomainResource;
 import org.hl7.fhir.dstu3.model.Element;
 import org.hl7.fhir.dstu3.model.Extension;
+import org.hl7.fhir.dstu3.model.Resource;
+import org.openmrs.Auditable;
 import org.openmrs.BaseOpenmrsData;
 import org.openmrs.BaseOpenmrsMetadata;
+import org.openmrs.Retireable;
+import org.openmrs.Voidable;
+
+import java.util.Collection;
+import java.util.Date;
 
 public final class BaseOpenMRSDataUtil {
 
     private BaseOpenMRSDataUtil() { }
 
-    public static void setBaseExtensionFields(DomainResource fhirResource, BaseOpenmrsData openmrsData) {
+    /**
+     * Sets the meta and the audit extensions of a resource generated from an OpenMRS object
+     *
+     * @param fhirResource the generated resource
+     * @param openmrsData  the OpenMRS object the resource is generated from
+     * @param dependents   collections of {@link Auditable} objects shown in the resource
+     * @see #setMeta(Resource, Auditable, Collection[])
+     */
+    public static void setBaseExtensionFields(DomainResource fhirResource, BaseOpenmrsData openmrsData,
+            Collection<?>... dependents) {
+        setMeta(fhirResource, openmrsData, dependents);
         fhirResource.addExtension(ExtensionsUtil.createDateCreatedExtension(openmrsData.getDateCreated()));
         fhirResource.addExtension(ExtensionsUtil.createCreatorExtension(openmrsData.getCreator()));
 
@@ -43,6 +60,7 @@ public final class BaseOpenMRSDataUtil {
     }
     
     public static void setBaseExtensionFields(DomainResource fhirResource, BaseOpenmrsMetadata openmrsMetadata) {
+        setMeta(fhirResource, openmrsMetadata);
         fhirResource.addExtension(ExtensionsUtil.createDateCreatedExtension(openmrsMetadata.getDateCreated()));
         fhirResource.addExtension(ExtensionsUtil.createCreatorExtension(openmrsMetadata.getCreator()));
 
@@ -58,6 +76,69 @@ public final class BaseOpenMRSDataUtil {
         }
     }
 
+    /**
+     * Sets the version and the last updated date of a resource from the last change of the OpenMRS object it is
+     * generated from and of the dependent objects shown in it, like the names of a person, so that a new name gives
+     * the resource a new version
+     *
+     * @param fhirResource  the generated resource
+     * @param openmrsObject the OpenMRS object the resource is generated from
+     * @param dependents    collections of {@link Auditable} objects shown in the resource
+     */
+    public static void setMeta(Resource fhirResource, Auditable openmrsObject, Collection<?>... dependents) {
+        Date lastModified = getLastModified(openmrsObject, dependents);
+        if (lastModified != null) {
+            fhirResource.getMeta().setLastUpdated(lastModified);
+            fhirResource.getMeta().setVersionId(getVersionId(lastModified));
+        }
+    }
+
+    /**
+     * @param openmrsObject an OpenMRS object
+     * @param dependents    collections of {@link Auditable} objects shown in the resource of the OpenMRS object
+     * @return the latest date any of the objects was created, changed, voided or retired, null if none of them has a
+     * date
+     */
+    public static Date getLastModified(Auditable openmrsObject, Collection<?>... dependents) {
+        Date lastModified = getLastChange(openmrsObject);
+        for (Collection<?> dependent : dependents) {
+            if (dependent == null) {
+                continue;
+            }
+            for (Object object : dependent) {
+                if (object instanceof Auditable) {
+                    lastModified = later(lastModified, getLastChange((Auditable) object));
+                }
+            }
+        }
+        return lastModified;
+    }
+
+    /**
+     * @param lastModified the date a resource was last modified
+     * @return the version id of the resource, which is also the value of its ETag
+     */
+    public static String getVersionId(Date lastModified) {
+        return String.valueOf(lastModified.getTime());
+    }
+
+    private static Date getLastChange(Auditable auditable) {
+        Date lastChange = later(auditable.getDateCreated(), auditable.getDateChanged());
+        if (auditable instanceof Voidable) {
+            lastChange = later(lastChange, ((Voidable) auditable).getDateVoided());
+        } else if (auditable instanceof Retireable) {
+            lastChange = later(lastChange, ((Retireable) auditable).getDateRetired());
+        }
+        return lastChange;
+    }
+
+    private static Date later(Date first, Date second) {
+        if (first == null) {
+            return second;
+        }
+        return second == null || first.after(second) ? first : second;
+    }
+
     public static void readBaseExtensionFields(BaseOpenmrsData openmrsData, DomainResource fhirResource) {
         for (Extension extension : fhirResource.getExtension()) {
             ExtensionsUtil.setBaseOpenMRSData(openmrsData, extension);
@@ -1,6 +1,7 @@
 package org.openmrs.module.fhir.api.util;
 
 import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.db.FHIRDao;
 import org.openmrs.module.fhir.api.helper.AllergyHelper;
 import org.openmrs.module.fhir.api.helper.ConditionHelper;
 import org.openmrs.module.fhir.api.helper.DrugHelper;
@@ -8,36 +9,102 @@ import org.openmrs.module.fhir.api.helper.DrugOrderHelper;
 import org.openmrs.module.fhir.api.helper.ObsHelper;
 import org.openmrs.module.fhir.api.helper.OrderHelper;
 import org.openmrs.module.fhir.api.helper.TestOrderHelper;
+import org.openmrs.module.fhir.api.metrics.RequestTiming;
 
 public class ContextUtil {
 
 	public static ObsHelper getObsHelper() {
+		return RequestTiming.time(lookupObsHelper(), ObsHelper.class, RequestTiming.HELPER);
+	}
+
+	private static ObsHelper lookupObsHelper() {
+		FHIRStrategyRegistry registry = FHIRStrategyRegistry.getInstance();
+		if (registry != null && registry.getObsHelper() != null) {
+			return registry.getObsHelper();
+		}
 		return Context.getRegisteredComponent("fhir.ObsHelper", ObsHelper.class);
 	}
 
 	public static DrugHelper getDrugHelper() {
+		return RequestTiming.time(lookupDrugHelper(), DrugHelper.class, RequestTiming.HELPER);
+	}
+
+	private static DrugHelper lookupDrugHelper() {
+		FHIRStrategyRegistry registry = FHIRStrategyRegistry.getInstance();
+		if (registry != null && registry.getDrugHelper() != null) {
+			return registry.getDrugHelper();
+		}
 		return Context.getRegisteredComponent("fhir.DrugHelper", DrugHelper.class);
 	}
 
 	public static AllergyHelper getAllergyHelper() {
+		return RequestTiming.time(lookupAllergyHelper(), AllergyHelper.class, RequestTiming.HELPER);
+	}
+
+	private static AllergyHelper lookupAllergyHelper() {
+		FHIRStrategyRegistry registry = FHIRStrategyRegistry.getInstance();
+		if (registry != null && registry.getAllergyHelper() != null) {
+			return registry.getAllergyHelper();
+		}
 		return Context.getRegisteredComponent("fhir.AllergyHelper", AllergyHelper.class);
 	}
 
 	public static OrderHelper getOrderHelper() {
+		return RequestTiming.time(lookupOrderHelper(), OrderHelper.class, RequestTiming.HELPER);
+	}
+
+	private static OrderHelper lookupOrderHelper() {
+		FHIRStrategyRegistry registry = FHIRStrategyRegistry.getInstance();
+		if (registry != null && registry.getOrderHelper() != null) {
+			return registry.getOrderHelper();
+		}
 		return Context.getRegisteredComponent("fhir.OrderHelper", OrderHelper.class);
 	}
 
 	public static ConditionHelper getConditionHelper() {
+		return RequestTiming.time(lookupConditionHelper(), ConditionHelper.class, RequestTiming.HELPER);
+	}
+
+	private static ConditionHelper lookupConditionHelper() {
+		FHIRStrategyRegistry registry = FHIRStrategyRegistry.getInstance();
+		if (registry != null && registry.getConditionHelper() != null) {
+			return registry.getConditionHelper();
+		}
 		return Context.getRegisteredComponent("fhir.ConditionHelper", ConditionHelper.class);
 	}
 
 	public static TestOrderHelper getTestOrderHelper() {
+		return RequestTiming.time(lookupTestOrderHelper(), TestOrderHelper.class, RequestTiming.HELPER);
+	}
+
+	private static TestOrderHelper lookupTestOrderHelper() {
+		FHIRStrategyRegistry registry = FHIRStrategyRegistry.getInstance();
+		if (registry != null && registry.getTestOrderHelper() != null) {
+			return registry.getTestOrderHelper();
+		}
 		return Context.getRegisteredComponent("fhir.TestOrderHelper", TestOrderHelper.class);
 	}
 
 	public static DrugOrderHelper getDrugOrderHelper() {
+		return RequestTiming.time(lookupDrugOrderHelper(), DrugOrderHelper.class, RequestTiming.HELPER);
+	}
+
+	private static DrugOrderHelper lookupDrugOrderHelper() {
+		FHIRStrategyRegistry registry = FHIRStrategyRegistry.getInstance();
+		if (registry != null && registry.getDrugOrderHelper() != null) {
+			return registry.getDrugOrderHelper();
+		}
 		return Context.getRegisteredComponent("fhir.DrugOrderHelper", DrugOrderHelper.class);
 	}
 
+	public static FHIRDao getFHIRDao() {
+		FHIRStrategyRegistry registry = FHIRStrategyRegistry.getInstance();
+		if (registry != null && registry.getFHIRDao() != null) {
+			return registry.getFHIRDao();
+		}
+		return RequestTiming.time(Context.getRegisteredComponent("fhirDAO", FHIRDao.class), FHIRDao.class,
+				RequestTiming.DAO);
+	}
+
 	private ContextUtil() { }
 }
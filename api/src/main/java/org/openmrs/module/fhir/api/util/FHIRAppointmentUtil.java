@@ -30,6 +30,7 @@ public class FHIRAppointmentUtil {
 		IdType id = new IdType();
 		id.setValue(appointment.getUuid());
 		fhirAppointment.setId(id);
+		BaseOpenMRSDataUtil.setMeta(fhirAppointment, appointment);
 
 		//Set appointment id as a identifier
 		Identifier identifier = new Identifier();
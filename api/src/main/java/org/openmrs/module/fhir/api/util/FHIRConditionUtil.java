@@ -47,6 +47,7 @@ public class FHIRConditionUtil {
 		IdType id = new IdType();
 		id.setValue(condition.getUuid());
 		fhirCondition.setId(id);
+		BaseOpenMRSDataUtil.setMeta(fhirCondition, condition);
 
 		//Set patient reference
 		Reference patient = FHIRUtils.buildPatientOrPersonResourceReference(condition.getPatient());
@@ -193,6 +194,7 @@ public class FHIRConditionUtil {
 		IdType id = new IdType();
 		id.setValue(openMrsObs.getUuid());
 		fhirCondition.setId(id);
+		BaseOpenMRSDataUtil.setMeta(fhirCondition, openMrsObs);
 
 		if (openMrsObs.getPerson().isPatient()) {
 			Reference patient = FHIRUtils.buildPatientOrPersonResourceReference(openMrsObs.getPerson());
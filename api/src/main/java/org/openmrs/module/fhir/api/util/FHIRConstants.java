@@ -13,6 +13,7 @@
  */
 package org.openmrs.module.fhir.api.util;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -124,6 +125,8 @@ public final class FHIRConstants {
 
 	public static final String RELATED_PERSON = "RelatedPerson";
 
+	public static final String FAMILY_MEMBER_HISTORY = "FamilyMemberHistory";
+
 	public static final String OBSERVATION = "Observation";
 
 	public static final String MEDICATION = "Medication";
@@ -264,6 +267,54 @@ public final class FHIRConstants {
 
 	public static final int FIRST = 0;
 
+	public static final int DEFAULT_PAGE_SIZE = 50;
+
+	public static final int MAXIMUM_PAGE_SIZE = 500;
+
+	public static final int MAXIMUM_STORED_SEARCHES = 100;
+
+	public static final int CONCEPT_CODING_CACHE_MAXIMUM_SIZE = 2000;
+
+	public static final long CONCEPT_CODING_CACHE_TIME_TO_LIVE = 30 * 60 * 1000L;
+
+	public static final long RESOURCE_CACHE_MAXIMUM_BYTES = 32 * 1024 * 1024L;
+
+	public static final long OBS_TIME_SERIES_CACHE_MAXIMUM_BYTES = 16 * 1024 * 1024L;
+
+	public static final int DEFAULT_TIME_SERIES_POINTS = 100;
+
+	public static final int MAXIMUM_TIME_SERIES_POINTS = 1000;
+
+	public static final int OBS_SCROLL_BATCH_SIZE = 100;
+
+	public static final String METRICS_PRIVILEGE = "View FHIR Metrics";
+
+	public static final String BULK_EXPORT_PRIVILEGE = "Export FHIR Data";
+
+	public static final String BULK_EXPORT_DIRECTORY = "fhir" + File.separator + "export";
+
+	public static final int BULK_EXPORT_CHUNK_SIZE = 500;
+
+	public static final int BULK_EXPORT_PATIENT_CHUNK_SIZE = 1000;
+
+	public static final String BULK_IMPORT_PRIVILEGE = "Import FHIR Data";
+
+	public static final String BULK_IMPORT_DIRECTORY = "fhir" + File.separator + "import";
+
+	public static final String BULK_IMPORT_JOB_DIRECTORY = "fhir" + File.separator + "import-jobs";
+
+	public static final int BULK_IMPORT_BATCH_SIZE = 100;
+
+	public static final int BATCH_WORKERS = 4;
+
+	public static final int CHANGE_LOG_RETENTION_DAYS = 90;
+
+	public static final int CHANGE_LOG_READ_LAG_SECONDS = 5;
+
+	public static final String NDJSON_CONTENT_TYPE = "application/fhir+ndjson";
+
+	public static final String NDJSON_EXTENSION = ".ndjson";
+
 	public static final String POST = "POST";
 
 	public static final String PUT = "PUT";
@@ -20,6 +20,7 @@ import org.hl7.fhir.dstu3.model.Composition;
 import org.hl7.fhir.dstu3.model.Encounter;
 import org.hl7.fhir.dstu3.model.Extension;
 import org.hl7.fhir.dstu3.model.IdType;
+import org.hl7.fhir.dstu3.model.Observation;
 import org.hl7.fhir.dstu3.model.Period;
 import org.hl7.fhir.dstu3.model.Reference;
 import org.hl7.fhir.exceptions.FHIRException;
@@ -36,6 +37,7 @@ import org.openmrs.Provider;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.fhir.api.FHIRHelperService;
 import org.openmrs.module.fhir.api.constants.ExtensionURL;
+import org.openmrs.module.fhir.api.metrics.RequestTiming;
 import org.springframework.util.CollectionUtils;
 
 import java.util.ArrayList;
@@ -126,6 +128,16 @@ public class FHIREncounterUtil {
 	}
 
 	public static Encounter generateEncounter(org.openmrs.Encounter omrsEncounter) {
+		RequestTiming.Phase phase = RequestTiming.begin(RequestTiming.CONVERSION);
+		try {
+			return buildEncounter(omrsEncounter);
+		}
+		finally {
+			phase.end();
+		}
+	}
+
+	private static Encounter buildEncounter(org.openmrs.Encounter omrsEncounter) {
 		Encounter encounter = new Encounter();
 
 		BaseOpenMRSDataUtil.setBaseExtensionFields(encounter, omrsEncounter);
@@ -259,21 +271,21 @@ public class FHIREncounterUtil {
 	 */
 	public static void addFilteredObs(org.openmrs.Encounter encounter, Bundle bundle) {
 		String strategy = FHIRUtils.getAllergyStrategy();
-		Bundle.BundleEntryComponent observation;
+		List<Obs> filteredObs = new ArrayList<>();
 		if (FHIRConstants.OBS_ALLERGY_STRATEGY.equals(strategy)) {
 			String allergyCode = FHIRUtils.getObsAllergyStrategyConceptUuid();
 			Concept concept = Context.getConceptService().getConceptByUuid(allergyCode);
 			for (Obs obs : encounter.getAllObs(false)) {
 				if (concept != null && !concept.equals(obs.getConcept())) {
-					observation = bundle.addEntry();
-					observation.setResource(FHIRObsUtil.generateObs(obs));
+					filteredObs.add(obs);
 				}
 			}
 		} else {
-			for (Obs obs : encounter.getAllObs(false)) {
-				observation = bundle.addEntry();
-				observation.setResource(FHIRObsUtil.generateObs(obs));
-			}
+			filteredObs.addAll(encounter.getAllObs(false));
+		}
+
+		for (Observation observation : FHIRObsUtil.generateObs(filteredObs)) {
+			bundle.addEntry().setResource(observation);
 		}
 	}
 
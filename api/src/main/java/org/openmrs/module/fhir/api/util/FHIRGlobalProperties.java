@@ -0,0 +1,124 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.GlobalProperty;
+import org.openmrs.api.GlobalPropertyListener;
+import org.openmrs.api.context.Context;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reads the module global properties from an immutable snapshot instead of the database. The snapshot is loaded when
+ * the module starts and replaced as a whole whenever one of the {@code fhir.*} global properties is saved or deleted,
+ * so readers always see a consistent set of values.
+ * <p/>
+ * Until the snapshot is loaded, and for properties outside the {@code fhir.*} namespace, values are read from the
+ * {@link org.openmrs.api.AdministrationService} as before.
+ */
+public final class FHIRGlobalProperties {
+
+	private static final Log log = LogFactory.getLog(FHIRGlobalProperties.class);
+
+	private static final String PREFIX = FHIRConstants.MODULE_ID + ".";
+
+	private static final AtomicReference<Map<String, String>> snapshot = new AtomicReference<Map<String, String>>();
+
+	private static final GlobalPropertyListener listener = new SnapshotUpdater();
+
+	private FHIRGlobalProperties() { }
+
+	/**
+	 * Gets the value of a global property
+	 *
+	 * @param propertyName the name of the global property
+	 * @return the value, or null if the property does not exist
+	 */
+	public static String get(String propertyName) {
+		Map<String, String> properties = snapshot.get();
+		if (properties == null || !propertyName.startsWith(PREFIX)) {
+			return Context.getAdministrationService().getGlobalProperty(propertyName);
+		}
+		return properties.get(propertyName);
+	}
+
+	/**
+	 * Loads the snapshot of the {@code fhir.*} global properties and starts listening to their changes
+	 */
+	public static void load() {
+		Map<String, String> properties = new HashMap<String, String>();
+		for (GlobalProperty globalProperty : Context.getAdministrationService().getGlobalPropertiesByPrefix(PREFIX)) {
+			properties.put(globalProperty.getProperty(), globalProperty.getPropertyValue());
+		}
+		snapshot.set(Collections.unmodifiableMap(properties));
+		Context.getAdministrationService().removeGlobalPropertyListener(listener);
+		Context.getAdministrationService().addGlobalPropertyListener(listener);
+		log.debug("Loaded " + properties.size() + " FHIR global properties");
+	}
+
+	/**
+	 * Stops listening to global property changes and drops the snapshot
+	 */
+	public static void unload() {
+		Context.getAdministrationService().removeGlobalPropertyListener(listener);
+		snapshot.set(null);
+	}
+
+	/**
+	 * @return true if values are read from the snapshot
+	 */
+	public static boolean isLoaded() {
+		return snapshot.get() != null;
+	}
+
+	private static void replace(String propertyName, String value, boolean deleted) {
+		Map<String, String> current;
+		Map<String, String> updated;
+		do {
+			current = snapshot.get();
+			if (current == null) {
+				return;
+			}
+			updated = new HashMap<String, String>(current);
+			if (deleted) {
+				updated.remove(propertyName);
+			} else {
+				updated.put(propertyName, value);
+			}
+		} while (!snapshot.compareAndSet(current, Collections.unmodifiableMap(updated)));
+	}
+
+	private static class SnapshotUpdater implements GlobalPropertyListener {
+
+		@Override
+		public boolean supportsPropertyName(String propertyName) {
+			return propertyName != null && propertyName.startsWith(PREFIX);
+		}
+
+		@Override
+		public void globalPropertyChanged(GlobalProperty newValue) {
+			replace(newValue.getProperty(), newValue.getPropertyValue(), false);
+		}
+
+		@Override
+		public void globalPropertyDeleted(String propertyName) {
+			replace(propertyName, null, true);
+		}
+	}
+}
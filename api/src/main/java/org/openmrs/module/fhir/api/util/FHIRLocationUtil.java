@@ -13,12 +13,14 @@
  */
 package org.openmrs.module.fhir.api.util;
 
+import org.apache.commons.lang.StringUtils;
 import org.hl7.fhir.dstu3.model.Address;
 import org.hl7.fhir.dstu3.model.IdType;
 import org.hl7.fhir.dstu3.model.Location;
 import org.hl7.fhir.dstu3.model.Reference;
 import org.hl7.fhir.dstu3.model.StringType;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.metrics.RequestTiming;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
@@ -27,6 +29,16 @@ import java.util.List;
 public class FHIRLocationUtil {
 
 	public static Location generateLocation(org.openmrs.Location omrsLocation) {
+		RequestTiming.Phase phase = RequestTiming.begin(RequestTiming.CONVERSION);
+		try {
+			return buildLocation(omrsLocation);
+		}
+		finally {
+			phase.end();
+		}
+	}
+
+	private static Location buildLocation(org.openmrs.Location omrsLocation) {
 		Location location = new Location();
 
 		BaseOpenMRSDataUtil.setBaseExtensionFields(location, omrsLocation);
@@ -102,6 +114,9 @@ public class FHIRLocationUtil {
 			// No location found to be updated, creating new location. Should respond with 201 Http Code acc to
 			// specification
 			omrsLocation = new org.openmrs.Location();
+			if (StringUtils.isNotBlank(id)) {
+				omrsLocation.setUuid(id);
+			}
 		}
 
 		BaseOpenMRSDataUtil.readBaseExtensionFields(omrsLocation, location);
@@ -29,28 +29,70 @@ import org.hl7.fhir.dstu3.model.Reference;
 import org.hl7.fhir.dstu3.model.SimpleQuantity;
 import org.hl7.fhir.dstu3.model.StringType;
 import org.openmrs.Concept;
-import org.openmrs.ConceptMap;
 import org.openmrs.ConceptNumeric;
 import org.openmrs.Encounter;
 import org.openmrs.EncounterProvider;
 import org.openmrs.Location;
 import org.openmrs.Obs;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.cache.ConceptCodingCache;
 import org.openmrs.module.fhir.api.constants.ExtensionURL;
+import org.openmrs.module.fhir.api.db.FHIRDao;
+import org.openmrs.module.fhir.api.metrics.RequestTiming;
 import org.openmrs.obs.ComplexData;
 
 import java.math.BigDecimal;
 import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 public class FHIRObsUtil {
 
 	private static final Log log = LogFactory.getLog(FHIRObsUtil.class);
 
 	public static Observation generateObs(Obs obs) {
+		RequestTiming.Phase phase = RequestTiming.begin(RequestTiming.CONVERSION);
+		try {
+			return generateObs(obs, null);
+		}
+		finally {
+			phase.end();
+		}
+	}
+
+	/**
+	 * Generates observations in bulk. The persons, patients, encounter providers, concept names, mappings and numeric
+	 * concepts of all the observations are loaded up front in a few queries, instead of a few queries per observation.
+	 *
+	 * @param obsList the observations to generate, attached to the current session
+	 * @return the generated observations, in the same order
+	 */
+	public static List<Observation> generateObs(List<Obs> obsList) {
+		List<Observation> observations = new ArrayList<>();
+		if (obsList.isEmpty()) {
+			return observations;
+		}
+
+		RequestTiming.Phase phase = RequestTiming.begin(RequestTiming.CONVERSION);
+		try {
+			ObsPrefetch prefetch = new ObsPrefetch(obsList);
+			for (Obs obs : obsList) {
+				observations.add(generateObs(obs, prefetch));
+			}
+		}
+		finally {
+			phase.end();
+		}
+		return observations;
+	}
+
+	private static Observation generateObs(Obs obs, ObsPrefetch prefetch) {
 
 		Observation observation = new Observation();
 
@@ -67,7 +109,12 @@ public class FHIRObsUtil {
 		observation.setEffective(type);
 		//Set fhir observation comment
 		observation.setComment(obs.getComment());
-		observation.setSubject(FHIRUtils.buildPatientOrPersonResourceReference(obs.getPerson()));
+		if (prefetch != null) {
+			observation.setSubject(FHIRUtils.buildPatientOrPersonResourceReference(obs.getPerson(),
+					prefetch.getPatient(obs.getPerson())));
+		} else {
+			observation.setSubject(FHIRUtils.buildPatientOrPersonResourceReference(obs.getPerson()));
+		}
 		//Set fhir performers from openmrs providers
 		List<Reference> performers = new ArrayList<>();
 		if (obs.getEncounter() != null) {
@@ -89,21 +136,14 @@ public class FHIRObsUtil {
 		}
 		observation.setPerformer(performers);
 
-		//Set concepts
-		Collection<ConceptMap> mappings = obs.getConcept().getConceptMappings();
-		CodeableConcept dt = observation.getCode();
-		List<Coding> dts = new ArrayList<>();
-
-		//Set codings from openmrs concept mappings
-		for (ConceptMap map : mappings) {
-			dts.add(FHIRUtils.createCoding(map));
-		}
-		//Set openmrs concept
-		dts.add(FHIRUtils.getCodingDtByOpenMRSConcept(obs.getConcept()));
-		dt.setCoding(dts);
+		//Set codings from openmrs concept mappings and the openmrs concept
+		observation.getCode().setCoding(FHIRUtils.createCodeableConcept(obs.getConcept()).getCoding());
 
 		if (obs.getConcept().isNumeric()) {
-			ConceptNumeric cn = Context.getConceptService().getConceptNumeric(obs.getConcept().getId());
+			ConceptNumeric cn = prefetch != null ? prefetch.getConceptNumeric(obs.getConcept()) : null;
+			if (cn == null) {
+				cn = Context.getConceptService().getConceptNumeric(obs.getConcept().getId());
+			}
 			SimpleQuantity quantity = new SimpleQuantity();
 			if (obs.getValueNumeric() != null) {
 				quantity.setValue(obs.getValueNumeric());
@@ -510,4 +550,59 @@ public class FHIRObsUtil {
 
 		return o1.getRelated() != null ? o1.getRelated().equals(o2.getRelated()) : o2.getRelated() == null;
 	}
+
+	/**
+	 * What {@link #generateObs(List)} loads up front for a list of observations
+	 */
+	private static class ObsPrefetch {
+
+		private final Map<Integer, org.openmrs.Patient> patients = new HashMap<>();
+
+		private final Map<Integer, ConceptNumeric> conceptNumerics = new HashMap<>();
+
+		private ObsPrefetch(List<Obs> obsList) {
+			ConceptCodingCache conceptCodingCache = ConceptCodingCache.getInstance();
+			Locale locale = Context.getLocale();
+			Set<Integer> personIds = new HashSet<>();
+			Set<Encounter> encounters = new HashSet<>();
+			Set<Concept> concepts = new HashSet<>();
+			Set<Integer> numericConceptIds = new HashSet<>();
+			for (Obs obs : obsList) {
+				personIds.add(obs.getPerson().getPersonId());
+				if (obs.getEncounter() != null) {
+					encounters.add(obs.getEncounter());
+				}
+				// the names and mappings of cached concepts are not needed
+				if (!conceptCodingCache.contains(obs.getConcept().getConceptId(), locale)) {
+					concepts.add(obs.getConcept());
+				}
+				if (obs.getValueCoded() != null && !conceptCodingCache.contains(obs.getValueCoded().getConceptId(),
+						locale)) {
+					concepts.add(obs.getValueCoded());
+				}
+				if (obs.getConcept().isNumeric()) {
+					numericConceptIds.add(obs.getConcept().getConceptId());
+				}
+			}
+
+			FHIRDao dao = ContextUtil.getFHIRDao();
+			dao.getPersonsWithNames(personIds);
+			for (org.openmrs.Patient patient : dao.getPatientsWithIdentifiers(personIds)) {
+				patients.put(patient.getPatientId(), patient);
+			}
+			dao.initializeEncounterProviders(encounters);
+			dao.initializeConceptNamesAndMappings(concepts);
+			for (ConceptNumeric conceptNumeric : dao.getConceptNumerics(numericConceptIds)) {
+				conceptNumerics.put(conceptNumeric.getConceptId(), conceptNumeric);
+			}
+		}
+
+		private org.openmrs.Patient getPatient(org.openmrs.Person person) {
+			return patients.get(person.getPersonId());
+		}
+
+		private ConceptNumeric getConceptNumeric(Concept concept) {
+			return conceptNumerics.get(concept.getConceptId());
+		}
+	}
 }
@@ -23,6 +23,7 @@ import org.hl7.fhir.dstu3.model.Reference;
 import org.openmrs.PatientIdentifier;
 import org.openmrs.PersonAddress;
 import org.openmrs.PersonName;
+import org.openmrs.module.fhir.api.metrics.RequestTiming;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -34,10 +35,21 @@ import static org.openmrs.module.fhir.api.util.FHIRUtils.extractUuid;
 public class FHIRPatientUtil {
 
 	public static Patient generatePatient(org.openmrs.Patient omrsPatient) {
+		RequestTiming.Phase phase = RequestTiming.begin(RequestTiming.CONVERSION);
+		try {
+			return buildPatient(omrsPatient);
+		}
+		finally {
+			phase.end();
+		}
+	}
+
+	private static Patient buildPatient(org.openmrs.Patient omrsPatient) {
 
 		Patient patient = new Patient();
 
-		BaseOpenMRSDataUtil.setBaseExtensionFields(patient, omrsPatient);
+		BaseOpenMRSDataUtil.setBaseExtensionFields(patient, omrsPatient, omrsPatient.getNames(),
+				omrsPatient.getAddresses(), omrsPatient.getIdentifiers(), omrsPatient.getAttributes());
 
 		//Set patient id to fhir patient
 		IdType uuid = new IdType();
@@ -22,6 +22,7 @@ import org.openmrs.PersonAddress;
 import org.openmrs.PersonName;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.fhir.api.comparator.PersonComparator;
+import org.openmrs.module.fhir.api.metrics.RequestTiming;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -38,9 +39,20 @@ public class FHIRPersonUtil {
 	}
 
 	public static Person generatePerson(org.openmrs.Person omrsPerson) {
+		RequestTiming.Phase phase = RequestTiming.begin(RequestTiming.CONVERSION);
+		try {
+			return buildPerson(omrsPerson);
+		}
+		finally {
+			phase.end();
+		}
+	}
+
+	private static Person buildPerson(org.openmrs.Person omrsPerson) {
 		Person person = new Person();
 
-		BaseOpenMRSDataUtil.setBaseExtensionFields(person, omrsPerson);
+		BaseOpenMRSDataUtil.setBaseExtensionFields(person, omrsPerson, omrsPerson.getNames(),
+				omrsPerson.getAddresses(), omrsPerson.getAttributes());
 
 		//Set person ID
 		person.setId(omrsPerson.getUuid());
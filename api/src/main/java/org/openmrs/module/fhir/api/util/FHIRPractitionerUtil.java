@@ -27,8 +27,10 @@ import org.openmrs.PersonAddress;
 import org.openmrs.PersonName;
 import org.openmrs.Provider;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.metrics.RequestTiming;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
@@ -39,10 +41,26 @@ import static java.lang.String.valueOf;
 public class FHIRPractitionerUtil {
 
 	public static Practitioner generatePractitioner(Provider provider) {
+		RequestTiming.Phase phase = RequestTiming.begin(RequestTiming.CONVERSION);
+		try {
+			return buildPractitioner(provider);
+		}
+		finally {
+			phase.end();
+		}
+	}
+
+	private static Practitioner buildPractitioner(Provider provider) {
 
 		Practitioner practitioner = new Practitioner();
 		//Set practitioner ID
 		practitioner.setId(provider.getUuid());
+		if (provider.getPerson() != null) {
+			BaseOpenMRSDataUtil.setMeta(practitioner, provider, Collections.singleton(provider.getPerson()),
+					provider.getPerson().getNames(), provider.getPerson().getAddresses());
+		} else {
+			BaseOpenMRSDataUtil.setMeta(practitioner, provider);
+		}
 
 		//Set patient identifiers to fhir practitioner
 		Identifier identifier = new Identifier();
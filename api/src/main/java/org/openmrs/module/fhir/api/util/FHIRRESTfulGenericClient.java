@@ -23,10 +23,11 @@ import org.hl7.fhir.dstu3.model.DiagnosticReport;
 import org.hl7.fhir.dstu3.model.ImagingStudy;
 import org.hl7.fhir.dstu3.model.Patient;
 import org.hl7.fhir.dstu3.model.Practitioner;
+import org.openmrs.module.fhir.api.manager.FHIRContextFactory;
 
 public class FHIRRESTfulGenericClient {
 
-	private static final FhirContext ctx = FhirContext.forDstu3();
+	private static final FhirContext ctx = FHIRContextFactory.getFHIRContext();
 
 	public static Patient readPatientById(String serverBase,
 			String theID) {
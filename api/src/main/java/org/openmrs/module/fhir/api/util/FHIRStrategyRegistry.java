@@ -0,0 +1,365 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.GlobalProperty;
+import org.openmrs.api.APIException;
+import org.openmrs.api.GlobalPropertyListener;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.db.FHIRDao;
+import org.openmrs.module.fhir.api.helper.AllergyHelper;
+import org.openmrs.module.fhir.api.helper.ConditionHelper;
+import org.openmrs.module.fhir.api.helper.DrugHelper;
+import org.openmrs.module.fhir.api.helper.DrugOrderHelper;
+import org.openmrs.module.fhir.api.helper.ObsHelper;
+import org.openmrs.module.fhir.api.helper.OrderHelper;
+import org.openmrs.module.fhir.api.helper.TestOrderHelper;
+import org.openmrs.module.fhir.api.metrics.RequestTiming;
+import org.openmrs.module.fhir.api.strategies.allergy.GenericAllergyStrategy;
+import org.openmrs.module.fhir.api.strategies.appointment.AppointmentModuleStrategy;
+import org.openmrs.module.fhir.api.strategies.appointment.GenericAppointmentStrategy;
+import org.openmrs.module.fhir.api.strategies.condition.ConditionStrategy;
+import org.openmrs.module.fhir.api.strategies.condition.GenericConditionStrategy;
+import org.openmrs.module.fhir.api.strategies.encounter.EncounterStrategy;
+import org.openmrs.module.fhir.api.strategies.encounter.GenericEncounterStrategy;
+import org.openmrs.module.fhir.api.strategies.group.GenericGroupStrategy;
+import org.openmrs.module.fhir.api.strategies.group.GroupStrategy;
+import org.openmrs.module.fhir.api.strategies.location.GenericLocationStrategy;
+import org.openmrs.module.fhir.api.strategies.location.LocationStrategy;
+import org.openmrs.module.fhir.api.strategies.medication.GenericMedicationStrategy;
+import org.openmrs.module.fhir.api.strategies.medication.MedicationStrategy;
+import org.openmrs.module.fhir.api.strategies.medicationrequest.GenericMedicationRequestStrategy;
+import org.openmrs.module.fhir.api.strategies.medicationrequest.MedicationRequestStrategy;
+import org.openmrs.module.fhir.api.strategies.observation.GenericObservationStrategy;
+import org.openmrs.module.fhir.api.strategies.observation.ObservationStrategy;
+import org.openmrs.module.fhir.api.strategies.patient.GenericPatientStrategy;
+import org.openmrs.module.fhir.api.strategies.patient.PatientStrategy;
+import org.openmrs.module.fhir.api.strategies.person.GenericPersonStrategy;
+import org.openmrs.module.fhir.api.strategies.person.PersonStrategy;
+import org.openmrs.module.fhir.api.strategies.practitioner.PractitionerStrategy;
+import org.openmrs.module.fhir.api.strategies.procedurerequest.GenericProcedureRequestStrategy;
+import org.openmrs.module.fhir.api.strategies.procedurerequest.ProcedureRequestStrategy;
+import org.openmrs.module.fhir.api.strategies.relatedperson.GenericRelatedPersonStrategy;
+import org.openmrs.module.fhir.api.strategies.relatedperson.RelatedPersonStrategy;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the configured strategies and the version specific helpers, resolved once when the module starts instead of
+ * being looked up in the Spring context on every request. When one of the {@code fhir.*.strategy} global properties
+ * changes a new registry is built with the new strategy and swapped in, the helpers are carried over.
+ * <p/>
+ * Until the registry is loaded, and for strategies which could not be resolved, the {@code *StrategyUtil} classes and
+ * {@link ContextUtil} look the components up on each call as before.
+ */
+public final class FHIRStrategyRegistry {
+
+	private static final Log log = LogFactory.getLog(FHIRStrategyRegistry.class);
+
+	public static final String MEDICATION_STRATEGY = "fhir.medication.strategy";
+
+	public static final String MEDICATION_REQUEST_STRATEGY = "fhir.medicationRequest.strategy";
+
+	public static final String PROCEDURE_REQUEST_STRATEGY = "fhir.procedureRequest.strategy";
+
+	public static final String ALLERGY_STRATEGY = "fhir.allergy.strategy";
+
+	public static final String CONDITION_STRATEGY = "fhir.condition.strategy";
+
+	public static final String PERSON_STRATEGY = "fhir.person.strategy";
+
+	public static final String PATIENT_STRATEGY = "fhir.patient.strategy";
+
+	public static final String RELATED_PERSON_STRATEGY = "fhir.relatedPerson.strategy";
+
+	public static final String APPOINTMENT_STRATEGY = "fhir.appointment.strategy";
+
+	public static final String LOCATION_STRATEGY = "fhir.location.strategy";
+
+	public static final String OBSERVATION_STRATEGY = "fhir.observation.strategy";
+
+	public static final String GROUP_STRATEGY = "fhir.group.strategy";
+
+	public static final String ENCOUNTER_STRATEGY = "fhir.encounter.strategy";
+
+	public static final String PRACTITIONER_STRATEGY = "fhir.practitioner.strategy";
+
+	private static final List<String> STRATEGY_PROPERTIES = Collections.unmodifiableList(Arrays.asList(
+			MEDICATION_STRATEGY, MEDICATION_REQUEST_STRATEGY, PROCEDURE_REQUEST_STRATEGY, ALLERGY_STRATEGY,
+			CONDITION_STRATEGY, PERSON_STRATEGY, PATIENT_STRATEGY, RELATED_PERSON_STRATEGY, APPOINTMENT_STRATEGY,
+			LOCATION_STRATEGY, OBSERVATION_STRATEGY, GROUP_STRATEGY, ENCOUNTER_STRATEGY, PRACTITIONER_STRATEGY));
+
+	private static final AtomicReference<FHIRStrategyRegistry> instance = new AtomicReference<FHIRStrategyRegistry>();
+
+	private static final GlobalPropertyListener listener = new StrategyUpdater();
+
+	private final Map<String, String> strategyNames;
+
+	private final ObsHelper obsHelper;
+
+	private final DrugHelper drugHelper;
+
+	private final AllergyHelper allergyHelper;
+
+	private final OrderHelper orderHelper;
+
+	private final ConditionHelper conditionHelper;
+
+	private final TestOrderHelper testOrderHelper;
+
+	private final DrugOrderHelper drugOrderHelper;
+
+	private final FHIRDao fhirDao;
+
+	private final GenericMedicationStrategy medicationStrategy;
+
+	private final GenericMedicationRequestStrategy medicationRequestStrategy;
+
+	private final GenericProcedureRequestStrategy procedureRequestStrategy;
+
+	private final GenericAllergyStrategy allergyStrategy;
+
+	private final GenericConditionStrategy conditionStrategy;
+
+	private final GenericPersonStrategy personStrategy;
+
+	private final GenericPatientStrategy patientStrategy;
+
+	private final GenericRelatedPersonStrategy relatedPersonStrategy;
+
+	private final GenericAppointmentStrategy appointmentStrategy;
+
+	private final GenericLocationStrategy locationStrategy;
+
+	private final GenericObservationStrategy observationStrategy;
+
+	private final GenericGroupStrategy groupStrategy;
+
+	private final GenericEncounterStrategy encounterStrategy;
+
+	private final PractitionerStrategy practitionerStrategy;
+
+	private FHIRStrategyRegistry(Map<String, String> strategyNames, FHIRStrategyRegistry previous) {
+		this.strategyNames = Collections.unmodifiableMap(strategyNames);
+
+		if (previous == null) {
+			obsHelper = resolve("fhir.ObsHelper", ObsHelper.class);
+			drugHelper = resolve("fhir.DrugHelper", DrugHelper.class);
+			allergyHelper = resolve("fhir.AllergyHelper", AllergyHelper.class);
+			orderHelper = resolve("fhir.OrderHelper", OrderHelper.class);
+			conditionHelper = resolve("fhir.ConditionHelper", ConditionHelper.class);
+			testOrderHelper = resolve("fhir.TestOrderHelper", TestOrderHelper.class);
+			drugOrderHelper = resolve("fhir.DrugOrderHelper", DrugOrderHelper.class);
+			fhirDao = RequestTiming.instrument(resolve("fhirDAO", FHIRDao.class), FHIRDao.class, RequestTiming.DAO);
+		} else {
+			obsHelper = previous.obsHelper;
+			drugHelper = previous.drugHelper;
+			allergyHelper = previous.allergyHelper;
+			orderHelper = previous.orderHelper;
+			conditionHelper = previous.conditionHelper;
+			testOrderHelper = previous.testOrderHelper;
+			drugOrderHelper = previous.drugOrderHelper;
+			fhirDao = previous.fhirDao;
+		}
+
+		medicationStrategy = resolve(MEDICATION_STRATEGY, new MedicationStrategy(), GenericMedicationStrategy.class);
+		medicationRequestStrategy = resolve(MEDICATION_REQUEST_STRATEGY, new MedicationRequestStrategy(),
+				GenericMedicationRequestStrategy.class);
+		procedureRequestStrategy = resolve(PROCEDURE_REQUEST_STRATEGY, new ProcedureRequestStrategy(),
+				GenericProcedureRequestStrategy.class);
+		allergyStrategy = resolve(ALLERGY_STRATEGY, null, GenericAllergyStrategy.class);
+		conditionStrategy = resolve(CONDITION_STRATEGY, new ConditionStrategy(), GenericConditionStrategy.class);
+		personStrategy = resolve(PERSON_STRATEGY, new PersonStrategy(), GenericPersonStrategy.class);
+		patientStrategy = resolve(PATIENT_STRATEGY, new PatientStrategy(), GenericPatientStrategy.class);
+		relatedPersonStrategy = resolve(RELATED_PERSON_STRATEGY, new RelatedPersonStrategy(),
+				GenericRelatedPersonStrategy.class);
+		appointmentStrategy = FHIRConstants.APPOINTMENT_MODULE_STRATEGY.equals(strategyNames.get(APPOINTMENT_STRATEGY)) ?
+				new AppointmentModuleStrategy() : null;
+		locationStrategy = resolve(LOCATION_STRATEGY, new LocationStrategy(), GenericLocationStrategy.class);
+		observationStrategy = resolve(OBSERVATION_STRATEGY, new ObservationStrategy(), GenericObservationStrategy.class);
+		groupStrategy = resolve(GROUP_STRATEGY, new GroupStrategy(), GenericGroupStrategy.class);
+		encounterStrategy = resolve(ENCOUNTER_STRATEGY, new EncounterStrategy(), GenericEncounterStrategy.class);
+		practitionerStrategy = resolve(PRACTITIONER_STRATEGY, new PractitionerStrategy(), PractitionerStrategy.class);
+	}
+
+	/**
+	 * @return the loaded registry, or null if the components have to be looked up on each call
+	 */
+	public static FHIRStrategyRegistry getInstance() {
+		return instance.get();
+	}
+
+	/**
+	 * Resolves the strategies and helpers and starts listening to changes of the strategy global properties
+	 */
+	public static synchronized void load() {
+		Map<String, String> strategyNames = new HashMap<String, String>();
+		for (String propertyName : STRATEGY_PROPERTIES) {
+			strategyNames.put(propertyName, FHIRGlobalProperties.get(propertyName));
+		}
+		instance.set(new FHIRStrategyRegistry(strategyNames, null));
+		Context.getAdministrationService().removeGlobalPropertyListener(listener);
+		Context.getAdministrationService().addGlobalPropertyListener(listener);
+	}
+
+	/**
+	 * Stops listening to global property changes and drops the registry
+	 */
+	public static synchronized void unload() {
+		Context.getAdministrationService().removeGlobalPropertyListener(listener);
+		instance.set(null);
+	}
+
+	private static synchronized void replace(String propertyName, String strategyName) {
+		FHIRStrategyRegistry current = instance.get();
+		if (current == null) {
+			return;
+		}
+		Map<String, String> strategyNames = new HashMap<String, String>(current.strategyNames);
+		strategyNames.put(propertyName, strategyName);
+		instance.set(new FHIRStrategyRegistry(strategyNames, current));
+		log.info("Switched " + propertyName + " to " + strategyName);
+	}
+
+	private <T> T resolve(String propertyName, T defaultStrategy, Class<T> type) {
+		String strategyName = strategyNames.get(propertyName);
+		return strategyName == null ? defaultStrategy : resolve(strategyName, type);
+	}
+
+	private static <T> T resolve(String beanName, Class<T> type) {
+		try {
+			return Context.getRegisteredComponent(beanName, type);
+		}
+		catch (APIException e) {
+			log.warn("Unable to resolve " + beanName + ", it will be looked up on each use", e);
+			return null;
+		}
+	}
+
+	public ObsHelper getObsHelper() {
+		return obsHelper;
+	}
+
+	public DrugHelper getDrugHelper() {
+		return drugHelper;
+	}
+
+	public AllergyHelper getAllergyHelper() {
+		return allergyHelper;
+	}
+
+	public OrderHelper getOrderHelper() {
+		return orderHelper;
+	}
+
+	public ConditionHelper getConditionHelper() {
+		return conditionHelper;
+	}
+
+	public TestOrderHelper getTestOrderHelper() {
+		return testOrderHelper;
+	}
+
+	public DrugOrderHelper getDrugOrderHelper() {
+		return drugOrderHelper;
+	}
+
+	/**
+	 * @return the DAO, already timing the calls made during timed requests
+	 */
+	public FHIRDao getFHIRDao() {
+		return fhirDao;
+	}
+
+	public GenericMedicationStrategy getMedicationStrategy() {
+		return medicationStrategy;
+	}
+
+	public GenericMedicationRequestStrategy getMedicationRequestStrategy() {
+		return medicationRequestStrategy;
+	}
+
+	public GenericProcedureRequestStrategy getProcedureRequestStrategy() {
+		return procedureRequestStrategy;
+	}
+
+	public GenericAllergyStrategy getAllergyStrategy() {
+		return allergyStrategy;
+	}
+
+	public GenericConditionStrategy getConditionStrategy() {
+		return conditionStrategy;
+	}
+
+	public GenericPersonStrategy getPersonStrategy() {
+		return personStrategy;
+	}
+
+	public GenericPatientStrategy getPatientStrategy() {
+		return patientStrategy;
+	}
+
+	public GenericRelatedPersonStrategy getRelatedPersonStrategy() {
+		return relatedPersonStrategy;
+	}
+
+	public GenericAppointmentStrategy getAppointmentStrategy() {
+		return appointmentStrategy;
+	}
+
+	public GenericLocationStrategy getLocationStrategy() {
+		return locationStrategy;
+	}
+
+	public GenericObservationStrategy getObservationStrategy() {
+		return observationStrategy;
+	}
+
+	public GenericGroupStrategy getGroupStrategy() {
+		return groupStrategy;
+	}
+
+	public GenericEncounterStrategy getEncounterStrategy() {
+		return encounterStrategy;
+	}
+
+	public PractitionerStrategy getPractitionerStrategy() {
+		return practitionerStrategy;
+	}
+
+	private static class StrategyUpdater implements GlobalPropertyListener {
+
+		@Override
+		public boolean supportsPropertyName(String propertyName) {
+			return STRATEGY_PROPERTIES.contains(propertyName);
+		}
+
+		@Override
+		public void globalPropertyChanged(GlobalProperty newValue) {
+			replace(newValue.getProperty(), newValue.getPropertyValue());
+		}
+
+		@Override
+		public void globalPropertyDeleted(String propertyName) {
+			replace(propertyName, null);
+		}
+	}
+}
@@ -18,6 +18,7 @@ import ca.uhn.fhir.rest.server.exceptions.UnprocessableEntityException;
 import ca.uhn.fhir.validation.FhirValidator;
 import ca.uhn.fhir.validation.ValidationResult;
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
 import org.apache.commons.lang.mutable.MutableBoolean;
 import org.hl7.fhir.dstu3.model.AllergyIntolerance;
 import org.hl7.fhir.dstu3.model.CodeableConcept;
@@ -33,9 +34,11 @@ import org.openmrs.EncounterType;
 import org.openmrs.PersonName;
 import org.openmrs.RelationshipType;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.cache.ConceptCodingCache;
 import org.openmrs.module.fhir.api.manager.FHIRContextFactory;
 
 import java.util.List;
+import java.util.Locale;
 
 public class FHIRUtils {
 
@@ -56,16 +59,64 @@ public class FHIRUtils {
 	private static FhirValidator val = ctx.newValidator();
 
 	public static String getFHIRBaseUrl() {
-		return Context.getAdministrationService().getGlobalProperty("fhir.baseUrl");
+		return FHIRGlobalProperties.get("fhir.baseUrl");
 	}
 
 	public static boolean isCustomNarrativesEnabled() {
-		String enabled = Context.getAdministrationService().getGlobalProperty("fhir.isCustomerNarrativesEnabled");
+		String enabled = FHIRGlobalProperties.get("fhir.isCustomerNarrativesEnabled");
 		return Boolean.parseBoolean(enabled);
 	}
 
 	public static String getCustomNarrativesPropertyPath() {
-		return Context.getAdministrationService().getGlobalProperty("fhir.customNarrativePropertiesPath");
+		return FHIRGlobalProperties.get("fhir.customNarrativePropertiesPath");
+	}
+
+	public static int getDefaultPageSize() {
+		String pageSize = FHIRGlobalProperties.get("fhir.paging.defaultPageSize");
+		return NumberUtils.toInt(StringUtils.trim(pageSize), FHIRConstants.DEFAULT_PAGE_SIZE);
+	}
+
+	public static int getMaximumPageSize() {
+		String pageSize = FHIRGlobalProperties.get("fhir.paging.maximumPageSize");
+		return NumberUtils.toInt(StringUtils.trim(pageSize), FHIRConstants.MAXIMUM_PAGE_SIZE);
+	}
+
+	/**
+	 * @return whether the phases of each request are timed and reported in the Server-Timing header, false by default
+	 */
+	public static boolean isServerTimingEnabled() {
+		String enabled = FHIRGlobalProperties.get("fhir.serverTiming.enabled");
+		return "true".equalsIgnoreCase(StringUtils.trim(enabled));
+	}
+
+	public static int getImportBatchSize() {
+		String batchSize = FHIRGlobalProperties.get("fhir.import.batchSize");
+		return NumberUtils.toInt(StringUtils.trim(batchSize), FHIRConstants.BULK_IMPORT_BATCH_SIZE);
+	}
+
+	/**
+	 * @return the number of worker threads the reads of a batch Bundle are shared out between, 1 or less to read on
+	 *         the calling thread
+	 */
+	public static int getBatchWorkers() {
+		String workers = FHIRGlobalProperties.get("fhir.batch.workers");
+		return NumberUtils.toInt(StringUtils.trim(workers), FHIRConstants.BATCH_WORKERS);
+	}
+
+	/**
+	 * @return the number of days the changes stay in the change log, 0 or less to keep them forever
+	 */
+	public static int getChangeLogRetentionDays() {
+		String retentionDays = FHIRGlobalProperties.get("fhir.changeLog.retentionDays");
+		return NumberUtils.toInt(StringUtils.trim(retentionDays), FHIRConstants.CHANGE_LOG_RETENTION_DAYS);
+	}
+
+	/**
+	 * @return the number of seconds the changes wait before the _history and _lastUpdated requests read them
+	 */
+	public static int getChangeLogReadLagSeconds() {
+		String readLag = FHIRGlobalProperties.get("fhir.changeLog.readLagSeconds");
+		return Math.max(NumberUtils.toInt(StringUtils.trim(readLag), FHIRConstants.CHANGE_LOG_READ_LAG_SECONDS), 0);
 	}
 
 	public static void validate(Resource resource) {
@@ -83,63 +134,63 @@ public class FHIRUtils {
 	}
 
 	public static String getMedicationStrategy() {
-		return Context.getAdministrationService().getGlobalProperty("fhir.medication.strategy");
+		return FHIRGlobalProperties.get(FHIRStrategyRegistry.MEDICATION_STRATEGY);
 	}
 
 	public static String getMedicationRequestStrategy() {
-		return Context.getAdministrationService().getGlobalProperty("fhir.medicationRequest.strategy");
+		return FHIRGlobalProperties.get(FHIRStrategyRegistry.MEDICATION_REQUEST_STRATEGY);
 	}
 
 	public static String getProcedureRequestStrategy() {
-		return Context.getAdministrationService().getGlobalProperty("fhir.procedureRequest.strategy");
+		return FHIRGlobalProperties.get(FHIRStrategyRegistry.PROCEDURE_REQUEST_STRATEGY);
 	}
 
 	public static String getAllergyStrategy() {
-		return Context.getAdministrationService().getGlobalProperty("fhir.allergy.strategy");
+		return FHIRGlobalProperties.get(FHIRStrategyRegistry.ALLERGY_STRATEGY);
 	}
 
 	public static String getConditionStrategy() {
-		return Context.getAdministrationService().getGlobalProperty("fhir.condition.strategy");
+		return FHIRGlobalProperties.get(FHIRStrategyRegistry.CONDITION_STRATEGY);
 	}
 
 	public static String getPersonStrategy() {
-		return Context.getAdministrationService().getGlobalProperty("fhir.person.strategy");
+		return FHIRGlobalProperties.get(FHIRStrategyRegistry.PERSON_STRATEGY);
 	}
 
 	public static String getPatientStrategy() {
-		return Context.getAdministrationService().getGlobalProperty("fhir.patient.strategy");
+		return FHIRGlobalProperties.get(FHIRStrategyRegistry.PATIENT_STRATEGY);
 	}
 
 	public static String getRelatedPersonStrategy() {
-		return Context.getAdministrationService().getGlobalProperty("fhir.relatedPerson.strategy");
+		return FHIRGlobalProperties.get(FHIRStrategyRegistry.RELATED_PERSON_STRATEGY);
 	}
 
 	public static String getAppointmentStrategy() {
-		return Context.getAdministrationService().getGlobalProperty("fhir.appointment.strategy");
+		return FHIRGlobalProperties.get(FHIRStrategyRegistry.APPOINTMENT_STRATEGY);
 	}
 
 	public static String getLocationStrategy() {
-		return Context.getAdministrationService().getGlobalProperty("fhir.location.strategy");
+		return FHIRGlobalProperties.get(FHIRStrategyRegistry.LOCATION_STRATEGY);
 	}
 
 	public static String getObservationStrategy() {
-		return Context.getAdministrationService().getGlobalProperty("fhir.observation.strategy");
+		return FHIRGlobalProperties.get(FHIRStrategyRegistry.OBSERVATION_STRATEGY);
 	}
 
 	public static String getGroupStrategy() {
-		return Context.getAdministrationService().getGlobalProperty("fhir.group.strategy");
+		return FHIRGlobalProperties.get(FHIRStrategyRegistry.GROUP_STRATEGY);
 	}
 
 	public static String getEncounterStrategy() {
-		return Context.getAdministrationService().getGlobalProperty("fhir.encounter.strategy");
+		return FHIRGlobalProperties.get(FHIRStrategyRegistry.ENCOUNTER_STRATEGY);
 	}
 
 	public static String getPractitionerStrategy() {
-		return Context.getAdministrationService().getGlobalProperty("fhir.practitioner.strategy");
+		return FHIRGlobalProperties.get(FHIRStrategyRegistry.PRACTITIONER_STRATEGY);
 	}
 
 	public static int[] getConceptIdsOfConditions() {
-		String conceptsAsConditions = Context.getAdministrationService().getGlobalProperty(
+		String conceptsAsConditions = FHIRGlobalProperties.get(
 				FHIRConstants
 				.CONCEPTS_CONVERTABLE_TO_CONDITIONS_STORED_AS_OBS);
 		if (StringUtils.isNotBlank(conceptsAsConditions)) {
@@ -156,11 +207,11 @@ public class FHIRUtils {
 	}
 
 	public static String getObsAllergyStrategyConceptUuid() {
-		return Context.getAdministrationService().getGlobalProperty("fhir.allergy.strategy.concept.uuid");
+		return FHIRGlobalProperties.get("fhir.allergy.strategy.concept.uuid");
 	}
 
 	public static String getConceptCodingSystem() {
-		return Context.getAdministrationService().getGlobalProperty("fhir.concept.codingSystem");
+		return FHIRGlobalProperties.get("fhir.concept.codingSystem");
 	}
 
 	/**
@@ -171,6 +222,20 @@ public class FHIRUtils {
 	 * @return resource reference
 	 */
 	public static Reference buildPatientOrPersonResourceReference(org.openmrs.Person person) {
+		return buildPatientOrPersonResourceReference(person,
+				Context.getPatientService().getPatientByUuid(person.getUuid()));
+	}
+
+	/**
+	 * Builds a patient reference if the patient of the person is given, a person reference otherwise. Used when the
+	 * patients have already been loaded, so that no lookup is needed.
+	 *
+	 * @param person  person ob
+	 * @param patient the patient of the person, or null if the person is not a patient
+	 * @return resource reference
+	 */
+	public static Reference buildPatientOrPersonResourceReference(org.openmrs.Person person,
+			org.openmrs.Patient patient) {
 		Reference reference = new Reference();
 		PersonName name = person.getPersonName();
 		StringBuilder nameDisplay = new StringBuilder();
@@ -178,13 +243,11 @@ public class FHIRUtils {
 		nameDisplay.append(" ");
 		nameDisplay.append(name.getFamilyName());
 		String uri;
-		if (Context.getPatientService().getPatientByUuid(person.getUuid()) != null) {
+		if (patient != null) {
 			nameDisplay.append("(");
 			nameDisplay.append(FHIRConstants.IDENTIFIER);
 			nameDisplay.append(":");
-			nameDisplay.append(Context.getPatientService().getPatientByUuid(person.getUuid())
-					.getPatientIdentifier()
-					.getIdentifier());
+			nameDisplay.append(patient.getPatientIdentifier().getIdentifier());
 			nameDisplay.append(")");
 			uri = FHIRConstants.PATIENT + "/" + person.getUuid();
 		} else {
@@ -303,7 +366,7 @@ public class FHIRUtils {
 	}
 
 	private static Concept getConceptByGlobalProperty(String globalPropertyName) {
-		String globalProperty = Context.getAdministrationService().getGlobalProperty(globalPropertyName);
+		String globalProperty = FHIRGlobalProperties.get(globalPropertyName);
 		Concept concept = Context.getConceptService().getConceptByUuid(globalProperty);
 		if (concept == null) {
 			throw new IllegalStateException("Configuration required: " + globalPropertyName);
@@ -324,7 +387,7 @@ public class FHIRUtils {
 	}
 
 	public static EncounterRole getEncounterRole() {
-		String globalProperty = Context.getAdministrationService().getGlobalProperty("fhir.encounter.encounterRoleUuid");
+		String globalProperty = FHIRGlobalProperties.get("fhir.encounter.encounterRoleUuid");
 		EncounterRole encounterRole = Context.getEncounterService().getEncounterRoleByUuid(globalProperty);
 		if (encounterRole == null) {
 			throw new IllegalStateException("Configuration required for " + globalProperty);
@@ -333,7 +396,7 @@ public class FHIRUtils {
 	}
 
 	public static EncounterType getEncounterType(String code) {
-		String globalProperty = Context.getAdministrationService().getGlobalProperty("fhir.encounter.encounterType." +
+		String globalProperty = FHIRGlobalProperties.get("fhir.encounter.encounterType." +
 				code);
 		EncounterType encounterType = Context.getEncounterService().getEncounterTypeByUuid(globalProperty);
 		if (encounterType == null) {
@@ -390,11 +453,32 @@ public class FHIRUtils {
 		return code;
 	}
 
+	/**
+	 * Creates the codeable concept of a concept. Codeable concepts of saved concepts are cached per locale, see
+	 * {@link ConceptCodingCache}, so the returned codeable concept is always a fresh copy the caller may modify.
+	 *
+	 * @param concept the concept
+	 * @return the codeable concept, or null if the concept is null
+	 */
 	public static CodeableConcept createCodeableConcept(Concept concept) {
 		if (concept == null) {
 			return null;
 		}
+		if (concept.getConceptId() == null) {
+			return buildCodeableConcept(concept);
+		}
+
+		ConceptCodingCache cache = ConceptCodingCache.getInstance();
+		Locale locale = Context.getLocale();
+		CodeableConcept codeableConcept = cache.get(concept.getConceptId(), locale);
+		if (codeableConcept == null) {
+			codeableConcept = buildCodeableConcept(concept);
+			cache.put(concept.getConceptId(), locale, codeableConcept);
+		}
+		return codeableConcept;
+	}
 
+	private static CodeableConcept buildCodeableConcept(Concept concept) {
 		CodeableConcept codeableConcept = new CodeableConcept();
 
 		for (ConceptMap conceptMap : concept.getConceptMappings()) {
@@ -457,7 +541,7 @@ public class FHIRUtils {
 	}
 
 	public static String getDiagnosticReportRadiologyBaseServerURL() {
-		return Context.getAdministrationService().getGlobalProperty("fhir.diagnosticreport.radiology.server");
+		return FHIRGlobalProperties.get("fhir.diagnosticreport.radiology.server");
 	}
 
 	public static void checkGeneratorErrorList(List<String> errors) {
@@ -508,7 +592,7 @@ public class FHIRUtils {
 	}
 
 	private static Concept getConceptByConceptId(String globalPropertyName) {
-		String globalProperty = Context.getAdministrationService().getGlobalProperty(globalPropertyName);
+		String globalProperty = FHIRGlobalProperties.get(globalPropertyName);
 		Concept concept = Context.getConceptService().getConcept(Integer.parseInt(globalProperty));
 		if (concept == null) {
 			throw new IllegalStateException("Configuration required: " + globalPropertyName);
@@ -0,0 +1,89 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.api.util;
+
+import ca.uhn.fhir.rest.server.exceptions.ForbiddenOperationException;
+import org.openmrs.api.context.Context;
+
+/**
+ * Checks the privileges of the authenticated user where the FHIR module reads or writes OpenMRS objects through its own
+ * DAO instead of the OpenMRS services, which would otherwise check them.
+ */
+public final class PrivilegeUtil {
+
+	public static final String OBSERVATIONS = "Observations";
+
+	public static final String PATIENTS = "Patients";
+
+	public static final String PEOPLE = "People";
+
+	public static final String PROVIDERS = "Providers";
+
+	public static final String ENCOUNTERS = "Encounters";
+
+	public static final String LOCATIONS = "Locations";
+
+	public static final String CONCEPTS = "Concepts";
+
+	public static final String RELATIONSHIPS = "Relationships";
+
+	public static final String PATIENT_COHORTS = "Patient Cohorts";
+
+	public static final String ORDERS = "Orders";
+
+	public static final String ALLERGIES = "Allergies";
+
+	private PrivilegeUtil() {
+	}
+
+	/**
+	 * Checks whether the authenticated user may read a type of OpenMRS objects. The privilege was renamed from View to
+	 * Get in OpenMRS 2.0, so either name is accepted.
+	 *
+	 * @param objects the plural name of the objects used in the privilege, for example "Patients"
+	 * @return true if the user has the View or Get privilege of the objects
+	 */
+	public static boolean hasViewPrivilege(String objects) {
+		return Context.hasPrivilege("Get " + objects) || Context.hasPrivilege("View " + objects);
+	}
+
+	/**
+	 * Requires the authenticated user to be able to read each of the given types of OpenMRS objects
+	 *
+	 * @param objects the plural names of the objects used in the privileges, for example "Patients"
+	 * @throws ForbiddenOperationException if the user can not read one of the types
+	 */
+	public static void requireViewPrivileges(String... objects) {
+		for (String object : objects) {
+			if (!hasViewPrivilege(object)) {
+				throw new ForbiddenOperationException("Reading " + object.toLowerCase() + " requires the Get "
+						+ object + " privilege");
+			}
+		}
+	}
+
+	/**
+	 * Requires the authenticated user to have each of the given privileges
+	 *
+	 * @param privileges the privilege names
+	 * @throws ForbiddenOperationException if the user is missing one of the privileges
+	 */
+	public static void requirePrivileges(String... privileges) {
+		for (String privilege : privileges) {
+			if (!Context.hasPrivilege(privilege)) {
+				throw new ForbiddenOperationException("The " + privilege + " privilege is required");
+			}
+		}
+	}
+}
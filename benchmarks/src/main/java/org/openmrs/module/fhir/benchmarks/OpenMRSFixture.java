@@ -0,0 +1,126 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.benchmarks;
+
+import org.hl7.fhir.dstu3.model.Encounter;
+import org.hl7.fhir.dstu3.model.MedicationRequest;
+import org.hl7.fhir.dstu3.model.Observation;
+import org.hl7.fhir.dstu3.model.Patient;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openmrs.DrugOrder;
+import org.openmrs.Obs;
+import org.openmrs.Order;
+import org.openmrs.Provider;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.util.FHIREncounterUtil;
+import org.openmrs.module.fhir.api.util.FHIRMedicationRequestUtil;
+import org.openmrs.module.fhir.api.util.FHIRObsUtil;
+import org.openmrs.module.fhir.api.util.FHIRPatientUtil;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.test.context.TestContextManager;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * Boots the OpenMRS test context on the in-memory database with the standard test dataset and loads the objects the
+ * benchmarks convert. Everything runs in one transaction which is rolled back at the end of the trial.
+ * <p/>
+ * The Hibernate session and the authenticated user are bound to the thread which runs the setup, so the benchmarks
+ * must run on a single thread.
+ */
+@State(Scope.Benchmark)
+public class OpenMRSFixture {
+
+	private static final int PATIENT_ID = 7;
+
+	private static final int DRUG_ORDER_PATIENT_ID = 2;
+
+	private static final int PROVIDER_ID = 1;
+
+	private InMemoryDatabase database;
+
+	private TestContextManager testContextManager;
+
+	private Method testMethod;
+
+	org.openmrs.Patient patient;
+
+	Obs obs;
+
+	List<Obs> patientObs;
+
+	org.openmrs.Encounter encounter;
+
+	Provider provider;
+
+	DrugOrder drugOrder;
+
+	Patient fhirPatient;
+
+	Observation fhirObservation;
+
+	Encounter fhirEncounter;
+
+	MedicationRequest fhirMedicationRequest;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		database = new InMemoryDatabase();
+		testContextManager = new TestContextManager(InMemoryDatabase.class);
+		testMethod = InMemoryDatabase.class.getMethod("baseSetupWithStandardDataAndAuthentication");
+		testContextManager.prepareTestInstance(database);
+		testContextManager.beforeTestMethod(database, testMethod);
+		database.baseSetupWithStandardDataAndAuthentication();
+
+		patient = Context.getPatientService().getPatient(PATIENT_ID);
+		patientObs = Context.getObsService().getObservationsByPerson(patient);
+		obs = patientObs.get(0);
+		encounter = Context.getEncounterService().getEncountersByPatient(patient).get(0);
+		provider = Context.getProviderService().getProvider(PROVIDER_ID);
+		drugOrder = getDrugOrder();
+
+		fhirPatient = FHIRPatientUtil.generatePatient(patient);
+		fhirObservation = FHIRObsUtil.generateObs(obs);
+		fhirEncounter = FHIREncounterUtil.generateEncounter(encounter);
+		fhirMedicationRequest = FHIRMedicationRequestUtil.generateMedicationRequest(drugOrder);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		testContextManager.afterTestMethod(database, testMethod, null);
+		testContextManager.afterTestClass();
+	}
+
+	private DrugOrder getDrugOrder() {
+		org.openmrs.Patient orderPatient = Context.getPatientService().getPatient(DRUG_ORDER_PATIENT_ID);
+		for (Order order : Context.getOrderService().getAllOrdersByPatient(orderPatient)) {
+			if (order instanceof DrugOrder) {
+				return (DrugOrder) order;
+			}
+		}
+		throw new IllegalStateException("The standard test dataset has no drug order for patient "
+				+ DRUG_ORDER_PATIENT_ID);
+	}
+
+	/**
+	 * Gives access to the test context set up of the OpenMRS test framework outside of JUnit
+	 */
+	public static class InMemoryDatabase extends BaseModuleContextSensitiveTest {
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.benchmarks;
+
+import org.hl7.fhir.dstu3.model.Composition;
+import org.hl7.fhir.dstu3.model.Encounter;
+import org.hl7.fhir.dstu3.model.MedicationRequest;
+import org.hl7.fhir.dstu3.model.Observation;
+import org.hl7.fhir.dstu3.model.Patient;
+import org.hl7.fhir.dstu3.model.Practitioner;
+import org.hl7.fhir.exceptions.FHIRException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmrs.module.fhir.api.util.FHIREncounterUtil;
+import org.openmrs.module.fhir.api.util.FHIRMedicationRequestUtil;
+import org.openmrs.module.fhir.api.util.FHIRObsUtil;
+import org.openmrs.module.fhir.api.util.FHIRPatientUtil;
+import org.openmrs.module.fhir.api.util.FHIRPractitionerUtil;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the conversion of OpenMRS objects to FHIR resources
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class ToFHIRBenchmark {
+
+	@Benchmark
+	public Patient generatePatient(OpenMRSFixture fixture) {
+		return FHIRPatientUtil.generatePatient(fixture.patient);
+	}
+
+	@Benchmark
+	public Observation generateObs(OpenMRSFixture fixture) {
+		return FHIRObsUtil.generateObs(fixture.obs);
+	}
+
+	@Benchmark
+	public List<Observation> generateObsInBulk(OpenMRSFixture fixture) {
+		return FHIRObsUtil.generateObs(fixture.patientObs);
+	}
+
+	@Benchmark
+	public Encounter generateEncounter(OpenMRSFixture fixture) {
+		return FHIREncounterUtil.generateEncounter(fixture.encounter);
+	}
+
+	@Benchmark
+	public Composition generateComposition(OpenMRSFixture fixture) throws FHIRException {
+		return FHIREncounterUtil.generateComposition(fixture.encounter);
+	}
+
+	@Benchmark
+	public Practitioner generatePractitioner(OpenMRSFixture fixture) {
+		return FHIRPractitionerUtil.generatePractitioner(fixture.provider);
+	}
+
+	@Benchmark
+	public MedicationRequest generateMedicationRequest(OpenMRSFixture fixture) {
+		return FHIRMedicationRequestUtil.generateMedicationRequest(fixture.drugOrder);
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmrs.DrugOrder;
+import org.openmrs.Encounter;
+import org.openmrs.Obs;
+import org.openmrs.Patient;
+import org.openmrs.module.fhir.api.util.FHIREncounterUtil;
+import org.openmrs.module.fhir.api.util.FHIRMedicationRequestUtil;
+import org.openmrs.module.fhir.api.util.FHIRObsUtil;
+import org.openmrs.module.fhir.api.util.FHIRPatientUtil;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the conversion of FHIR resources to OpenMRS objects, as done when resources are created or updated. The
+ * practitioner conversion is left out because it saves the person it creates.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class ToOpenMRSBenchmark {
+
+	@Benchmark
+	public Patient generateOmrsPatient(OpenMRSFixture fixture) {
+		return FHIRPatientUtil.generateOmrsPatient(fixture.fhirPatient, new ArrayList<String>());
+	}
+
+	@Benchmark
+	public Obs generateOpenMRSObs(OpenMRSFixture fixture) {
+		return FHIRObsUtil.generateOpenMRSObs(fixture.fhirObservation, new ArrayList<String>());
+	}
+
+	@Benchmark
+	public Encounter generateOMRSEncounter(OpenMRSFixture fixture) {
+		return FHIREncounterUtil.generateOMRSEncounter(fixture.fhirEncounter, new ArrayList<String>());
+	}
+
+	@Benchmark
+	public DrugOrder generateDrugOrder(OpenMRSFixture fixture) {
+		return FHIRMedicationRequestUtil.generateDrugOrder(fixture.fhirMedicationRequest, new ArrayList<String>());
+	}
+}
@@ -0,0 +1,52 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.providers;
+
+import ca.uhn.fhir.rest.annotation.Operation;
+import ca.uhn.fhir.rest.annotation.OperationParam;
+import org.hl7.fhir.dstu3.model.InstantType;
+import org.hl7.fhir.dstu3.model.OperationOutcome;
+import org.hl7.fhir.dstu3.model.StringType;
+import org.openmrs.module.fhir.resources.FHIRBulkExportResource;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Server level operations which are not bound to a resource type
+ */
+public class RestfulBulkExportProvider {
+
+	private FHIRBulkExportResource bulkExportResource;
+
+	public RestfulBulkExportProvider() {
+		bulkExportResource = new FHIRBulkExportResource();
+	}
+
+	/**
+	 * Kicks off the export of all the supported resource types
+	 *
+	 * @param outputFormat the format of the files, only NDJSON is supported
+	 * @param since        only export the resources created or changed since this instant
+	 * @param type         comma separated resource types to export, all of them by default
+	 * @return an informational outcome, the status URL is returned in the Content-Location header
+	 */
+	@Operation(name = "$export", idempotent = true)
+	public OperationOutcome exportAll(@OperationParam(name = "_outputFormat") StringType outputFormat,
+			@OperationParam(name = "_since") InstantType since,
+			@OperationParam(name = "_type") StringType type,
+			HttpServletRequest request, HttpServletResponse response) {
+		return bulkExportResource.exportAll(request, response, outputFormat, since, type);
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.providers;
+
+import ca.uhn.fhir.rest.annotation.Operation;
+import ca.uhn.fhir.rest.annotation.OperationParam;
+import org.hl7.fhir.dstu3.model.IntegerType;
+import org.hl7.fhir.dstu3.model.OperationOutcome;
+import org.hl7.fhir.dstu3.model.StringType;
+import org.openmrs.module.fhir.resources.FHIRBulkImportResource;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Server level import operation, NDJSON uploads are accepted by the import servlet instead
+ */
+public class RestfulBulkImportProvider {
+
+	private FHIRBulkImportResource bulkImportResource;
+
+	public RestfulBulkImportProvider() {
+		bulkImportResource = new FHIRBulkImportResource();
+	}
+
+	/**
+	 * Kicks off the import of an NDJSON file of the import directory
+	 *
+	 * @param inputFile the name of the file, relative to the fhir/import directory of the application data directory
+	 * @param batchSize the number of lines committed in each transaction, fhir.import.batchSize by default
+	 * @return an informational outcome, the status URL is returned in the Content-Location header
+	 */
+	@Operation(name = "$import")
+	public OperationOutcome importFile(@OperationParam(name = "inputFile", min = 1) StringType inputFile,
+			@OperationParam(name = "batchSize") IntegerType batchSize,
+			HttpServletRequest request, HttpServletResponse response) {
+		return bulkImportResource.importFile(request, response, inputFile, batchSize);
+	}
+}
@@ -15,34 +15,13 @@ package org.openmrs.module.fhir.providers;
 
 import ca.uhn.fhir.rest.annotation.Transaction;
 import ca.uhn.fhir.rest.annotation.TransactionParam;
-import ca.uhn.fhir.rest.server.IResourceProvider;
-import org.hl7.fhir.dstu3.model.AllergyIntolerance;
 import org.hl7.fhir.dstu3.model.Bundle;
-import org.hl7.fhir.dstu3.model.Encounter;
-import org.hl7.fhir.dstu3.model.Group;
-import org.hl7.fhir.dstu3.model.Location;
-import org.hl7.fhir.dstu3.model.MedicationRequest;
-import org.hl7.fhir.dstu3.model.Observation;
-import org.hl7.fhir.dstu3.model.Patient;
-import org.hl7.fhir.dstu3.model.Person;
-import org.hl7.fhir.dstu3.model.ProcedureRequest;
-import org.hl7.fhir.dstu3.model.Resource;
-import org.openmrs.module.fhir.api.util.FHIRConstants;
-import org.openmrs.module.fhir.resources.FHIRAllergyIntoleranceResource;
 import org.openmrs.module.fhir.resources.FHIRBundleResource;
-import org.openmrs.module.fhir.resources.FHIREncounterResource;
-import org.openmrs.module.fhir.resources.FHIRGroupResource;
-import org.openmrs.module.fhir.resources.FHIRLocationResource;
-import org.openmrs.module.fhir.resources.FHIRMedicationRequestResource;
-import org.openmrs.module.fhir.resources.FHIRObservationResource;
-import org.openmrs.module.fhir.resources.FHIRPatientResource;
-import org.openmrs.module.fhir.resources.FHIRPersonResource;
-import org.openmrs.module.fhir.resources.FHIRProcedureRequestResource;
 
-import java.util.ArrayList;
-import java.util.List;
-
-public class RestfulBundleResourceProvider implements IResourceProvider {
+/**
+ * Server level transaction and batch interactions
+ */
+public class RestfulBundleResourceProvider {
 
 	private FHIRBundleResource bundleResource;
 
@@ -50,56 +29,14 @@ public class RestfulBundleResourceProvider implements IResourceProvider {
 		this.bundleResource = new FHIRBundleResource();
 	}
 
-	@Override
-	public Class<? extends Resource> getResourceType() {
-		return Bundle.class;
-	}
-
+	/**
+	 * Processes a transaction Bundle in a single transaction, or a batch Bundle entry by entry
+	 *
+	 * @param theResources the transaction or batch Bundle
+	 * @return the transaction-response or batch-response Bundle
+	 */
 	@Transaction
 	public Bundle transaction(@TransactionParam Bundle theResources) {
-		// theResources will contain a complete bundle of all resources to persist
-		// in a single transaction
-		List<Resource> postResources = new ArrayList<>();
-		for (Bundle.BundleEntryComponent entry : theResources.getEntry()) {
-			if (FHIRConstants.POST.equals(entry.getRequest().getMethod().getDisplay())) {
-				postResources.add(entry.getResource());
-			}
-		}
-
-		for (Resource next : postResources) {
-			if (next instanceof Encounter) {
-				FHIREncounterResource encounterResource = new FHIREncounterResource();
-				encounterResource.createFHIREncounter((Encounter) next);
-			} else if (next instanceof Observation) {
-				FHIRObservationResource observationResource = new FHIRObservationResource();
-				observationResource.createFHIRObservation((Observation) next);
-			} else if (next instanceof Patient) {
-				FHIRPatientResource patientResource = new FHIRPatientResource();
-				patientResource.createFHIRPatient((Patient) next);
-			} else if (next instanceof Location) {
-				FHIRLocationResource locationResource = new FHIRLocationResource();
-				locationResource.createLocation((Location) next);
-			} else if (next instanceof Person) {
-				FHIRPersonResource personResource = new FHIRPersonResource();
-				personResource.createFHIRPerson((Person) next);
-			} else if (next instanceof AllergyIntolerance) {
-				FHIRAllergyIntoleranceResource resource = new FHIRAllergyIntoleranceResource();
-				resource.createAllergyIntolerance((AllergyIntolerance) next);
-			} else if (next instanceof Group) {
-				FHIRGroupResource resource = new FHIRGroupResource();
-				resource.createGroup((Group) next);
-			} else if (next instanceof MedicationRequest) {
-				FHIRMedicationRequestResource resource = new FHIRMedicationRequestResource();
-				resource.createFHIRMedicationRequest((MedicationRequest) next);
-			} else if (next instanceof ProcedureRequest) {
-				FHIRProcedureRequestResource resource = new FHIRProcedureRequestResource();
-				resource.createProcedureRequest((ProcedureRequest) next);
-			}
-		}
-
-		//TODO (Implementation proposal can be found in git history)
-
-		return theResources;
+		return bundleResource.transaction(theResources);
 	}
-
 }
@@ -15,33 +15,42 @@ package org.openmrs.module.fhir.providers;
 
 import ca.uhn.fhir.rest.annotation.Create;
 import ca.uhn.fhir.rest.annotation.Delete;
+import ca.uhn.fhir.rest.annotation.History;
 import ca.uhn.fhir.rest.annotation.IdParam;
 import ca.uhn.fhir.rest.annotation.Operation;
 import ca.uhn.fhir.rest.annotation.Read;
 import ca.uhn.fhir.rest.annotation.RequiredParam;
 import ca.uhn.fhir.rest.annotation.ResourceParam;
 import ca.uhn.fhir.rest.annotation.Search;
+import ca.uhn.fhir.rest.annotation.Since;
 import ca.uhn.fhir.rest.annotation.Update;
 import ca.uhn.fhir.rest.api.MethodOutcome;
+import ca.uhn.fhir.rest.param.DateRangeParam;
 import ca.uhn.fhir.rest.param.ReferenceParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
 import ca.uhn.fhir.rest.server.IResourceProvider;
 import org.hl7.fhir.dstu3.model.Bundle;
 import org.hl7.fhir.dstu3.model.Encounter;
 import org.hl7.fhir.dstu3.model.IdType;
 import org.hl7.fhir.dstu3.model.Patient;
 import org.hl7.fhir.dstu3.model.Resource;
+import org.openmrs.module.fhir.resources.FHIRChangeLogResource;
 import org.openmrs.module.fhir.resources.FHIREncounterResource;
 import org.openmrs.module.fhir.util.MethodOutcomeBuilder;
 
+import java.util.Date;
 import java.util.List;
 
 public class RestfulEncounterResourceProvider implements IResourceProvider {
 
 	private FHIREncounterResource encounterResource;
 
+	private FHIRChangeLogResource changeLogResource;
+
 	public RestfulEncounterResourceProvider() {
 		encounterResource = new FHIREncounterResource();
+		changeLogResource = new FHIRChangeLogResource(Encounter.class);
 	}
 
 	@Override
@@ -152,4 +161,39 @@ public class RestfulEncounterResourceProvider implements IResourceProvider {
 	public MethodOutcome updateEncounter(@ResourceParam Encounter encounter, @IdParam IdType theId) {
 		return MethodOutcomeBuilder.buildUpdate(encounterResource.updateEncounter(encounter, theId.getIdPart()));
 	}
+
+	/**
+	 * Gets the history of a encounter
+	 *
+	 * @param id    the id of the encounter
+	 * @param since if not null the history is only returned when the encounter changed at or after this time
+	 * @return the current version of the encounter if it changed
+	 */
+	@History
+	public IBundleProvider getEncounterHistory(@IdParam IdType id, @Since Date since) {
+		return changeLogResource.getHistory(id, since);
+	}
+
+	/**
+	 * Gets the encounters changed since the given time, most recent change first
+	 *
+	 * @param since if not null only the encounters changed at or after this time are returned
+	 * @return the changed encounters in their current version
+	 */
+	@History
+	public IBundleProvider getEncounterTypeHistory(@Since Date since) {
+		return changeLogResource.getHistory(null, since);
+	}
+
+	/**
+	 * Search encounters by the time of their last change
+	 *
+	 * @param lastUpdated the range the last change must fall in
+	 * @return the matching encounters, least recently changed first
+	 */
+	@Search
+	public IBundleProvider searchEncounterByLastUpdated(
+			@RequiredParam(name = "_lastUpdated") DateRangeParam lastUpdated) {
+		return changeLogResource.searchByLastUpdated(lastUpdated);
+	}
 }
@@ -2,30 +2,50 @@ package org.openmrs.module.fhir.providers;
 
 import ca.uhn.fhir.rest.annotation.Create;
 import ca.uhn.fhir.rest.annotation.Delete;
+import ca.uhn.fhir.rest.annotation.History;
 import ca.uhn.fhir.rest.annotation.IdParam;
+import ca.uhn.fhir.rest.annotation.Operation;
+import ca.uhn.fhir.rest.annotation.OperationParam;
 import ca.uhn.fhir.rest.annotation.Read;
 import ca.uhn.fhir.rest.annotation.RequiredParam;
 import ca.uhn.fhir.rest.annotation.ResourceParam;
 import ca.uhn.fhir.rest.annotation.Search;
+import ca.uhn.fhir.rest.annotation.Since;
 import ca.uhn.fhir.rest.annotation.Update;
 import ca.uhn.fhir.rest.api.MethodOutcome;
+import ca.uhn.fhir.rest.param.DateRangeParam;
 import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
 import ca.uhn.fhir.rest.server.IResourceProvider;
 import org.hl7.fhir.dstu3.model.Group;
 import org.hl7.fhir.dstu3.model.IdType;
+import org.hl7.fhir.dstu3.model.InstantType;
+import org.hl7.fhir.dstu3.model.OperationOutcome;
+import org.hl7.fhir.dstu3.model.StringType;
 import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.openmrs.module.fhir.resources.FHIRBulkExportResource;
+import org.openmrs.module.fhir.resources.FHIRChangeLogResource;
 import org.openmrs.module.fhir.resources.FHIRGroupResource;
 import org.openmrs.module.fhir.util.MethodOutcomeBuilder;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Date;
 import java.util.List;
 
 public class RestfulGroupResourceProvider implements IResourceProvider {
 
 	private FHIRGroupResource groupResource;
 
+	private FHIRBulkExportResource bulkExportResource;
+
+	private FHIRChangeLogResource changeLogResource;
+
 	public RestfulGroupResourceProvider() {
 		groupResource = new FHIRGroupResource();
+		bulkExportResource = new FHIRBulkExportResource();
+		changeLogResource = new FHIRChangeLogResource(Group.class);
 	}
 
 	@Override
@@ -64,4 +84,57 @@ public class RestfulGroupResourceProvider implements IResourceProvider {
 			@RequiredParam(name = "name") StringParam name) {
 		return groupResource.searchGroupByName(name);
 	}
+
+	/**
+	 * Kicks off the export of the patient compartment of the members of a group
+	 *
+	 * @param id           the id of the group
+	 * @param outputFormat the format of the files, only NDJSON is supported
+	 * @param since        only export the resources created or changed since this instant
+	 * @param type         comma separated resource types to export, all of the patient compartment by default
+	 * @return an informational outcome, the status URL is returned in the Content-Location header
+	 */
+	@Operation(name = "$export", type = Group.class, idempotent = true)
+	public OperationOutcome groupInstanceExport(@IdParam IdType id,
+			@OperationParam(name = "_outputFormat") StringType outputFormat,
+			@OperationParam(name = "_since") InstantType since,
+			@OperationParam(name = "_type") StringType type,
+			HttpServletRequest request, HttpServletResponse response) {
+		return bulkExportResource.exportGroup(id, request, response, outputFormat, since, type);
+	}
+
+	/**
+	 * Gets the history of a group
+	 *
+	 * @param id    the id of the group
+	 * @param since if not null the history is only returned when the group changed at or after this time
+	 * @return the current version of the group if it changed
+	 */
+	@History
+	public IBundleProvider getGroupHistory(@IdParam IdType id, @Since Date since) {
+		return changeLogResource.getHistory(id, since);
+	}
+
+	/**
+	 * Gets the groups changed since the given time, most recent change first
+	 *
+	 * @param since if not null only the groups changed at or after this time are returned
+	 * @return the changed groups in their current version
+	 */
+	@History
+	public IBundleProvider getGroupTypeHistory(@Since Date since) {
+		return changeLogResource.getHistory(null, since);
+	}
+
+	/**
+	 * Search groups by the time of their last change
+	 *
+	 * @param lastUpdated the range the last change must fall in
+	 * @return the matching groups, least recently changed first
+	 */
+	@Search
+	public IBundleProvider searchGroupByLastUpdated(
+			@RequiredParam(name = "_lastUpdated") DateRangeParam lastUpdated) {
+		return changeLogResource.searchByLastUpdated(lastUpdated);
+	}
 }
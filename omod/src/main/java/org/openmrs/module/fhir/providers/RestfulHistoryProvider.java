@@ -0,0 +1,44 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.providers;
+
+import ca.uhn.fhir.rest.annotation.History;
+import ca.uhn.fhir.rest.annotation.Since;
+import ca.uhn.fhir.rest.server.IBundleProvider;
+import org.openmrs.module.fhir.resources.FHIRChangeLogResource;
+
+import java.util.Date;
+
+/**
+ * Server level history, the resource types serve their own type and instance history
+ */
+public class RestfulHistoryProvider {
+
+	private FHIRChangeLogResource changeLogResource;
+
+	public RestfulHistoryProvider() {
+		changeLogResource = new FHIRChangeLogResource();
+	}
+
+	/**
+	 * Gets the resources of all types changed since the given time, most recent change first
+	 *
+	 * @param since if not null only the resources changed at or after this time are returned
+	 * @return the changed resources in their current version
+	 */
+	@History
+	public IBundleProvider getServerHistory(@Since Date since) {
+		return changeLogResource.getHistory(null, since);
+	}
+}
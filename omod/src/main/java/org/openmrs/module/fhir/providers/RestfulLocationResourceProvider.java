@@ -16,31 +16,40 @@ package org.openmrs.module.fhir.providers;
 import ca.uhn.fhir.rest.annotation.ConditionalUrlParam;
 import ca.uhn.fhir.rest.annotation.Create;
 import ca.uhn.fhir.rest.annotation.Delete;
+import ca.uhn.fhir.rest.annotation.History;
 import ca.uhn.fhir.rest.annotation.IdParam;
 import ca.uhn.fhir.rest.annotation.Read;
 import ca.uhn.fhir.rest.annotation.RequiredParam;
 import ca.uhn.fhir.rest.annotation.ResourceParam;
 import ca.uhn.fhir.rest.annotation.Search;
+import ca.uhn.fhir.rest.annotation.Since;
 import ca.uhn.fhir.rest.annotation.Update;
 import ca.uhn.fhir.rest.api.MethodOutcome;
+import ca.uhn.fhir.rest.param.DateRangeParam;
 import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
 import ca.uhn.fhir.rest.server.IResourceProvider;
 import ca.uhn.fhir.rest.server.exceptions.PreconditionFailedException;
 import org.hl7.fhir.dstu3.model.IdType;
 import org.hl7.fhir.dstu3.model.Location;
 import org.hl7.fhir.dstu3.model.Resource;
+import org.openmrs.module.fhir.resources.FHIRChangeLogResource;
 import org.openmrs.module.fhir.resources.FHIRLocationResource;
 import org.openmrs.module.fhir.util.MethodOutcomeBuilder;
 
+import java.util.Date;
 import java.util.List;
 
 public class RestfulLocationResourceProvider implements IResourceProvider {
 
 	private FHIRLocationResource locationResource;
 
+	private FHIRChangeLogResource changeLogResource;
+
 	public RestfulLocationResourceProvider() {
 		this.locationResource = new FHIRLocationResource();
+		this.changeLogResource = new FHIRChangeLogResource(Location.class);
 	}
 
 	@Override
@@ -79,7 +88,7 @@ public class RestfulLocationResourceProvider implements IResourceProvider {
 	 * resources, or it may also be empty.
 	 */
 	@Search
-	public List<Location> findLocationsByName(@RequiredParam(name = Location.SP_NAME) StringParam name) {
+	public IBundleProvider findLocationsByName(@RequiredParam(name = Location.SP_NAME) StringParam name) {
 		return locationResource.searchLocationsByName(name);
 	}
 
@@ -91,7 +100,7 @@ public class RestfulLocationResourceProvider implements IResourceProvider {
 	 * resources, or it may also be empty.
 	 */
 	@Search
-	public List<Location> findLocationsByStatus(@RequiredParam(name = Location.SP_STATUS) TokenParam active) {
+	public IBundleProvider findLocationsByStatus(@RequiredParam(name = Location.SP_STATUS) TokenParam active) {
 		return locationResource.searchLocationsByStatus(active);
 	}
 
@@ -138,12 +147,13 @@ public class RestfulLocationResourceProvider implements IResourceProvider {
 			}
 			StringParam nameParam = new StringParam();
 			nameParam.setValue(locationName);
-			List<Location> locationList = locationResource.searchLocationsByName(nameParam);
-			if (locationList.isEmpty()) {
+			IBundleProvider locations = locationResource.searchLocationsByName(nameParam);
+			int size = locations.size();
+			if (size == 0) {
 				return updateLocation(theLocation, null);
-			} else if (locationList.size() == 1) {
+			} else if (size == 1) {
 				IdType idType = new IdType();
-				idType.setValue(locationList.get(0).getId());
+				idType.setValue(locations.getResources(0, 1).get(0).getIdElement().getValue());
 				return updateLocation(theLocation, idType);
 			} else {
 				throw new PreconditionFailedException("There are more than one Location for the given condition");
@@ -164,4 +174,38 @@ public class RestfulLocationResourceProvider implements IResourceProvider {
 		return MethodOutcomeBuilder.buildCreate(locationResource.createLocation(location));
 	}
 
+	/**
+	 * Gets the history of a location
+	 *
+	 * @param id    the id of the location
+	 * @param since if not null the history is only returned when the location changed at or after this time
+	 * @return the current version of the location if it changed
+	 */
+	@History
+	public IBundleProvider getLocationHistory(@IdParam IdType id, @Since Date since) {
+		return changeLogResource.getHistory(id, since);
+	}
+
+	/**
+	 * Gets the locations changed since the given time, most recent change first
+	 *
+	 * @param since if not null only the locations changed at or after this time are returned
+	 * @return the changed locations in their current version
+	 */
+	@History
+	public IBundleProvider getLocationTypeHistory(@Since Date since) {
+		return changeLogResource.getHistory(null, since);
+	}
+
+	/**
+	 * Search locations by the time of their last change
+	 *
+	 * @param lastUpdated the range the last change must fall in
+	 * @return the matching locations, least recently changed first
+	 */
+	@Search
+	public IBundleProvider searchLocationByLastUpdated(
+			@RequiredParam(name = "_lastUpdated") DateRangeParam lastUpdated) {
+		return changeLogResource.searchByLastUpdated(lastUpdated);
+	}
 }
@@ -15,22 +15,28 @@ package org.openmrs.module.fhir.providers;
 
 import ca.uhn.fhir.rest.annotation.Create;
 import ca.uhn.fhir.rest.annotation.Delete;
+import ca.uhn.fhir.rest.annotation.History;
 import ca.uhn.fhir.rest.annotation.IdParam;
 import ca.uhn.fhir.rest.annotation.Read;
 import ca.uhn.fhir.rest.annotation.RequiredParam;
 import ca.uhn.fhir.rest.annotation.ResourceParam;
 import ca.uhn.fhir.rest.annotation.Search;
+import ca.uhn.fhir.rest.annotation.Since;
 import ca.uhn.fhir.rest.annotation.Update;
 import ca.uhn.fhir.rest.api.MethodOutcome;
+import ca.uhn.fhir.rest.param.DateRangeParam;
 import ca.uhn.fhir.rest.param.ReferenceParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
 import ca.uhn.fhir.rest.server.IResourceProvider;
 import org.hl7.fhir.dstu3.model.IdType;
 import org.hl7.fhir.dstu3.model.MedicationRequest;
 import org.hl7.fhir.dstu3.model.Resource;
+import org.openmrs.module.fhir.resources.FHIRChangeLogResource;
 import org.openmrs.module.fhir.resources.FHIRMedicationRequestResource;
 import org.openmrs.module.fhir.util.MethodOutcomeBuilder;
 
+import java.util.Date;
 import java.util.List;
 
 public class RestfulMedicationRequestResourceProvider implements IResourceProvider {
@@ -39,8 +45,11 @@ public class RestfulMedicationRequestResourceProvider implements IResourceProvid
 
 	private FHIRMedicationRequestResource fhirMedicationRequestResource;
 
+	private FHIRChangeLogResource changeLogResource;
+
 	public RestfulMedicationRequestResourceProvider() {
 		this.fhirMedicationRequestResource = new FHIRMedicationRequestResource();
+		this.changeLogResource = new FHIRChangeLogResource(MedicationRequest.class);
 	}
 
 	@Override
@@ -114,4 +123,39 @@ public class RestfulMedicationRequestResourceProvider implements IResourceProvid
 	public void deleteMedicationRequest(@IdParam IdType theId) {
 		fhirMedicationRequestResource.deleteMedicationRequest(theId.getIdPart());
 	}
+
+	/**
+	 * Gets the history of a medication request
+	 *
+	 * @param id    the id of the medication request
+	 * @param since if not null the history is only returned when the medication request changed at or after this time
+	 * @return the current version of the medication request if it changed
+	 */
+	@History
+	public IBundleProvider getMedicationRequestHistory(@IdParam IdType id, @Since Date since) {
+		return changeLogResource.getHistory(id, since);
+	}
+
+	/**
+	 * Gets the medication requests changed since the given time, most recent change first
+	 *
+	 * @param since if not null only the medication requests changed at or after this time are returned
+	 * @return the changed medication requests in their current version
+	 */
+	@History
+	public IBundleProvider getMedicationRequestTypeHistory(@Since Date since) {
+		return changeLogResource.getHistory(null, since);
+	}
+
+	/**
+	 * Search medication requests by the time of their last change
+	 *
+	 * @param lastUpdated the range the last change must fall in
+	 * @return the matching medication requests, least recently changed first
+	 */
+	@Search
+	public IBundleProvider searchMedicationRequestByLastUpdated(
+			@RequiredParam(name = "_lastUpdated") DateRangeParam lastUpdated) {
+		return changeLogResource.searchByLastUpdated(lastUpdated);
+	}
 }
@@ -15,35 +15,53 @@ package org.openmrs.module.fhir.providers;
 
 import ca.uhn.fhir.rest.annotation.Create;
 import ca.uhn.fhir.rest.annotation.Delete;
+import ca.uhn.fhir.rest.annotation.History;
 import ca.uhn.fhir.rest.annotation.IdParam;
+import ca.uhn.fhir.rest.annotation.Operation;
+import ca.uhn.fhir.rest.annotation.OperationParam;
+import ca.uhn.fhir.rest.annotation.OptionalParam;
 import ca.uhn.fhir.rest.annotation.Read;
 import ca.uhn.fhir.rest.annotation.RequiredParam;
 import ca.uhn.fhir.rest.annotation.ResourceParam;
 import ca.uhn.fhir.rest.annotation.Search;
+import ca.uhn.fhir.rest.annotation.Since;
+import ca.uhn.fhir.rest.annotation.Sort;
 import ca.uhn.fhir.rest.annotation.Update;
 import ca.uhn.fhir.rest.api.MethodOutcome;
+import ca.uhn.fhir.rest.api.SortSpec;
 import ca.uhn.fhir.rest.param.DateParam;
+import ca.uhn.fhir.rest.param.DateRangeParam;
+import ca.uhn.fhir.rest.param.QuantityAndListParam;
 import ca.uhn.fhir.rest.param.ReferenceParam;
 import ca.uhn.fhir.rest.param.TokenOrListParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
 import ca.uhn.fhir.rest.server.IResourceProvider;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.hl7.fhir.dstu3.model.DateTimeType;
 import org.hl7.fhir.dstu3.model.IdType;
+import org.hl7.fhir.dstu3.model.IntegerType;
 import org.hl7.fhir.dstu3.model.Observation;
+import org.hl7.fhir.dstu3.model.Parameters;
 import org.hl7.fhir.dstu3.model.Patient;
 import org.hl7.fhir.dstu3.model.Resource;
+import org.openmrs.module.fhir.resources.FHIRChangeLogResource;
 import org.openmrs.module.fhir.resources.FHIRObservationResource;
 import org.openmrs.module.fhir.util.MethodOutcomeBuilder;
 
+import java.util.Date;
 import java.util.List;
 
 public class RestfulObservationResourceProvider implements IResourceProvider {
 
 	private FHIRObservationResource fhirObservationResource;
 
+	private FHIRChangeLogResource changeLogResource;
+
 	public RestfulObservationResourceProvider() {
 		fhirObservationResource = new FHIRObservationResource();
+		changeLogResource = new FHIRChangeLogResource(Observation.class);
 	}
 
 	@Override
@@ -79,7 +97,7 @@ public class RestfulObservationResourceProvider implements IResourceProvider {
 	 * @see org.openmrs.module.fhir.resources.FHIRObservationResource#searchObsByPatientAndCode(ca.uhn.fhir.rest.param.ReferenceParam, ca.uhn.fhir.rest.param.TokenOrListParam)
 	 */
 	@Search
-	public List<Observation> findObsByPatientAndCode(@RequiredParam(name = Observation.SP_SUBJECT) ReferenceParam
+	public IBundleProvider findObsByPatientAndCode(@RequiredParam(name = Observation.SP_SUBJECT) ReferenceParam
 			patient,
 			@RequiredParam(name = Observation.SP_CODE) TokenOrListParam
 					codes) {
@@ -92,7 +110,7 @@ public class RestfulObservationResourceProvider implements IResourceProvider {
 	 * @param codes object containing the requested name
 	 */
 	@Search
-	public List<Observation> findObsByPatientAndConcept(@RequiredParam(name = Observation.SP_SUBJECT) ReferenceParam
+	public IBundleProvider findObsByPatientAndConcept(@RequiredParam(name = Observation.SP_SUBJECT) ReferenceParam
 			person,
 			@RequiredParam(name = Observation.SP_CODE) TokenOrListParam
 					codes) {
@@ -105,7 +123,7 @@ public class RestfulObservationResourceProvider implements IResourceProvider {
 	 * @param theCodings object containing the requested code
 	 */
 	@Search
-	public List<Observation> findObsByCode(@RequiredParam(name = Observation.SP_CODE) TokenOrListParam theCodings) {
+	public IBundleProvider findObsByCode(@RequiredParam(name = Observation.SP_CODE) TokenOrListParam theCodings) {
 		return fhirObservationResource.searchObsByCode(theCodings);
 	}
 
@@ -115,18 +133,29 @@ public class RestfulObservationResourceProvider implements IResourceProvider {
 	 * @param date object containing the requested date
 	 */
 	@Search
-	public List<Observation> findObsByDate(@RequiredParam(name = Observation.SP_DATE) DateParam date) {
+	public IBundleProvider findObsByDate(@RequiredParam(name = Observation.SP_DATE) DateParam date) {
 		return fhirObservationResource.searchObsByDate(date);
 	}
 
 	/**
-	 * Search obsservation by person
+	 * Search observations of a person, optionally narrowed by code, date range, encounter and value-quantity. All the
+	 * given parameters are compiled into a single query.
 	 *
-	 * @param person object containing the requested person id
+	 * @param person    object containing the requested person id
+	 * @param codes     alternative codes of the observations
+	 * @param date      range of the observation date time
+	 * @param encounter object containing the requested encounter id
+	 * @param values    ranges of the numeric value of the observations
+	 * @param sort      the requested order, only by date
 	 */
 	@Search
-	public List<Observation> findObsByPerson(@RequiredParam(name = Observation.SP_SUBJECT) ReferenceParam person) {
-		return fhirObservationResource.searchObsByPerson(person);
+	public IBundleProvider findObsByPerson(@RequiredParam(name = Observation.SP_SUBJECT) ReferenceParam person,
+			@OptionalParam(name = Observation.SP_CODE) TokenOrListParam codes,
+			@OptionalParam(name = Observation.SP_DATE) DateRangeParam date,
+			@OptionalParam(name = Observation.SP_ENCOUNTER) ReferenceParam encounter,
+			@OptionalParam(name = Observation.SP_VALUE_QUANTITY) QuantityAndListParam values,
+			@Sort SortSpec sort) {
+		return fhirObservationResource.searchObs(person, codes, date, encounter, values, sort);
 	}
 
 	/**
@@ -135,11 +164,67 @@ public class RestfulObservationResourceProvider implements IResourceProvider {
 	 * @param answerConceptName object containing the value concept name which is the answer concept
 	 */
 	@Search
-	public List<Observation> findObsByValueConcept(@RequiredParam(name = Observation.SP_VALUE_CONCEPT) TokenParam
+	public IBundleProvider findObsByValueConcept(@RequiredParam(name = Observation.SP_VALUE_CONCEPT) TokenParam
 			answerConceptName) {
 		return fhirObservationResource.searchObsByValueConcept(answerConceptName);
 	}
 
+	/**
+	 * Implementation of the $lastn operation which returns the most recent observations of a patient for each code
+	 *
+	 * @param patient the patient reference
+	 * @param codes   the codes of the observations, all the codes of the patient by default
+	 * @param max     the maximum number of observations per code, 1 by default
+	 * @return bundle provider of the observations, grouped by code and most recent first
+	 */
+	@Operation(name = "$lastn", type = Observation.class, idempotent = true)
+	public IBundleProvider observationLastN(
+			@OperationParam(name = Observation.SP_PATIENT, min = 1) ReferenceParam patient,
+			@OperationParam(name = Observation.SP_CODE) TokenOrListParam codes,
+			@OperationParam(name = "max") IntegerType max) {
+		return fhirObservationResource.getLastObs(patient, codes, max);
+	}
+
+	/**
+	 * Implementation of the $timeseries operation which returns the numeric observations of a patient downsampled to
+	 * a fixed number of points, served from the observation series cache
+	 *
+	 * @param patient the patient reference
+	 * @param codes   the codes of the numeric observations, a series is returned for each
+	 * @param start   the start of the series, the first observation by default
+	 * @param end     the end of the series, the last observation by default
+	 * @param points  the number of points of each series
+	 * @return parameters holding the code, number of observations and sampled data of each series
+	 */
+	@Operation(name = "$timeseries", type = Observation.class, idempotent = true)
+	public Parameters observationTimeSeries(
+			@OperationParam(name = Observation.SP_PATIENT, min = 1) ReferenceParam patient,
+			@OperationParam(name = Observation.SP_CODE, min = 1) TokenOrListParam codes,
+			@OperationParam(name = "start") DateTimeType start,
+			@OperationParam(name = "end") DateTimeType end,
+			@OperationParam(name = "points") IntegerType points) {
+		return fhirObservationResource.getObsTimeSeries(patient, codes, start, end, points);
+	}
+
+	/**
+	 * Implementation of the $stats operation which returns the count, minimum, maximum, mean, first and last value of
+	 * numeric observations, aggregated by the database
+	 *
+	 * @param codes   the codes of the numeric observations, statistics are returned for each
+	 * @param subject a Patient or Group reference, the observations of everyone by default
+	 * @param start   the earliest observation date time
+	 * @param end     the latest observation date time
+	 * @return parameters holding the statistics of each code
+	 */
+	@Operation(name = "$stats", type = Observation.class, idempotent = true)
+	public Parameters observationStatistics(
+			@OperationParam(name = Observation.SP_CODE, min = 1) TokenOrListParam codes,
+			@OperationParam(name = Observation.SP_SUBJECT) ReferenceParam subject,
+			@OperationParam(name = "start") DateTimeType start,
+			@OperationParam(name = "end") DateTimeType end) {
+		return fhirObservationResource.getObsStatistics(codes, subject, start, end);
+	}
+
 	/**
 	 * Search observations by patient identifier
 	 *
@@ -182,4 +267,39 @@ public class RestfulObservationResourceProvider implements IResourceProvider {
 					ExceptionUtils.getStackTrace(e));
 		}
 	}
+
+	/**
+	 * Gets the history of a observation
+	 *
+	 * @param id    the id of the observation
+	 * @param since if not null the history is only returned when the observation changed at or after this time
+	 * @return the current version of the observation if it changed
+	 */
+	@History
+	public IBundleProvider getObservationHistory(@IdParam IdType id, @Since Date since) {
+		return changeLogResource.getHistory(id, since);
+	}
+
+	/**
+	 * Gets the observations changed since the given time, most recent change first
+	 *
+	 * @param since if not null only the observations changed at or after this time are returned
+	 * @return the changed observations in their current version
+	 */
+	@History
+	public IBundleProvider getObservationTypeHistory(@Since Date since) {
+		return changeLogResource.getHistory(null, since);
+	}
+
+	/**
+	 * Search observations by the time of their last change
+	 *
+	 * @param lastUpdated the range the last change must fall in
+	 * @return the matching observations, least recently changed first
+	 */
+	@Search
+	public IBundleProvider searchObservationByLastUpdated(
+			@RequiredParam(name = "_lastUpdated") DateRangeParam lastUpdated) {
+		return changeLogResource.searchByLastUpdated(lastUpdated);
+	}
 }
@@ -16,38 +16,59 @@ package org.openmrs.module.fhir.providers;
 import ca.uhn.fhir.rest.annotation.ConditionalUrlParam;
 import ca.uhn.fhir.rest.annotation.Create;
 import ca.uhn.fhir.rest.annotation.Delete;
+import ca.uhn.fhir.rest.annotation.History;
 import ca.uhn.fhir.rest.annotation.IdParam;
 import ca.uhn.fhir.rest.annotation.Operation;
+import ca.uhn.fhir.rest.annotation.OperationParam;
 import ca.uhn.fhir.rest.annotation.Read;
 import ca.uhn.fhir.rest.annotation.RequiredParam;
 import ca.uhn.fhir.rest.annotation.ResourceParam;
 import ca.uhn.fhir.rest.annotation.Search;
+import ca.uhn.fhir.rest.annotation.Since;
 import ca.uhn.fhir.rest.annotation.Update;
 import ca.uhn.fhir.rest.api.MethodOutcome;
+import ca.uhn.fhir.rest.param.DateRangeParam;
 import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
 import ca.uhn.fhir.rest.server.IResourceProvider;
 import ca.uhn.fhir.rest.server.exceptions.PreconditionFailedException;
 import org.hl7.fhir.dstu3.model.Bundle;
 import org.hl7.fhir.dstu3.model.CodeableConcept;
 import org.hl7.fhir.dstu3.model.Coding;
+import org.hl7.fhir.dstu3.model.DateTimeType;
 import org.hl7.fhir.dstu3.model.IdType;
+import org.hl7.fhir.dstu3.model.InstantType;
 import org.hl7.fhir.dstu3.model.OperationOutcome;
 import org.hl7.fhir.dstu3.model.Patient;
 import org.hl7.fhir.dstu3.model.Resource;
+import org.hl7.fhir.dstu3.model.StringType;
+import org.hl7.fhir.dstu3.model.UnsignedIntType;
+import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.openmrs.module.fhir.api.util.FHIRConstants;
+import org.openmrs.module.fhir.resources.FHIRBulkExportResource;
+import org.openmrs.module.fhir.resources.FHIRChangeLogResource;
 import org.openmrs.module.fhir.resources.FHIRPatientResource;
 import org.openmrs.module.fhir.util.MethodOutcomeBuilder;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 public class RestfulPatientResourceProvider implements IResourceProvider {
 
 	private FHIRPatientResource patientResource;
 
+	private FHIRBulkExportResource bulkExportResource;
+
+	private FHIRChangeLogResource changeLogResource;
+
 	public RestfulPatientResourceProvider() {
 		patientResource = new FHIRPatientResource();
+		bulkExportResource = new FHIRBulkExportResource();
+		changeLogResource = new FHIRChangeLogResource(Patient.class);
 	}
 
 	@Override
@@ -82,7 +103,7 @@ public class RestfulPatientResourceProvider implements IResourceProvider {
 	 * @param theFamilyName object contaning the requested family name
 	 */
 	@Search
-	public Bundle findPatientsByFamilyName(@RequiredParam(name = Patient.SP_FAMILY) StringParam theFamilyName) {
+	public IBundleProvider findPatientsByFamilyName(@RequiredParam(name = Patient.SP_FAMILY) StringParam theFamilyName) {
 		return patientResource.searchByFamilyName(theFamilyName);
 	}
 
@@ -114,11 +135,10 @@ public class RestfulPatientResourceProvider implements IResourceProvider {
 	 * Get active patients
 	 *
 	 * @param active search term
-	 * @return This method returns a list of Patients. This list may contain multiple matching
-	 * resources, or it may also be empty.
+	 * @return This method returns a bundle provider of Patients, only the requested page is loaded
 	 */
 	@Search
-	public List<Patient> findActivePatients(@RequiredParam(name = Patient.SP_ACTIVE) TokenParam active) {
+	public IBundleProvider findActivePatients(@RequiredParam(name = Patient.SP_ACTIVE) TokenParam active) {
 		return patientResource.searchPatients(active);
 	}
 
@@ -126,11 +146,10 @@ public class RestfulPatientResourceProvider implements IResourceProvider {
 	 * Find patients by given name
 	 *
 	 * @param givenName given name of the patient
-	 * @return This method returns a list of Patients. This list may contain multiple matching
-	 * resources, or it may also be empty.
+	 * @return This method returns a bundle provider of Patients, only the requested page is loaded
 	 */
 	@Search
-	public Bundle findPatientsByGivenName(@RequiredParam(name = Patient.SP_GIVEN) StringParam givenName) {
+	public IBundleProvider findPatientsByGivenName(@RequiredParam(name = Patient.SP_GIVEN) StringParam givenName) {
 		return patientResource.searchByGivenName(givenName);
 	}
 
@@ -138,11 +157,33 @@ public class RestfulPatientResourceProvider implements IResourceProvider {
 	 * Implementation of $everything operation which returns content of a patient
 	 *
 	 * @param patientId if of the patient
-	 * @return bundle
+	 * @param count     the number of resources per page
+	 * @param since     only resources created or changed at or after this time are returned
+	 * @param type      comma separated resource types to return
+	 * @return bundle provider of the patient content, only the requested page is loaded
 	 */
-	@Operation(name = "$everything", type = Patient.class)
-	public Bundle patientInstanceOperation(@IdParam IdType patientId) {
-		return patientResource.getPatientOperationsById(patientId);
+	@Operation(name = "$everything", type = Patient.class, idempotent = true)
+	public IBundleProvider patientInstanceOperation(@IdParam IdType patientId,
+			@OperationParam(name = "_count") UnsignedIntType count,
+			@OperationParam(name = "_since") DateTimeType since,
+			@OperationParam(name = "_type") StringType type) {
+		return patientResource.getPatientOperationsById(patientId, count, since, type);
+	}
+
+	/**
+	 * Kicks off the export of the patient compartment of all the patients
+	 *
+	 * @param outputFormat the format of the files, only NDJSON is supported
+	 * @param since        only export the resources created or changed since this instant
+	 * @param type         comma separated resource types to export, all of the patient compartment by default
+	 * @return an informational outcome, the status URL is returned in the Content-Location header
+	 */
+	@Operation(name = "$export", type = Patient.class, idempotent = true)
+	public OperationOutcome patientTypeExport(@OperationParam(name = "_outputFormat") StringType outputFormat,
+			@OperationParam(name = "_since") InstantType since,
+			@OperationParam(name = "_type") StringType type,
+			HttpServletRequest request, HttpServletResponse response) {
+		return bulkExportResource.exportPatients(request, response, outputFormat, since, type);
 	}
 
 	/**
@@ -217,9 +258,8 @@ public class RestfulPatientResourceProvider implements IResourceProvider {
 				params.setValue(paramValue);
 				patientList = patientResource.searchByIdentifier(params);
 			} else if (FHIRConstants.PARAMETER_GIVENNAME.equals(parameterName)) {
-				StringParam param = new StringParam();
-				param.setValue(paramValue);
-				Bundle patientBundle = patientResource.searchByGivenName(param);
+				StringParam param = new StringParam(paramValue, true);
+				IBundleProvider patientBundle = patientResource.searchByGivenName(param);
 				patientList = generatePatientsList(patientList, patientBundle);
 			}
 			if (patientList != null) {
@@ -250,4 +290,50 @@ public class RestfulPatientResourceProvider implements IResourceProvider {
 		return patientList;
 	}
 
+	private List<Patient> generatePatientsList(List<Patient> patientList, IBundleProvider patientBundle) {
+		// a conditional update only needs to tell no, one or several matches apart
+		List<IBaseResource> resources = patientBundle.getResources(0, 2);
+		if (!resources.isEmpty()) {
+			patientList = new ArrayList<>();
+		}
+		for (IBaseResource resource : resources) {
+			patientList.add((Patient) resource);
+		}
+		return patientList;
+	}
+
+	/**
+	 * Gets the history of a patient
+	 *
+	 * @param id    the id of the patient
+	 * @param since if not null the history is only returned when the patient changed at or after this time
+	 * @return the current version of the patient if it changed
+	 */
+	@History
+	public IBundleProvider getPatientHistory(@IdParam IdType id, @Since Date since) {
+		return changeLogResource.getHistory(id, since);
+	}
+
+	/**
+	 * Gets the patients changed since the given time, most recent change first
+	 *
+	 * @param since if not null only the patients changed at or after this time are returned
+	 * @return the changed patients in their current version
+	 */
+	@History
+	public IBundleProvider getPatientTypeHistory(@Since Date since) {
+		return changeLogResource.getHistory(null, since);
+	}
+
+	/**
+	 * Search patients by the time of their last change
+	 *
+	 * @param lastUpdated the range the last change must fall in
+	 * @return the matching patients, least recently changed first
+	 */
+	@Search
+	public IBundleProvider searchPatientByLastUpdated(
+			@RequiredParam(name = "_lastUpdated") DateRangeParam lastUpdated) {
+		return changeLogResource.searchByLastUpdated(lastUpdated);
+	}
 }
@@ -16,24 +16,30 @@ package org.openmrs.module.fhir.providers;
 import ca.uhn.fhir.rest.annotation.ConditionalUrlParam;
 import ca.uhn.fhir.rest.annotation.Create;
 import ca.uhn.fhir.rest.annotation.Delete;
+import ca.uhn.fhir.rest.annotation.History;
 import ca.uhn.fhir.rest.annotation.IdParam;
 import ca.uhn.fhir.rest.annotation.Read;
 import ca.uhn.fhir.rest.annotation.RequiredParam;
 import ca.uhn.fhir.rest.annotation.ResourceParam;
 import ca.uhn.fhir.rest.annotation.Search;
+import ca.uhn.fhir.rest.annotation.Since;
 import ca.uhn.fhir.rest.annotation.Update;
 import ca.uhn.fhir.rest.api.MethodOutcome;
 import ca.uhn.fhir.rest.param.DateParam;
+import ca.uhn.fhir.rest.param.DateRangeParam;
 import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
 import ca.uhn.fhir.rest.server.IResourceProvider;
 import ca.uhn.fhir.rest.server.exceptions.PreconditionFailedException;
 import org.hl7.fhir.dstu3.model.IdType;
 import org.hl7.fhir.dstu3.model.Person;
 import org.hl7.fhir.dstu3.model.Resource;
+import org.openmrs.module.fhir.resources.FHIRChangeLogResource;
 import org.openmrs.module.fhir.resources.FHIRPersonResource;
 import org.openmrs.module.fhir.util.MethodOutcomeBuilder;
 
+import java.util.Date;
 import java.util.List;
 
 public class RestfulPersonResourceProvider implements IResourceProvider {
@@ -44,8 +50,11 @@ public class RestfulPersonResourceProvider implements IResourceProvider {
 
 	private FHIRPersonResource personResource;
 
+	private FHIRChangeLogResource changeLogResource;
+
 	public RestfulPersonResourceProvider() {
 		this.personResource = new FHIRPersonResource();
+		this.changeLogResource = new FHIRChangeLogResource(Person.class);
 	}
 
 	@Override
@@ -166,4 +175,39 @@ public class RestfulPersonResourceProvider implements IResourceProvider {
 			return updatePersonConditional(person, theId);
 		}
 	}
+
+	/**
+	 * Gets the history of a person
+	 *
+	 * @param id    the id of the person
+	 * @param since if not null the history is only returned when the person changed at or after this time
+	 * @return the current version of the person if it changed
+	 */
+	@History
+	public IBundleProvider getPersonHistory(@IdParam IdType id, @Since Date since) {
+		return changeLogResource.getHistory(id, since);
+	}
+
+	/**
+	 * Gets the persons changed since the given time, most recent change first
+	 *
+	 * @param since if not null only the persons changed at or after this time are returned
+	 * @return the changed persons in their current version
+	 */
+	@History
+	public IBundleProvider getPersonTypeHistory(@Since Date since) {
+		return changeLogResource.getHistory(null, since);
+	}
+
+	/**
+	 * Search persons by the time of their last change
+	 *
+	 * @param lastUpdated the range the last change must fall in
+	 * @return the matching persons, least recently changed first
+	 */
+	@Search
+	public IBundleProvider searchPersonByLastUpdated(
+			@RequiredParam(name = "_lastUpdated") DateRangeParam lastUpdated) {
+		return changeLogResource.searchByLastUpdated(lastUpdated);
+	}
 }
@@ -14,30 +14,39 @@
 package org.openmrs.module.fhir.providers;
 
 import ca.uhn.fhir.rest.annotation.Create;
+import ca.uhn.fhir.rest.annotation.History;
 import ca.uhn.fhir.rest.annotation.IdParam;
 import ca.uhn.fhir.rest.annotation.Read;
 import ca.uhn.fhir.rest.annotation.RequiredParam;
 import ca.uhn.fhir.rest.annotation.ResourceParam;
 import ca.uhn.fhir.rest.annotation.Search;
+import ca.uhn.fhir.rest.annotation.Since;
 import ca.uhn.fhir.rest.annotation.Update;
 import ca.uhn.fhir.rest.api.MethodOutcome;
+import ca.uhn.fhir.rest.param.DateRangeParam;
 import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
 import ca.uhn.fhir.rest.server.IResourceProvider;
 import org.hl7.fhir.dstu3.model.IdType;
 import org.hl7.fhir.dstu3.model.Practitioner;
 import org.hl7.fhir.dstu3.model.Resource;
+import org.openmrs.module.fhir.resources.FHIRChangeLogResource;
 import org.openmrs.module.fhir.resources.FHIRPractitionerResource;
 import org.openmrs.module.fhir.util.MethodOutcomeBuilder;
 
+import java.util.Date;
 import java.util.List;
 
 public class RestfulPractitionerResourceProvider implements IResourceProvider {
 
 	private FHIRPractitionerResource practitionerResource;
 
+	private FHIRChangeLogResource changeLogResource;
+
 	public RestfulPractitionerResourceProvider() {
 		this.practitionerResource = new FHIRPractitionerResource();
+		this.changeLogResource = new FHIRChangeLogResource(Practitioner.class);
 	}
 
 	@Override
@@ -74,7 +83,7 @@ public class RestfulPractitionerResourceProvider implements IResourceProvider {
 	 * @param theFamilyName object contaning the requested family name
 	 */
 	@Search
-	public List<Practitioner> findPractitionersByFamilyName(
+	public IBundleProvider findPractitionersByFamilyName(
 			@RequiredParam(name = Practitioner.SP_FAMILY) StringParam theFamilyName) {
 		return practitionerResource.searchByFamilyName(theFamilyName);
 	}
@@ -108,11 +117,11 @@ public class RestfulPractitionerResourceProvider implements IResourceProvider {
 	 * Find Practitioner by given name
 	 *
 	 * @param givenName given name of the Practitioner
-	 * @return This method returns a list of Practitioners. This list may contain multiple matching
-	 * resources, or it may also be empty.
+	 * @return This method returns a bundle provider of Practitioners, which is paged from the database.
+	 * It may contain multiple matching resources, or it may also be empty.
 	 */
 	@Search
-	public List<Practitioner> findPractitionersByGivenName(
+	public IBundleProvider findPractitionersByGivenName(
 			@RequiredParam(name = Practitioner.SP_GIVEN) StringParam givenName) {
 		return practitionerResource.searchByGivenName(givenName);
 	}
@@ -137,4 +146,39 @@ public class RestfulPractitionerResourceProvider implements IResourceProvider {
 			return MethodOutcomeBuilder.buildCustom("Following exception occured " + e.getMessage());
 		}
 	}
+
+	/**
+	 * Gets the history of a practitioner
+	 *
+	 * @param id    the id of the practitioner
+	 * @param since if not null the history is only returned when the practitioner changed at or after this time
+	 * @return the current version of the practitioner if it changed
+	 */
+	@History
+	public IBundleProvider getPractitionerHistory(@IdParam IdType id, @Since Date since) {
+		return changeLogResource.getHistory(id, since);
+	}
+
+	/**
+	 * Gets the practitioners changed since the given time, most recent change first
+	 *
+	 * @param since if not null only the practitioners changed at or after this time are returned
+	 * @return the changed practitioners in their current version
+	 */
+	@History
+	public IBundleProvider getPractitionerTypeHistory(@Since Date since) {
+		return changeLogResource.getHistory(null, since);
+	}
+
+	/**
+	 * Search practitioners by the time of their last change
+	 *
+	 * @param lastUpdated the range the last change must fall in
+	 * @return the matching practitioners, least recently changed first
+	 */
+	@Search
+	public IBundleProvider searchPractitionerByLastUpdated(
+			@RequiredParam(name = "_lastUpdated") DateRangeParam lastUpdated) {
+		return changeLogResource.searchByLastUpdated(lastUpdated);
+	}
 }
@@ -2,30 +2,39 @@ package org.openmrs.module.fhir.providers;
 
 import ca.uhn.fhir.rest.annotation.Create;
 import ca.uhn.fhir.rest.annotation.Delete;
+import ca.uhn.fhir.rest.annotation.History;
 import ca.uhn.fhir.rest.annotation.IdParam;
 import ca.uhn.fhir.rest.annotation.Read;
 import ca.uhn.fhir.rest.annotation.RequiredParam;
 import ca.uhn.fhir.rest.annotation.ResourceParam;
 import ca.uhn.fhir.rest.annotation.Search;
+import ca.uhn.fhir.rest.annotation.Since;
 import ca.uhn.fhir.rest.annotation.Update;
 import ca.uhn.fhir.rest.api.MethodOutcome;
+import ca.uhn.fhir.rest.param.DateRangeParam;
 import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
 import ca.uhn.fhir.rest.server.IResourceProvider;
 import org.hl7.fhir.dstu3.model.IdType;
 import org.hl7.fhir.dstu3.model.Patient;
 import org.hl7.fhir.dstu3.model.RelatedPerson;
 import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.openmrs.module.fhir.resources.FHIRChangeLogResource;
 import org.openmrs.module.fhir.resources.FHIRRelatedPersonResource;
 import org.openmrs.module.fhir.util.MethodOutcomeBuilder;
 
+import java.util.Date;
 import java.util.List;
 
 public class RestfulRelatedPersonProvider implements IResourceProvider {
 
 	private FHIRRelatedPersonResource relatedPersonResource;
 
+	private FHIRChangeLogResource changeLogResource;
+
 	public RestfulRelatedPersonProvider() {
 		relatedPersonResource = new FHIRRelatedPersonResource();
+		changeLogResource = new FHIRChangeLogResource(RelatedPerson.class);
 	}
 
 	@Override
@@ -82,4 +91,39 @@ public class RestfulRelatedPersonProvider implements IResourceProvider {
 	public MethodOutcome createRelatedPerson(@ResourceParam RelatedPerson relatedPerson) {
 		return MethodOutcomeBuilder.buildCreate(relatedPersonResource.createRelatedPerson(relatedPerson));
 	}
+
+	/**
+	 * Gets the history of a related person
+	 *
+	 * @param id    the id of the related person
+	 * @param since if not null the history is only returned when the related person changed at or after this time
+	 * @return the current version of the related person if it changed
+	 */
+	@History
+	public IBundleProvider getRelatedPersonHistory(@IdParam IdType id, @Since Date since) {
+		return changeLogResource.getHistory(id, since);
+	}
+
+	/**
+	 * Gets the related persons changed since the given time, most recent change first
+	 *
+	 * @param since if not null only the related persons changed at or after this time are returned
+	 * @return the changed related persons in their current version
+	 */
+	@History
+	public IBundleProvider getRelatedPersonTypeHistory(@Since Date since) {
+		return changeLogResource.getHistory(null, since);
+	}
+
+	/**
+	 * Search related persons by the time of their last change
+	 *
+	 * @param lastUpdated the range the last change must fall in
+	 * @return the matching related persons, least recently changed first
+	 */
+	@Search
+	public IBundleProvider searchRelatedPersonByLastUpdated(
+			@RequiredParam(name = "_lastUpdated") DateRangeParam lastUpdated) {
+		return changeLogResource.searchByLastUpdated(lastUpdated);
+	}
 }
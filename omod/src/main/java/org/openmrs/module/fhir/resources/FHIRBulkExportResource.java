@@ -0,0 +1,139 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.resources;
+
+import ca.uhn.fhir.rest.server.exceptions.ForbiddenOperationException;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import org.apache.commons.lang.StringUtils;
+import org.hl7.fhir.dstu3.model.IdType;
+import org.hl7.fhir.dstu3.model.InstantType;
+import org.hl7.fhir.dstu3.model.OperationOutcome;
+import org.hl7.fhir.dstu3.model.StringType;
+import org.openmrs.Cohort;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.export.BulkExportJob;
+import org.openmrs.module.fhir.api.export.BulkExportManager;
+import org.openmrs.module.fhir.api.export.BulkExportType;
+import org.openmrs.module.fhir.api.util.FHIRConstants;
+import org.openmrs.module.fhir.server.AcceptedResponseInterceptor;
+import org.openmrs.module.fhir.util.FHIROmodConstants;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Kicks off the bulk data exports. The export runs in the background, the client polls the status URL returned in the
+ * Content-Location header and downloads the NDJSON files listed once it is complete.
+ */
+public class FHIRBulkExportResource extends Resource {
+
+	private static final List<String> OUTPUT_FORMATS = Arrays.asList(FHIRConstants.NDJSON_CONTENT_TYPE,
+			"application/ndjson", "ndjson");
+
+	public OperationOutcome exportAll(HttpServletRequest request, HttpServletResponse response, StringType outputFormat,
+			InstantType since, StringType type) {
+		return export(request, response, outputFormat, since, type, false, null);
+	}
+
+	public OperationOutcome exportPatients(HttpServletRequest request, HttpServletResponse response,
+			StringType outputFormat, InstantType since, StringType type) {
+		return export(request, response, outputFormat, since, type, true, null);
+	}
+
+	public OperationOutcome exportGroup(IdType groupId, HttpServletRequest request, HttpServletResponse response,
+			StringType outputFormat, InstantType since, StringType type) {
+		Cohort cohort = Context.getCohortService().getCohortByUuid(groupId.getIdPart());
+		if (cohort == null) {
+			throw new ResourceNotFoundException("Group is not found for given Id " + groupId.getIdPart());
+		}
+		return export(request, response, outputFormat, since, type, true, new HashSet<Integer>(cohort.getMemberIds()));
+	}
+
+	private OperationOutcome export(HttpServletRequest request, HttpServletResponse response, StringType outputFormat,
+			InstantType since, StringType type, boolean patientCompartment, Set<Integer> patientIds) {
+		if (!Context.hasPrivilege(FHIRConstants.BULK_EXPORT_PRIVILEGE)) {
+			throw new ForbiddenOperationException("Bulk exports require the "
+					+ FHIRConstants.BULK_EXPORT_PRIVILEGE + " privilege");
+		}
+		if (outputFormat != null && !OUTPUT_FORMATS.contains(outputFormat.getValue())) {
+			throw new InvalidRequestException("Unsupported _outputFormat " + outputFormat.getValue());
+		}
+
+		List<BulkExportType> types = getTypes(type, patientCompartment);
+		Date sinceDate = since == null ? null : since.getValue();
+		BulkExportJob job = BulkExportManager.getInstance().submit(getRequestUrl(request), types, sinceDate,
+				patientIds);
+
+		String statusUrl = getServerBase(request) + FHIROmodConstants.OPENMRS_FHIR_EXPORT_PATH + "/" + job.getId();
+		response.setHeader("Content-Location", statusUrl);
+		AcceptedResponseInterceptor.markAccepted(request);
+
+		OperationOutcome outcome = new OperationOutcome();
+		outcome.addIssue()
+				.setSeverity(OperationOutcome.IssueSeverity.INFORMATION)
+				.setCode(OperationOutcome.IssueType.INFORMATIONAL)
+				.setDiagnostics("Export " + job.getId() + " accepted, its status is available at " + statusUrl);
+		return outcome;
+	}
+
+	private List<BulkExportType> getTypes(StringType type, boolean patientCompartment) {
+		List<BulkExportType> types = new ArrayList<BulkExportType>();
+		if (type == null || StringUtils.isBlank(type.getValue())) {
+			for (BulkExportType exportType : BulkExportType.values()) {
+				if (!patientCompartment || exportType.isPatientCompartment()) {
+					types.add(exportType);
+				}
+			}
+			return types;
+		}
+
+		for (String resourceName : type.getValue().split(",")) {
+			BulkExportType exportType = BulkExportType.forResourceName(resourceName.trim());
+			if (exportType == null) {
+				throw new InvalidRequestException("Resource type " + resourceName + " cannot be exported");
+			}
+			if (patientCompartment && !exportType.isPatientCompartment()) {
+				throw new InvalidRequestException("Resource type " + resourceName + " is not part of the patient "
+						+ "compartment");
+			}
+			if (!types.contains(exportType)) {
+				types.add(exportType);
+			}
+		}
+		return types;
+	}
+
+	private static String getRequestUrl(HttpServletRequest request) {
+		StringBuffer url = request.getRequestURL();
+		if (request.getQueryString() != null) {
+			url.append('?').append(request.getQueryString());
+		}
+		return url.toString();
+	}
+
+	/**
+	 * @return the URL of the OpenMRS web application the request was sent to
+	 */
+	public static String getServerBase(HttpServletRequest request) {
+		return request.getScheme() + "://" + request.getServerName() + ":" + request.getServerPort()
+				+ request.getContextPath();
+	}
+}
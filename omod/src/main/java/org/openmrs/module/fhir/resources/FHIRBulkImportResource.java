@@ -0,0 +1,100 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.resources;
+
+import ca.uhn.fhir.rest.server.exceptions.ForbiddenOperationException;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import org.apache.commons.lang.StringUtils;
+import org.hl7.fhir.dstu3.model.IntegerType;
+import org.hl7.fhir.dstu3.model.OperationOutcome;
+import org.hl7.fhir.dstu3.model.StringType;
+import org.openmrs.api.APIException;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.bulkimport.BulkImportJob;
+import org.openmrs.module.fhir.api.bulkimport.BulkImportManager;
+import org.openmrs.module.fhir.api.util.FHIRConstants;
+import org.openmrs.module.fhir.api.util.FHIRUtils;
+import org.openmrs.module.fhir.server.AcceptedResponseInterceptor;
+import org.openmrs.module.fhir.util.FHIROmodConstants;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Kicks off the bulk imports of NDJSON files. The import runs in the background, the client polls the status URL
+ * returned in the Content-Location header and downloads the rejected lines once it is complete.
+ */
+public class FHIRBulkImportResource extends Resource {
+
+	public OperationOutcome importFile(HttpServletRequest request, HttpServletResponse response, StringType inputFile,
+			IntegerType batchSize) {
+		checkPrivilege();
+		if (inputFile == null || StringUtils.isBlank(inputFile.getValue())) {
+			throw new InvalidRequestException("The inputFile parameter is required");
+		}
+
+		BulkImportJob job;
+		try {
+			job = BulkImportManager.getInstance().submit(inputFile.getValue(), getBatchSize(batchSize));
+		}
+		catch (APIException e) {
+			throw new InvalidRequestException(e.getMessage());
+		}
+		return accepted(job, request, response);
+	}
+
+	/**
+	 * @throws ForbiddenOperationException if the authenticated user cannot import data
+	 */
+	public static void checkPrivilege() {
+		if (!Context.hasPrivilege(FHIRConstants.BULK_IMPORT_PRIVILEGE)) {
+			throw new ForbiddenOperationException("Bulk imports require the "
+					+ FHIRConstants.BULK_IMPORT_PRIVILEGE + " privilege");
+		}
+	}
+
+	/**
+	 * @param batchSize the batch size requested by the client, may be null
+	 * @return the batch size to import with
+	 */
+	public static int getBatchSize(IntegerType batchSize) {
+		if (batchSize == null || batchSize.getValue() == null) {
+			return FHIRUtils.getImportBatchSize();
+		}
+		if (batchSize.getValue() < 1) {
+			throw new InvalidRequestException("batchSize must be a positive number");
+		}
+		return batchSize.getValue();
+	}
+
+	/**
+	 * Sets the status URL of a queued job on the response
+	 *
+	 * @return an informational outcome pointing at the status URL
+	 */
+	public static OperationOutcome accepted(BulkImportJob job, HttpServletRequest request,
+			HttpServletResponse response) {
+		String statusUrl = FHIRBulkExportResource.getServerBase(request) + FHIROmodConstants.OPENMRS_FHIR_IMPORT_PATH
+				+ "/" + job.getId();
+		response.setHeader("Content-Location", statusUrl);
+		AcceptedResponseInterceptor.markAccepted(request);
+
+		OperationOutcome outcome = new OperationOutcome();
+		outcome.addIssue()
+				.setSeverity(OperationOutcome.IssueSeverity.INFORMATION)
+				.setCode(OperationOutcome.IssueType.INFORMATIONAL)
+				.setDiagnostics("Import " + job.getId() + " accepted, its status is available at " + statusUrl);
+		return outcome;
+	}
+}
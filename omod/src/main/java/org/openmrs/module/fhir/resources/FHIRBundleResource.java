@@ -1,5 +1,23 @@
 package org.openmrs.module.fhir.resources;
 
-public class FHIRBundleResource {
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import org.hl7.fhir.dstu3.model.Bundle;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.BundleService;
 
+public class FHIRBundleResource extends Resource {
+
+	public Bundle transaction(Bundle bundle) {
+		if (bundle.getType() == Bundle.BundleType.BATCH) {
+			return getBundleService().processBatch(bundle);
+		}
+		if (bundle.getType() == Bundle.BundleType.TRANSACTION) {
+			return getBundleService().processTransaction(bundle);
+		}
+		throw new InvalidRequestException("Only transaction and batch Bundles can be processed");
+	}
+
+	private BundleService getBundleService() {
+		return Context.getService(BundleService.class);
+	}
 }
@@ -0,0 +1,55 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.resources;
+
+import ca.uhn.fhir.rest.param.DateRangeParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
+import org.hl7.fhir.dstu3.model.IdType;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.ChangeLogService;
+
+import java.util.Date;
+
+/**
+ * Serves the _history and _lastUpdated requests of a resource type, or of the whole server, from the change log
+ */
+public class FHIRChangeLogResource extends Resource {
+
+	private final String resourceType;
+
+	/**
+	 * Creates a resource answering for the whole server
+	 */
+	public FHIRChangeLogResource() {
+		this.resourceType = null;
+	}
+
+	/**
+	 * @param resourceType the FHIR resource type answered for
+	 */
+	public FHIRChangeLogResource(Class<? extends IBaseResource> resourceType) {
+		this.resourceType = resourceType.getSimpleName();
+	}
+
+	public IBundleProvider getHistory(IdType id, Date since) {
+		String uuid = id == null ? null : id.getIdPart();
+		return Context.getService(ChangeLogService.class).getHistory(resourceType, uuid, since);
+	}
+
+	public IBundleProvider searchByLastUpdated(DateRangeParam lastUpdated) {
+		return Context.getService(ChangeLogService.class).searchByLastUpdated(resourceType,
+				lastUpdated.getLowerBoundAsInstant(), lastUpdated.getUpperBoundAsInstant());
+	}
+}
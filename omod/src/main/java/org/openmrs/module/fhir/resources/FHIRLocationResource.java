@@ -15,6 +15,7 @@ package org.openmrs.module.fhir.resources;
 
 import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
 import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
 import org.hl7.fhir.dstu3.model.IdType;
 import org.hl7.fhir.dstu3.model.Location;
@@ -38,7 +39,7 @@ public class FHIRLocationResource extends Resource {
 		return Context.getService(LocationService.class).searchLocationsByUuid(id.getValue());
 	}
 
-	public List<Location> searchLocationsByStatus(TokenParam active) {
+	public IBundleProvider searchLocationsByStatus(TokenParam active) {
 		if (active != null && active.getValue().equalsIgnoreCase(Location.LocationStatus.ACTIVE.toCode())) {
 			return Context.getService(LocationService.class).searchLocationsByStatus(true);
 		} else {
@@ -46,8 +47,8 @@ public class FHIRLocationResource extends Resource {
 		}
 	}
 
-	public List<Location> searchLocationsByName(StringParam name) {
-		return Context.getService(LocationService.class).searchLocationsByName(name.getValue());
+	public IBundleProvider searchLocationsByName(StringParam name) {
+		return Context.getService(LocationService.class).searchLocationsByName(name);
 	}
 
 	public void deleteLocation(IdType id) {
@@ -14,18 +14,32 @@
 package org.openmrs.module.fhir.resources;
 
 import ca.uhn.fhir.model.base.composite.BaseCodingDt;
+import ca.uhn.fhir.rest.api.SortOrderEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
 import ca.uhn.fhir.rest.param.DateParam;
+import ca.uhn.fhir.rest.param.DateRangeParam;
+import ca.uhn.fhir.rest.param.QuantityAndListParam;
 import ca.uhn.fhir.rest.param.ReferenceParam;
 import ca.uhn.fhir.rest.param.TokenOrListParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.BundleProviders;
+import ca.uhn.fhir.rest.server.IBundleProvider;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import org.hl7.fhir.dstu3.model.DateTimeType;
+import org.hl7.fhir.dstu3.model.Group;
 import org.hl7.fhir.dstu3.model.IdType;
+import org.hl7.fhir.dstu3.model.IntegerType;
 import org.hl7.fhir.dstu3.model.Observation;
+import org.hl7.fhir.dstu3.model.Parameters;
 import org.hl7.fhir.dstu3.model.Patient;
+import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.fhir.api.ObsService;
+import org.openmrs.module.fhir.api.util.FHIRConstants;
 
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -46,7 +60,7 @@ public class FHIRObservationResource extends Resource {
 		return obsService.searchObsById(id.getValue());
 	}
 
-	public List<Observation> searchObsByPatientAndConcept(ReferenceParam person, TokenOrListParam codes) {
+	public IBundleProvider searchObsByPatientAndConcept(ReferenceParam person, TokenOrListParam codes) {
 		ObsService obsService = Context.getService(ObsService.class);
 		Map<String, String> conceptNamesAndURIs = new HashMap<String, String>();
 		for (BaseCodingDt baseCodingDt : codes.getListAsCodings()) {
@@ -55,7 +69,7 @@ public class FHIRObservationResource extends Resource {
 		return obsService.searchObsByPatientAndConcept(person.getIdPart(), conceptNamesAndURIs);
 	}
 
-	public List<Observation> searchObsByCode(TokenOrListParam codes) {
+	public IBundleProvider searchObsByCode(TokenOrListParam codes) {
 		ObsService obsService = Context.getService(ObsService.class);
 		Map<String, String> conceptNamesAndURIs = new HashMap<String, String>();
 		for (BaseCodingDt baseCodingDt : codes.getListAsCodings()) {
@@ -64,17 +78,17 @@ public class FHIRObservationResource extends Resource {
 		return obsService.searchObsByCode(conceptNamesAndURIs);
 	}
 
-	public List<Observation> searchObsByDate(DateParam date) {
+	public IBundleProvider searchObsByDate(DateParam date) {
 		ObsService obsService = Context.getService(ObsService.class);
 		return obsService.searchObsByDate(date.getValue());
 	}
 
-	public List<Observation> searchObsByPerson(ReferenceParam person) {
+	public IBundleProvider searchObsByPerson(ReferenceParam person) {
 		ObsService obsService = Context.getService(ObsService.class);
 		return obsService.searchObsByPerson(person.getIdPart());
 	}
 
-	public List<Observation> searchObsByValueConcept(TokenParam answerConceptName) {
+	public IBundleProvider searchObsByValueConcept(TokenParam answerConceptName) {
 		ObsService obsService = Context.getService(ObsService.class);
 		return obsService.searchObsByValueConcept(answerConceptName.getValue());
 	}
@@ -109,12 +123,129 @@ public class FHIRObservationResource extends Resource {
 	 *
 	 * @param patient Patient reference
 	 * @param codes   TokenParam or a list of TokenParam codes
-	 * @return List of observation resources
+	 * @return bundle provider of observation resources
 	 */
-	public List<Observation> searchObsByPatientAndCode(ReferenceParam patient, TokenOrListParam codes) {
+	public IBundleProvider searchObsByPatientAndCode(ReferenceParam patient, TokenOrListParam codes) {
 		ObsService obsService = Context.getService(ObsService.class);
 		List<TokenParam> codings = codes.getValuesAsQueryTokens();
 
 		return obsService.searchObsByPatientAndCode(patient.getIdPart(), codings);
 	}
+
+	/**
+	 * Search observations by subject, optionally narrowed by codes, date range, encounter and value-quantity
+	 *
+	 * @param subject   the person reference
+	 * @param codes     TokenParam or a list of TokenParam codes
+	 * @param date      range of the observation date time
+	 * @param encounter the encounter reference
+	 * @param values    ranges of the numeric value of the observations
+	 * @param sort      the requested order, only by date
+	 * @return bundle provider of observation resources
+	 */
+	public IBundleProvider searchObs(ReferenceParam subject, TokenOrListParam codes, DateRangeParam date,
+			ReferenceParam encounter, QuantityAndListParam values, SortSpec sort) {
+		boolean ascending = false;
+		if (sort != null) {
+			if (!Observation.SP_DATE.equals(sort.getParamName())) {
+				throw new InvalidRequestException("Observations can only be sorted by " + Observation.SP_DATE);
+			}
+			ascending = sort.getOrder() != SortOrderEnum.DESC;
+		}
+		List<TokenParam> codings = codes != null ? codes.getValuesAsQueryTokens() : null;
+		Date fromDate = date != null ? date.getLowerBoundAsInstant() : null;
+		Date toDate = date != null ? date.getUpperBoundAsInstant() : null;
+		String encounterUuid = encounter != null ? encounter.getIdPart() : null;
+
+		ObsService obsService = Context.getService(ObsService.class);
+		return obsService.searchObs(subject.getIdPart(), codings, fromDate, toDate, encounterUuid, values, ascending);
+	}
+
+	/**
+	 * Get the most recent observations of a patient for each code, the $lastn operation
+	 *
+	 * @param patient the patient reference
+	 * @param codes   the codes of the observations, all the codes of the patient if null
+	 * @param max     the maximum number of observations per code, 1 if null
+	 * @return bundle provider of the observation resources
+	 */
+	public IBundleProvider getLastObs(ReferenceParam patient, TokenOrListParam codes, IntegerType max) {
+		if (patient == null || patient.getIdPart() == null) {
+			throw new InvalidRequestException("The patient parameter is required");
+		}
+		int maxPerCode = max != null && max.getValue() != null ? max.getValue() : 1;
+		if (maxPerCode < 1) {
+			throw new InvalidRequestException("The max parameter must be a positive integer");
+		}
+		List<TokenParam> codings = codes != null ? codes.getValuesAsQueryTokens() : null;
+
+		ObsService obsService = Context.getService(ObsService.class);
+		List<Observation> observations = obsService.getLastObs(patient.getIdPart(), codings, maxPerCode);
+		return BundleProviders.newList(new ArrayList<IBaseResource>(observations));
+	}
+
+	/**
+	 * Get the downsampled series of the numeric observations of a patient, the $timeseries operation
+	 *
+	 * @param patient the patient reference
+	 * @param codes   the codes of the numeric observations
+	 * @param start   the start of the series, the first observation if null
+	 * @param end     the end of the series, the last observation if null
+	 * @param points  the number of points of each series, {@link FHIRConstants#DEFAULT_TIME_SERIES_POINTS} if null
+	 * @return parameters holding a series parameter per code
+	 */
+	public Parameters getObsTimeSeries(ReferenceParam patient, TokenOrListParam codes, DateTimeType start,
+			DateTimeType end, IntegerType points) {
+		if (patient == null || patient.getIdPart() == null) {
+			throw new InvalidRequestException("The patient parameter is required");
+		}
+		if (codes == null || codes.getValuesAsQueryTokens().isEmpty()) {
+			throw new InvalidRequestException("The code parameter is required");
+		}
+		int numberOfPoints = points != null && points.getValue() != null ? points.getValue()
+				: FHIRConstants.DEFAULT_TIME_SERIES_POINTS;
+		if (numberOfPoints < 1 || numberOfPoints > FHIRConstants.MAXIMUM_TIME_SERIES_POINTS) {
+			throw new InvalidRequestException(
+					"The points parameter must be between 1 and " + FHIRConstants.MAXIMUM_TIME_SERIES_POINTS);
+		}
+		Date fromDate = start != null ? start.getValue() : null;
+		Date toDate = end != null ? end.getValue() : null;
+
+		ObsService obsService = Context.getService(ObsService.class);
+		return obsService.getObsTimeSeries(patient.getIdPart(), codes.getValuesAsQueryTokens(), fromDate, toDate,
+				numberOfPoints);
+	}
+
+	/**
+	 * Get the statistics of the numeric observations of a patient, a group or everyone, the $stats operation
+	 *
+	 * @param codes   the codes of the numeric observations
+	 * @param subject a patient or a group reference, all the persons if null
+	 * @param start   the earliest observation date time, if not null
+	 * @param end     the latest observation date time, if not null
+	 * @return parameters holding a statistics parameter per code
+	 */
+	public Parameters getObsStatistics(TokenOrListParam codes, ReferenceParam subject, DateTimeType start,
+			DateTimeType end) {
+		if (codes == null || codes.getValuesAsQueryTokens().isEmpty()) {
+			throw new InvalidRequestException("The code parameter is required");
+		}
+		String patientUuid = null;
+		String groupUuid = null;
+		if (subject != null && subject.getIdPart() != null) {
+			if (Group.class.getSimpleName().equals(subject.getResourceType())) {
+				groupUuid = subject.getIdPart();
+			} else if (subject.getResourceType() == null
+					|| Patient.class.getSimpleName().equals(subject.getResourceType())) {
+				patientUuid = subject.getIdPart();
+			} else {
+				throw new InvalidRequestException("The subject must be a Patient or a Group");
+			}
+		}
+		Date fromDate = start != null ? start.getValue() : null;
+		Date toDate = end != null ? end.getValue() : null;
+
+		ObsService obsService = Context.getService(ObsService.class);
+		return obsService.getObsStatistics(codes.getValuesAsQueryTokens(), patientUuid, groupUuid, fromDate, toDate);
+	}
 }
@@ -15,13 +15,19 @@ package org.openmrs.module.fhir.resources;
 
 import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
 import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import org.apache.commons.lang.StringUtils;
 import org.hl7.fhir.dstu3.model.Bundle;
+import org.hl7.fhir.dstu3.model.DateTimeType;
 import org.hl7.fhir.dstu3.model.IdType;
 import org.hl7.fhir.dstu3.model.Patient;
+import org.hl7.fhir.dstu3.model.StringType;
+import org.hl7.fhir.dstu3.model.UnsignedIntType;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.fhir.api.PatientService;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class FHIRPatientResource extends Resource {
@@ -53,16 +59,16 @@ public class FHIRPatientResource extends Resource {
 		return patientService.searchPatientsByIdentifier(identifier.getValue());
 	}
 
-	public Bundle searchByGivenName(StringParam givenName) {
+	public IBundleProvider searchByGivenName(StringParam givenName) {
 		org.openmrs.module.fhir.api.PatientService patientService = Context.getService(
 				org.openmrs.module.fhir.api.PatientService.class);
-		return patientService.searchPatientsByGivenName(givenName.getValue());
+		return patientService.searchPatientsByGivenName(givenName);
 	}
 
-	public Bundle searchByFamilyName(StringParam theFamilyName) {
+	public IBundleProvider searchByFamilyName(StringParam theFamilyName) {
 		org.openmrs.module.fhir.api.PatientService patientService = Context.getService(
 				org.openmrs.module.fhir.api.PatientService.class);
-		return patientService.searchPatientsByFamilyName(theFamilyName.getValue());
+		return patientService.searchPatientsByFamilyName(theFamilyName);
 	}
 
 	public Bundle searchByName(StringParam name) {
@@ -71,7 +77,7 @@ public class FHIRPatientResource extends Resource {
 		return patientService.searchPatientsByName(name.getValue());
 	}
 
-	public List<Patient> searchPatients(TokenParam active) {
+	public IBundleProvider searchPatients(TokenParam active) {
 		org.openmrs.module.fhir.api.PatientService patientService = Context.getService(
 				org.openmrs.module.fhir.api.PatientService.class);
 		if ("true".equalsIgnoreCase(active.getValue())) {
@@ -81,8 +87,18 @@ public class FHIRPatientResource extends Resource {
 		}
 	}
 
-	public Bundle getPatientOperationsById(IdType id) {
-		return Context.getService(PatientService.class).getPatientOperationsById(id.getIdPart());
+	public IBundleProvider getPatientOperationsById(IdType id, UnsignedIntType count, DateTimeType since,
+			StringType type) {
+		List<String> types = new ArrayList<String>();
+		if (type != null && StringUtils.isNotBlank(type.getValue())) {
+			for (String resourceType : type.getValue().split(",")) {
+				if (StringUtils.isNotBlank(resourceType)) {
+					types.add(resourceType.trim());
+				}
+			}
+		}
+		return Context.getService(PatientService.class).getPatientOperationsById(id.getIdPart(),
+				since != null ? since.getValue() : null, types, count != null ? count.getValue() : null);
 	}
 
 	public void deletePatient(IdType id) {
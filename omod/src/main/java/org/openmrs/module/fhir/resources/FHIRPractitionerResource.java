@@ -15,6 +15,7 @@ package org.openmrs.module.fhir.resources;
 
 import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
 import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
 import org.hl7.fhir.dstu3.model.IdType;
 import org.hl7.fhir.dstu3.model.Practitioner;
@@ -48,16 +49,16 @@ public class FHIRPractitionerResource extends Resource {
 		return patientService.searchPractitionersByIdentifier(identifier.getValue());
 	}
 
-	public List<Practitioner> searchByGivenName(StringParam givenName) {
+	public IBundleProvider searchByGivenName(StringParam givenName) {
 		org.openmrs.module.fhir.api.PractitionerService patientService = Context
 				.getService(org.openmrs.module.fhir.api.PractitionerService.class);
-		return patientService.searchPractitionersByGivenName(givenName.getValue()); /// ??
+		return patientService.searchPractitionersByGivenName(givenName);
 	}
 
-	public List<Practitioner> searchByFamilyName(StringParam familyName) {
+	public IBundleProvider searchByFamilyName(StringParam familyName) {
 		org.openmrs.module.fhir.api.PractitionerService patientService = Context
 				.getService(org.openmrs.module.fhir.api.PractitionerService.class);
-		return patientService.searchPractitionersByFamilyName(familyName.getValue()); //// ??
+		return patientService.searchPractitionersByFamilyName(familyName);
 	}
 
 	public List<Practitioner> searchByName(StringParam name) {
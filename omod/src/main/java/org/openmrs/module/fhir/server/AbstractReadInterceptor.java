@@ -0,0 +1,100 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.server;
+
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.method.RequestDetails;
+import ca.uhn.fhir.rest.server.RestfulServer;
+import ca.uhn.fhir.rest.server.interceptor.IServerInterceptor;
+import ca.uhn.fhir.rest.server.interceptor.InterceptorAdapter;
+import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.openmrs.module.fhir.api.cache.CachedResourceType;
+import org.openmrs.module.fhir.api.util.BaseOpenMRSDataUtil;
+import org.openmrs.module.fhir.api.util.ContextUtil;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Date;
+
+/**
+ * Base class of the interceptors which answer the reads of the {@link CachedResourceType cached resource types}
+ * without going through the provider, from the last modified date of the requested object alone
+ */
+public abstract class AbstractReadInterceptor extends InterceptorAdapter {
+
+	private static final String LAST_MODIFIED_ATTRIBUTE = AbstractReadInterceptor.class.getName() + ".lastModified";
+
+	private final RestfulServer server;
+
+	/**
+	 * @param server the server the interceptor is registered with
+	 */
+	protected AbstractReadInterceptor(RestfulServer server) {
+		this.server = server;
+	}
+
+	/**
+	 * @return the cached type of the requested resource if the request is a read of a cached type, null otherwise
+	 */
+	protected CachedResourceType getReadType(RequestDetails requestDetails) {
+		if (requestDetails.getRestOperationType() != RestOperationTypeEnum.READ) {
+			return null;
+		}
+		IIdType id = requestDetails.getId();
+		if (id == null || !id.hasIdPart() || id.hasVersionIdPart()) {
+			return null;
+		}
+		return CachedResourceType.forResourceName(requestDetails.getResourceName());
+	}
+
+	/**
+	 * Gets the last modified date of the requested object. It is looked up once per request, whichever interceptor
+	 * asks first.
+	 *
+	 * @return the last modified date, or null if the object does not exist
+	 */
+	protected Date getLastModified(RequestDetails requestDetails, HttpServletRequest request, CachedResourceType type) {
+		Date lastModified = (Date) request.getAttribute(LAST_MODIFIED_ATTRIBUTE);
+		if (lastModified == null) {
+			lastModified = ContextUtil.getFHIRDao().getLastModified(type.getOpenmrsType(),
+					requestDetails.getId().getIdPart());
+			request.setAttribute(LAST_MODIFIED_ATTRIBUTE, lastModified);
+		}
+		return lastModified;
+	}
+
+	/**
+	 * Sets the ETag and Last-Modified headers of a response
+	 */
+	protected void setValidators(HttpServletResponse response, Date lastModified) {
+		response.setHeader("ETag", "W/\"" + BaseOpenMRSDataUtil.getVersionId(lastModified) + "\"");
+		response.setDateHeader("Last-Modified", lastModified.getTime());
+	}
+
+	/**
+	 * Runs the completion callbacks of the other interceptors for a request answered by this one. The server skips
+	 * them when an interceptor handles the request, so the access log would miss it otherwise.
+	 */
+	protected void completeRequest(RequestDetails requestDetails) {
+		if (!(requestDetails instanceof ServletRequestDetails)) {
+			return;
+		}
+		for (IServerInterceptor next : server.getInterceptors()) {
+			if (next != this) {
+				next.processingCompletedNormally((ServletRequestDetails) requestDetails);
+			}
+		}
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.server;
+
+import ca.uhn.fhir.rest.method.RequestDetails;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.rest.server.interceptor.InterceptorAdapter;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.openmrs.module.fhir.api.manager.FHIRContextFactory;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Answers the kick-off requests of the bulk operations with 202 Accepted, as the bulk data specification requires. The
+ * server writes the resource returned by an operation with 200 whatever status the operation set, so the operations
+ * mark the request with {@link #markAccepted(HttpServletRequest)} and the returned outcome is written here instead.
+ * It must be registered before the interceptors which write the response themselves.
+ */
+public class AcceptedResponseInterceptor extends InterceptorAdapter {
+
+	private static final String ACCEPTED_ATTRIBUTE = AcceptedResponseInterceptor.class.getName() + ".accepted";
+
+	/**
+	 * Marks a request as accepted for asynchronous processing, its response is then sent with 202 Accepted
+	 *
+	 * @param request the request of the operation
+	 */
+	public static void markAccepted(HttpServletRequest request) {
+		request.setAttribute(ACCEPTED_ATTRIBUTE, Boolean.TRUE);
+	}
+
+	@Override
+	public boolean outgoingResponse(RequestDetails theRequestDetails, IBaseResource theResponseObject,
+			HttpServletRequest theServletRequest, HttpServletResponse theServletResponse) {
+		if (theServletRequest.getAttribute(ACCEPTED_ATTRIBUTE) == null || theResponseObject == null) {
+			return true;
+		}
+
+		try {
+			byte[] content = FHIRContextFactory.getPrettyJsonParser().encodeResourceToString(theResponseObject)
+					.getBytes("UTF-8");
+			theServletResponse.setStatus(HttpServletResponse.SC_ACCEPTED);
+			theServletResponse.setContentType("application/fhir+json");
+			theServletResponse.setCharacterEncoding("UTF-8");
+			theServletResponse.setContentLength(content.length);
+			OutputStream out = theServletResponse.getOutputStream();
+			out.write(content);
+			out.flush();
+		}
+		catch (IOException e) {
+			throw new InternalErrorException("Failed to write the accepted response", e);
+		}
+		return false;
+	}
+}
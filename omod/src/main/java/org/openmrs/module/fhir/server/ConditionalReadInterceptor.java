@@ -0,0 +1,125 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.server;
+
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.method.RequestDetails;
+import ca.uhn.fhir.rest.server.RestfulServer;
+import org.apache.commons.lang.StringUtils;
+import org.hl7.fhir.dstu3.model.Resource;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.openmrs.module.fhir.api.cache.CachedResourceType;
+import org.openmrs.module.fhir.api.util.BaseOpenMRSDataUtil;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Date;
+
+/**
+ * Adds the ETag and Last-Modified headers to the resources read through the server, from their
+ * {@code meta.versionId} and {@code meta.lastUpdated}, and answers the conditional reads of the
+ * {@link CachedResourceType cached resource types} with 304 Not Modified when the object has not changed since. The
+ * If-None-Match and If-Modified-Since headers are checked against the last modified date alone, so an unchanged object
+ * is neither loaded nor converted. If-None-Match takes precedence when both are sent.
+ */
+public class ConditionalReadInterceptor extends AbstractReadInterceptor {
+
+	/**
+	 * @param server the server the interceptor is registered with
+	 */
+	public ConditionalReadInterceptor(RestfulServer server) {
+		super(server);
+	}
+
+	@Override
+	public boolean incomingRequestPostProcessed(RequestDetails theRequestDetails, HttpServletRequest theRequest,
+			HttpServletResponse theResponse) {
+		String ifNoneMatch = theRequest.getHeader("If-None-Match");
+		long ifModifiedSince = getIfModifiedSince(theRequest);
+		if (StringUtils.isBlank(ifNoneMatch) && ifModifiedSince < 0) {
+			return true;
+		}
+		CachedResourceType type = getReadType(theRequestDetails);
+		if (type == null || !type.isReadable()) {
+			return true;
+		}
+		Date lastModified = getLastModified(theRequestDetails, theRequest, type);
+		if (lastModified == null) {
+			return true;
+		}
+
+		boolean notModified;
+		if (StringUtils.isNotBlank(ifNoneMatch)) {
+			notModified = matches(ifNoneMatch, BaseOpenMRSDataUtil.getVersionId(lastModified));
+		} else {
+			// HTTP dates have a precision of one second
+			notModified = lastModified.getTime() / 1000 <= ifModifiedSince / 1000;
+		}
+		if (!notModified) {
+			return true;
+		}
+
+		theResponse.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+		setValidators(theResponse, lastModified);
+		completeRequest(theRequestDetails);
+		return false;
+	}
+
+	@Override
+	public boolean outgoingResponse(RequestDetails theRequestDetails, IBaseResource theResponseObject,
+			HttpServletRequest theServletRequest, HttpServletResponse theServletResponse) {
+		RestOperationTypeEnum operation = theRequestDetails.getRestOperationType();
+		if ((operation == RestOperationTypeEnum.READ || operation == RestOperationTypeEnum.VREAD)
+				&& theResponseObject instanceof Resource) {
+			Date lastUpdated = ((Resource) theResponseObject).getMeta().getLastUpdated();
+			if (lastUpdated != null) {
+				setValidators(theServletResponse, lastUpdated);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the If-Modified-Since date in milliseconds, -1 if it is missing or cannot be parsed
+	 */
+	private long getIfModifiedSince(HttpServletRequest request) {
+		try {
+			return request.getDateHeader("If-Modified-Since");
+		}
+		catch (IllegalArgumentException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * @param ifNoneMatch the If-None-Match header, a list of weak or strong entity tags or *
+	 * @param versionId   the current version of the resource
+	 * @return true if one of the entity tags is the current version
+	 */
+	private boolean matches(String ifNoneMatch, String versionId) {
+		for (String tag : ifNoneMatch.split(",")) {
+			tag = tag.trim();
+			if ("*".equals(tag)) {
+				return true;
+			}
+			if (tag.startsWith("W/")) {
+				tag = tag.substring(2);
+			}
+			if (tag.equals("\"" + versionId + "\"")) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.server;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Counts the bytes written to the body of a response. Characters written through the writer are counted as their
+ * UTF-8 length, the character encoding of the server responses. Subclasses can override {@link #bodyStarted()} to set
+ * headers at the last moment before the body is written.
+ */
+public class CountingResponseWrapper extends HttpServletResponseWrapper {
+
+	private long byteCount;
+
+	private ServletOutputStream outputStream;
+
+	private PrintWriter writer;
+
+	private boolean bodyStarted;
+
+	public CountingResponseWrapper(HttpServletResponse response) {
+		super(response);
+	}
+
+	/**
+	 * Called once, before the output stream or the writer of the body is first obtained or an error is sent
+	 */
+	protected void bodyStarted() {
+	}
+
+	/**
+	 * @return the number of bytes written to the body so far
+	 */
+	public long getByteCount() {
+		return byteCount;
+	}
+
+	@Override
+	public ServletOutputStream getOutputStream() throws IOException {
+		if (outputStream == null) {
+			startBody();
+			final ServletOutputStream delegate = super.getOutputStream();
+			outputStream = new ServletOutputStream() {
+
+				@Override
+				public void write(int b) throws IOException {
+					delegate.write(b);
+					byteCount++;
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException {
+					delegate.write(b, off, len);
+					byteCount += len;
+				}
+
+				@Override
+				public void flush() throws IOException {
+					delegate.flush();
+				}
+
+				@Override
+				public void close() throws IOException {
+					delegate.close();
+				}
+			};
+		}
+		return outputStream;
+	}
+
+	@Override
+	public PrintWriter getWriter() throws IOException {
+		if (writer == null) {
+			startBody();
+			writer = new PrintWriter(new FilterWriter(super.getWriter()) {
+
+				@Override
+				public void write(int c) throws IOException {
+					out.write(c);
+					byteCount += getUtf8Length((char) c);
+				}
+
+				@Override
+				public void write(char[] cbuf, int off, int len) throws IOException {
+					out.write(cbuf, off, len);
+					for (int i = off; i < off + len; i++) {
+						byteCount += getUtf8Length(cbuf[i]);
+					}
+				}
+
+				@Override
+				public void write(String str, int off, int len) throws IOException {
+					out.write(str, off, len);
+					for (int i = off; i < off + len; i++) {
+						byteCount += getUtf8Length(str.charAt(i));
+					}
+				}
+			});
+		}
+		return writer;
+	}
+
+	@Override
+	public void sendError(int sc, String msg) throws IOException {
+		startBody();
+		super.sendError(sc, msg);
+	}
+
+	@Override
+	public void sendError(int sc) throws IOException {
+		startBody();
+		super.sendError(sc);
+	}
+
+	private void startBody() {
+		if (!bodyStarted) {
+			bodyStarted = true;
+			bodyStarted();
+		}
+	}
+
+	/**
+	 * @return the number of UTF-8 bytes of a character, each half of a surrogate pair counting for 2
+	 */
+	private static int getUtf8Length(char c) {
+		if (c < 0x80) {
+			return 1;
+		}
+		if (c < 0x800 || Character.isSurrogate(c)) {
+			return 2;
+		}
+		return 3;
+	}
+}
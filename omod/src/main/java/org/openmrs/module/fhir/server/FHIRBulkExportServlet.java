@@ -0,0 +1,189 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hl7.fhir.dstu3.model.InstantType;
+import org.hl7.fhir.dstu3.model.OperationOutcome;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.export.BulkExportJob;
+import org.openmrs.module.fhir.api.export.BulkExportManager;
+import org.openmrs.module.fhir.api.manager.FHIRContextFactory;
+import org.openmrs.module.fhir.api.util.FHIRConstants;
+import org.openmrs.module.fhir.resources.FHIRBulkExportResource;
+import org.openmrs.module.fhir.util.FHIROmodConstants;
+import org.openmrs.util.OpenmrsUtil;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serves the status and the files of the bulk exports kicked off through the $export operations.
+ * <ul>
+ * <li>GET /{jobId} returns 202 while the export runs, then the manifest of the files or the failure</li>
+ * <li>GET /{jobId}/{file} downloads one of the NDJSON files</li>
+ * <li>DELETE /{jobId} cancels the export and deletes its files</li>
+ * </ul>
+ */
+public class FHIRBulkExportServlet extends HttpServlet {
+
+	protected Log log = LogFactory.getLog(getClass());
+
+	private static final String FHIR_JSON_CONTENT_TYPE = "application/fhir+json";
+
+	private static final String SERVLET_NAME = "/fhirExportServelet";
+
+	@Override
+	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		String[] path = getPath(request);
+		BulkExportJob job = getJob(path, response);
+		if (job == null) {
+			return;
+		}
+
+		if (path.length > 1) {
+			sendFile(job, path[1], response);
+		} else {
+			sendStatus(job, request, response);
+		}
+	}
+
+	@Override
+	protected void doDelete(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		BulkExportJob job = getJob(getPath(request), response);
+		if (job != null && BulkExportManager.getInstance().cancel(job.getId())) {
+			response.setStatus(HttpServletResponse.SC_ACCEPTED);
+		}
+	}
+
+	private BulkExportJob getJob(String[] path, HttpServletResponse response) throws IOException {
+		if (!Context.isAuthenticated()) {
+			response.setHeader("WWW-Authenticate", "Basic realm=\"OpenMRS\"");
+			response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+			return null;
+		}
+		if (!Context.hasPrivilege(FHIRConstants.BULK_EXPORT_PRIVILEGE)) {
+			response.sendError(HttpServletResponse.SC_FORBIDDEN);
+			return null;
+		}
+
+		BulkExportJob job = path.length == 0 ? null : BulkExportManager.getInstance().getJob(path[0]);
+		if (job == null || job.isCancelled() || !isOwner(job)) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return null;
+		}
+		return job;
+	}
+
+	private void sendStatus(BulkExportJob job, HttpServletRequest request, HttpServletResponse response)
+			throws IOException {
+		switch (job.getStatus()) {
+			case COMPLETED:
+				response.setStatus(HttpServletResponse.SC_OK);
+				response.setContentType("application/json");
+				response.setCharacterEncoding("UTF-8");
+				new ObjectMapper().writeValue(response.getWriter(), buildManifest(job, request));
+				break;
+			case FAILED:
+				OperationOutcome outcome = new OperationOutcome();
+				outcome.addIssue()
+						.setSeverity(OperationOutcome.IssueSeverity.FATAL)
+						.setCode(OperationOutcome.IssueType.EXCEPTION)
+						.setDiagnostics(job.getFailure());
+				response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+				response.setContentType(FHIR_JSON_CONTENT_TYPE);
+				response.setCharacterEncoding("UTF-8");
+				FHIRContextFactory.getJsonParser().encodeResourceToWriter(outcome, response.getWriter());
+				break;
+			default:
+				String progress = job.getProgress();
+				response.setStatus(HttpServletResponse.SC_ACCEPTED);
+				response.setHeader("X-Progress", progress == null ? job.getStatus().name() : progress);
+				response.setHeader("Retry-After", "10");
+		}
+	}
+
+	private void sendFile(BulkExportJob job, String fileName, HttpServletResponse response) throws IOException {
+		File file = job.getFile(fileName);
+		if (file == null || !file.isFile()) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+
+		response.setContentType(FHIRConstants.NDJSON_CONTENT_TYPE);
+		response.setCharacterEncoding("UTF-8");
+		response.setHeader("Content-Length", String.valueOf(file.length()));
+		InputStream in = new FileInputStream(file);
+		try {
+			OpenmrsUtil.copyFile(in, response.getOutputStream());
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	private Map<String, Object> buildManifest(BulkExportJob job, HttpServletRequest request) {
+		String jobUrl = FHIRBulkExportResource.getServerBase(request) + FHIROmodConstants.OPENMRS_FHIR_EXPORT_PATH
+				+ "/" + job.getId() + "/";
+		Map<String, Object> manifest = new LinkedHashMap<String, Object>();
+		manifest.put("transactionTime", new InstantType(job.getTransactionTime()).getValueAsString());
+		manifest.put("request", job.getRequest());
+		manifest.put("requiresAccessToken", true);
+		manifest.put("output", buildOutputs(job.getOutputs(), jobUrl));
+		manifest.put("error", buildOutputs(job.getErrors(), jobUrl));
+		return manifest;
+	}
+
+	private List<Map<String, Object>> buildOutputs(List<BulkExportJob.Output> outputs, String jobUrl) {
+		List<Map<String, Object>> result = new ArrayList<Map<String, Object>>();
+		for (BulkExportJob.Output output : outputs) {
+			Map<String, Object> entry = new LinkedHashMap<String, Object>();
+			entry.put("type", output.getType());
+			entry.put("url", jobUrl + output.getFile().getName());
+			entry.put("count", output.getCount());
+			result.add(entry);
+		}
+		return result;
+	}
+
+	private boolean isOwner(BulkExportJob job) {
+		return Context.getAuthenticatedUser().isSuperUser()
+				|| Context.getAuthenticatedUser().getUserId().equals(job.getRequestedBy());
+	}
+
+	/**
+	 * The module servlet passes the request on unchanged, so the path info still starts with the module id and the
+	 * servlet name
+	 */
+	private static String[] getPath(HttpServletRequest request) {
+		String path = request.getPathInfo() == null ? "" : request.getPathInfo();
+		int servletName = path.indexOf(SERVLET_NAME);
+		if (servletName >= 0) {
+			path = path.substring(servletName + SERVLET_NAME.length());
+		}
+		path = path.replaceAll("^/+", "");
+		return path.isEmpty() ? new String[0] : path.split("/");
+	}
+}
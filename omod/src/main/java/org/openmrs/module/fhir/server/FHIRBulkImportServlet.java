@@ -0,0 +1,243 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.server;
+
+import ca.uhn.fhir.rest.server.exceptions.ForbiddenOperationException;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.lang.math.NumberUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hl7.fhir.dstu3.model.InstantType;
+import org.hl7.fhir.dstu3.model.IntegerType;
+import org.hl7.fhir.dstu3.model.OperationOutcome;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.bulkimport.BulkImportJob;
+import org.openmrs.module.fhir.api.bulkimport.BulkImportManager;
+import org.openmrs.module.fhir.api.manager.FHIRContextFactory;
+import org.openmrs.module.fhir.api.util.FHIRConstants;
+import org.openmrs.module.fhir.resources.FHIRBulkExportResource;
+import org.openmrs.module.fhir.resources.FHIRBulkImportResource;
+import org.openmrs.module.fhir.util.FHIROmodConstants;
+import org.openmrs.util.OpenmrsUtil;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Accepts NDJSON uploads for bulk import and serves the status of the imports.
+ * <ul>
+ * <li>POST / with an NDJSON body queues its import, the batchSize query parameter overrides fhir.import.batchSize</li>
+ * <li>GET /{jobId} returns 202 while the import runs, then the imported counts or the failure</li>
+ * <li>GET /{jobId}/OperationOutcome.ndjson downloads the rejected lines</li>
+ * <li>DELETE /{jobId} stops the import after the current batch, the committed batches are kept</li>
+ * </ul>
+ */
+public class FHIRBulkImportServlet extends HttpServlet {
+
+	protected Log log = LogFactory.getLog(getClass());
+
+	private static final String FHIR_JSON_CONTENT_TYPE = "application/fhir+json";
+
+	private static final String SERVLET_NAME = "/fhirImportServelet";
+
+	@Override
+	protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		if (!checkAccess(response)) {
+			return;
+		}
+		if (getPath(request).length > 0) {
+			response.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+			return;
+		}
+
+		int batchSize;
+		try {
+			String requested = request.getParameter("batchSize");
+			batchSize = FHIRBulkImportResource.getBatchSize(requested == null ? null :
+					new IntegerType(NumberUtils.toInt(requested, 0)));
+		}
+		catch (InvalidRequestException e) {
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+			return;
+		}
+
+		BulkImportJob job;
+		try {
+			job = BulkImportManager.getInstance().submit(request.getInputStream(), batchSize);
+		}
+		catch (ForbiddenOperationException e) {
+			response.sendError(HttpServletResponse.SC_FORBIDDEN, e.getMessage());
+			return;
+		}
+		OperationOutcome outcome = FHIRBulkImportResource.accepted(job, request, response);
+		response.setStatus(HttpServletResponse.SC_ACCEPTED);
+		writeResource(outcome, response);
+	}
+
+	@Override
+	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		String[] path = getPath(request);
+		BulkImportJob job = getJob(path, response);
+		if (job == null) {
+			return;
+		}
+
+		if (path.length > 1) {
+			sendErrorFile(job, path[1], response);
+		} else {
+			sendStatus(job, request, response);
+		}
+	}
+
+	@Override
+	protected void doDelete(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		BulkImportJob job = getJob(getPath(request), response);
+		if (job != null && BulkImportManager.getInstance().cancel(job.getId())) {
+			response.setStatus(HttpServletResponse.SC_ACCEPTED);
+		}
+	}
+
+	private boolean checkAccess(HttpServletResponse response) throws IOException {
+		if (!Context.isAuthenticated()) {
+			response.setHeader("WWW-Authenticate", "Basic realm=\"OpenMRS\"");
+			response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+			return false;
+		}
+		if (!Context.hasPrivilege(FHIRConstants.BULK_IMPORT_PRIVILEGE)) {
+			response.sendError(HttpServletResponse.SC_FORBIDDEN);
+			return false;
+		}
+		return true;
+	}
+
+	private BulkImportJob getJob(String[] path, HttpServletResponse response) throws IOException {
+		if (!checkAccess(response)) {
+			return null;
+		}
+
+		BulkImportJob job = path.length == 0 ? null : BulkImportManager.getInstance().getJob(path[0]);
+		if (job == null || job.isCancelled() || !isOwner(job)) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return null;
+		}
+		return job;
+	}
+
+	private void sendStatus(BulkImportJob job, HttpServletRequest request, HttpServletResponse response)
+			throws IOException {
+		switch (job.getStatus()) {
+			case COMPLETED:
+				response.setStatus(HttpServletResponse.SC_OK);
+				response.setContentType("application/json");
+				response.setCharacterEncoding("UTF-8");
+				new ObjectMapper().writeValue(response.getWriter(), buildManifest(job, request));
+				break;
+			case FAILED:
+				OperationOutcome outcome = new OperationOutcome();
+				outcome.addIssue()
+						.setSeverity(OperationOutcome.IssueSeverity.FATAL)
+						.setCode(OperationOutcome.IssueType.EXCEPTION)
+						.setDiagnostics(job.getFailure() + " (" + job.getProgress() + ")");
+				response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+				writeResource(outcome, response);
+				break;
+			default:
+				response.setStatus(HttpServletResponse.SC_ACCEPTED);
+				response.setHeader("X-Progress", job.getStatus() == BulkImportJob.Status.ACCEPTED ?
+						job.getStatus().name() : job.getProgress());
+				response.setHeader("Retry-After", "10");
+		}
+	}
+
+	private void sendErrorFile(BulkImportJob job, String fileName, HttpServletResponse response) throws IOException {
+		File file = job.getErrorFile();
+		if (file == null || !file.getName().equals(fileName) || !file.isFile()) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+
+		response.setContentType(FHIRConstants.NDJSON_CONTENT_TYPE);
+		response.setCharacterEncoding("UTF-8");
+		response.setHeader("Content-Length", String.valueOf(file.length()));
+		InputStream in = new FileInputStream(file);
+		try {
+			OpenmrsUtil.copyFile(in, response.getOutputStream());
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	private Map<String, Object> buildManifest(BulkImportJob job, HttpServletRequest request) {
+		Map<String, Object> manifest = new LinkedHashMap<String, Object>();
+		manifest.put("transactionTime", new InstantType(job.getTransactionTime()).getValueAsString());
+		manifest.put("linesRead", job.getLinesRead());
+
+		List<Map<String, Object>> outputs = new ArrayList<Map<String, Object>>();
+		for (Map.Entry<String, Long> count : job.getCounts().entrySet()) {
+			Map<String, Object> entry = new LinkedHashMap<String, Object>();
+			entry.put("type", count.getKey());
+			entry.put("count", count.getValue());
+			outputs.add(entry);
+		}
+		manifest.put("output", outputs);
+
+		List<Map<String, Object>> errors = new ArrayList<Map<String, Object>>();
+		if (job.getErrorFile() != null) {
+			Map<String, Object> entry = new LinkedHashMap<String, Object>();
+			entry.put("type", "OperationOutcome");
+			entry.put("url", FHIRBulkExportResource.getServerBase(request) + FHIROmodConstants.OPENMRS_FHIR_IMPORT_PATH
+					+ "/" + job.getId() + "/" + job.getErrorFile().getName());
+			entry.put("count", job.getErrorCount());
+			errors.add(entry);
+		}
+		manifest.put("error", errors);
+		return manifest;
+	}
+
+	private void writeResource(OperationOutcome outcome, HttpServletResponse response) throws IOException {
+		response.setContentType(FHIR_JSON_CONTENT_TYPE);
+		response.setCharacterEncoding("UTF-8");
+		FHIRContextFactory.getJsonParser().encodeResourceToWriter(outcome, response.getWriter());
+	}
+
+	private boolean isOwner(BulkImportJob job) {
+		return Context.getAuthenticatedUser().isSuperUser()
+				|| Context.getAuthenticatedUser().getUserId().equals(job.getRequestedBy());
+	}
+
+	/**
+	 * The module servlet passes the request on unchanged, so the path info still starts with the module id and the
+	 * servlet name
+	 */
+	private static String[] getPath(HttpServletRequest request) {
+		String path = request.getPathInfo() == null ? "" : request.getPathInfo();
+		int servletName = path.indexOf(SERVLET_NAME);
+		if (servletName >= 0) {
+			path = path.substring(servletName + SERVLET_NAME.length());
+		}
+		path = path.replaceAll("^/+", "");
+		return path.isEmpty() ? new String[0] : path.split("/");
+	}
+}
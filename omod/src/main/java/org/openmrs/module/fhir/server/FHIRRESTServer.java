@@ -13,22 +13,32 @@
  */
 package org.openmrs.module.fhir.server;
 
-import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.narrative.CustomThymeleafNarrativeGenerator;
 import ca.uhn.fhir.rest.server.EncodingEnum;
+import ca.uhn.fhir.rest.server.FifoMemoryPagingProvider;
 import ca.uhn.fhir.rest.server.IResourceProvider;
 import ca.uhn.fhir.rest.server.RestfulServer;
 import ca.uhn.fhir.rest.server.interceptor.LoggingInterceptor;
 import ca.uhn.fhir.rest.server.interceptor.ResponseHighlighterInterceptor;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.hl7.fhir.dstu3.hapi.rest.server.ServerCapabilityStatementProvider;
+import org.openmrs.api.context.Context;
 import org.openmrs.module.fhir.addressstrategy.OpenMRSFHIRRequestAddressStrategy;
+import org.openmrs.module.fhir.api.manager.FHIRContextFactory;
+import org.openmrs.module.fhir.api.metrics.RequestTiming;
+import org.openmrs.module.fhir.api.util.FHIRConstants;
 import org.openmrs.module.fhir.api.util.FHIRUtils;
 import org.openmrs.module.fhir.providers.RestfulAllergyIntoleranceResourceProvider;
+import org.openmrs.module.fhir.providers.RestfulBulkExportProvider;
+import org.openmrs.module.fhir.providers.RestfulBulkImportProvider;
+import org.openmrs.module.fhir.providers.RestfulBundleResourceProvider;
 import org.openmrs.module.fhir.providers.RestfulConditionResourceProvider;
 import org.openmrs.module.fhir.providers.RestfulDiagnosticReportResourceProvider;
 import org.openmrs.module.fhir.providers.RestfulEncounterResourceProvider;
 import org.openmrs.module.fhir.providers.RestfulFamilyMemberHistoryResourceProvider;
 import org.openmrs.module.fhir.providers.RestfulGroupResourceProvider;
+import org.openmrs.module.fhir.providers.RestfulHistoryProvider;
 import org.openmrs.module.fhir.providers.RestfulLocationResourceProvider;
 import org.openmrs.module.fhir.providers.RestfulMedicationRequestResourceProvider;
 import org.openmrs.module.fhir.providers.RestfulMedicationResourceProvider;
@@ -40,6 +50,10 @@ import org.openmrs.module.fhir.providers.RestfulProcedureRequestResourceProvider
 import org.openmrs.module.fhir.providers.RestfulRelatedPersonProvider;
 import org.openmrs.module.fhir.util.FHIROmodConstants;
 
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -49,6 +63,14 @@ public class FHIRRESTServer extends RestfulServer {
 
 	private static final String MODULE_SERVELET_PREFIX = "/fhir/fhirServelet";
 
+	private static final String ACCESS_LOG_NAME = "test.accesslog";
+
+	private static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+	private static final Log accessLog = LogFactory.getLog(ACCESS_LOG_NAME);
+
+	private final MetricsInterceptor metricsInterceptor = new MetricsInterceptor();
+
 	/**
 	 * The initialize method is automatically called when the servlet is starting up, so it can
 	 * be used to configure the servlet to define resource providers, or set up
@@ -73,34 +95,116 @@ public class FHIRRESTServer extends RestfulServer {
 		resourceProviders.add(new RestfulPersonResourceProvider());
 		resourceProviders.add(new RestfulRelatedPersonProvider());
 		resourceProviders.add(new RestfulGroupResourceProvider());
-		this.setFhirContext(FhirContext.forDstu3());
+		this.setFhirContext(FHIRContextFactory.getFHIRContext());
 		setResourceProviders(resourceProviders);
+		setPlainProviders(new RestfulBulkExportProvider(), new RestfulBulkImportProvider(),
+				new RestfulBundleResourceProvider(), new RestfulHistoryProvider());
 		setServerName(FHIROmodConstants.OPENMRS_FHIR_SERVER_NAME);
 		setServerVersion(FHIROmodConstants.OPENMRS_FHIR_SERVER_VERSION);
 		setImplementationDescription(FHIROmodConstants.OPENMRS_FHIR_SERVER_DES);
 		setDefaultPrettyPrint(true);
 		setDefaultResponseEncoding(EncodingEnum.JSON);
+		FifoMemoryPagingProvider pagingProvider = new FifoMemoryPagingProvider(FHIRConstants.MAXIMUM_STORED_SEARCHES);
+		pagingProvider.setDefaultPageSize(FHIRUtils.getDefaultPageSize());
+		pagingProvider.setMaximumPageSize(FHIRUtils.getMaximumPageSize());
+		setPagingProvider(pagingProvider);
 		if (FHIRUtils.isCustomNarrativesEnabled()) {
 			String propFile = FHIRUtils.getCustomNarrativesPropertyPath();
 			CustomThymeleafNarrativeGenerator generator = new CustomThymeleafNarrativeGenerator(propFile);
 			getFhirContext().setNarrativeGenerator(generator);
 		}
+		registerInterceptor(metricsInterceptor);
+		registerInterceptor(new AcceptedResponseInterceptor());
 		ResponseHighlighterInterceptor responseHighlighter = new ResponseHighlighterInterceptor();
 		registerInterceptor(responseHighlighter);
 		LoggingInterceptor loggingInterceptor = new LoggingInterceptor();
 		registerInterceptor(loggingInterceptor);
-		loggingInterceptor.setLoggerName("test.accesslog");
+		loggingInterceptor.setLoggerName(ACCESS_LOG_NAME);
 		loggingInterceptor
 				.setMessageFormat("Source[${remoteAddr}] Operation[${operationType} ${idOrResourceName}] " +
 						"UA[${requestHeader.user-agent}] Params[${requestParameters}]");
+		registerInterceptor(new ConditionalReadInterceptor(this));
+		registerInterceptor(new ResourceCacheInterceptor(this));
 		ServerCapabilityStatementProvider sc = new ServerCapabilityStatementProvider(this);
 		this.setServerConformanceProvider(sc);
 		ConformanceProvider provider = new ConformanceProvider();
 		provider.setRestfulServer(this);
 	}
 
+	/**
+	 * Times each request around its whole processing, including the requests answered by an interceptor or failing
+	 * before they reach a provider, and counts the bytes of its response for the {@link MetricsInterceptor}. When
+	 * enabled, the phases of the request are timed too: the ones completed before the body is written are reported in
+	 * the Server-Timing header to the users with the metrics privilege, and all of them, encoding included, in the
+	 * access log.
+	 */
+	@Override
+	protected void service(HttpServletRequest request, HttpServletResponse response)
+			throws ServletException, IOException {
+		long start = System.nanoTime();
+		RequestTiming timing = FHIRUtils.isServerTimingEnabled() ? RequestTiming.start() : null;
+		TimedResponse timedResponse = new TimedResponse(response, timing);
+		try {
+			super.service(request, timedResponse);
+		}
+		finally {
+			metricsInterceptor.requestCompleted(request, timedResponse, System.nanoTime() - start,
+					timedResponse.getByteCount());
+			if (timing != null) {
+				timedResponse.completed();
+				accessLog.info("Timing[" + timing.toLogMessage() + "] Request[" + request.getMethod() + " "
+						+ request.getRequestURI() + "]");
+				RequestTiming.finish();
+			}
+		}
+	}
+
 	protected String getRequestPath(String requestFullPath, String servletContextPath, String servletPath) {
 		return requestFullPath.substring(escapedLength(servletContextPath) + escapedLength(servletPath) + escapedLength(
 				MODULE_SERVELET_PREFIX));
 	}
+
+	/**
+	 * Sets the Server-Timing header just before the body is written, then times the encoding of the body
+	 */
+	private static class TimedResponse extends CountingResponseWrapper {
+
+		private final RequestTiming timing;
+
+		private RequestTiming.Phase encoding;
+
+		private TimedResponse(HttpServletResponse response, RequestTiming timing) {
+			super(response);
+			this.timing = timing;
+		}
+
+		@Override
+		protected void bodyStarted() {
+			if (timing != null) {
+				setServerTimingHeader();
+				encoding = RequestTiming.begin(RequestTiming.ENCODING);
+			}
+		}
+
+		/**
+		 * Ends the encoding of the body, or sets the header of a response without a body
+		 */
+		private void completed() {
+			if (encoding != null) {
+				encoding.end();
+			} else if (!isCommitted()) {
+				setServerTimingHeader();
+			}
+		}
+
+		/**
+		 * The timings tell how the server spends its time, so they are only reported to the users allowed to see
+		 * the metrics
+		 */
+		private void setServerTimingHeader() {
+			if (Context.isSessionOpen() && Context.hasPrivilege(FHIRConstants.METRICS_PRIVILEGE)) {
+				setHeader(SERVER_TIMING_HEADER, timing.toServerTimingHeader());
+			}
+		}
+	}
 }
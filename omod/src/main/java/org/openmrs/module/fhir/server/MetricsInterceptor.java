@@ -0,0 +1,99 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.server;
+
+import ca.uhn.fhir.rest.method.RequestDetails;
+import ca.uhn.fhir.rest.server.exceptions.ForbiddenOperationException;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.rest.server.interceptor.InterceptorAdapter;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.metrics.RequestMetrics;
+import org.openmrs.module.fhir.api.util.FHIRConstants;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Records the latency, status and response size of every request in the {@link RequestMetrics}, labelled with the
+ * resource type and operation the server resolved it to, and serves them in the Prometheus text format at
+ * {@code /ws/fhir/$metrics}. It must be registered before the interceptors which answer requests themselves, so that
+ * their requests are labelled too.
+ * <p/>
+ * The server times each request around its whole processing and calls
+ * {@link #requestCompleted(HttpServletRequest, HttpServletResponse, long, long)} once the response is written, as
+ * the interceptor callbacks are not all run when a request fails or is answered by an interceptor.
+ */
+public class MetricsInterceptor extends InterceptorAdapter {
+
+	private static final String METRICS_PATH = "/fhirServelet/$metrics";
+
+	private static final String RESOURCE_ATTRIBUTE = MetricsInterceptor.class.getName() + ".resource";
+
+	private static final String OPERATION_ATTRIBUTE = MetricsInterceptor.class.getName() + ".operation";
+
+	@Override
+	public boolean incomingRequestPreProcessed(HttpServletRequest theRequest, HttpServletResponse theResponse) {
+		if (!"GET".equals(theRequest.getMethod()) || !theRequest.getRequestURI().endsWith(METRICS_PATH)) {
+			return true;
+		}
+		if (!Context.hasPrivilege(FHIRConstants.METRICS_PRIVILEGE)) {
+			throw new ForbiddenOperationException("Viewing the FHIR metrics requires the "
+					+ FHIRConstants.METRICS_PRIVILEGE + " privilege");
+		}
+		theRequest.setAttribute(OPERATION_ATTRIBUTE, "$metrics");
+
+		try {
+			byte[] content = RequestMetrics.getInstance().toPrometheusText().getBytes("UTF-8");
+			theResponse.setStatus(HttpServletResponse.SC_OK);
+			theResponse.setContentType("text/plain; version=0.0.4");
+			theResponse.setCharacterEncoding("UTF-8");
+			theResponse.setContentLength(content.length);
+			OutputStream out = theResponse.getOutputStream();
+			out.write(content);
+			out.flush();
+		}
+		catch (IOException e) {
+			throw new InternalErrorException("Failed to write the metrics", e);
+		}
+		return false;
+	}
+
+	@Override
+	public boolean incomingRequestPostProcessed(RequestDetails theRequestDetails, HttpServletRequest theRequest,
+			HttpServletResponse theResponse) {
+		String operation = theRequestDetails.getOperation();
+		if (operation == null && theRequestDetails.getRestOperationType() != null) {
+			operation = theRequestDetails.getRestOperationType().getCode();
+		}
+		theRequest.setAttribute(RESOURCE_ATTRIBUTE, theRequestDetails.getResourceName());
+		theRequest.setAttribute(OPERATION_ATTRIBUTE, operation);
+		return true;
+	}
+
+	/**
+	 * Records a request once its response is written
+	 *
+	 * @param request       the request
+	 * @param response      the response
+	 * @param durationNanos the time taken to answer the request, in nanoseconds
+	 * @param responseBytes the number of bytes written in the response body
+	 */
+	public void requestCompleted(HttpServletRequest request, HttpServletResponse response, long durationNanos,
+			long responseBytes) {
+		RequestMetrics.getInstance().record((String) request.getAttribute(RESOURCE_ATTRIBUTE),
+				(String) request.getAttribute(OPERATION_ATTRIBUTE), durationNanos, responseBytes, response.getStatus());
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.server;
+
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.rest.method.RequestDetails;
+import ca.uhn.fhir.rest.server.EncodingEnum;
+import ca.uhn.fhir.rest.server.RestfulServer;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import org.apache.commons.lang.StringUtils;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.openmrs.module.fhir.api.cache.CachedResourceType;
+import org.openmrs.module.fhir.api.cache.ResourceCache;
+import org.openmrs.module.fhir.api.manager.FHIRContextFactory;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Serves the reads of the {@link CachedResourceType cached resource types} from the {@link ResourceCache}. Before the
+ * read is dispatched it looks up the last modified date of the requested object, and when a resource encoded from that
+ * version is cached it writes it out directly, skipping the load, the conversion and the encoding. Otherwise the read
+ * goes through the provider and the returned resource is encoded, cached and written here.
+ * <p/>
+ * Only plain reads are cached: requests asking for HTML, for an ambiguous encoding or with any parameter other than
+ * {@code _format}, like {@code _summary} or {@code _pretty}, are left to the server. Cached resources are pretty
+ * printed, as the server does by default. A user without the privilege to read the OpenMRS objects also goes through
+ * the provider, which denies the read as usual.
+ */
+public class ResourceCacheInterceptor extends AbstractReadInterceptor {
+
+	private static final String GENERATION_ATTRIBUTE = ResourceCacheInterceptor.class.getName() + ".generation";
+
+	private static final String FORMAT_PARAMETER = "_format";
+
+	/**
+	 * @param server the server the interceptor is registered with
+	 */
+	public ResourceCacheInterceptor(RestfulServer server) {
+		super(server);
+	}
+
+	@Override
+	public boolean incomingRequestPostProcessed(RequestDetails theRequestDetails, HttpServletRequest theRequest,
+			HttpServletResponse theResponse) {
+		CachedResourceType type = getReadType(theRequestDetails);
+		EncodingEnum encoding = type == null ? null : getEncoding(theRequestDetails);
+		if (encoding == null || !type.isReadable()) {
+			return true;
+		}
+
+		String uuid = theRequestDetails.getId().getIdPart();
+		ResourceCache cache = ResourceCache.getInstance();
+		long generation = cache.getGeneration();
+		Date lastModified = getLastModified(theRequestDetails, theRequest, type);
+		if (lastModified == null) {
+			// let the provider answer that the resource does not exist
+			return true;
+		}
+
+		byte[] content = cache.get(type, uuid, lastModified, encoding);
+		if (content == null) {
+			theRequest.setAttribute(GENERATION_ATTRIBUTE, generation);
+			return true;
+		}
+
+		write(theResponse, encoding, lastModified, content);
+		completeRequest(theRequestDetails);
+		return false;
+	}
+
+	@Override
+	public boolean outgoingResponse(RequestDetails theRequestDetails, IBaseResource theResponseObject,
+			HttpServletRequest theServletRequest, HttpServletResponse theServletResponse) {
+		Long generation = (Long) theServletRequest.getAttribute(GENERATION_ATTRIBUTE);
+		CachedResourceType type = getReadType(theRequestDetails);
+		EncodingEnum encoding = getEncoding(theRequestDetails);
+		if (generation == null || theResponseObject == null || type == null || encoding == null) {
+			return true;
+		}
+		Date lastModified = getLastModified(theRequestDetails, theServletRequest, type);
+
+		byte[] content = encodeAndWrite(theServletResponse, theResponseObject, encoding, lastModified);
+		ResourceCache.getInstance().put(type, theRequestDetails.getId().getIdPart(), lastModified, encoding, content,
+				generation);
+		return false;
+	}
+
+	/**
+	 * Negotiates the encoding of the response from the {@code _format} parameter or the Accept header
+	 *
+	 * @return the encoding to respond with, or null if the response must be left to the server
+	 */
+	private EncodingEnum getEncoding(RequestDetails requestDetails) {
+		Map<String, String[]> parameters = requestDetails.getParameters();
+		for (String name : parameters.keySet()) {
+			if (!FORMAT_PARAMETER.equals(name)) {
+				return null;
+			}
+		}
+
+		String[] format = parameters.get(FORMAT_PARAMETER);
+		String requested = format != null && format.length > 0 ? format[0] : requestDetails.getHeader("Accept");
+		if (StringUtils.isBlank(requested) || "*/*".equals(requested.trim())) {
+			return EncodingEnum.JSON;
+		}
+
+		requested = requested.toLowerCase();
+		boolean json = requested.contains("json");
+		boolean xml = requested.contains("xml");
+		if (requested.contains("html") || json == xml) {
+			return null;
+		}
+		return json ? EncodingEnum.JSON : EncodingEnum.XML;
+	}
+
+	/**
+	 * Encodes a resource straight to the response, keeping a copy of the bytes for the cache. The response times its
+	 * body as the encoding phase of the request, so the encoding is timed once.
+	 *
+	 * @return the encoded resource
+	 */
+	private byte[] encodeAndWrite(HttpServletResponse response, IBaseResource resource, EncodingEnum encoding,
+			Date lastModified) {
+		IParser parser = encoding == EncodingEnum.JSON ? FHIRContextFactory.getPrettyJsonParser()
+				: FHIRContextFactory.getPrettyXmlParser();
+		setHeaders(response, encoding, lastModified);
+		final ByteArrayOutputStream copy = new ByteArrayOutputStream();
+		try {
+			Writer writer = new OutputStreamWriter(new FilterOutputStream(response.getOutputStream()) {
+
+				@Override
+				public void write(int b) throws IOException {
+					out.write(b);
+					copy.write(b);
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException {
+					out.write(b, off, len);
+					copy.write(b, off, len);
+				}
+			}, "UTF-8");
+			parser.encodeResourceToWriter(resource, writer);
+			writer.flush();
+		}
+		catch (IOException e) {
+			throw new InternalErrorException("Failed to write the resource", e);
+		}
+		return copy.toByteArray();
+	}
+
+	private void write(HttpServletResponse response, EncodingEnum encoding, Date lastModified, byte[] content) {
+		setHeaders(response, encoding, lastModified);
+		response.setContentLength(content.length);
+		try {
+			OutputStream out = response.getOutputStream();
+			out.write(content);
+			out.flush();
+		}
+		catch (IOException e) {
+			throw new InternalErrorException("Failed to write the resource", e);
+		}
+	}
+
+	private void setHeaders(HttpServletResponse response, EncodingEnum encoding, Date lastModified) {
+		response.setStatus(HttpServletResponse.SC_OK);
+		response.setContentType(encoding == EncodingEnum.JSON ? "application/fhir+json" : "application/fhir+xml");
+		response.setCharacterEncoding("UTF-8");
+		setValidators(response, lastModified);
+	}
+}
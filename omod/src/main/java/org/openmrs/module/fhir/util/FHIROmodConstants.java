@@ -29,6 +29,10 @@ public class FHIROmodConstants {
 
 	public static final String OPENMRS_FHIR_SWAGGER_SDK_PATH = "/ms/fhir/fhirCodeGenServelet";
 
+	public static final String OPENMRS_FHIR_EXPORT_PATH = "/ms/fhir/fhirExportServelet";
+
+	public static final String OPENMRS_FHIR_IMPORT_PATH = "/ms/fhir/fhirImportServelet";
+
 	public static final String CONTENT_TYPE = "Content-Type";
 
 	public static final String APPLICATION_ZIP_CHARSET_UTF_8 = "application/zip;charset=UTF-8";
@@ -16,11 +16,20 @@ package org.openmrs.module.fhir.web.controller;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir.api.metrics.Histogram;
+import org.openmrs.module.fhir.api.metrics.OperationMetrics;
+import org.openmrs.module.fhir.api.metrics.RequestMetrics;
+import org.openmrs.module.fhir.api.util.FHIRConstants;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.ModelMap;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * The main controller.
  */
@@ -32,5 +41,31 @@ public class FHIRManageController {
 	@RequestMapping(value = "/module/fhir/manage", method = RequestMethod.GET)
 	public void manage(ModelMap model) {
 		model.addAttribute("user", Context.getAuthenticatedUser());
+		if (Context.hasPrivilege(FHIRConstants.METRICS_PRIVILEGE)) {
+			model.addAttribute("metrics", getMetricRows());
+		}
+	}
+
+	/**
+	 * @return one row per operation, latencies in milliseconds and sizes in kilobytes
+	 */
+	private List<Map<String, Object>> getMetricRows() {
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+		for (OperationMetrics operation : RequestMetrics.getInstance().getOperations()) {
+			Histogram latency = operation.getLatency();
+			Map<String, Object> row = new LinkedHashMap<String, Object>();
+			row.put("resource", operation.getResourceName());
+			row.put("operation", operation.getOperation());
+			row.put("requests", operation.getRequestCount());
+			row.put("errors", operation.getErrorCount());
+			row.put("mean", latency.getMean() / 1000);
+			row.put("p50", latency.getValueAtQuantile(0.5) / 1000.0);
+			row.put("p95", latency.getValueAtQuantile(0.95) / 1000.0);
+			row.put("p99", latency.getValueAtQuantile(0.99) / 1000.0);
+			row.put("max", latency.getMax() / 1000.0);
+			row.put("size", operation.getResponseSize().getMean() / 1024);
+			rows.add(row);
+		}
+		return rows;
 	}
 }
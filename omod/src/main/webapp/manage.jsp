@@ -19,4 +19,37 @@
 
 <p>Hello ${user.systemId}!</p>
 
+<openmrs:hasPrivilege privilege="View FHIR Metrics">
+	<h3><spring:message code="fhir.metrics"/></h3>
+	<p><spring:message code="fhir.metrics.description"/></p>
+	<table class="box">
+		<tr>
+			<th><spring:message code="fhir.metrics.resource"/></th>
+			<th><spring:message code="fhir.metrics.operation"/></th>
+			<th><spring:message code="fhir.metrics.requests"/></th>
+			<th><spring:message code="fhir.metrics.errors"/></th>
+			<th><spring:message code="fhir.metrics.mean"/></th>
+			<th>p50</th>
+			<th>p95</th>
+			<th>p99</th>
+			<th><spring:message code="fhir.metrics.max"/></th>
+			<th><spring:message code="fhir.metrics.size"/></th>
+		</tr>
+		<c:forEach var="row" items="${metrics}">
+			<tr>
+				<td>${row.resource}</td>
+				<td>${row.operation}</td>
+				<td>${row.requests}</td>
+				<td>${row.errors}</td>
+				<td><fmt:formatNumber value="${row.mean}" maxFractionDigits="1"/></td>
+				<td><fmt:formatNumber value="${row.p50}" maxFractionDigits="1"/></td>
+				<td><fmt:formatNumber value="${row.p95}" maxFractionDigits="1"/></td>
+				<td><fmt:formatNumber value="${row.p99}" maxFractionDigits="1"/></td>
+				<td><fmt:formatNumber value="${row.max}" maxFractionDigits="1"/></td>
+				<td><fmt:formatNumber value="${row.size}" maxFractionDigits="1"/></td>
+			</tr>
+		</c:forEach>
+	</table>
+</openmrs:hasPrivilege>
+
 <%@ include file="/WEB-INF/template/footer.jsp" %>
@@ -0,0 +1,80 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.fhir.server;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.PrintWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class CountingResponseWrapperTest {
+
+	private static final String TEXT = "a\u00e9\u20ac\ud83d\ude00";
+
+	@Test
+	public void getWriter_shouldCountTheUtf8BytesOfTheCharactersWritten() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		response.setCharacterEncoding("UTF-8");
+		CountingResponseWrapper wrapper = new CountingResponseWrapper(response);
+
+		PrintWriter writer = wrapper.getWriter();
+		writer.write(TEXT);
+		writer.write(TEXT.toCharArray(), 1, 2);
+		writer.write('z');
+		writer.flush();
+
+		String expected = TEXT + TEXT.substring(1, 3) + "z";
+		assertEquals(expected.getBytes("UTF-8").length, wrapper.getByteCount());
+		assertEquals(16, wrapper.getByteCount());
+		assertEquals(expected, response.getContentAsString());
+	}
+
+	@Test
+	public void getOutputStream_shouldCountTheBytesWritten() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		CountingResponseWrapper wrapper = new CountingResponseWrapper(response);
+
+		byte[] body = TEXT.getBytes("UTF-8");
+		wrapper.getOutputStream().write(body, 0, body.length);
+		wrapper.getOutputStream().write('z');
+
+		assertEquals(body.length + 1, wrapper.getByteCount());
+		assertEquals(body.length + 1, response.getContentAsByteArray().length);
+		assertSame(wrapper.getOutputStream(), wrapper.getOutputStream());
+	}
+
+	@Test
+	public void bodyStarted_shouldBeCalledOnceBeforeTheBodyIsWritten() throws Exception {
+		final int[] calls = new int[1];
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		CountingResponseWrapper wrapper = new CountingResponseWrapper(response) {
+
+			@Override
+			protected void bodyStarted() {
+				calls[0]++;
+				setHeader("X-Started", String.valueOf(calls[0]));
+			}
+		};
+
+		wrapper.sendError(404);
+		wrapper.getWriter();
+		wrapper.getOutputStream();
+
+		assertEquals(1, calls[0]);
+		assertEquals("1", response.getHeader("X-Started"));
+	}
+}